@@ -1,43 +1,91 @@
 package com.app.routing.client;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.StringJoiner;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import com.app.routing.dto.Coordenada;
+import com.app.routing.dto.OsrmResponse;
+
+/**
+ * Cliente HTTP do OSRM: um WebClient montado uma vez, resposta lida direto
+ * em OsrmResponse e tempo máximo por chamada
+ */
 @Component
 public class OsrmClient {
 
-    private final WebClient.Builder builder;
+    private static final Logger log = LoggerFactory.getLogger(OsrmClient.class);
 
-    private static final String OSRM_URL = "http://host.docker.internal:5000";
-    // IMPORTANTE: se estiver rodando dentro do Docker
+    private final WebClient webClient;
+    private final Duration timeout;
 
-    public OsrmClient(WebClient.Builder builder) {
-        this.builder = builder;
+    public OsrmClient(WebClient.Builder builder,
+                      // host.docker.internal quando o routing-service roda dentro do Docker
+                      @Value("${osrm.url:http://host.docker.internal:5000}") String osrmUrl,
+                      @Value("${osrm.timeout-ms:5000}") long timeoutMs) {
+        this.webClient = builder.clone()
+            .baseUrl(osrmUrl)
+            // Geometria completa de rotas longas passa do limite padrão de 256 KB
+            .codecs(c -> c.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+            .build();
+        this.timeout = Duration.ofMillis(timeoutMs);
     }
 
-    public String calcularRota(Double origemLat,
-                               Double origemLon,
-                               Double destinoLat,
-                               Double destinoLon) {
+    public OsrmResponse calcularRota(Double origemLat,
+                                     Double origemLon,
+                                     Double destinoLat,
+                                     Double destinoLon) {
+
+        String path = "/route/v1/driving/" + origemLon + "," + origemLat + ";" + destinoLon + "," + destinoLat;
+        log.debug("🔵 Chamando OSRM: {}", path);
 
-        String url = OSRM_URL + "/route/v1/driving/"
-                + origemLon + "," + origemLat + ";"
-                + destinoLon + "," + destinoLat
-                + "?overview=full&geometries=geojson";
+        return chamar(path + "?overview=full&geometries=geojson");
+    }
+
+    /**
+     * /table: durações e distâncias de cada origem para cada destino numa
+     * única chamada (as coordenadas vão juntas, origens primeiro)
+     */
+    public OsrmResponse calcularTabela(List<Coordenada> origens, List<Coordenada> destinos) {
+        StringJoiner coordenadas = new StringJoiner(";");
+        StringJoiner sources = new StringJoiner(";");
+        StringJoiner destinations = new StringJoiner(";");
+        int i = 0;
+        for (Coordenada c : origens) {
+            coordenadas.add(c.longitude() + "," + c.latitude());
+            sources.add(Integer.toString(i++));
+        }
+        for (Coordenada c : destinos) {
+            coordenadas.add(c.longitude() + "," + c.latitude());
+            destinations.add(Integer.toString(i++));
+        }
 
-        System.out.println("🔵 Chamando OSRM URL:");
-        System.out.println(url);
+        log.debug("🔵 Chamando OSRM /table: {} origens x {} destinos", origens.size(), destinos.size());
 
-        String response = builder.build()
-                .get()
-                .uri(url)
-                .retrieve()
-                .bodyToMono(String.class)
-                .block();
+        return chamar("/table/v1/driving/" + coordenadas
+            + "?sources=" + sources + "&destinations=" + destinations
+            + "&annotations=duration,distance");
+    }
 
-        System.out.println("🟢 Resposta bruta OSRM:");
-        System.out.println(response);
+    private OsrmResponse chamar(String uri) {
+        OsrmResponse response = webClient.get()
+            .uri(uri)
+            .retrieve()
+            // OSRM responde 400 com code/message (ex.: NoRoute, TooBig); lê o corpo mesmo assim
+            .onStatus(status -> status.value() == 400, r -> r.bodyToMono(OsrmResponse.class)
+                .map(erro -> new IllegalStateException("OSRM: " + erro.getCode() + " - " + erro.getMessage())))
+            .bodyToMono(OsrmResponse.class)
+            .block(timeout);
 
+        if (response == null || !response.isOk()) {
+            throw new IllegalStateException("OSRM: " + (response != null ? response.getCode() + " - " + response.getMessage() : "sem resposta"));
+        }
         return response;
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,8 @@
 package com.app.routing.controller;
 
 import com.app.routing.dto.RouteResponse;
+import com.app.routing.dto.TabelaRequest;
+import com.app.routing.dto.TabelaResponse;
 import com.app.routing.service.RoutingService;
 import org.springframework.web.bind.annotation.*;
 
@@ -27,4 +29,13 @@ public class RoutingController {
                 destinoLon
         );
     }
-}
\ No newline at end of file
+
+    /**
+     * Matriz de durações/distâncias (muitos para um, um para muitos ou
+     * muitos para muitos) numa única chamada ao OSRM
+     */
+    @PostMapping("/tabela")
+    public TabelaResponse tabela(@RequestBody TabelaRequest request) {
+        return routingService.calcularTabela(request);
+    }
+}
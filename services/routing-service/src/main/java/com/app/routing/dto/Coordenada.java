@@ -0,0 +1,4 @@
+package com.app.routing.dto;
+
+public record Coordenada(double latitude, double longitude) {
+}
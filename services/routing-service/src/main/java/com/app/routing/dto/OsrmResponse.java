@@ -1,5 +1,59 @@
 package com.app.routing.dto;
 
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Resposta do OSRM (/route e /table), só com os campos usados. A geometria
+ * continua como JsonNode porque é repassada sem alteração ao cliente.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class OsrmResponse {
 
+    private String code;
+    private String message;
+
+    // /route
+    private List<Rota> routes;
+
+    // /table: [origem][destino], null quando não há rota
+    private Double[][] durations;
+    private Double[][] distances;
+
+    public String getCode() { return code; }
+    public void setCode(String code) { this.code = code; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+
+    public List<Rota> getRoutes() { return routes; }
+    public void setRoutes(List<Rota> routes) { this.routes = routes; }
+
+    public Double[][] getDurations() { return durations; }
+    public void setDurations(Double[][] durations) { this.durations = durations; }
+
+    public Double[][] getDistances() { return distances; }
+    public void setDistances(Double[][] distances) { this.distances = distances; }
+
+    public boolean isOk() {
+        return "Ok".equals(code);
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Rota {
+        private double distance; // metros
+        private double duration; // segundos
+        private JsonNode geometry;
+
+        public double getDistance() { return distance; }
+        public void setDistance(double distance) { this.distance = distance; }
+
+        public double getDuration() { return duration; }
+        public void setDuration(double duration) { this.duration = duration; }
+
+        public JsonNode getGeometry() { return geometry; }
+        public void setGeometry(JsonNode geometry) { this.geometry = geometry; }
+    }
 }
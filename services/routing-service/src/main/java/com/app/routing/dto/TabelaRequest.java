@@ -0,0 +1,19 @@
+package com.app.routing.dto;
+
+import java.util.List;
+
+/**
+ * Matriz origens x destinos; muitos veículos para um destino (N x 1) ou um
+ * ponto para muitos (1 x N) saem numa única chamada ao OSRM
+ */
+public class TabelaRequest {
+
+    private List<Coordenada> origens;
+    private List<Coordenada> destinos;
+
+    public List<Coordenada> getOrigens() { return origens; }
+    public void setOrigens(List<Coordenada> origens) { this.origens = origens; }
+
+    public List<Coordenada> getDestinos() { return destinos; }
+    public void setDestinos(List<Coordenada> destinos) { this.destinos = destinos; }
+}
@@ -0,0 +1,23 @@
+package com.app.routing.dto;
+
+/**
+ * [origem][destino], na ordem do pedido; null quando o OSRM não achou rota
+ */
+public class TabelaResponse {
+
+    private final Double[][] duracoesMinutos;
+    private final Double[][] distanciasKm;
+
+    public TabelaResponse(Double[][] duracoesMinutos, Double[][] distanciasKm) {
+        this.duracoesMinutos = duracoesMinutos;
+        this.distanciasKm = distanciasKm;
+    }
+
+    public Double[][] getDuracoesMinutos() {
+        return duracoesMinutos;
+    }
+
+    public Double[][] getDistanciasKm() {
+        return distanciasKm;
+    }
+}
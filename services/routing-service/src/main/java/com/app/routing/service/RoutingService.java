@@ -1,65 +1,146 @@
 package com.app.routing.service;
 
-import com.app.routing.client.OsrmClient;
-import com.app.routing.dto.RouteResponse;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import com.app.routing.client.OsrmClient;
+import com.app.routing.dto.Coordenada;
+import com.app.routing.dto.OsrmResponse;
+import com.app.routing.dto.RouteResponse;
+import com.app.routing.dto.TabelaRequest;
+import com.app.routing.dto.TabelaResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Rotas e matrizes de tempo/distância via OSRM.
+ *
+ * Origem e destino são arredondados para uma grade (routing.cache.casas-decimais,
+ * 3 = ~110 m) antes de consultar o OSRM, e o resultado fica num cache
+ * limitado por esse par de células: veículos na mesma região indo ao mesmo
+ * destino compartilham a rota, e pedidos simultâneos iguais fazem uma única
+ * chamada.
+ */
 @Service
 public class RoutingService {
 
-    private final OsrmClient osrmClient;
-    private final ObjectMapper mapper;
+    private static final Logger log = LoggerFactory.getLogger(RoutingService.class);
 
-    public RoutingService(OsrmClient osrmClient) {
+    private final OsrmClient osrmClient;
+    private final Cache<ChaveRota, RouteResponse> rotas;
+    private final double fatorGrade;
+    private final int maxCoordenadasTabela;
+
+    public RoutingService(OsrmClient osrmClient,
+                          @Value("${routing.cache.max-entradas:10000}") long maxEntradas,
+                          @Value("${routing.cache.ttl-minutos:30}") long ttlMinutos,
+                          @Value("${routing.cache.casas-decimais:3}") int casasDecimais,
+                          @Value("${osrm.table.max-coordenadas:100}") int maxCoordenadasTabela) {
         this.osrmClient = osrmClient;
-        this.mapper = new ObjectMapper();
+        this.rotas = Caffeine.newBuilder()
+            .maximumSize(maxEntradas)
+            .expireAfterWrite(Duration.ofMinutes(ttlMinutos))
+            .build();
+        this.fatorGrade = Math.pow(10, casasDecimais);
+        this.maxCoordenadasTabela = maxCoordenadasTabela;
     }
 
-      public RouteResponse calcularMelhorRota(Double origemLat,
-              Double origemLon,
-              Double destinoLat,
-              Double destinoLon) {
+    public RouteResponse calcularMelhorRota(Double origemLat,
+                                            Double origemLon,
+                                            Double destinoLat,
+                                            Double destinoLon) {
 
-      try {
+        ChaveRota chave = new ChaveRota(
+            celula(origemLat), celula(origemLon), celula(destinoLat), celula(destinoLon));
 
-                      System.out.println("📍 Origem: " + origemLat + ", " + origemLon);
-                      System.out.println("📍 Destino: " + destinoLat + ", " + destinoLon);
+        // get com loader: pedidos simultâneos da mesma chave esperam o mesmo cálculo
+        return rotas.get(chave, this::consultarOsrm);
+    }
 
-                     String json = osrmClient.calcularRota(
-                                      origemLat,
-                                      origemLon,
-                                      destinoLat,
-                                      destinoLon
-             );
+    private RouteResponse consultarOsrm(ChaveRota chave) {
+        double origemLat = chave.origemLat() / fatorGrade;
+        double origemLon = chave.origemLon() / fatorGrade;
+        double destinoLat = chave.destinoLat() / fatorGrade;
+        double destinoLon = chave.destinoLon() / fatorGrade;
 
-              JsonNode node = mapper.readTree(json);
-              JsonNode route = node.get("routes").get(0);
+        try {
+            log.debug("📍 Origem: {}, {} - Destino: {}, {}", origemLat, origemLon, destinoLat, destinoLon);
 
-             double distanciaMetros = route.get("distance").asDouble();
-             double duracaoSegundos = route.get("duration").asDouble();
+            OsrmResponse resposta = osrmClient.calcularRota(origemLat, origemLon, destinoLat, destinoLon);
+            if (resposta.getRoutes() == null || resposta.getRoutes().isEmpty()) {
+                throw new IllegalStateException("OSRM não devolveu rota");
+            }
+            OsrmResponse.Rota route = resposta.getRoutes().get(0);
 
-            System.out.println("📏 Distância (m): " + distanciaMetros);
-            System.out.println("⏱ Duração (s): " + duracaoSegundos);
+            double distanciaKm = route.getDistance() / 1000.0;
+            double duracaoMin = route.getDuration() / 60.0;
 
-            double distanciaKm = distanciaMetros / 1000.0;
-            double duracaoMin = duracaoSegundos / 60.0;
+            log.debug("📏 Distância: {} km - ⏱ Duração: {} min", distanciaKm, duracaoMin);
 
-            System.out.println("📏 Distância (km): " + distanciaKm);
-            System.out.println("⏱ Duração (min): " + duracaoMin);
+            return new RouteResponse(distanciaKm, duracaoMin, route.getGeometry());
 
-            return new RouteResponse(
-                              distanciaKm,
-                              duracaoMin,
-                              route.get("geometry")
-           );
+        } catch (Exception e) {
+            log.error("❌ Erro ao calcular rota OSRM: {}", e.getMessage());
+            throw new RuntimeException("Erro ao calcular rota OSRM", e);
+        }
+    }
 
-       } catch (Exception e) {
-           e.printStackTrace();
-           throw new RuntimeException("Erro ao calcular rota OSRM", e);
+    /**
+     * Matriz origens x destinos numa única chamada ao /table do OSRM
+     */
+    public TabelaResponse calcularTabela(TabelaRequest request) {
+        List<Coordenada> origens = request.getOrigens();
+        List<Coordenada> destinos = request.getDestinos();
+        if (origens == null || origens.isEmpty() || destinos == null || destinos.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "origens e destinos são obrigatórios");
+        }
+        if (origens.size() + destinos.size() > maxCoordenadasTabela) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "no máximo " + maxCoordenadasTabela + " coordenadas por tabela");
         }
-     }
-}
 
+        OsrmResponse resposta;
+        try {
+            resposta = osrmClient.calcularTabela(origens, destinos);
+        } catch (Exception e) {
+            log.error("❌ Erro ao calcular tabela OSRM: {}", e.getMessage());
+            throw new RuntimeException("Erro ao calcular tabela OSRM", e);
+        }
+
+        return new TabelaResponse(
+            converter(resposta.getDurations(), origens.size(), destinos.size(), 60.0),
+            converter(resposta.getDistances(), origens.size(), destinos.size(), 1000.0));
+    }
+
+    /**
+     * Segundos -> minutos / metros -> km, mantendo null onde não há rota
+     */
+    private static Double[][] converter(Double[][] matriz, int linhas, int colunas, double divisor) {
+        Double[][] resultado = new Double[linhas][colunas];
+        if (matriz == null) return resultado;
+        for (int i = 0; i < linhas && i < matriz.length; i++) {
+            for (int j = 0; j < colunas && j < matriz[i].length; j++) {
+                resultado[i][j] = matriz[i][j] != null ? matriz[i][j] / divisor : null;
+            }
+        }
+        return resultado;
+    }
 
+    private long celula(double graus) {
+        return Math.round(graus * fatorGrade);
+    }
+
+    public long getRotasEmCache() {
+        return rotas.estimatedSize();
+    }
+
+    private record ChaveRota(long origemLat, long origemLon, long destinoLat, long destinoLon) {
+    }
+}
@@ -0,0 +1,139 @@
+package com.app.routing.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.app.routing.client.OsrmClient;
+import com.app.routing.dto.Coordenada;
+import com.app.routing.dto.RouteResponse;
+import com.app.routing.dto.TabelaRequest;
+import com.app.routing.dto.TabelaResponse;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * RoutingService contra um OSRM falso em HTTP local
+ */
+class RoutingServiceTest {
+
+    private static final String ROTA = """
+        {"code":"Ok","routes":[{"distance":12500.0,"duration":900.0,
+         "geometry":{"type":"LineString","coordinates":[[-46.63,-23.55],[-46.70,-23.60]]}}]}
+        """;
+
+    private static final String TABELA = """
+        {"code":"Ok","durations":[[600.0],[1200.0],[null]],"distances":[[5000.0],[10000.0],[null]]}
+        """;
+
+    private static final String SEM_ROTA = """
+        {"code":"NoRoute","message":"Impossible route between points"}
+        """;
+
+    private HttpServer osrm;
+    private final List<String> chamadas = new CopyOnWriteArrayList<>();
+    private volatile int status = 200;
+    private volatile String corpo = ROTA;
+
+    private RoutingService service;
+
+    @BeforeEach
+    void iniciar() throws Exception {
+        osrm = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        osrm.createContext("/", troca -> {
+            chamadas.add(troca.getRequestURI().toString());
+            byte[] resposta = corpo.getBytes(StandardCharsets.UTF_8);
+            troca.getResponseHeaders().add("Content-Type", "application/json");
+            troca.sendResponseHeaders(status, resposta.length);
+            try (OutputStream out = troca.getResponseBody()) {
+                out.write(resposta);
+            }
+        });
+        osrm.start();
+
+        OsrmClient client = new OsrmClient(WebClient.builder(),
+            "http://127.0.0.1:" + osrm.getAddress().getPort(), 5000);
+        service = new RoutingService(client, 100, 30, 3, 10);
+    }
+
+    @AfterEach
+    void parar() {
+        osrm.stop(0);
+    }
+
+    @Test
+    void rotaEmCelulasProximasUsaOCache() {
+        RouteResponse primeira = service.calcularMelhorRota(-23.55011, -46.63331, -23.60002, -46.70004);
+        RouteResponse segunda = service.calcularMelhorRota(-23.55034, -46.63312, -23.59981, -46.69987);
+
+        assertEquals(1, chamadas.size());
+        assertTrue(chamadas.get(0).startsWith("/route/v1/driving/-46.633,-23.55;-46.7,-23.6"));
+        assertEquals(12.5, primeira.getDistanciaKm(), 1e-9);
+        assertEquals(15.0, primeira.getDuracaoMinutos(), 1e-9);
+        assertEquals("LineString", primeira.getGeometria().get("type").asText());
+        assertTrue(primeira == segunda);
+
+        service.calcularMelhorRota(-23.56, -46.63331, -23.60002, -46.70004);
+        assertEquals(2, chamadas.size());
+    }
+
+    @Test
+    void tabelaFazUmaUnicaChamada() {
+        corpo = TABELA;
+        TabelaRequest request = new TabelaRequest();
+        request.setOrigens(List.of(
+            new Coordenada(-23.55, -46.63),
+            new Coordenada(-23.56, -46.64),
+            new Coordenada(-23.57, -46.65)));
+        request.setDestinos(List.of(new Coordenada(-23.60, -46.70)));
+
+        TabelaResponse tabela = service.calcularTabela(request);
+
+        assertEquals(1, chamadas.size());
+        assertEquals("/table/v1/driving/-46.63,-23.55;-46.64,-23.56;-46.65,-23.57;-46.7,-23.6"
+            + "?sources=0;1;2&destinations=3&annotations=duration,distance", chamadas.get(0));
+        assertEquals(10.0, tabela.getDuracoesMinutos()[0][0], 1e-9);
+        assertEquals(20.0, tabela.getDuracoesMinutos()[1][0], 1e-9);
+        assertEquals(10.0, tabela.getDistanciasKm()[1][0], 1e-9);
+        assertNull(tabela.getDuracoesMinutos()[2][0]);
+        assertNull(tabela.getDistanciasKm()[2][0]);
+    }
+
+    @Test
+    void tabelaAcimaDoLimiteERecusada() {
+        TabelaRequest request = new TabelaRequest();
+        request.setOrigens(List.of(new Coordenada(0, 0), new Coordenada(0, 1), new Coordenada(0, 2),
+            new Coordenada(0, 3), new Coordenada(0, 4), new Coordenada(0, 5), new Coordenada(0, 6),
+            new Coordenada(0, 7), new Coordenada(0, 8), new Coordenada(0, 9)));
+        request.setDestinos(List.of(new Coordenada(1, 1)));
+
+        assertThrows(ResponseStatusException.class, () -> service.calcularTabela(request));
+        assertTrue(chamadas.isEmpty());
+    }
+
+    @Test
+    void erroDoOsrmNaoFicaEmCache() {
+        status = 400;
+        corpo = SEM_ROTA;
+        RuntimeException erro = assertThrows(RuntimeException.class,
+            () -> service.calcularMelhorRota(-23.55, -46.63, -23.60, -46.70));
+        assertTrue(erro.getCause().getMessage().contains("NoRoute"));
+
+        status = 200;
+        corpo = ROTA;
+        service.calcularMelhorRota(-23.55, -46.63, -23.60, -46.70);
+        assertEquals(2, chamadas.size());
+    }
+}
@@ -1,40 +1,212 @@
 package com.app.telemetria.client;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 
 import com.app.telemetria.dto.RouteResponse;
+import com.app.telemetria.util.GeoHash;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.netty.channel.ChannelOption;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+/**
+ * Cliente do routing-service.
+ *
+ * Um único WebClient com pool de conexões e timeouts. Para o ETA das
+ * viagens (chamado a cada telemetria) há duas camadas na frente da rede:
+ * pedidos em andamento para a mesma célula de origem e destino são
+ * compartilhados, e o resultado fica em cache por (veículo, célula de
+ * destino), recalculado no máximo a cada intervalo-minimo-segundos, ou
+ * reaproveitado por ttl-segundos enquanto o veículo não sai da célula de
+ * origem. estimarChegada nunca bloqueia: sem resultado pronto dispara o
+ * cálculo e devolve o último conhecido (ou null).
+ */
 @Component
 public class RoutingClient {
 
-    private final WebClient.Builder builder;
+    private static final Logger log = LoggerFactory.getLogger(RoutingClient.class);
+
+    private static final String PATH_CALCULAR = "/api/v1/routing/calcular";
+
+    private final WebClient webClient;
+    private final Duration timeout;
+    private final int precisaoCelula;
+    private final long intervaloMinimoMs;
+    private final long ttlMs;
+
+    // (célula origem, célula destino) -> cálculo em andamento
+    private final Map<Trecho, CompletableFuture<RouteResponse>> emAndamento = new ConcurrentHashMap<>();
+    // (veículo, célula destino) -> último ETA
+    private final Cache<ChaveEta, EtaCalculado> etas;
+
+    private final LongAdder hitsCache = new LongAdder();
+    private final LongAdder chamadasCompartilhadas = new LongAdder();
+    private final LongAdder chamadas = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+
+    public RoutingClient(
+            WebClient.Builder builder,
+            @Value("${routing.service.url:http://localhost:8082}") String baseUrl,
+            @Value("${routing.client.max-conexoes:50}") int maxConexoes,
+            @Value("${routing.client.connect-timeout-ms:2000}") int connectTimeoutMs,
+            @Value("${routing.client.timeout-ms:5000}") long timeoutMs,
+            @Value("${routing.eta.celula-precisao:6}") int precisaoCelula,
+            @Value("${routing.eta.intervalo-minimo-segundos:60}") long intervaloMinimoSegundos,
+            @Value("${routing.eta.ttl-segundos:300}") long ttlSegundos,
+            @Value("${routing.eta.max-entradas:20000}") long maxEntradas) {
 
-    private static final String ROUTING_SERVICE_URL = "http://localhost:8082"; 
-    // porta do routing-service
+        this.timeout = Duration.ofMillis(timeoutMs);
+        ConnectionProvider pool = ConnectionProvider.builder("routing-service")
+            .maxConnections(maxConexoes)
+            .pendingAcquireTimeout(timeout)
+            .maxIdleTime(Duration.ofSeconds(30))
+            .build();
+        HttpClient httpClient = HttpClient.create(pool)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+            .responseTimeout(timeout);
 
-    public RoutingClient(WebClient.Builder builder) {
-        this.builder = builder;
+        // Cópia do builder compartilhado: o conector não vaza para outros clientes
+        this.webClient = builder.clone()
+            .baseUrl(baseUrl)
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            // Respostas com a geometria completa da rota passam do limite padrão de 256 KB
+            .codecs(c -> c.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+            .build();
+
+        this.precisaoCelula = precisaoCelula;
+        this.intervaloMinimoMs = intervaloMinimoSegundos * 1000;
+        this.ttlMs = ttlSegundos * 1000;
+        this.etas = Caffeine.newBuilder()
+            .maximumSize(maxEntradas)
+            .expireAfterWrite(Duration.ofSeconds(ttlSegundos))
+            .build();
     }
 
+    /**
+     * Rota completa (com geometria), bloqueando até o timeout; sem cache
+     */
     public RouteResponse calcular(Double origemLat,
-            Double origemLon,
-            Double destinoLat,
-            Double destinoLon) {
-
-   return builder
-                    .baseUrl(ROUTING_SERVICE_URL)
-                    .build()
-                    .get()
-                     .uri(uriBuilder -> uriBuilder
-                                 .path("/api/routing/calcular")
-                                 .queryParam("origemLat", origemLat)
-                                 .queryParam("origemLon", origemLon)
-                                 .queryParam("destinoLat", destinoLat)
-                                 .queryParam("destinoLon", destinoLon)
-                                 .build())
-                   .retrieve()
-                   .bodyToMono(RouteResponse.class)
-                   .block();
-     }
-}
\ No newline at end of file
+                                  Double origemLon,
+                                  Double destinoLat,
+                                  Double destinoLon) {
+        chamadas.increment();
+        try {
+            return requisitar(origemLat, origemLon, destinoLat, destinoLon).toFuture().get();
+        } catch (Exception e) {
+            falhas.increment();
+            throw new IllegalStateException("Falha ao chamar o routing-service: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Chegada estimada do veículo ao destino sem bloquear: a última calculada
+     * se ainda vale; senão dispara (ou reaproveita) o cálculo e devolve a
+     * anterior, que pode ser null na primeira vez
+     */
+    public LocalDateTime estimarChegada(Long veiculoId,
+                                        double origemLat, double origemLon,
+                                        double destinoLat, double destinoLon) {
+        long celulaOrigem = GeoHash.codificar(origemLat, origemLon, precisaoCelula);
+        long celulaDestino = GeoHash.codificar(destinoLat, destinoLon, precisaoCelula);
+        ChaveEta chave = new ChaveEta(veiculoId, celulaDestino);
+
+        EtaCalculado atual = etas.getIfPresent(chave);
+        long agora = System.currentTimeMillis();
+        if (atual != null) {
+            long idade = agora - atual.calculadoEm();
+            if (idade < intervaloMinimoMs || (atual.celulaOrigem() == celulaOrigem && idade < ttlMs)) {
+                hitsCache.increment();
+                return atual.chegada();
+            }
+        }
+
+        Trecho trecho = new Trecho(celulaOrigem, celulaDestino);
+        CompletableFuture<RouteResponse> novo = new CompletableFuture<>();
+        CompletableFuture<RouteResponse> existente = emAndamento.putIfAbsent(trecho, novo);
+        if (existente != null) {
+            chamadasCompartilhadas.increment();
+            existente.whenComplete((r, ex) -> guardar(chave, celulaOrigem, r, atual));
+        } else {
+            chamadas.increment();
+            requisitar(origemLat, origemLon, destinoLat, destinoLon).toFuture().whenComplete((r, ex) -> {
+                emAndamento.remove(trecho, novo);
+                if (ex != null) {
+                    falhas.increment();
+                    log.warn("⚠️ Falha ao calcular ETA no routing-service: {}", ex.getMessage());
+                    novo.completeExceptionally(ex);
+                } else {
+                    novo.complete(r);
+                }
+            });
+            novo.whenComplete((r, ex) -> guardar(chave, celulaOrigem, r, atual));
+        }
+        return atual != null ? atual.chegada() : null;
+    }
+
+    /**
+     * Guarda o ETA calculado; em falha (resposta null) mantém o anterior com
+     * horário novo, então o routing-service fora do ar também só é chamado a
+     * cada intervalo-minimo-segundos
+     */
+    private void guardar(ChaveEta chave, long celulaOrigem, RouteResponse resposta, EtaCalculado anterior) {
+        long agora = System.currentTimeMillis();
+        LocalDateTime chegada = resposta != null
+            ? LocalDateTime.ofInstant(Instant.ofEpochMilli(agora + (long) (resposta.getDuracaoMinutos() * 60_000)),
+                ZoneId.systemDefault())
+            : anterior != null ? anterior.chegada() : null;
+        etas.put(chave, new EtaCalculado(celulaOrigem, chegada, agora));
+    }
+
+    private Mono<RouteResponse> requisitar(double origemLat, double origemLon,
+                                           double destinoLat, double destinoLon) {
+        return webClient.get()
+            .uri(uriBuilder -> uriBuilder
+                .path(PATH_CALCULAR)
+                .queryParam("origemLat", origemLat)
+                .queryParam("origemLon", origemLon)
+                .queryParam("destinoLat", destinoLat)
+                .queryParam("destinoLon", destinoLon)
+                .build())
+            .retrieve()
+            .bodyToMono(RouteResponse.class)
+            .timeout(timeout);
+    }
+
+    public Map<String, Object> getEstatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("chamadas", chamadas.sum());
+        stats.put("chamadasCompartilhadas", chamadasCompartilhadas.sum());
+        stats.put("hitsCache", hitsCache.sum());
+        stats.put("falhas", falhas.sum());
+        stats.put("etasEmCache", etas.estimatedSize());
+        stats.put("emAndamento", emAndamento.size());
+        return stats;
+    }
+
+    private record Trecho(long celulaOrigem, long celulaDestino) {
+    }
+
+    private record ChaveEta(Long veiculoId, long celulaDestino) {
+    }
+
+    private record EtaCalculado(long celulaOrigem, LocalDateTime chegada, long calculadoEm) {
+    }
+}
@@ -0,0 +1,273 @@
+package com.app.telemetria.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Codificação das mensagens de telemetria.
+ *
+ * Formato binário v1 (big-endian, 36 bytes fixos):
+ * <pre>
+ *  0  magic (0xA7)          1 byte
+ *  1  versão (1)            1 byte
+ *  2  flags                 1 byte  (bit0 = combustível, bit1 = timestamp)
+ *  3  reservado             1 byte
+ *  4  veiculoId             8 bytes (long)
+ * 12  latitude              4 bytes (int, graus x 1e7)
+ * 16  longitude             4 bytes (int, graus x 1e7)
+ * 20  velocidade            4 bytes (float, km/h)
+ * 24  nivelCombustivel      4 bytes (float, %)
+ * 28  timestamp             8 bytes (long, epoch em ms)
+ * </pre>
+ * O primeiro byte nunca é válido em JSON, então binário e JSON legado
+ * (objeto com vehicle_id, latitude, longitude...) convivem no mesmo tópico.
+ */
+public final class TelemetriaCodec {
+
+    public static final byte MAGIC = (byte) 0xA7;
+    public static final byte VERSAO_1 = 1;
+    public static final int TAMANHO_V1 = 36;
+
+    /** Content-Type do corpo binário nos endpoints de ingestão (sequência de frames v1) */
+    public static final String MEDIA_TYPE_BINARIO = "application/vnd.telemetria.v1+octet-stream";
+
+    private static final byte FLAG_COMBUSTIVEL = 0x01;
+    private static final byte FLAG_TIMESTAMP = 0x02;
+    private static final double ESCALA_COORDENADA = 1e7;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private TelemetriaCodec() {
+    }
+
+    // ================ BINÁRIO ================
+
+    public static byte[] codificar(TelemetriaMensagem mensagem) {
+        ByteBuffer buffer = ByteBuffer.allocate(TAMANHO_V1);
+        codificar(mensagem, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Escreve um frame v1. Coordenadas fora da faixa são rejeitadas: em graus
+     * x 1e7 elas estourariam o int e virariam outra coordenada válida.
+     */
+    public static void codificar(TelemetriaMensagem mensagem, ByteBuffer destino) {
+        if (!coordenadasValidas(mensagem)) {
+            throw new IllegalArgumentException("coordenadas inválidas: "
+                + mensagem.getLatitude() + ", " + mensagem.getLongitude());
+        }
+        byte flags = 0;
+        if (mensagem.temNivelCombustivel()) flags |= FLAG_COMBUSTIVEL;
+        if (mensagem.temTimestamp()) flags |= FLAG_TIMESTAMP;
+
+        destino.put(MAGIC);
+        destino.put(VERSAO_1);
+        destino.put(flags);
+        destino.put((byte) 0);
+        destino.putLong(mensagem.getVeiculoId());
+        destino.putInt((int) Math.round(mensagem.getLatitude() * ESCALA_COORDENADA));
+        destino.putInt((int) Math.round(mensagem.getLongitude() * ESCALA_COORDENADA));
+        destino.putFloat((float) mensagem.getVelocidade());
+        destino.putFloat(mensagem.temNivelCombustivel() ? (float) mensagem.getNivelCombustivel() : 0f);
+        destino.putLong(mensagem.temTimestamp() ? mensagem.getTimestampMillis() : 0L);
+    }
+
+    public static boolean isBinario(byte[] dados) {
+        return dados != null && dados.length > 0 && dados[0] == MAGIC;
+    }
+
+    /**
+     * Lê um frame v1 a partir da posição atual do buffer
+     */
+    public static TelemetriaMensagem decodificarBinario(ByteBuffer origem, TelemetriaMensagem destino) {
+        if (origem.remaining() < 2) {
+            throw new IllegalArgumentException("frame binário incompleto");
+        }
+        byte magic = origem.get();
+        byte versao = origem.get();
+        if (magic != MAGIC) {
+            throw new IllegalArgumentException("frame binário sem o byte mágico");
+        }
+        if (versao != VERSAO_1) {
+            throw new IllegalArgumentException("versão do formato binário não suportada: " + versao);
+        }
+        if (origem.remaining() < TAMANHO_V1 - 2) {
+            throw new IllegalArgumentException("frame binário v1 incompleto");
+        }
+
+        byte flags = origem.get();
+        origem.get(); // reservado
+        destino.setVeiculoId(origem.getLong());
+        destino.setLatitude(origem.getInt() / ESCALA_COORDENADA);
+        destino.setLongitude(origem.getInt() / ESCALA_COORDENADA);
+        destino.setVelocidade(origem.getFloat());
+        float combustivel = origem.getFloat();
+        long timestamp = origem.getLong();
+        destino.setNivelCombustivel((flags & FLAG_COMBUSTIVEL) != 0 ? combustivel : Double.NaN);
+        destino.setTimestampMillis((flags & FLAG_TIMESTAMP) != 0 ? timestamp : TelemetriaMensagem.SEM_TIMESTAMP);
+        return destino;
+    }
+
+    // ================ JSON LEGADO ================
+
+    /**
+     * Decodifica binário v1 ou JSON legado, conforme o primeiro byte
+     */
+    public static TelemetriaMensagem decodificar(byte[] dados) {
+        return decodificar(dados, new TelemetriaMensagem());
+    }
+
+    /**
+     * Decodifica no registro informado (reaproveitado pelo chamador). O JSON é
+     * lido token a token, sem montar a árvore JsonNode.
+     */
+    public static TelemetriaMensagem decodificar(byte[] dados, TelemetriaMensagem destino) {
+        if (dados == null || dados.length == 0) {
+            throw new IllegalArgumentException("mensagem vazia");
+        }
+        if (isBinario(dados)) {
+            return decodificarBinario(ByteBuffer.wrap(dados), destino.limpar());
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(dados)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("registro não é um objeto JSON");
+            }
+            return decodificarJson(parser, destino);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("JSON inválido: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lê um objeto JSON a partir do START_OBJECT atual até o END_OBJECT
+     * correspondente (o objeto é sempre consumido por inteiro, mesmo com erro
+     * de validação, para o parser continuar alinhado em NDJSON/array).
+     *
+     * Aceita vehicle_id/veiculoId/veiculo.id, nivelCombustivel/nivelCombustible
+     * e timestamp (epoch em segundos) ou dataHora (ISO-8601 local).
+     */
+    public static TelemetriaMensagem decodificarJson(JsonParser parser, TelemetriaMensagem destino) throws IOException {
+        destino.limpar();
+        boolean temLatitude = false;
+        boolean temLongitude = false;
+        String dataHora = null;
+        String erro = null;
+
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String campo = parser.currentName();
+            token = parser.nextToken();
+
+            // Objetos/arrays inesperados são pulados inteiros (só "veiculo" é aninhado)
+            if (token.isStructStart() && !"veiculo".equals(campo)) {
+                parser.skipChildren();
+                continue;
+            }
+
+            switch (campo) {
+                case "vehicle_id", "veiculoId" -> {
+                    if (token.isNumeric()) destino.setVeiculoId(parser.getLongValue());
+                    else if (token == JsonToken.VALUE_STRING) destino.setVeiculoId(parseLong(parser.getText()));
+                }
+                case "veiculo" -> {
+                    if (token == JsonToken.START_OBJECT) {
+                        long id = lerIdAninhado(parser);
+                        if (id != 0) destino.setVeiculoId(id);
+                    } else if (token == JsonToken.START_ARRAY) {
+                        parser.skipChildren();
+                    }
+                }
+                case "latitude" -> {
+                    if (token.isNumeric()) {
+                        destino.setLatitude(parser.getDoubleValue());
+                        temLatitude = true;
+                    }
+                }
+                case "longitude" -> {
+                    if (token.isNumeric()) {
+                        destino.setLongitude(parser.getDoubleValue());
+                        temLongitude = true;
+                    }
+                }
+                case "velocidade" -> {
+                    if (token.isNumeric()) destino.setVelocidade(parser.getDoubleValue());
+                }
+                case "nivelCombustivel", "nivelCombustible" -> {
+                    if (token.isNumeric()) destino.setNivelCombustivel(parser.getDoubleValue());
+                }
+                case "timestamp" -> {
+                    if (token.isNumeric()) destino.setTimestampMillis(parser.getLongValue() * 1000);
+                }
+                case "dataHora" -> {
+                    if (token == JsonToken.VALUE_STRING) dataHora = parser.getText();
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new IllegalArgumentException("objeto JSON incompleto");
+        }
+
+        if (!temLatitude || !temLongitude) {
+            erro = "latitude e longitude são obrigatórios";
+        } else if (!destino.temTimestamp() && dataHora != null) {
+            try {
+                destino.setTimestampMillis(LocalDateTime.parse(dataHora)
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            } catch (Exception e) {
+                erro = "data/hora inválida";
+            }
+        }
+        if (erro != null) {
+            throw new IllegalArgumentException(erro);
+        }
+        return destino;
+    }
+
+    private static long lerIdAninhado(JsonParser parser) throws IOException {
+        long id = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String campo = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("id".equals(campo) && token.isNumeric()) {
+                id = parser.getLongValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return id;
+    }
+
+    private static long parseLong(String valor) {
+        try {
+            return Long.parseLong(valor);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Validação comum aos formatos (veículo informado e faixas das coordenadas)
+     */
+    public static void validar(TelemetriaMensagem mensagem) {
+        if (mensagem.getVeiculoId() <= 0) {
+            throw new IllegalArgumentException("veículo não informado");
+        }
+        if (!coordenadasValidas(mensagem)) {
+            throw new IllegalArgumentException("coordenadas inválidas");
+        }
+    }
+
+    // Comparações escritas para NaN também cair fora da faixa
+    private static boolean coordenadasValidas(TelemetriaMensagem mensagem) {
+        return mensagem.getLatitude() >= -90 && mensagem.getLatitude() <= 90
+            && mensagem.getLongitude() >= -180 && mensagem.getLongitude() <= 180;
+    }
+}
@@ -0,0 +1,71 @@
+package com.app.telemetria.codec;
+
+/**
+ * Telemetria como trafega no tópico telemetria-raw, independente do formato
+ * (binário v1 ou JSON legado). Registro plano e mutável, só com campos
+ * primitivos, para ser reaproveitado entre mensagens sem alocação; ausência
+ * de valor é representada por 0 (veículo), NaN (combustível) e SEM_TIMESTAMP.
+ */
+public class TelemetriaMensagem {
+
+    public static final long SEM_TIMESTAMP = Long.MIN_VALUE;
+
+    private long veiculoId;
+    private double latitude;
+    private double longitude;
+    private double velocidade;
+    private double nivelCombustivel = Double.NaN;
+    private long timestampMillis = SEM_TIMESTAMP;
+
+    public TelemetriaMensagem() {
+    }
+
+    public TelemetriaMensagem(long veiculoId, double latitude, double longitude, double velocidade,
+                              double nivelCombustivel, long timestampMillis) {
+        this.veiculoId = veiculoId;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.velocidade = velocidade;
+        this.nivelCombustivel = nivelCombustivel;
+        this.timestampMillis = timestampMillis;
+    }
+
+    /**
+     * Volta aos valores padrão para reaproveitar a instância na próxima decodificação
+     */
+    public TelemetriaMensagem limpar() {
+        veiculoId = 0;
+        latitude = 0;
+        longitude = 0;
+        velocidade = 0;
+        nivelCombustivel = Double.NaN;
+        timestampMillis = SEM_TIMESTAMP;
+        return this;
+    }
+
+    public boolean temNivelCombustivel() {
+        return !Double.isNaN(nivelCombustivel);
+    }
+
+    public boolean temTimestamp() {
+        return timestampMillis != SEM_TIMESTAMP;
+    }
+
+    public long getVeiculoId() { return veiculoId; }
+    public void setVeiculoId(long veiculoId) { this.veiculoId = veiculoId; }
+
+    public double getLatitude() { return latitude; }
+    public void setLatitude(double latitude) { this.latitude = latitude; }
+
+    public double getLongitude() { return longitude; }
+    public void setLongitude(double longitude) { this.longitude = longitude; }
+
+    public double getVelocidade() { return velocidade; }
+    public void setVelocidade(double velocidade) { this.velocidade = velocidade; }
+
+    public double getNivelCombustivel() { return nivelCombustivel; }
+    public void setNivelCombustivel(double nivelCombustivel) { this.nivelCombustivel = nivelCombustivel; }
+
+    public long getTimestampMillis() { return timestampMillis; }
+    public void setTimestampMillis(long timestampMillis) { this.timestampMillis = timestampMillis; }
+}
@@ -0,0 +1,14 @@
+package com.app.telemetria.codec;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Serializer Kafka no formato binário v1 (36 bytes por registro)
+ */
+public class TelemetriaMensagemSerializer implements Serializer<TelemetriaMensagem> {
+
+    @Override
+    public byte[] serialize(String topic, TelemetriaMensagem data) {
+        return data == null ? null : TelemetriaCodec.codificar(data);
+    }
+}
@@ -0,0 +1,52 @@
+package com.app.telemetria.config;
+
+import com.app.telemetria.service.AmostradorAreaCritica;
+import com.app.telemetria.service.CriticalAreaService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@EnableScheduling
+public class AreaCriticaScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(AreaCriticaScheduler.class);
+
+    private final CriticalAreaService criticalAreaService;
+    private final AmostradorAreaCritica amostradorAreaCritica;
+
+    public AreaCriticaScheduler(CriticalAreaService criticalAreaService,
+                                AmostradorAreaCritica amostradorAreaCritica) {
+        this.criticalAreaService = criticalAreaService;
+        this.amostradorAreaCritica = amostradorAreaCritica;
+    }
+
+    /**
+     * Primeira carga na inicialização e recarga periódica (pega alterações
+     * feitas direto no banco)
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${telemetria.areas-criticas.recarga-ms:60000}")
+    public void recarregar() {
+        try {
+            criticalAreaService.recarregar();
+        } catch (Exception e) {
+            // Mantém o índice anterior
+            log.error("❌ Erro ao recarregar áreas críticas: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Publica os resumos de amostragem de veículos que pararam de enviar
+     * telemetria em área crítica
+     */
+    @Scheduled(fixedDelayString = "${telemetria.areas-criticas.amostragem.varredura-ms:10000}")
+    public void fecharIntervalosAmostragem() {
+        try {
+            amostradorAreaCritica.fecharIntervalosVencidos();
+        } catch (Exception e) {
+            log.error("❌ Erro ao fechar intervalos de amostragem: {}", e.getMessage());
+        }
+    }
+}
@@ -15,8 +15,12 @@ public class DesvioRotaScheduler {
         this.detectorService = detectorService;
     }
     
-    @Scheduled(fixedDelay = 30000) // A cada 30 segundos
-    public void verificarDesvios() {
-        detectorService.verificarDesviosAtivos();
+    /**
+     * O desvio é detectado no consumer a cada telemetria; aqui só sobra o
+     * watchdog dos veículos em rota que pararam de enviar posição
+     */
+    @Scheduled(fixedDelayString = "${telemetria.desvio.watchdog-ms:60000}")
+    public void verificarVeiculosSilenciosos() {
+        detectorService.verificarVeiculosSilenciosos();
     }
 }
\ No newline at end of file
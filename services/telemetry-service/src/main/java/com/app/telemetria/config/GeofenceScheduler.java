@@ -0,0 +1,35 @@
+package com.app.telemetria.config;
+
+import com.app.telemetria.service.GeofenceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@EnableScheduling
+public class GeofenceScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(GeofenceScheduler.class);
+
+    private final GeofenceService geofenceService;
+
+    public GeofenceScheduler(GeofenceService geofenceService) {
+        this.geofenceService = geofenceService;
+    }
+
+    /**
+     * Primeira carga na inicialização e recarga periódica (pega vínculos de
+     * veiculo_geofence e alterações feitas direto no banco)
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${telemetria.geofence.recarga-ms:60000}")
+    public void recarregar() {
+        try {
+            geofenceService.recarregar();
+        } catch (Exception e) {
+            // Mantém o índice anterior
+            log.error("❌ Erro ao recarregar geofences: {}", e.getMessage());
+        }
+    }
+}
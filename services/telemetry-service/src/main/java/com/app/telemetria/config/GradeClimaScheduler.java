@@ -0,0 +1,35 @@
+package com.app.telemetria.config;
+
+import com.app.telemetria.service.GradeClimaService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@EnableScheduling
+public class GradeClimaScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(GradeClimaScheduler.class);
+
+    private final GradeClimaService gradeClimaService;
+
+    public GradeClimaScheduler(GradeClimaService gradeClimaService) {
+        this.gradeClimaService = gradeClimaService;
+    }
+
+    /**
+     * Atualiza o clima dos corredores das viagens em andamento antes que os
+     * veículos precisem dele
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${telemetria.clima.grade.intervalo-ms:60000}")
+    public void atualizar() {
+        try {
+            gradeClimaService.atualizar();
+        } catch (Exception e) {
+            // A grade atual continua valendo
+            log.error("❌ Erro ao atualizar a grade de clima: {}", e.getMessage());
+        }
+    }
+}
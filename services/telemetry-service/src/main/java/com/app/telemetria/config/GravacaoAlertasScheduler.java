@@ -0,0 +1,34 @@
+package com.app.telemetria.config;
+
+import com.app.telemetria.service.GravacaoAlertasService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@EnableScheduling
+public class GravacaoAlertasScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(GravacaoAlertasScheduler.class);
+
+    private final GravacaoAlertasService gravacaoAlertasService;
+
+    public GravacaoAlertasScheduler(GravacaoAlertasService gravacaoAlertasService) {
+        this.gravacaoAlertasService = gravacaoAlertasService;
+    }
+
+    /**
+     * Grava em lote os alertas acumulados no buffer
+     */
+    @Scheduled(fixedDelayString = "${telemetria.alertas.escrita.intervalo-ms:1000}")
+    public void gravar() {
+        try {
+            gravacaoAlertasService.gravar();
+        } catch (Exception e) {
+            // O que não foi gravado continua no buffer
+            log.error("❌ Erro ao gravar o buffer de alertas: {}", e.getMessage());
+        }
+    }
+}
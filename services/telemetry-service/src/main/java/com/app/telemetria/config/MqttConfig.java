@@ -0,0 +1,219 @@
+package com.app.telemetria.config;
+
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.core.MessageProducer;
+import org.springframework.integration.mqtt.core.DefaultMqttPahoClientFactory;
+import org.springframework.integration.mqtt.core.MqttPahoClientFactory;
+import org.springframework.integration.mqtt.inbound.MqttPahoMessageDrivenChannelAdapter;
+import org.springframework.integration.mqtt.support.DefaultPahoMessageConverter;
+import org.springframework.integration.support.AbstractIntegrationMessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entrada MQTT dos dispositivos (ESP32).
+ *
+ * Assina o tópico de telemetria como shared subscription ($share/grupo/...),
+ * então várias instâncias do serviço dividem as mensagens em vez de todas
+ * receberem cópias. Cada mensagem vai para uma de mqtt.inbound.threads
+ * faixas escolhida pelo tópico (um por veículo); cada faixa tem uma thread
+ * e fila limitada, então as mensagens de um veículo são processadas na
+ * ordem de chegada. Com a fila da faixa cheia a thread do Paho espera, o
+ * que segura o ritmo de leitura do broker.
+ */
+@Configuration
+@ConditionalOnProperty(name = "mqtt.enabled", havingValue = "true", matchIfMissing = true)
+public class MqttConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(MqttConfig.class);
+
+    public static final String CANAL_TELEMETRIA = "mqttTelemetriaChannel";
+
+    @Value("${mqtt.broker.url}")
+    private String brokerUrl;
+
+    @Value("${mqtt.client.id}")
+    private String clientId;
+
+    @Value("${mqtt.username:}")
+    private String username;
+
+    @Value("${mqtt.password:}")
+    private String password;
+
+    @Value("${mqtt.default.topic:/veiculo/+/telemetria}")
+    private String topico;
+
+    @Value("${mqtt.shared.group:telemetria}")
+    private String grupoCompartilhado;
+
+    @Value("${mqtt.qos:1}")
+    private int qos;
+
+    @Value("${mqtt.connection.timeout:30}")
+    private int connectionTimeout;
+
+    @Value("${mqtt.keep.alive.interval:60}")
+    private int keepAliveInterval;
+
+    @Value("${mqtt.inbound.threads:4}")
+    private int threads;
+
+    @Value("${mqtt.inbound.queue-capacity:1000}")
+    private int capacidadeFila;
+
+    @Bean
+    public MqttPahoClientFactory mqttClientFactory() {
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setServerURIs(new String[] { brokerUrl });
+        if (!username.isBlank()) {
+            options.setUserName(username);
+            options.setPassword(password.toCharArray());
+        }
+        options.setConnectionTimeout(connectionTimeout);
+        options.setKeepAliveInterval(keepAliveInterval);
+        options.setAutomaticReconnect(true);
+        // O client id é aleatório por instância, então não há sessão persistente para retomar
+        options.setCleanSession(true);
+
+        DefaultMqttPahoClientFactory factory = new DefaultMqttPahoClientFactory();
+        factory.setConnectionOptions(options);
+        return factory;
+    }
+
+    @Bean(name = "mqttInboundExecutor", destroyMethod = "shutdown")
+    public ExecutorPorChave mqttInboundExecutor() {
+        return new ExecutorPorChave("MqttInbound-", threads, capacidadeFila);
+    }
+
+    // Síncrono: a troca de thread já aconteceu no ExecutorPorChave
+    @Bean(name = CANAL_TELEMETRIA)
+    public MessageChannel mqttTelemetriaChannel() {
+        return new DirectChannel();
+    }
+
+    @Bean
+    public MessageProducer mqttTelemetriaInbound() {
+        MqttPahoMessageDrivenChannelAdapter adapter = new AdaptadorTelemetria(
+            clientId + "-in", mqttClientFactory(), mqttInboundExecutor(), topicoCompartilhado());
+
+        DefaultPahoMessageConverter converter = new DefaultPahoMessageConverter();
+        converter.setPayloadAsBytes(true);
+        adapter.setConverter(converter);
+        adapter.setQos(qos);
+        adapter.setCompletionTimeout(connectionTimeout * 1000L);
+        adapter.setOutputChannel(mqttTelemetriaChannel());
+        return adapter;
+    }
+
+    /**
+     * "/veiculo/+/telemetria" -> "$share/telemetria//veiculo/+/telemetria"
+     * (o nível vazio inicial faz parte do filtro original)
+     */
+    private String topicoCompartilhado() {
+        if (grupoCompartilhado == null || grupoCompartilhado.isBlank()) {
+            return topico;
+        }
+        return "$share/" + grupoCompartilhado + "/" + topico;
+    }
+
+    /**
+     * O MqttPahoMessageDrivenChannelAdapter do spring-integration-mqtt 6.5
+     * ignora no messageArrived o tópico que não for literalmente um dos
+     * filtros assinados, ou seja, tudo que chega por curinga
+     * (/veiculo/+/telemetria) ou shared subscription. O Paho só entrega o que
+     * casa com as assinaturas e este adaptador não troca de tópico em tempo
+     * de execução, então a mensagem segue para a faixa do seu tópico.
+     */
+    static class AdaptadorTelemetria extends MqttPahoMessageDrivenChannelAdapter {
+
+        private final ExecutorPorChave executor;
+
+        AdaptadorTelemetria(String clientId, MqttPahoClientFactory clientFactory,
+                            ExecutorPorChave executor, String... topicos) {
+            super(clientId, clientFactory, topicos);
+            this.executor = executor;
+        }
+
+        @Override
+        public void messageArrived(String topico, MqttMessage mensagem) {
+            try {
+                AbstractIntegrationMessageBuilder<?> builder = getConverter().toMessageBuilder(topico, mensagem);
+                if (builder != null) {
+                    Message<?> message = builder.build();
+                    executor.executar(topico, () -> encaminhar(topico, message));
+                }
+            } catch (RuntimeException e) {
+                // Exceção devolvida ao Paho derruba a conexão com o broker
+                log.error("❌ Erro ao encaminhar mensagem MQTT de {}: {}", topico, e.getMessage());
+            }
+        }
+
+        private void encaminhar(String topico, Message<?> message) {
+            try {
+                sendMessage(message);
+            } catch (RuntimeException e) {
+                log.error("❌ Erro ao processar mensagem MQTT de {}: {}", topico, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Uma thread por faixa; a mesma chave cai sempre na mesma faixa, então
+     * as tarefas de uma chave rodam na ordem de envio. Com a fila da faixa
+     * cheia quem envia espera: rodar na própria thread (CallerRunsPolicy)
+     * passaria na frente das mensagens já enfileiradas.
+     */
+    public static class ExecutorPorChave {
+
+        private final ThreadPoolExecutor[] faixas;
+
+        public ExecutorPorChave(String prefixo, int quantidade, int capacidadeFila) {
+            int filaPorFaixa = Math.max(1, capacidadeFila / quantidade);
+            this.faixas = new ThreadPoolExecutor[quantidade];
+            for (int i = 0; i < quantidade; i++) {
+                faixas[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(filaPorFaixa),
+                    new CustomizableThreadFactory(prefixo + i + "-"),
+                    ExecutorPorChave::aguardarVaga);
+            }
+        }
+
+        public void executar(Object chave, Runnable tarefa) {
+            faixas[Math.floorMod(Objects.hashCode(chave), faixas.length)].execute(tarefa);
+        }
+
+        private static void aguardarVaga(Runnable tarefa, ThreadPoolExecutor faixa) {
+            if (faixa.isShutdown()) {
+                throw new RejectedExecutionException("executor encerrado");
+            }
+            try {
+                faixa.getQueue().put(tarefa);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("interrompido aguardando vaga na fila", e);
+            }
+        }
+
+        public void shutdown() {
+            for (ThreadPoolExecutor faixa : faixas) {
+                faixa.shutdown();
+            }
+        }
+    }
+}
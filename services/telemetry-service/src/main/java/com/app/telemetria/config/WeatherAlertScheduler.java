@@ -1,7 +1,7 @@
 package com.app.telemetria.config;
 
 import com.app.telemetria.service.VeiculoService;
-import com.app.telemetria.service.WeatherAlertService;
+import com.app.telemetria.service.EnriquecimentoClimaService;
 import com.app.telemetria.service.ViagemService;
 import com.app.telemetria.service.TelemetriaService; // Você precisará criar este service
 import org.springframework.scheduling.annotation.EnableScheduling;
@@ -14,17 +14,17 @@ public class WeatherAlertScheduler {
     
     private final VeiculoService veiculoService;
     private final ViagemService viagemService;
-    private final WeatherAlertService weatherAlertService;
+    private final EnriquecimentoClimaService enriquecimentoClima;
     private final TelemetriaService telemetriaService; // NOVO: Para buscar localização
     
     public WeatherAlertScheduler(
             VeiculoService veiculoService,
             ViagemService viagemService,
-            WeatherAlertService weatherAlertService,
+            EnriquecimentoClimaService enriquecimentoClima,
             TelemetriaService telemetriaService) {
         this.veiculoService = veiculoService;
         this.viagemService = viagemService;
-        this.weatherAlertService = weatherAlertService;
+        this.enriquecimentoClima = enriquecimentoClima;
         this.telemetriaService = telemetriaService;
     }
     
@@ -41,7 +41,7 @@ public class WeatherAlertScheduler {
                     .ifPresentOrElse(
                         viagem -> {
 
-                            weatherAlertService.verificarClimaParaVeiculo(
+                            enriquecimentoClima.agendar(
                                 veiculoDTO.getId(),
                                 ultimaTelemetria.getLatitude(),
                                 ultimaTelemetria.getLongitude(),
@@ -50,7 +50,7 @@ public class WeatherAlertScheduler {
                         },
                         () -> {
 
-                            weatherAlertService.verificarClimaParaVeiculo(
+                            enriquecimentoClima.agendar(
                                 veiculoDTO.getId(),
                                 ultimaTelemetria.getLatitude(),
                                 ultimaTelemetria.getLongitude(),
@@ -1,320 +1,437 @@
 package com.app.telemetria.consumer;
 
+import com.app.telemetria.codec.TelemetriaCodec;
+import com.app.telemetria.codec.TelemetriaMensagem;
 import com.app.telemetria.entity.Telemetria;
-import com.app.telemetria.entity.Veiculo;
+import com.app.telemetria.entity.Viagem;
+import com.app.telemetria.logging.TraceVeiculo;
 import com.app.telemetria.repository.TelemetriaRepository;
-import com.app.telemetria.repository.VeiculoRepository;
-import com.app.telemetria.repository.ViagemRepository;
 import com.app.telemetria.service.AlertaService;
-import com.app.telemetria.service.WeatherAlertService;
+import com.app.telemetria.service.DetectorDesvioRotaService;
+import com.app.telemetria.service.GeofenceService;
+import com.app.telemetria.service.EstadoVeiculo;
+import com.app.telemetria.service.EstadoVeiculoStore;
+import com.app.telemetria.service.EnriquecimentoClimaService;
+import com.app.telemetria.service.AmostradorAreaCritica;
 import com.app.telemetria.service.CriticalAreaService;
 import com.app.telemetria.service.BackpressureMonitorService;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import com.app.telemetria.service.AdaptiveConcurrencyLimiter;
+import com.app.telemetria.service.ConsumerMetricsService;
+import com.app.telemetria.service.ConsumerMetricsService.Etapa;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.util.Random;
-import java.util.concurrent.Semaphore;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 @Service
 public class TelemetriaKafkaConsumer {
 
+    public static final String LISTENER_ID = "telemetria-raw-listener";
+
+    private static final Logger log = LoggerFactory.getLogger(TelemetriaKafkaConsumer.class);
+
     private final TelemetriaRepository telemetriaRepository;
-    private final VeiculoRepository veiculoRepository;
-    private final ViagemRepository viagemRepository;
+    private final EstadoVeiculoStore estadoVeiculoStore;
     private final AlertaService alertaService;
-    private final WeatherAlertService weatherAlertService;
+    private final EnriquecimentoClimaService enriquecimentoClima;
+    private final DetectorDesvioRotaService detectorDesvioRotaService;
+    private final GeofenceService geofenceService;
     private final CriticalAreaService criticalAreaService;
+    private final AmostradorAreaCritica amostradorAreaCritica;
     private final BackpressureMonitorService backpressureMonitor;
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final KafkaTemplate<String, byte[]> dlqKafkaTemplate;
     
-    private final Random random = new Random();
-    private final Semaphore semaphore = new Semaphore(10);
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final ConsumerMetricsService metrics;
     private final AtomicInteger totalProcessados = new AtomicInteger(0);
     private final AtomicInteger totalDescartados = new AtomicInteger(0);
+    private final AtomicInteger totalLotes = new AtomicInteger(0);
+    
+    // Registros de decodificação reaproveitados entre lotes (um pool por thread do listener)
+    private final ThreadLocal<List<MensagemTelemetria>> poolMensagens = ThreadLocal.withInitial(ArrayList::new);
 
     @Value("${spring.kafka.topic.dlq:telemetria-dlq}")
     private String dlqTopic;
 
+    @Value("${telemetria.concorrencia.espera-maxima-lote-ms:5000}")
+    private long esperaMaximaLoteMs;
+
     public TelemetriaKafkaConsumer(
             TelemetriaRepository telemetriaRepository,
-            VeiculoRepository veiculoRepository,
-            ViagemRepository viagemRepository,
+            EstadoVeiculoStore estadoVeiculoStore,
             AlertaService alertaService,
-            WeatherAlertService weatherAlertService,
+            EnriquecimentoClimaService enriquecimentoClima,
+            DetectorDesvioRotaService detectorDesvioRotaService,
+            GeofenceService geofenceService,
             CriticalAreaService criticalAreaService,
+            AmostradorAreaCritica amostradorAreaCritica,
             BackpressureMonitorService backpressureMonitor,
-            KafkaTemplate<String, String> kafkaTemplate) {
+            AdaptiveConcurrencyLimiter concurrencyLimiter,
+            ConsumerMetricsService metrics,
+            KafkaTemplate<String, byte[]> dlqKafkaTemplate) {
         this.telemetriaRepository = telemetriaRepository;
-        this.veiculoRepository = veiculoRepository;
-        this.viagemRepository = viagemRepository;
+        this.estadoVeiculoStore = estadoVeiculoStore;
         this.alertaService = alertaService;
-        this.weatherAlertService = weatherAlertService;
+        this.enriquecimentoClima = enriquecimentoClima;
+        this.detectorDesvioRotaService = detectorDesvioRotaService;
+        this.geofenceService = geofenceService;
         this.criticalAreaService = criticalAreaService;
+        this.amostradorAreaCritica = amostradorAreaCritica;
         this.backpressureMonitor = backpressureMonitor;
-        this.kafkaTemplate = kafkaTemplate;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.metrics = metrics;
+        this.dlqKafkaTemplate = dlqKafkaTemplate;
+    }
+    
+    @KafkaListener(id = LISTENER_ID, topics = "telemetria-raw", groupId = "telemetria-group",
+                   containerFactory = "batchKafkaListenerContainerFactory")
+    public void processarLote(List<ConsumerRecord<String, byte[]>> records, Acknowledgment ack) {
+        long inicio = System.currentTimeMillis();
+        long inicioLote = System.nanoTime();
+        
+        log.debug("📥 Processando lote do Kafka com {} mensagens (lag: {})", records.size(), backpressureMonitor.calcularLag());
+        
+        try {
+            // 1. Parse + amostragem em área crítica
+            long inicioEtapa = System.nanoTime();
+            List<MensagemTelemetria> pool = poolMensagens.get();
+            List<MensagemTelemetria> mensagens = new ArrayList<>(records.size());
+            for (ConsumerRecord<String, byte[]> record : records) {
+                backpressureMonitor.registrarRecebimento();
+                if (pool.size() <= mensagens.size()) {
+                    pool.add(new MensagemTelemetria());
+                }
+                MensagemTelemetria msg = pool.get(mensagens.size());
+                if (converterMensagem(record.value(), msg)) {
+                    mensagens.add(msg);
+                }
+            }
+            
+            metrics.registrar(Etapa.PARSE, inicioEtapa);
+            
+            // 2. Estado dos veículos em memória (só vai ao banco para veículos ainda não carregados)
+            inicioEtapa = System.nanoTime();
+            Set<Long> veiculoIds = new HashSet<>();
+            mensagens.forEach(m -> veiculoIds.add(m.dados.getVeiculoId()));
+            
+            Map<Long, EstadoVeiculo> estados = estadoVeiculoStore.carregar(veiculoIds);
+            
+            List<MensagemTelemetria> validas = new ArrayList<>(mensagens.size());
+            List<Telemetria> telemetrias = new ArrayList<>(mensagens.size());
+            for (MensagemTelemetria msg : mensagens) {
+                EstadoVeiculo estado = estados.get(msg.dados.getVeiculoId());
+                if (estado == null) {
+                    log.warn("❌ Veículo não encontrado: {}", msg.dados.getVeiculoId());
+                    metrics.incrementarDlq();
+                    enviarParaDlq(msg.mensagem);
+                    continue;
+                }
+                // A entidade só é criada aqui, na fronteira da persistência
+                msg.telemetria = criarTelemetria(msg.dados);
+                msg.telemetria.setVeiculo(estado.getVeiculo());
+                validas.add(msg);
+                telemetrias.add(msg.telemetria);
+            }
+            
+            metrics.registrar(Etapa.VEICULO, inicioEtapa);
+            
+            // Geofences antes do insert: a avaliação define geofence_violada
+            inicioEtapa = System.nanoTime();
+            for (Telemetria telemetria : telemetrias) {
+                geofenceService.avaliar(telemetria);
+            }
+            metrics.registrar(Etapa.GEOFENCE, inicioEtapa);
+            
+            // 3. Persistência em um único batch JDBC
+            inicioEtapa = System.nanoTime();
+            persistirLote(validas, telemetrias);
+            metrics.registrar(Etapa.PERSISTENCIA, inicioEtapa);
+            
+            // 4. Última telemetria no estado do veículo + desvio de rota incremental
+            inicioEtapa = System.nanoTime();
+            for (MensagemTelemetria msg : validas) {
+                if (msg.telemetria.getId() != null) {
+                    estadoVeiculoStore.registrarTelemetria(msg.telemetria);
+                    detectorDesvioRotaService.verificarTelemetria(estados.get(msg.dados.getVeiculoId()), msg.telemetria);
+                }
+            }
+            metrics.registrar(Etapa.DESVIO, inicioEtapa);
+            
+            // 5. Alertas e clima por telemetria salva (viagem ativa vem do estado em memória).
+            // A espera por vagas no limitador tem um prazo único para o lote inteiro
+            long prazoVagas = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMaximaLoteMs);
+            for (MensagemTelemetria msg : validas) {
+                if (msg.telemetria.getId() == null) continue;
+                processarPosPersistencia(msg, estados.get(msg.dados.getVeiculoId()).getViagemAtiva(), prazoVagas);
+            }
+            
+            // Commit do offset uma única vez por lote
+            inicioEtapa = System.nanoTime();
+            ack.acknowledge();
+            metrics.registrar(Etapa.ACK, inicioEtapa);
+            metrics.registrarLote(records.size(), inicioLote);
+            
+            long fim = System.currentTimeMillis();
+            log.debug("✅ Lote processado e confirmado: {}/{} telemetrias em {}ms",
+                validas.size(), records.size(), fim - inicio);
+            
+            long tempoMedio = validas.isEmpty() ? 0 : (fim - inicio) / validas.size();
+            for (int i = 0; i < validas.size(); i++) {
+                backpressureMonitor.registrarProcessamento(tempoMedio);
+            }
+            
+        } finally {
+            // Solta as referências ao payload e às entidades; os registros voltam ao pool
+            for (MensagemTelemetria msg : poolMensagens.get()) {
+                msg.mensagem = null;
+                msg.telemetria = null;
+            }
+        }
+        
+        // Estatísticas a cada 10 lotes
+        if (totalLotes.incrementAndGet() % 10 == 0) {
+            imprimirEstatisticasBackpressure();
+        }
     }
     
     /**
-     * Comprime dados usando GZIP
+     * Decodifica a mensagem (binário v1 ou JSON legado) no registro do pool e
+     * aplica a redução de frequência em área crítica. Retorna false quando a
+     * mensagem foi descartada ou enviada para a DLQ.
      */
-    public static byte[] comprimirGzip(String dados) {
+    private boolean converterMensagem(byte[] mensagem, MensagemTelemetria destino) {
         try {
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            try (GZIPOutputStream gzip = new GZIPOutputStream(bos)) {
-                gzip.write(dados.getBytes("UTF-8"));
+            TelemetriaMensagem dados = TelemetriaCodec.decodificar(mensagem, destino.dados);
+            TelemetriaCodec.validar(dados);
+            destino.mensagem = mensagem;
+            destino.telemetria = null;
+            
+            // ===== VERIFICAÇÃO DE ÁREA CRÍTICA =====
+            double fatorReducao = criticalAreaService.getFatorReducao(dados.getLatitude(), dados.getLongitude());
+            destino.fatorReducao = fatorReducao;
+            
+            if (fatorReducao < 1.0 && !amostradorAreaCritica.manter(dados, fatorReducao)) {
+                if (TraceVeiculo.ativo(dados.getVeiculoId())) {
+                    TraceVeiculo.LOG.debug("veiculo={} descartada em área crítica (fator {})", dados.getVeiculoId(), fatorReducao);
+                }
+                criticalAreaService.registrarProcessamento(dados.getVeiculoId(), false);
+                metrics.incrementarDescartadas();
+                
+                if (totalDescartados.incrementAndGet() % 10 == 0) {
+                    criticalAreaService.imprimirEstatisticas();
+                    imprimirEstatisticasBackpressure();
+                }
+                return false;
+            }
+            if (TraceVeiculo.ativo(dados.getVeiculoId())) {
+                TraceVeiculo.LOG.debug("veiculo={} decodificada lat={} lon={} vel={} fator={}", dados.getVeiculoId(),
+                    dados.getLatitude(), dados.getLongitude(), dados.getVelocidade(), fatorReducao);
             }
-            return bos.toByteArray();
+            return true;
+            
         } catch (Exception e) {
-            throw new RuntimeException("Erro ao comprimir dados", e);
+            log.warn("❌ Mensagem inválida enviada para a DLQ: {}", e.getMessage());
+            metrics.incrementarDlq();
+            enviarParaDlq(mensagem);
+            return false;
         }
     }
-
+    
+    private Telemetria criarTelemetria(TelemetriaMensagem dados) {
+        Telemetria telemetria = new Telemetria();
+        telemetria.setLatitude(dados.getLatitude());
+        telemetria.setLongitude(dados.getLongitude());
+        telemetria.setVelocidade(dados.getVelocidade());
+        
+        if (dados.temNivelCombustivel()) {
+            telemetria.setNivelCombustivel(dados.getNivelCombustivel());
+        }
+        
+        // Timestamp do veículo ou atual
+        if (dados.temTimestamp()) {
+            telemetria.setDataHora(LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(dados.getTimestampMillis()), ZoneId.systemDefault()));
+        } else {
+            telemetria.setDataHora(LocalDateTime.now());
+        }
+        return telemetria;
+    }
+    
     /**
-     * Descomprime dados GZIP
+     * Salva o lote em um único batch. Se o batch falhar, tenta linha a linha
+     * para isolar as mensagens problemáticas e enviá-las para a DLQ.
      */
-    public static String descomprimirGzip(byte[] dadosComprimidos) {
+    private void persistirLote(List<MensagemTelemetria> validas, List<Telemetria> telemetrias) {
         try {
-            ByteArrayInputStream bis = new ByteArrayInputStream(dadosComprimidos);
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            try (GZIPInputStream gzip = new GZIPInputStream(bis)) {
-                byte[] buffer = new byte[1024];
-                int len;
-                while ((len = gzip.read(buffer)) != -1) {
-                    bos.write(buffer, 0, len);
+            telemetriaRepository.salvarEmLote(telemetrias);
+        } catch (Exception e) {
+            log.warn("⚠️ Falha no insert em lote, salvando individualmente: {}", e.getMessage());
+            for (MensagemTelemetria msg : validas) {
+                try {
+                    msg.telemetria.setId(null);
+                    telemetriaRepository.save(msg.telemetria);
+                } catch (Exception ex) {
+                    log.error("❌ Erro ao salvar telemetria do veículo {}: {}", msg.dados.getVeiculoId(), ex.getMessage());
+                    msg.telemetria.setId(null);
+                    metrics.incrementarDlq();
+                    enviarParaDlq(msg.mensagem);
                 }
             }
-            return bos.toString("UTF-8");
-        } catch (Exception e) {
-            throw new RuntimeException("Erro ao descomprimir dados", e);
         }
     }
-
-    @KafkaListener(topics = "telemetria-raw", groupId = "telemetria-group", concurrency = "3")
-    public void processarTelemetria(String mensagem, Acknowledgment ack) {
-        long inicio = System.currentTimeMillis();
-        int tamanhoOriginal = mensagem.getBytes().length;
-        
-        // ===== NOVO: Registrar recebimento no monitor de backpressure =====
-        backpressureMonitor.registrarRecebimento();
+    
+    private void processarPosPersistencia(MensagemTelemetria msg, Viagem viagemAtiva, long prazoVagas) {
+        Telemetria telemetria = msg.telemetria;
+        Long veiculoId = msg.dados.getVeiculoId();
+        if (TraceVeiculo.ativo(veiculoId)) {
+            TraceVeiculo.LOG.debug("veiculo={} telemetria {} salva, viagem ativa={}", veiculoId, telemetria.getId(),
+                viagemAtiva != null ? viagemAtiva.getId() : null);
+        }
         
-        System.out.println("📥 [INÍCIO] Processando mensagem do Kafka...");
-        System.out.println("📊 Tamanho original: " + tamanhoOriginal + " bytes");
-        System.out.println("📊 Lag atual: " + backpressureMonitor.calcularLag() + " mensagens");  // NOVO
+        boolean comVaga = adquirirVaga(prazoVagas);
         
         try {
-            // ===== NOVO: Aplicar backpressure baseado em CPU/memória/lag =====
-            backpressureMonitor.aplicarBackpressure();
-            
-            // ===== NOVO: Controle de concorrência com semáforo =====
-            if (!semaphore.tryAcquire()) {
-                System.out.println("⏳ Semáforo ocupado (" + semaphore.getQueueLength() + " threads aguardando)");
-                semaphore.acquire(); // Bloqueia até conseguir
-            }
-            
+            // Gerar alertas de telemetria (a vaga é liberada quando o processamento assíncrono termina)
+            long inicioAlertas = System.currentTimeMillis();
+            long inicioAlertasNanos = System.nanoTime();
             try {
-                // Converter JSON para objeto
-                System.out.println("🔄 Convertendo JSON para objeto...");
-                JsonNode json = objectMapper.readTree(mensagem);
-                
-                Long veiculoId = json.get("vehicle_id").asLong();
-                double latitude = json.get("latitude").asDouble();
-                double longitude = json.get("longitude").asDouble();
-                
-                System.out.println("🔍 ID do veículo extraído: " + veiculoId);
-                System.out.println("📍 Coordenadas: " + latitude + ", " + longitude);
-                
-                // ===== VERIFICAÇÃO DE ÁREA CRÍTICA =====
-                double fatorReducao = criticalAreaService.getFatorReducao(latitude, longitude);
-                
-                if (fatorReducao < 1.0) {
-                    System.out.println("⚠️ Área crítica detectada! Fator de redução: " + fatorReducao);
-                    
-                    // Decidir se processa baseado no fator de redução
-                    if (random.nextDouble() > fatorReducao) {
-                        System.out.println("⏭️  Mensagem descartada (redução de frequência em área crítica)");
-                        criticalAreaService.registrarProcessamento(veiculoId, false);
-                        totalDescartados.incrementAndGet();  // NOVO
-                        
-                        // Commit do offset mesmo descartando
-                        ack.acknowledge();
-                        System.out.println("✅ Offset confirmado (mensagem descartada)");
-                        
-                        // Imprimir estatísticas
-                        if (totalDescartados.get() % 10 == 0) {
-                            criticalAreaService.imprimirEstatisticas();
-                            imprimirEstatisticasBackpressure();  // NOVO
-                        }
-                        
-                        return;  // Sai do método sem processar
-                    } else {
-                        System.out.println("✅ Mensagem selecionada para processamento (aproveitada)");
+                alertaService.processarTelemetria(telemetria).whenComplete((resultado, ex) -> {
+                    metrics.registrar(Etapa.ALERTAS, inicioAlertasNanos);
+                    if (comVaga) {
+                        concurrencyLimiter.release(System.currentTimeMillis() - inicioAlertas, ex == null);
                     }
+                });
+            } catch (Exception e) {
+                // Ex.: fila do executor cheia - conta como falha para o limitador
+                if (comVaga) {
+                    concurrencyLimiter.release(System.currentTimeMillis() - inicioAlertas, false);
                 }
-                
-                // Buscar veículo no banco
-                System.out.println("🔎 Buscando veículo no banco de dados...");
-                Veiculo veiculo = veiculoRepository.findById(veiculoId)
-                    .orElseThrow(() -> new RuntimeException("Veículo não encontrado: " + veiculoId));
-                System.out.println("✅ Veículo encontrado: " + veiculo.getPlaca());
-                
-                // Criar entidade Telemetria
-                System.out.println("📊 Criando entidade de telemetria...");
-                Telemetria telemetria = new Telemetria();
-                telemetria.setVeiculo(veiculo);
-                telemetria.setLatitude(json.get("latitude").asDouble());
-                telemetria.setLongitude(json.get("longitude").asDouble());
-                telemetria.setVelocidade(json.get("velocidade").asDouble());
-                
-                if (json.has("nivelCombustivel")) {
-                    double nivel = json.get("nivelCombustivel").asDouble();
-                    telemetria.setNivelCombustivel(nivel);
-                    System.out.println("⛽ Nível de combustível: " + nivel + "%");
-                }
-                
-                // Timestamp do veículo ou atual
-                if (json.has("timestamp")) {
-                    long ts = json.get("timestamp").asLong();
-                    telemetria.setDataHora(LocalDateTime.ofInstant(
-                        Instant.ofEpochSecond(ts), ZoneId.systemDefault()));
-                    System.out.println("⏰ Timestamp do veículo: " + ts);
-                } else {
-                    telemetria.setDataHora(LocalDateTime.now());
-                    System.out.println("⏰ Timestamp atual: " + LocalDateTime.now());
-                }
-                
-                // 1. Salvar no banco
-                System.out.println("💾 Salvando telemetria no banco...");
-                Telemetria saved = telemetriaRepository.save(telemetria);
-                System.out.println("✅ Telemetria salva com ID: " + saved.getId());
-                
-                // 2. Buscar viagem ativa
-                System.out.println("🔎 Buscando viagem ativa...");
-                var viagemAtiva = viagemRepository.findByVeiculoAndStatus(veiculo, "EM_ANDAMENTO")
-                    .orElse(null);
-                
-                if (viagemAtiva != null) {
-                    System.out.println("✅ Viagem ativa encontrada: " + viagemAtiva.getId());
-                } else {
-                    System.out.println("ℹ️ Nenhuma viagem ativa no momento");
-                }
-                
-                // 3. Gerar alertas de telemetria
-                System.out.println("🚨 Gerando alertas de telemetria...");
-                alertaService.processarTelemetria(saved);
-                System.out.println("✅ Alertas processados");
-                
-                // ===== CONSULTA CLIMÁTICA ADAPTATIVA =====
-                if (telemetria.getLatitude() != null && telemetria.getLongitude() != null) {
-                    // Em áreas críticas, só consulta clima em 20% das vezes
-                    if (fatorReducao < 1.0 && random.nextDouble() > 0.2) {
-                        System.out.println("🌤️ Pulando consulta climática em área crítica (economia de API)");
-                    } else {
-                        System.out.println("🌦️ Verificando condições climáticas...");
-                        weatherAlertService.verificarClimaParaVeiculo(
-                            veiculo.getId(),
-                            telemetria.getLatitude(),
-                            telemetria.getLongitude(),
-                            viagemAtiva
-                        );
-                        System.out.println("✅ Verificação climática concluída");
-                    }
+                throw e;
+            }
+            
+            // ===== CONSULTA CLIMÁTICA ADAPTATIVA =====
+            // Em áreas críticas, só consulta clima em 20% das vezes
+            if (msg.fatorReducao < 1.0 && ThreadLocalRandom.current().nextDouble() > 0.2) {
+                if (TraceVeiculo.ativo(veiculoId)) {
+                    TraceVeiculo.LOG.debug("veiculo={} consulta climática pulada (área crítica)", veiculoId);
                 }
-                
-                // Registrar processamento bem-sucedido
-                criticalAreaService.registrarProcessamento(veiculoId, true);
-                totalProcessados.incrementAndGet();  // NOVO
-                
-                // Commit manual do offset
-                ack.acknowledge();
-                
-                long fim = System.currentTimeMillis();
-                System.out.println("✅ Offset confirmado (commit) no Kafka");
-                System.out.println("✅✅✅ Telemetria processada com SUCESSO: Veículo " + veiculoId + 
-                                 " - ID: " + saved.getId() + " - Tempo: " + (fim - inicio) + "ms");
-                
-                // ===== NOVO: Registrar processamento no monitor =====
-                backpressureMonitor.registrarProcessamento(fim - inicio);
-                
-            } finally {
-                // ===== NOVO: Liberar semáforo sempre =====
-                semaphore.release();
+            } else {
+                // Etapa assíncrona com fila própria; não atrasa o ack do lote
+                enriquecimentoClima.agendar(
+                    veiculoId,
+                    telemetria.getLatitude(),
+                    telemetria.getLongitude(),
+                    viagemAtiva
+                );
             }
             
+            criticalAreaService.registrarProcessamento(veiculoId, true);
+            totalProcessados.incrementAndGet();
+            metrics.incrementarProcessadas(1);
+            
         } catch (Exception e) {
-            System.err.println("❌❌❌ ERRO CRÍTICO: " + e.getMessage());
-            e.printStackTrace();
+            // A telemetria já foi salva; falhas aqui não devem travar o lote
+            log.error("❌ Erro no pós-processamento do veículo {}: {}", veiculoId, e.getMessage());
+        }
+    }
+    
+    /**
+     * Obtém uma vaga no limitador sem prender a thread do poll além do prazo
+     * do lote. Sem vaga imediata, pausa o container (os próximos polls não
+     * trazem registros enquanto o limitador estiver saturado) e espera até o
+     * prazo. Esgotado o prazo, o restante do lote segue sem vaga: as
+     * telemetrias já foram salvas e o excesso fica limitado a este lote, pois
+     * o container está pausado; a fila do executor de alertas continua
+     * rejeitando o que não couber.
+     *
+     * Interrupção (parada do container) também encerra a espera: o lote já
+     * está no banco, então termina sem vaga e o offset é confirmado em vez de
+     * o lote voltar e ser inserido de novo. A flag de interrupção é mantida.
+     */
+    private boolean adquirirVaga(long prazoVagas) {
+        try {
+            if (concurrencyLimiter.acquire(0, TimeUnit.NANOSECONDS)) {
+                return true;
+            }
             
-            // Envia para Dead Letter Queue
-            try {
-                System.out.println("📤 Enviando mensagem para DLQ...");
-                kafkaTemplate.send(dlqTopic, mensagem).whenComplete((result, ex) -> {
-                    if (ex != null) {
-                        System.err.println("❌ Erro ao enviar para DLQ: " + ex.getMessage());
-                    } else {
-                        System.out.println("✅ Mensagem enviada para DLQ com sucesso. Partition: " + 
-                            result.getRecordMetadata().partition() + ", Offset: " + 
-                            result.getRecordMetadata().offset());
-                    }
-                });
-                
-                ack.acknowledge();
-                System.out.println("✅ Offset confirmado mesmo com erro (DLQ)");
-                
-            } catch (Exception dlqEx) {
-                System.err.println("❌❌❌ Erro crítico: falha ao enviar para DLQ: " + dlqEx.getMessage());
-                dlqEx.printStackTrace();
-                System.err.println("⏳ Mensagem NÃO terá commit - será reprocessada");
+            backpressureMonitor.pausarPorSaturacao();
+            long restante = prazoVagas - System.nanoTime();
+            if (restante > 0 && !Thread.currentThread().isInterrupted()
+                    && concurrencyLimiter.acquire(restante, TimeUnit.NANOSECONDS)) {
+                return true;
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("⚠️ Consumo interrompido na espera por vaga - restante do lote segue sem vaga e o lote é confirmado");
         }
         
-        // ===== NOVO: Imprimir estatísticas a cada 100 mensagens =====
-        if (totalProcessados.get() % 100 == 0) {
-            imprimirEstatisticasBackpressure();
+        log.debug("⏳ Sem vaga no limitador ({}/{}) dentro do prazo do lote",
+            concurrencyLimiter.getEmExecucao(), concurrencyLimiter.getLimite());
+        metrics.incrementarSemVaga();
+        return false;
+    }
+    
+    /**
+     * Envia mensagem para a Dead Letter Queue
+     */
+    private void enviarParaDlq(byte[] mensagem) {
+        try {
+            dlqKafkaTemplate.send(dlqTopic, mensagem).whenComplete((result, ex) -> {
+                if (ex != null) {
+                    log.error("❌ Erro ao enviar para DLQ: {}", ex.getMessage());
+                } else {
+                    log.debug("✅ Mensagem enviada para DLQ. Partition: {}, Offset: {}",
+                        result.getRecordMetadata().partition(), result.getRecordMetadata().offset());
+                }
+            });
+        } catch (Exception dlqEx) {
+            log.error("❌ Erro crítico: falha ao enviar para DLQ: {}", dlqEx.getMessage());
         }
-        
-        System.out.println("🏁 [FIM] Processamento concluído");
-        System.out.println("========================================");
+    }
+    
+    /**
+     * Mensagem do lote já decodificada (registro reaproveitado do pool da thread).
+     * A entidade Telemetria só existe depois da checagem do veículo.
+     */
+    private static class MensagemTelemetria {
+        final TelemetriaMensagem dados = new TelemetriaMensagem();
+        byte[] mensagem;
+        double fatorReducao;
+        Telemetria telemetria;
     }
     
     // ===== NOVO: Método para imprimir estatísticas de backpressure =====
     private void imprimirEstatisticasBackpressure() {
+        if (!log.isInfoEnabled()) return;
+        
         int lag = backpressureMonitor.calcularLag();
         double taxa = backpressureMonitor.calcularTaxaProcessamento();
-        double cpu = backpressureMonitor.getCpuUsage();
-        double memory = backpressureMonitor.getMemoryUsage();
-        
-        System.out.println("\n📊 ESTATÍSTICAS DE BACKPRESSURE");
-        System.out.println("================================");
-        System.out.println("📥 Total recebido: " + backpressureMonitor.getMensagensRecebidas());
-        System.out.println("✅ Total processado: " + totalProcessados.get());
-        System.out.println("⏭️ Total descartado: " + totalDescartados.get());
-        System.out.println("⏳ Lag atual: " + lag + " mensagens");
-        System.out.println("⚡ Taxa processamento: " + String.format("%.2f", taxa) + " msg/s");
-        System.out.println("💻 CPU: " + String.format("%.1f", cpu) + "%");
-        System.out.println("🧠 Memória: " + String.format("%.1f", memory) + "%");
-        System.out.println("🚦 Backpressure ativo: " + (backpressureMonitor.isBackpressureAtivo() ? "SIM" : "NÃO"));
-        System.out.println("🔄 Threads aguardando semáforo: " + semaphore.getQueueLength());
+        long tempoEstimado = lag > 0 && taxa > 0 ? (long) (lag / taxa * 1000) : 0;
         
-        if (lag > 0 && taxa > 0) {
-            long tempoEstimado = (long)(lag / taxa * 1000);
-            System.out.println("⏱️ Tempo estimado para recuperação: " + tempoEstimado + "ms");
-        }
-        System.out.println("================================");
+        log.info("📊 Backpressure: recebidas={} processadas={} descartadas={} lag={} taxa={} msg/s cpu={}% memória={}% " +
+                "ativo={} concorrência={}/{} (aguardando {}) recuperação estimada={}ms",
+            backpressureMonitor.getMensagensRecebidas(), totalProcessados.get(), totalDescartados.get(), lag,
+            String.format("%.2f", taxa),
+            String.format("%.1f", backpressureMonitor.getCpuUsage()),
+            String.format("%.1f", backpressureMonitor.getMemoryUsage()),
+            backpressureMonitor.isBackpressureAtivo() ? "SIM" : "NÃO",
+            concurrencyLimiter.getEmExecucao(), concurrencyLimiter.getLimite(), concurrencyLimiter.getAguardando(),
+            tempoEstimado);
     }
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+package com.app.telemetria.consumer;
+
+import com.app.telemetria.codec.TelemetriaCodec;
+import com.app.telemetria.codec.TelemetriaMensagem;
+import com.app.telemetria.config.MqttConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ponte MQTT -> Kafka: cada mensagem publicada em /veiculo/{id}/telemetria
+ * (binário v1 ou JSON) vai para o tópico telemetria-raw no formato binário,
+ * com a chave = id do veículo (mantém a ordem por veículo na partição; o
+ * MqttConfig entrega as mensagens de um veículo sempre pela mesma thread).
+ * O envio é assíncrono e o producer agrupa os registros em lotes
+ * (linger.ms/batch.size), então os dispositivos não passam pela pilha
+ * HTTP/JWT/rate-limit.
+ */
+@Service
+@ConditionalOnProperty(name = "mqtt.enabled", havingValue = "true", matchIfMissing = true)
+public class TelemetriaMqttConsumer {
+
+    private static final Logger log = LoggerFactory.getLogger(TelemetriaMqttConsumer.class);
+
+    private final KafkaTemplate<String, TelemetriaMensagem> kafkaTemplate;
+    private final KafkaTemplate<String, byte[]> dlqKafkaTemplate;
+
+    private final AtomicLong totalRecebidas = new AtomicLong(0);
+    private final AtomicLong totalInvalidas = new AtomicLong(0);
+
+    @Value("${spring.kafka.topic.telemetria:telemetria-raw}")
+    private String topicoTelemetria;
+
+    @Value("${spring.kafka.topic.dlq:telemetria-dlq}")
+    private String dlqTopic;
+
+    public TelemetriaMqttConsumer(KafkaTemplate<String, TelemetriaMensagem> kafkaTemplate,
+                                  KafkaTemplate<String, byte[]> dlqKafkaTemplate) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.dlqKafkaTemplate = dlqKafkaTemplate;
+    }
+
+    @ServiceActivator(inputChannel = MqttConfig.CANAL_TELEMETRIA)
+    public void receber(Message<byte[]> message) {
+        totalRecebidas.incrementAndGet();
+
+        String topico = message.getHeaders().get(MqttHeaders.RECEIVED_TOPIC, String.class);
+        byte[] payload = message.getPayload();
+
+        try {
+            // Binário v1 ou JSON legado; o id do tópico prevalece sobre o do payload
+            TelemetriaMensagem mensagem = TelemetriaCodec.decodificar(payload);
+            Long veiculoId = extrairVeiculoId(topico);
+            if (veiculoId != null) {
+                mensagem.setVeiculoId(veiculoId);
+            }
+            TelemetriaCodec.validar(mensagem);
+
+            String chave = String.valueOf(mensagem.getVeiculoId());
+            kafkaTemplate.send(topicoTelemetria, chave, mensagem)
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        log.error("❌ Erro ao publicar telemetria MQTT do veículo {} no Kafka: {}", chave, ex.getMessage());
+                    }
+                });
+
+        } catch (Exception e) {
+            totalInvalidas.incrementAndGet();
+            log.warn("❌ Mensagem MQTT inválida em {}: {}", topico, e.getMessage());
+            enviarParaDlq(topico, payload);
+        }
+
+        if (totalRecebidas.get() % 1000 == 0) {
+            log.info("📡 MQTT: {} mensagens recebidas, {} inválidas", totalRecebidas.get(), totalInvalidas.get());
+        }
+    }
+
+    /**
+     * Falha da DLQ só é logada: propagada, derrubaria o processamento da faixa
+     */
+    private void enviarParaDlq(String topico, byte[] payload) {
+        try {
+            dlqKafkaTemplate.send(dlqTopic, payload)
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        log.error("❌ Erro ao enviar mensagem MQTT de {} para a DLQ: {}", topico, ex.getMessage());
+                    }
+                });
+        } catch (Exception e) {
+            log.error("❌ Erro ao enviar mensagem MQTT de {} para a DLQ: {}", topico, e.getMessage());
+        }
+    }
+
+    /**
+     * "/veiculo/42/telemetria" -> 42
+     */
+    static Long extrairVeiculoId(String topico) {
+        if (topico == null) return null;
+        String[] niveis = topico.split("/");
+        for (int i = 0; i < niveis.length - 1; i++) {
+            if ("veiculo".equals(niveis[i])) {
+                try {
+                    return Long.parseLong(niveis[i + 1]);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    public long getTotalRecebidas() {
+        return totalRecebidas.get();
+    }
+
+    public long getTotalInvalidas() {
+        return totalInvalidas.get();
+    }
+}
@@ -4,6 +4,7 @@ import com.app.telemetria.entity.Alerta;
 import com.app.telemetria.entity.Veiculo;
 import com.app.telemetria.repository.AlertaRepository;
 import com.app.telemetria.service.AlertaService;
+import com.app.telemetria.service.GravacaoAlertasService;
 import com.app.telemetria.service.VeiculoService;
 import com.app.telemetria.exception.ErrorCode;
 import com.app.telemetria.exception.BusinessException;
@@ -20,9 +21,11 @@ import java.util.Map;
 public class AlertaController {
 
     private final AlertaService alertaService;
+    private final GravacaoAlertasService gravacaoAlertasService;
 
-    public AlertaController(AlertaService alertaService) {
+    public AlertaController(AlertaService alertaService, GravacaoAlertasService gravacaoAlertasService) {
         this.alertaService = alertaService;
+        this.gravacaoAlertasService = gravacaoAlertasService;
     }
 
     @GetMapping
@@ -55,6 +58,11 @@ public class AlertaController {
         return alertaService.dashboard();
     }
 
+    @GetMapping("/gravacao")
+    public Map<String, Object> estatisticasGravacao() {
+        return gravacaoAlertasService.getEstatisticas();
+    }
+
     @PutMapping("/{id}/ler")
     public Alerta marcarComoLido(@PathVariable Long id) {
         return alertaService.marcarComoLido(id);
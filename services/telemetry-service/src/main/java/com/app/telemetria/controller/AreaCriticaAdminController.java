@@ -0,0 +1,108 @@
+package com.app.telemetria.controller;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.app.telemetria.entity.AreaCritica;
+import com.app.telemetria.exception.BusinessException;
+import com.app.telemetria.exception.ErrorCode;
+import com.app.telemetria.repository.AreaCriticaRepository;
+import com.app.telemetria.service.AmostradorAreaCritica;
+import com.app.telemetria.service.CriticalAreaService;
+
+/**
+ * Cadastro das áreas críticas. Cada alteração recompila o índice do
+ * CriticalAreaService na hora; edições direto no banco entram na recarga
+ * periódica.
+ */
+@RestController
+@RequestMapping("/api/v1/admin/areas-criticas")
+public class AreaCriticaAdminController {
+
+    private final AreaCriticaRepository repository;
+    private final CriticalAreaService criticalAreaService;
+    private final AmostradorAreaCritica amostradorAreaCritica;
+
+    public AreaCriticaAdminController(AreaCriticaRepository repository, CriticalAreaService criticalAreaService,
+                                      AmostradorAreaCritica amostradorAreaCritica) {
+        this.repository = repository;
+        this.criticalAreaService = criticalAreaService;
+        this.amostradorAreaCritica = amostradorAreaCritica;
+    }
+
+    @GetMapping
+    public List<AreaCritica> listar() {
+        return repository.findAll();
+    }
+
+    @GetMapping("/{id}")
+    public AreaCritica buscar(@PathVariable Long id) {
+        return repository.findById(id)
+            .orElseThrow(() -> new BusinessException(ErrorCode.RESOURCE_NOT_FOUND, "Área crítica " + id));
+    }
+
+    @PostMapping
+    public ResponseEntity<AreaCritica> criar(@RequestBody AreaCritica area) {
+        area.setId(null);
+        if (area.getAtivo() == null) area.setAtivo(true);
+        validar(area);
+        AreaCritica salva = repository.save(area);
+        criticalAreaService.recarregar();
+        return ResponseEntity.status(HttpStatus.CREATED).body(salva);
+    }
+
+    @PutMapping("/{id}")
+    public AreaCritica atualizar(@PathVariable Long id, @RequestBody AreaCritica dados) {
+        AreaCritica area = buscar(id);
+
+        if (dados.getNome() != null) area.setNome(dados.getNome());
+        if (dados.getLatitudeMin() != null) area.setLatitudeMin(dados.getLatitudeMin());
+        if (dados.getLongitudeMin() != null) area.setLongitudeMin(dados.getLongitudeMin());
+        if (dados.getLatitudeMax() != null) area.setLatitudeMax(dados.getLatitudeMax());
+        if (dados.getLongitudeMax() != null) area.setLongitudeMax(dados.getLongitudeMax());
+        if (dados.getHoraInicio() != null) area.setHoraInicio(dados.getHoraInicio());
+        if (dados.getHoraFim() != null) area.setHoraFim(dados.getHoraFim());
+        if (dados.getDiasSemana() != null) area.setDiasSemana(dados.getDiasSemana().isBlank() ? null : dados.getDiasSemana());
+        if (dados.getFatorReducao() != null) area.setFatorReducao(dados.getFatorReducao());
+        if (dados.getAtivo() != null) area.setAtivo(dados.getAtivo());
+
+        validar(area);
+        AreaCritica salva = repository.save(area);
+        criticalAreaService.recarregar();
+        return salva;
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deletar(@PathVariable Long id) {
+        repository.delete(buscar(id));
+        criticalAreaService.recarregar();
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/estatisticas")
+    public Map<String, Object> estatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>(criticalAreaService.getEstatisticas());
+        stats.put("modoAmostragem", amostradorAreaCritica.getModo());
+        stats.put("mantidasPorLimiar", amostradorAreaCritica.getMantidasPorLimiar());
+        stats.put("resumosPublicados", amostradorAreaCritica.getResumosPublicados());
+        return stats;
+    }
+
+    @PostMapping("/recarregar")
+    public Map<String, Object> recarregar() {
+        criticalAreaService.recarregar();
+        return estatisticas();
+    }
+
+    private void validar(AreaCritica area) {
+        String erro = criticalAreaService.validar(area);
+        if (erro != null) {
+            throw new BusinessException(ErrorCode.VALIDATION_ERROR, erro);
+        }
+    }
+}
@@ -21,10 +21,12 @@ public class BackpressureAdminController {
     public ResponseEntity<Map<String, Object>> getStatus() {
         Map<String, Object> status = new HashMap<>();
         status.put("lag", backpressureMonitor.calcularLag());
+        status.put("lagPorParticao", backpressureMonitor.getLagPorParticao());
         status.put("taxaProcessamento", backpressureMonitor.calcularTaxaProcessamento());
         status.put("cpuUsage", backpressureMonitor.getCpuUsage());
         status.put("memoryUsage", backpressureMonitor.getMemoryUsage());
         status.put("backpressureAtivo", backpressureMonitor.isBackpressureAtivo());
+        status.put("consumerPausado", backpressureMonitor.isPausado());
         
         return ResponseEntity.ok(status);
     }
@@ -1,7 +1,12 @@
 package com.app.telemetria.controller;
 
 import com.app.telemetria.service.CacheWarmingService;
+import com.app.telemetria.service.EnriquecimentoClimaService;
+import com.app.telemetria.service.GradeClimaService;
+import com.app.telemetria.service.HybridGeocodingService;
+import com.app.telemetria.service.WeatherAlertService;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -14,9 +19,21 @@ import java.util.Map;
 public class CacheAdminController {
 
     private final CacheWarmingService cacheWarmingService;
+    private final HybridGeocodingService hybridGeocodingService;
+    private final WeatherAlertService weatherAlertService;
+    private final EnriquecimentoClimaService enriquecimentoClima;
+    private final GradeClimaService gradeClimaService;
 
-    public CacheAdminController(CacheWarmingService cacheWarmingService) {
+    public CacheAdminController(CacheWarmingService cacheWarmingService,
+                                HybridGeocodingService hybridGeocodingService,
+                                WeatherAlertService weatherAlertService,
+                                EnriquecimentoClimaService enriquecimentoClima,
+                                GradeClimaService gradeClimaService) {
         this.cacheWarmingService = cacheWarmingService;
+        this.hybridGeocodingService = hybridGeocodingService;
+        this.weatherAlertService = weatherAlertService;
+        this.enriquecimentoClima = enriquecimentoClima;
+        this.gradeClimaService = gradeClimaService;
     }
 
     @PostMapping("/warm")
@@ -36,4 +53,17 @@ public class CacheAdminController {
         System.out.println("✅ Warming manual concluído em " + (fim - inicio) + "ms");
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+
+    @GetMapping("/geocoding")
+    public Map<String, Object> estatisticasGeocoding() {
+        return hybridGeocodingService.getEstatisticas();
+    }
+
+    @GetMapping("/clima")
+    public Map<String, Object> estatisticasClima() {
+        Map<String, Object> stats = new HashMap<>(weatherAlertService.getEstatisticas());
+        stats.put("enriquecimento", enriquecimentoClima.getEstatisticas());
+        stats.put("grade", gradeClimaService.getEstatisticas());
+        return stats;
+    }
+}
@@ -0,0 +1,72 @@
+package com.app.telemetria.controller;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.app.telemetria.entity.Geofence;
+import com.app.telemetria.service.GeofenceService;
+
+/**
+ * Cadastro de geofences. Alterações entram no índice em memória logo após o
+ * commit (GeofenceListener); vínculos em veiculo_geofence na recarga
+ * periódica ou em POST /recarregar.
+ */
+@RestController
+@RequestMapping("/api/v1/geofences")
+public class GeofenceController {
+
+    private final GeofenceService geofenceService;
+
+    public GeofenceController(GeofenceService geofenceService) {
+        this.geofenceService = geofenceService;
+    }
+
+    @GetMapping
+    public List<Geofence> listar() {
+        return geofenceService.listar();
+    }
+
+    @GetMapping("/{id}")
+    public Geofence buscar(@PathVariable Long id) {
+        return geofenceService.buscarPorId(id);
+    }
+
+    @PostMapping
+    public ResponseEntity<Geofence> criar(@RequestBody Geofence geofence) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(geofenceService.criar(geofence));
+    }
+
+    @PutMapping("/{id}")
+    public Geofence atualizar(@PathVariable Long id, @RequestBody Geofence dados) {
+        return geofenceService.atualizar(id, dados);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deletar(@PathVariable Long id) {
+        geofenceService.deletar(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Cercas em que o veículo está segundo a última telemetria avaliada
+     */
+    @GetMapping("/veiculo/{veiculoId}")
+    public long[] cercasDoVeiculo(@PathVariable Long veiculoId) {
+        return geofenceService.getCercasAtuais(veiculoId);
+    }
+
+    @GetMapping("/estatisticas")
+    public Map<String, Object> estatisticas() {
+        return geofenceService.getEstatisticas();
+    }
+
+    @PostMapping("/recarregar")
+    public Map<String, Object> recarregar() {
+        geofenceService.recarregar();
+        return geofenceService.getEstatisticas();
+    }
+}
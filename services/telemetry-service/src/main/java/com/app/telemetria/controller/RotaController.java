@@ -7,6 +7,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import com.app.telemetria.entity.Rota;
+import com.app.telemetria.service.DetectorDesvioRotaService;
+import com.app.telemetria.service.ProgressoRota;
 import com.app.telemetria.service.RotaService;
 import com.app.telemetria.exception.ErrorCode;
 import com.app.telemetria.exception.BusinessException;
@@ -19,9 +21,11 @@ import com.app.telemetria.exception.RotaValidationException;
 public class RotaController {
     
     private final RotaService service;
+    private final DetectorDesvioRotaService detectorDesvioRotaService;
     
-    public RotaController(RotaService service) {
+    public RotaController(RotaService service, DetectorDesvioRotaService detectorDesvioRotaService) {
         this.service = service;
+        this.detectorDesvioRotaService = detectorDesvioRotaService;
     }
     
     @PostMapping
@@ -63,6 +67,16 @@ public class RotaController {
         }
     }
     
+    @GetMapping("/{id}/progresso")
+    public ResponseEntity<ProgressoRota> progresso(@PathVariable Long id) {
+        ProgressoRota progresso = detectorDesvioRotaService.getProgresso(id);
+        if (progresso == null) {
+            throw new BusinessException(ErrorCode.RESOURCE_NOT_FOUND,
+                "Rota " + id + " sem progresso calculado (não está em andamento ou sem telemetria)");
+        }
+        return ResponseEntity.ok(progresso);
+    }
+    
     @PutMapping("/{id}")  
     public ResponseEntity<Rota> atualizar(@PathVariable Long id, @RequestBody Rota rota) {
         // Validação básica dos dados
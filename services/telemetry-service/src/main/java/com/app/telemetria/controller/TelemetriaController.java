@@ -1,23 +1,31 @@
 package com.app.telemetria.controller;
 
+import com.app.telemetria.codec.TelemetriaCodec;
+import com.app.telemetria.codec.TelemetriaMensagem;
 import com.app.telemetria.entity.Telemetria;
 import com.app.telemetria.entity.Veiculo;
 import com.app.telemetria.repository.TelemetriaRepository;
 import com.app.telemetria.repository.VeiculoRepository;
-import com.app.telemetria.repository.ViagemRepository;
-import com.app.telemetria.service.AlertaService;
-import com.app.telemetria.service.WeatherAlertService;
+import com.app.telemetria.service.TelemetriaLoteService;
+import com.app.telemetria.service.VeiculoIdCache;
 import com.app.telemetria.exception.ErrorCode;
 import com.app.telemetria.exception.BusinessException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.kafka.core.KafkaTemplate;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/v1/telemetria")
@@ -25,52 +33,120 @@ public class TelemetriaController {
     
     private final TelemetriaRepository telemetriaRepository;
     private final VeiculoRepository veiculoRepository;
-    private final ViagemRepository viagemRepository;
-    private final AlertaService alertaService;
-    private final WeatherAlertService weatherAlertService;
-    private final KafkaTemplate<String, TelemetriaRequest> kafkaTemplate;
+    private final KafkaTemplate<String, TelemetriaMensagem> kafkaTemplate;
+    private final TelemetriaLoteService telemetriaLoteService;
+    private final VeiculoIdCache veiculoIdCache;
+    private final ObjectMapper objectMapper;
     
     private static final String TOPIC = "telemetria-raw";
     
     public TelemetriaController(
             TelemetriaRepository telemetriaRepository,
             VeiculoRepository veiculoRepository,
-            ViagemRepository viagemRepository,
-            AlertaService alertaService,
-            WeatherAlertService weatherAlertService,
-            KafkaTemplate<String, TelemetriaRequest> kafkaTemplate) {  
+            KafkaTemplate<String, TelemetriaMensagem> kafkaTemplate,
+            TelemetriaLoteService telemetriaLoteService,
+            VeiculoIdCache veiculoIdCache,
+            ObjectMapper objectMapper) {  
         this.telemetriaRepository = telemetriaRepository;
         this.veiculoRepository = veiculoRepository;
-        this.viagemRepository = viagemRepository;
-        this.alertaService = alertaService;
-        this.weatherAlertService = weatherAlertService;
         this.kafkaTemplate = kafkaTemplate;
+        this.telemetriaLoteService = telemetriaLoteService;
+        this.veiculoIdCache = veiculoIdCache;
+        this.objectMapper = objectMapper;
     }
     
     @PostMapping
     public ResponseEntity<String> criar(@RequestBody TelemetriaRequest request) {
-     
-
-        Veiculo veiculo = veiculoRepository.findById(request.getVeiculo().getId())
-            .orElseThrow(() -> new BusinessException(
-                ErrorCode.VEICULO_NOT_FOUND,
-                request.getVeiculo().getId().toString()
-            ));
+        if (request.getVeiculo() == null || request.getVeiculo().getId() == null) {
+            throw new BusinessException(ErrorCode.VALIDATION_ERROR, "Veículo é obrigatório");
+        }
+        
+        // Mesma checagem em memória do binário e do lote, sem ir ao banco
+        Long veiculoId = request.getVeiculo().getId();
+        if (!veiculoIdCache.existe(veiculoId)) {
+            throw new BusinessException(ErrorCode.VEICULO_NOT_FOUND, veiculoId.toString());
+        }
         
         if (request.getLatitude() == null || request.getLongitude() == null) {
             throw new BusinessException(ErrorCode.VALIDATION_ERROR, 
                 "Latitude e longitude são obrigatórios");
         }
         
-        // Envia para processamento em background
-        CompletableFuture.supplyAsync(() -> {
-            kafkaTemplate.send(TOPIC, veiculo.getId().toString(), request);
-            return "Mensagem enviada para processamento";
-        });
+        TelemetriaMensagem mensagem = new TelemetriaMensagem(
+            veiculoId,
+            request.getLatitude(),
+            request.getLongitude(),
+            request.getVelocidade() != null ? request.getVelocidade() : 0.0,
+            request.getNivelCombustible() != null ? request.getNivelCombustible() : Double.NaN,
+            request.getDataHora() != null
+                ? request.getDataHora().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : TelemetriaMensagem.SEM_TIMESTAMP
+        );
+        try {
+            TelemetriaCodec.validar(mensagem);
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(ErrorCode.VALIDATION_ERROR, e.getMessage());
+        }
+        
+        // O envio já é assíncrono; o producer agrupa os registros em lote
+        kafkaTemplate.send(TOPIC, veiculoId.toString(), mensagem);
         
         return ResponseEntity
                 .status(HttpStatus.ACCEPTED)
-                .body("Telemetria recebida e em processamento assíncrono. ID do veículo: " + veiculo.getId());
+                .body("Telemetria recebida e em processamento assíncrono. ID do veículo: " + veiculoId);
+    }
+    
+    /**
+     * Mesmo endpoint com o corpo no formato binário v1 (um frame de 36 bytes)
+     */
+    @PostMapping(consumes = TelemetriaCodec.MEDIA_TYPE_BINARIO)
+    public ResponseEntity<String> criarBinario(@RequestBody byte[] corpo) {
+        TelemetriaMensagem mensagem;
+        try {
+            mensagem = TelemetriaCodec.decodificarBinario(ByteBuffer.wrap(corpo), new TelemetriaMensagem());
+            TelemetriaCodec.validar(mensagem);
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(ErrorCode.VALIDATION_ERROR, e.getMessage());
+        }
+        
+        Long veiculoId = mensagem.getVeiculoId();
+        if (!veiculoIdCache.existe(veiculoId)) {
+            throw new BusinessException(ErrorCode.VEICULO_NOT_FOUND, veiculoId.toString());
+        }
+        
+        kafkaTemplate.send(TOPIC, veiculoId.toString(), mensagem);
+        
+        return ResponseEntity
+                .status(HttpStatus.ACCEPTED)
+                .body("Telemetria recebida e em processamento assíncrono. ID do veículo: " + veiculoId);
+    }
+    
+    /**
+     * Ingestão em lote (array JSON, NDJSON ou sequência de frames binários v1). O corpo é lido em streaming e o
+     * resultado de cada registro é escrito na resposta à medida que os blocos
+     * são confirmados pelo Kafka.
+     */
+    @PostMapping(value = "/lote", consumes = {
+            MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_NDJSON_VALUE,
+            "application/x-ndjson",
+            TelemetriaCodec.MEDIA_TYPE_BINARIO
+    })
+    public void criarLote(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.ACCEPTED.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        
+        boolean binario = request.getContentType() != null
+            && request.getContentType().startsWith(TelemetriaCodec.MEDIA_TYPE_BINARIO);
+        
+        try (JsonGenerator saida = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            if (binario) {
+                telemetriaLoteService.processarBinario(request.getInputStream(), saida);
+            } else {
+                telemetriaLoteService.processar(request.getInputStream(), saida);
+            }
+        }
     }
     
     @GetMapping("/veiculo/{veiculoId}")
@@ -1,9 +1,13 @@
 package com.app.telemetria.dto;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 public class RouteResponse {
 
     private double distanciaKm;
     private double duracaoMinutos;
+    // GeoJSON LineString do OSRM: {"type":"LineString","coordinates":[[lon,lat],...]}
+    private JsonNode geometria;
 
     public RouteResponse() {
     }
@@ -23,4 +27,12 @@ public class RouteResponse {
     public void setDuracaoMinutos(double duracaoMinutos) {
         this.duracaoMinutos = duracaoMinutos;
     }
-}
\ No newline at end of file
+
+    public JsonNode getGeometria() {
+        return geometria;
+    }
+
+    public void setGeometria(JsonNode geometria) {
+        this.geometria = geometria;
+    }
+}
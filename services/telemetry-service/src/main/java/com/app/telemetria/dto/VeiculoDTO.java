@@ -6,6 +6,7 @@ public class VeiculoDTO {
     private String placa;
     private String modelo;
     private Double capacidadeCarga;
+    private String tipoVeiculo;
 
     public VeiculoDTO() {
     }
@@ -17,6 +18,11 @@ public class VeiculoDTO {
         this.capacidadeCarga = capacidadeCarga;
     }
 
+    public VeiculoDTO(Long id, String placa, String modelo, Double capacidadeCarga, String tipoVeiculo) {
+        this(id, placa, modelo, capacidadeCarga);
+        this.tipoVeiculo = tipoVeiculo;
+    }
+
     public Long getId() {
         return id;
     }
@@ -33,6 +39,10 @@ public class VeiculoDTO {
         return capacidadeCarga;
     }
 
+    public String getTipoVeiculo() {
+        return tipoVeiculo;
+    }
+
     public void setId(Long id) {
         this.id = id;
     }
@@ -48,4 +58,8 @@ public class VeiculoDTO {
     public void setCapacidadeCarga(Double capacidadeCarga) {
         this.capacidadeCarga = capacidadeCarga;
     }
+
+    public void setTipoVeiculo(String tipoVeiculo) {
+        this.tipoVeiculo = tipoVeiculo;
+    }
 }
@@ -1,9 +1,11 @@
 package com.app.telemetria.entity;
 
+import com.app.telemetria.entity.listener.EstadoVeiculoListener;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(EstadoVeiculoListener.class)
 @Table(name = "alertas")
 public class Alerta {
     
@@ -38,6 +40,12 @@ public class Alerta {
     @Column(name = "data_hora")
     private LocalDateTime dataHora;
     
+    // Aberturas repetidas agrupadas nesta linha (GravacaoAlertasService)
+    private Integer ocorrencias = 1;
+    
+    @Column(name = "ultima_ocorrencia")
+    private LocalDateTime ultimaOcorrencia;
+    
     private Boolean lido = false;
     private Boolean resolvido = false;
     
@@ -95,6 +103,12 @@ public class Alerta {
     public LocalDateTime getDataHora() { return dataHora; }
     public void setDataHora(LocalDateTime dataHora) { this.dataHora = dataHora; }
     
+    public Integer getOcorrencias() { return ocorrencias; }
+    public void setOcorrencias(Integer ocorrencias) { this.ocorrencias = ocorrencias; }
+    
+    public LocalDateTime getUltimaOcorrencia() { return ultimaOcorrencia; }
+    public void setUltimaOcorrencia(LocalDateTime ultimaOcorrencia) { this.ultimaOcorrencia = ultimaOcorrencia; }
+    
     public Boolean getLido() { return lido; }
     public void setLido(Boolean lido) { this.lido = lido; }
     
@@ -0,0 +1,88 @@
+package com.app.telemetria.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Área crítica: dentro da caixa e da janela de horário o consumer mantém só
+ * fatorReducao das mensagens (ver CriticalAreaService)
+ */
+@Entity
+@Table(name = "areas_criticas")
+public class AreaCritica {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String nome;
+
+    @Column(nullable = false)
+    private Double latitudeMin;
+    @Column(nullable = false)
+    private Double longitudeMin;
+    @Column(nullable = false)
+    private Double latitudeMax;
+    @Column(nullable = false)
+    private Double longitudeMax;
+
+    @Column(nullable = false)
+    private LocalTime horaInicio;
+    @Column(nullable = false)
+    private LocalTime horaFim; // menor que horaInicio = atravessa a meia-noite
+
+    private String diasSemana; // "1,2,3,4,5" (ISO); null = todos
+
+    @Column(nullable = false)
+    private Double fatorReducao; // 0.0 a 1.0
+
+    private Boolean ativo;
+
+    @Column(name = "created_at", insertable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", insertable = false, updatable = false)
+    private LocalDateTime updatedAt;
+
+    // Getters e Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getNome() { return nome; }
+    public void setNome(String nome) { this.nome = nome; }
+
+    public Double getLatitudeMin() { return latitudeMin; }
+    public void setLatitudeMin(Double latitudeMin) { this.latitudeMin = latitudeMin; }
+
+    public Double getLongitudeMin() { return longitudeMin; }
+    public void setLongitudeMin(Double longitudeMin) { this.longitudeMin = longitudeMin; }
+
+    public Double getLatitudeMax() { return latitudeMax; }
+    public void setLatitudeMax(Double latitudeMax) { this.latitudeMax = latitudeMax; }
+
+    public Double getLongitudeMax() { return longitudeMax; }
+    public void setLongitudeMax(Double longitudeMax) { this.longitudeMax = longitudeMax; }
+
+    public LocalTime getHoraInicio() { return horaInicio; }
+    public void setHoraInicio(LocalTime horaInicio) { this.horaInicio = horaInicio; }
+
+    public LocalTime getHoraFim() { return horaFim; }
+    public void setHoraFim(LocalTime horaFim) { this.horaFim = horaFim; }
+
+    public String getDiasSemana() { return diasSemana; }
+    public void setDiasSemana(String diasSemana) { this.diasSemana = diasSemana; }
+
+    public Double getFatorReducao() { return fatorReducao; }
+    public void setFatorReducao(Double fatorReducao) { this.fatorReducao = fatorReducao; }
+
+    public Boolean getAtivo() { return ativo; }
+    public void setAtivo(Boolean ativo) { this.ativo = ativo; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
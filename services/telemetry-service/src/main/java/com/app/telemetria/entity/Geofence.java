@@ -0,0 +1,68 @@
+package com.app.telemetria.entity;
+
+import com.app.telemetria.entity.listener.GeofenceListener;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Cerca geográfica. O formato depende do tipo:
+ * CIRCULO usa centro + raio (metros); RETANGULO usa vertices
+ * {"norte":..,"sul":..,"leste":..,"oeste":..}; POLIGONO usa vertices
+ * [{"latitude":..,"longitude":..},...] ou [[lat,lon],...].
+ * Os veículos monitorados ficam em veiculo_geofence.
+ */
+@Entity
+@EntityListeners(GeofenceListener.class)
+@Table(name = "geofences")
+public class Geofence {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String nome;
+
+    @Column(nullable = false)
+    private String tipo; // "CIRCULO", "RETANGULO", "POLIGONO"
+
+    private Double latitudeCentro;
+    private Double longitudeCentro;
+    private Double raio;
+
+    @Column(columnDefinition = "JSON")
+    private String vertices;
+
+    private Boolean ativo;
+
+    @Column(name = "created_at", insertable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // Getters e Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getNome() { return nome; }
+    public void setNome(String nome) { this.nome = nome; }
+
+    public String getTipo() { return tipo; }
+    public void setTipo(String tipo) { this.tipo = tipo; }
+
+    public Double getLatitudeCentro() { return latitudeCentro; }
+    public void setLatitudeCentro(Double latitudeCentro) { this.latitudeCentro = latitudeCentro; }
+
+    public Double getLongitudeCentro() { return longitudeCentro; }
+    public void setLongitudeCentro(Double longitudeCentro) { this.longitudeCentro = longitudeCentro; }
+
+    public Double getRaio() { return raio; }
+    public void setRaio(Double raio) { this.raio = raio; }
+
+    public String getVertices() { return vertices; }
+    public void setVertices(String vertices) { this.vertices = vertices; }
+
+    public Boolean getAtivo() { return ativo; }
+    public void setAtivo(Boolean ativo) { this.ativo = ativo; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,60 @@
+package com.app.telemetria.entity;
+
+import com.app.telemetria.util.PolylineCodec;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Traçado completo da rota (vindo do routing-service, já simplificado),
+ * gravado em rotas.rota_geojson como encoded polyline.
+ *
+ * As coordenadas só são decodificadas na primeira leitura (normalmente quando
+ * o detector de desvio monta a geometria da rota) e ficam em cache em arrays
+ * primitivos; carregar a entidade custa só a leitura da string.
+ */
+public class GeometriaRota {
+
+    private final String polyline;
+    private final int totalPontos;
+    private final double toleranciaMetros;
+
+    // [0] latitudes, [1] longitudes; decodificado sob demanda
+    @JsonIgnore
+    private volatile double[][] coordenadas;
+
+    @JsonCreator
+    public GeometriaRota(@JsonProperty("polyline") String polyline,
+                         @JsonProperty("totalPontos") int totalPontos,
+                         @JsonProperty("toleranciaMetros") double toleranciaMetros) {
+        this.polyline = polyline;
+        this.totalPontos = totalPontos;
+        this.toleranciaMetros = toleranciaMetros;
+    }
+
+    public static GeometriaRota de(double[] latitudes, double[] longitudes, double toleranciaMetros) {
+        return new GeometriaRota(PolylineCodec.codificar(latitudes, longitudes), latitudes.length, toleranciaMetros);
+    }
+
+    public String getPolyline() { return polyline; }
+
+    public int getTotalPontos() { return totalPontos; }
+
+    public double getToleranciaMetros() { return toleranciaMetros; }
+
+    @JsonIgnore
+    public double[] getLatitudes() { return decodificar()[0]; }
+
+    @JsonIgnore
+    public double[] getLongitudes() { return decodificar()[1]; }
+
+    private double[][] decodificar() {
+        double[][] c = coordenadas;
+        if (c == null) {
+            // Corrida inofensiva: duas threads podem decodificar a mesma string
+            c = PolylineCodec.decodificar(polyline);
+            coordenadas = c;
+        }
+        return c;
+    }
+}
@@ -1,13 +1,16 @@
 package com.app.telemetria.entity;
 
+import com.app.telemetria.entity.listener.EstadoVeiculoListener;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.app.telemetria.util.GeometriaRotaConverter;
 import com.app.telemetria.util.PontoRotaConverter;
 
 @Entity
+@EntityListeners(EstadoVeiculoListener.class)
 @Table(name = "rotas")
 public class Rota {
     
@@ -44,6 +47,11 @@ public class Rota {
     @Column(name = "pontos_rota", columnDefinition = "JSON")
     private List<PontoRota> pontosRota = new ArrayList<>();
     
+    // Traçado completo do routing-service (simplificado, encoded polyline)
+    @Convert(converter = GeometriaRotaConverter.class)
+    @Column(name = "rota_geojson", columnDefinition = "JSON")
+    private GeometriaRota geometria;
+    
     @Column(nullable = false)
     private String status; // "PLANEJADA", "EM_ANDAMENTO", "FINALIZADA", "CANCELADA"
 
@@ -182,6 +190,10 @@ public class Rota {
     
     public void setPontosRota(List<PontoRota> pontosRota) { this.pontosRota = pontosRota; }
     
+    public GeometriaRota getGeometria() { return geometria; }
+    
+    public void setGeometria(GeometriaRota geometria) { this.geometria = geometria; }
+    
  // Getters e Setters
     public String getStatus() { return status; }
     
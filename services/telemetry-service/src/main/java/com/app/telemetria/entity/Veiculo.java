@@ -1,11 +1,13 @@
 package com.app.telemetria.entity;
 
+import com.app.telemetria.entity.listener.EstadoVeiculoListener;
 import java.util.List;
 import java.util.ArrayList;
 import jakarta.persistence.*;
 import com.fasterxml.jackson.annotation.JsonIgnore; // <-- ADICIONAR
 
 @Entity
+@EntityListeners(EstadoVeiculoListener.class)
 @Table(name = "veiculos")
 public class Veiculo {
 
@@ -19,6 +21,10 @@ public class Veiculo {
     private String modelo;
     private Double capacidadeCarga;
 
+    // CAMINHAO, VAN, CARRO...; define os limites dos alertas (LimitesAlertaService)
+    @Column(name = "tipo_veiculo")
+    private String tipoVeiculo;
+
     // =========================================
     // RELACIONAMENTOS OTIMIZADOS
     // =========================================
@@ -105,6 +111,14 @@ public class Veiculo {
         this.capacidadeCarga = capacidadeCarga;
     }
 
+    public String getTipoVeiculo() {
+        return tipoVeiculo;
+    }
+
+    public void setTipoVeiculo(String tipoVeiculo) {
+        this.tipoVeiculo = tipoVeiculo;
+    }
+
     public List<Telemetria> getHistoricoTelemetria() {
         return historicoTelemetria;
     }
@@ -128,6 +142,7 @@ public class Veiculo {
                 ", placa='" + placa + '\'' +
                 ", modelo='" + modelo + '\'' +
                 ", capacidadeCarga=" + capacidadeCarga +
+                ", tipoVeiculo='" + tipoVeiculo + '\'' +
                 '}';
     }
 }
\ No newline at end of file
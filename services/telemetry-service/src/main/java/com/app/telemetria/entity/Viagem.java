@@ -1,9 +1,11 @@
 package com.app.telemetria.entity;
 
+import com.app.telemetria.entity.listener.EstadoVeiculoListener;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(EstadoVeiculoListener.class)
 @Table(name = "viagens")
 public class Viagem {
     
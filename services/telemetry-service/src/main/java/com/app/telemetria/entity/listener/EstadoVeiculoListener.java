@@ -0,0 +1,73 @@
+package com.app.telemetria.entity.listener;
+
+import com.app.telemetria.entity.Rota;
+import com.app.telemetria.service.DetectorDesvioRotaService;
+import com.app.telemetria.service.EstadoVeiculoStore;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Listener JPA das entidades que compõem o estado em memória dos veículos
+ * (Veiculo, Viagem, Rota e Alerta). As alterações só são aplicadas no
+ * EstadoVeiculoStore depois do commit, para não expor dados de uma
+ * transação que ainda pode sofrer rollback. Alterações de Rota também
+ * descartam a geometria pré-processada no DetectorDesvioRotaService.
+ *
+ * Instanciado pelo Hibernate através do SpringBeanContainer; o store é
+ * obtido de forma preguiçosa porque depende dos repositórios, que por sua
+ * vez dependem do EntityManagerFactory.
+ */
+public class EstadoVeiculoListener {
+
+    private final ObjectProvider<EstadoVeiculoStore> storeProvider;
+    private final ObjectProvider<DetectorDesvioRotaService> detectorProvider;
+
+    public EstadoVeiculoListener(ObjectProvider<EstadoVeiculoStore> storeProvider,
+                                 ObjectProvider<DetectorDesvioRotaService> detectorProvider) {
+        this.storeProvider = storeProvider;
+        this.detectorProvider = detectorProvider;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void aposSalvar(Object entidade) {
+        aposCommit(() -> {
+            EstadoVeiculoStore store = storeProvider.getIfAvailable();
+            if (store != null) store.aoSalvar(entidade);
+            notificarDetector(entidade);
+        });
+    }
+
+    @PostRemove
+    public void aposRemover(Object entidade) {
+        aposCommit(() -> {
+            EstadoVeiculoStore store = storeProvider.getIfAvailable();
+            if (store != null) store.aoRemover(entidade);
+            notificarDetector(entidade);
+        });
+    }
+
+    private void notificarDetector(Object entidade) {
+        if (entidade instanceof Rota rota) {
+            DetectorDesvioRotaService detector = detectorProvider.getIfAvailable();
+            if (detector != null) detector.aoAlterarRota(rota);
+        }
+    }
+
+    private void aposCommit(Runnable acao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+}
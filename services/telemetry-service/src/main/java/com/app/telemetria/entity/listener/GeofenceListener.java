@@ -0,0 +1,44 @@
+package com.app.telemetria.entity.listener;
+
+import com.app.telemetria.service.GeofenceService;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Recarrega o índice de cercas do GeofenceService depois do commit de
+ * qualquer alteração em Geofence. Vínculos em veiculo_geofence (sem
+ * entidade) são lidos na recarga periódica.
+ */
+public class GeofenceListener {
+
+    private final ObjectProvider<GeofenceService> geofenceServiceProvider;
+
+    public GeofenceListener(ObjectProvider<GeofenceService> geofenceServiceProvider) {
+        this.geofenceServiceProvider = geofenceServiceProvider;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void aposAlterar(Object entidade) {
+        Runnable recarregar = () -> {
+            GeofenceService service = geofenceServiceProvider.getIfAvailable();
+            if (service != null) service.recarregar();
+        };
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recarregar.run();
+                }
+            });
+        } else {
+            recarregar.run();
+        }
+    }
+}
@@ -53,6 +53,9 @@ public enum ErrorCode {
     
     // Telemetria
     TELEMETRIA_NOT_FOUND("404-008", "Dados de telemetria não encontrados", HttpStatus.NOT_FOUND),
+    
+    // Geofence
+    GEOFENCE_NOT_FOUND("404-009", "Geofence não encontrada", HttpStatus.NOT_FOUND),
 
     // ================= CONFLITOS (409) =================
     DUPLICATE_RESOURCE("409-000", "Recurso já existe no sistema", HttpStatus.CONFLICT),
@@ -0,0 +1,55 @@
+package com.app.telemetria.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rastreamento de depuração por veículo.
+ *
+ * O log por mensagem fica em DEBUG no logger "com.app.telemetria.trace.veiculo"
+ * e só é escrito para os veículos amostrados: os ids listados em
+ * telemetria.log.trace.veiculos e/ou 1 a cada N veículos
+ * (telemetria.log.trace.amostra), escolhidos pelo hash do id - o mesmo
+ * veículo é sempre rastreado, então a sequência dele aparece completa.
+ *
+ * Uso: if (TraceVeiculo.ativo(id)) TraceVeiculo.LOG.debug("...", ...);
+ */
+@Component
+public class TraceVeiculo {
+
+    public static final Logger LOG = LoggerFactory.getLogger("com.app.telemetria.trace.veiculo");
+
+    private static volatile int amostra = 0;
+    private static volatile Set<Long> veiculos = Set.of();
+
+    public TraceVeiculo(@Value("${telemetria.log.trace.amostra:0}") int amostra,
+                        @Value("${telemetria.log.trace.veiculos:}") List<Long> veiculos) {
+        TraceVeiculo.amostra = Math.max(0, amostra);
+        TraceVeiculo.veiculos = Set.copyOf(veiculos);
+    }
+
+    public static boolean ativo(long veiculoId) {
+        if (!LOG.isDebugEnabled()) {
+            return false;
+        }
+        if (veiculos.contains(veiculoId)) {
+            return true;
+        }
+        int n = amostra;
+        return n > 0 && Math.floorMod(misturar(veiculoId), n) == 0;
+    }
+
+    /**
+     * Espalha ids sequenciais (finalizador do SplitMix64)
+     */
+    static long misturar(long valor) {
+        valor = (valor ^ (valor >>> 30)) * 0xbf58476d1ce4e5b9L;
+        valor = (valor ^ (valor >>> 27)) * 0x94d049bb133111ebL;
+        return valor ^ (valor >>> 31);
+    }
+}
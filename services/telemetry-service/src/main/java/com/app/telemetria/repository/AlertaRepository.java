@@ -8,12 +8,13 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
-public interface AlertaRepository extends JpaRepository<Alerta, Long> {
+public interface AlertaRepository extends JpaRepository<Alerta, Long>, AlertaRepositoryCustom {
     
 Page<Alerta> findAll(Pageable pageable);
         
@@ -41,6 +42,9 @@ Page<Alerta> findAll(Pageable pageable);
     List<Alerta> findByVeiculoAndTipoAndResolvidoFalseOrderByDataHoraDesc(
         Veiculo veiculo, String tipo);
     
+    // Alertas abertos de vários veículos (carga do estado em memória)
+    List<Alerta> findByVeiculoIdInAndResolvidoFalse(Collection<Long> veiculoIds);
+    
     @Query("SELECT a FROM Alerta a WHERE a.dataHora BETWEEN :inicio AND :fim ORDER BY a.dataHora DESC")
     List<Alerta> findByPeriodo(@Param("inicio") LocalDateTime inicio, @Param("fim") LocalDateTime fim);
     
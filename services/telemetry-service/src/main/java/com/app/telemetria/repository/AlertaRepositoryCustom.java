@@ -0,0 +1,32 @@
+package com.app.telemetria.repository;
+
+import com.app.telemetria.entity.Alerta;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface AlertaRepositoryCustom {
+
+    /**
+     * Insere vários alertas em um único batch JDBC (multi-row insert no MySQL).
+     * Os IDs gerados são atribuídos de volta nas entidades, na mesma ordem da lista.
+     */
+    List<Alerta> inserirEmLote(List<Alerta> alertas);
+
+    /**
+     * Soma ocorrências a alertas já gravados, em um batch JDBC
+     */
+    void somarOcorrencias(List<SomaOcorrencias> somas);
+
+    /**
+     * Resolve, na ordem da lista, os alertas abertos de cada veículo e tipo
+     * com data/hora até a da resolução, em um batch JDBC
+     */
+    void resolverEmLote(List<Resolucao> resolucoes);
+
+    record SomaOcorrencias(Long alertaId, int quantidade, LocalDateTime ultimaOcorrencia) {
+    }
+
+    record Resolucao(Long veiculoId, String tipo, LocalDateTime dataHora) {
+    }
+}
@@ -0,0 +1,131 @@
+package com.app.telemetria.repository;
+
+import com.app.telemetria.entity.Alerta;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Gravação JDBC em lote dos alertas, usada pelo GravacaoAlertasService.
+ * Como em TelemetriaRepositoryImpl, a entidade usa IDENTITY e o Hibernate
+ * não agrupa os inserts. Estas escritas não passam pelo
+ * EstadoVeiculoListener: quem chama atualiza o estado em memória.
+ */
+public class AlertaRepositoryImpl implements AlertaRepositoryCustom {
+
+    private static final String INSERT_SQL =
+        "INSERT INTO alertas (veiculo_id, motorista_id, viagem_id, tipo, gravidade, mensagem, " +
+        "latitude, longitude, velocidade, odometro, data_hora, ocorrencias, ultima_ocorrencia, " +
+        "lido, resolvido) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, FALSE, FALSE)";
+
+    private static final String SOMAR_SQL =
+        "UPDATE alertas SET ocorrencias = ocorrencias + ?, " +
+        "ultima_ocorrencia = GREATEST(COALESCE(ultima_ocorrencia, data_hora), ?) WHERE id = ?";
+
+    private static final String RESOLVER_SQL =
+        "UPDATE alertas SET resolvido = TRUE, data_hora_resolucao = ? " +
+        "WHERE veiculo_id = ? AND tipo = ? AND resolvido = FALSE AND data_hora <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AlertaRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public List<Alerta> inserirEmLote(List<Alerta> alertas) {
+        if (alertas.isEmpty()) return alertas;
+
+        return jdbcTemplate.execute((ConnectionCallback<List<Alerta>>) conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (Alerta a : alertas) {
+                    setLong(ps, 1, a.getVeiculo() != null ? a.getVeiculo().getId() : null);
+                    setLong(ps, 2, a.getMotorista() != null ? a.getMotorista().getId() : null);
+                    setLong(ps, 3, a.getViagem() != null ? a.getViagem().getId() : null);
+                    ps.setString(4, a.getTipo());
+                    ps.setString(5, a.getGravidade());
+                    ps.setString(6, a.getMensagem());
+                    setDouble(ps, 7, a.getLatitude());
+                    setDouble(ps, 8, a.getLongitude());
+                    setDouble(ps, 9, a.getVelocidade());
+                    setDouble(ps, 10, a.getOdometro());
+                    ps.setTimestamp(11, Timestamp.valueOf(a.getDataHora()));
+                    ps.setInt(12, a.getOcorrencias() != null ? a.getOcorrencias() : 1);
+                    setTimestamp(ps, 13, a.getUltimaOcorrencia());
+                    ps.addBatch();
+                }
+
+                ps.executeBatch();
+
+                // Atribui os IDs gerados na mesma ordem do batch
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next() && i < alertas.size()) {
+                        alertas.get(i++).setId(keys.getLong(1));
+                    }
+                }
+            }
+            return alertas;
+        });
+    }
+
+    @Override
+    @Transactional
+    public void somarOcorrencias(List<SomaOcorrencias> somas) {
+        if (somas.isEmpty()) return;
+
+        jdbcTemplate.batchUpdate(SOMAR_SQL, somas, somas.size(), (ps, s) -> {
+            ps.setInt(1, s.quantidade());
+            ps.setTimestamp(2, Timestamp.valueOf(s.ultimaOcorrencia()));
+            ps.setLong(3, s.alertaId());
+        });
+    }
+
+    @Override
+    @Transactional
+    public void resolverEmLote(List<Resolucao> resolucoes) {
+        if (resolucoes.isEmpty()) return;
+
+        jdbcTemplate.batchUpdate(RESOLVER_SQL, resolucoes, resolucoes.size(), (ps, r) -> {
+            Timestamp dataHora = Timestamp.valueOf(r.dataHora());
+            ps.setTimestamp(1, dataHora);
+            ps.setLong(2, r.veiculoId());
+            ps.setString(3, r.tipo());
+            ps.setTimestamp(4, dataHora);
+        });
+    }
+
+    private static void setLong(PreparedStatement ps, int index, Long valor) throws SQLException {
+        if (valor == null) {
+            ps.setNull(index, Types.BIGINT);
+        } else {
+            ps.setLong(index, valor);
+        }
+    }
+
+    private static void setDouble(PreparedStatement ps, int index, Double valor) throws SQLException {
+        if (valor == null) {
+            ps.setNull(index, Types.DOUBLE);
+        } else {
+            ps.setDouble(index, valor);
+        }
+    }
+
+    private static void setTimestamp(PreparedStatement ps, int index, LocalDateTime valor) throws SQLException {
+        if (valor == null) {
+            ps.setNull(index, Types.TIMESTAMP);
+        } else {
+            ps.setTimestamp(index, Timestamp.valueOf(valor));
+        }
+    }
+}
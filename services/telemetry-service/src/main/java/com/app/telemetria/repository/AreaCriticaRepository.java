@@ -0,0 +1,11 @@
+package com.app.telemetria.repository;
+
+import com.app.telemetria.entity.AreaCritica;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.List;
+
+public interface AreaCriticaRepository extends JpaRepository<AreaCritica, Long> {
+
+    // Áreas carregadas no índice do CriticalAreaService
+    List<AreaCritica> findByAtivoTrue();
+}
@@ -24,6 +24,12 @@ public interface GeocodingCacheRepository extends JpaRepository<GeocodingCache,
            "ORDER BY g.dataConsulta DESC")
     Optional<GeocodingCache> findProximo(@Param("lat") Double lat, @Param("lon") Double lon);
     
+    /**
+     * Consulta mais recente dentro de uma célula (HybridGeocodingService)
+     */
+    Optional<GeocodingCache> findFirstByLatitudeBetweenAndLongitudeBetweenOrderByDataConsultaDesc(
+            Double latMin, Double latMax, Double lonMin, Double lonMax);
+    
     /**
      * Encontra pelo par exato de coordenadas
      */
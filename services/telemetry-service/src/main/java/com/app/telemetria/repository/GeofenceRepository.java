@@ -0,0 +1,16 @@
+package com.app.telemetria.repository;
+
+import com.app.telemetria.entity.Geofence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import java.util.List;
+
+public interface GeofenceRepository extends JpaRepository<Geofence, Long> {
+
+    // Cercas carregadas no índice em memória
+    List<Geofence> findByAtivoTrue();
+
+    // Vínculos ativos veículo x cerca: [veiculo_id, geofence_id]
+    @Query(value = "SELECT veiculo_id, geofence_id FROM veiculo_geofence WHERE ativo = TRUE", nativeQuery = true)
+    List<Object[]> findVinculosAtivos();
+}
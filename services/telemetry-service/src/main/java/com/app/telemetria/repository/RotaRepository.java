@@ -2,6 +2,7 @@ package com.app.telemetria.repository;
 
 import com.app.telemetria.entity.Rota;
 import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.Collection;
 import java.util.List;
 
 public interface RotaRepository extends JpaRepository<Rota, Long> {
@@ -12,6 +13,9 @@ public interface RotaRepository extends JpaRepository<Rota, Long> {
     // Buscar rotas ativas de um veículo
     List<Rota> findByVeiculoIdAndStatus(Long veiculoId, String status);
     
+    // Rotas de vários veículos (carga do estado em memória)
+    List<Rota> findByVeiculoIdInAndStatus(Collection<Long> veiculoIds, String status);
+    
     // Buscar rotas por período
     List<Rota> findByDataInicioBetween(java.time.LocalDateTime inicio, java.time.LocalDateTime fim);
 }
\ No newline at end of file
@@ -10,7 +10,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
-public interface TelemetriaRepository extends JpaRepository<Telemetria, Long> {
+public interface TelemetriaRepository extends JpaRepository<Telemetria, Long>, TelemetriaRepositoryCustom {
     
     // Buscar últimas telemetrias de um veículo
     List<Telemetria> findByVeiculoOrderByDataHoraDesc(Veiculo veiculo);
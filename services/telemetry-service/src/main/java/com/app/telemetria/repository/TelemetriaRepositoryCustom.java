@@ -0,0 +1,14 @@
+package com.app.telemetria.repository;
+
+import com.app.telemetria.entity.Telemetria;
+
+import java.util.List;
+
+public interface TelemetriaRepositoryCustom {
+
+    /**
+     * Insere várias telemetrias em um único batch JDBC (multi-row insert no MySQL).
+     * Os IDs gerados são atribuídos de volta nas entidades, na mesma ordem da lista.
+     */
+    List<Telemetria> salvarEmLote(List<Telemetria> telemetrias);
+}
@@ -0,0 +1,72 @@
+package com.app.telemetria.repository;
+
+import com.app.telemetria.entity.Telemetria;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Implementação JDBC do insert em lote. A entidade usa IDENTITY, então o
+ * Hibernate não consegue agrupar os inserts - aqui o batch é feito direto
+ * no driver (com rewriteBatchedStatements=true vira um único INSERT multi-row).
+ */
+public class TelemetriaRepositoryImpl implements TelemetriaRepositoryCustom {
+
+    private static final String INSERT_SQL =
+        "INSERT INTO telemetria (veiculo_id, latitude, longitude, velocidade, odometro, " +
+        "nivel_combustivel, geofence_violada, data_hora) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TelemetriaRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public List<Telemetria> salvarEmLote(List<Telemetria> telemetrias) {
+        if (telemetrias.isEmpty()) return telemetrias;
+
+        return jdbcTemplate.execute((ConnectionCallback<List<Telemetria>>) conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (Telemetria t : telemetrias) {
+                    ps.setLong(1, t.getVeiculo().getId());
+                    ps.setDouble(2, t.getLatitude());
+                    ps.setDouble(3, t.getLongitude());
+                    setDouble(ps, 4, t.getVelocidade() != null ? t.getVelocidade() : 0.0);
+                    setDouble(ps, 5, t.getOdometro() != null ? t.getOdometro() : 0.0);
+                    setDouble(ps, 6, t.getNivelCombustivel());
+                    ps.setBoolean(7, Boolean.TRUE.equals(t.getGeofenceViolada()));
+                    ps.setTimestamp(8, Timestamp.valueOf(t.getDataHora()));
+                    ps.addBatch();
+                }
+
+                ps.executeBatch();
+
+                // Atribui os IDs gerados na mesma ordem do batch
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next() && i < telemetrias.size()) {
+                        telemetrias.get(i++).setId(keys.getLong(1));
+                    }
+                }
+            }
+            return telemetrias;
+        });
+    }
+
+    private static void setDouble(PreparedStatement ps, int index, Double valor) throws java.sql.SQLException {
+        if (valor == null) {
+            ps.setNull(index, Types.DOUBLE);
+        } else {
+            ps.setDouble(index, valor);
+        }
+    }
+}
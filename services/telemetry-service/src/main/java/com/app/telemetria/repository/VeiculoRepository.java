@@ -1,7 +1,14 @@
 package com.app.telemetria.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import com.app.telemetria.entity.Veiculo;
 
+import java.util.List;
+
 public interface VeiculoRepository extends JpaRepository<Veiculo, Long> {
+    
+    // Apenas os IDs (cache de validação da ingestão em lote)
+    @Query("SELECT v.id FROM Veiculo v")
+    List<Long> findAllIds();
 }
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,6 +32,9 @@ public interface ViagemRepository extends JpaRepository<Viagem, Long> {
     
     Optional<Viagem> findByVeiculoIdAndStatus(Long veiculoId, String status);
     
+    // Viagens de vários veículos em uma única consulta (usado no consumo em lote)
+    List<Viagem> findByVeiculoIdInAndStatus(Collection<Long> veiculoIds, String status);
+    
     // Outros métodos úteis
     Optional<Viagem> findByVeiculoIdAndStatusOrderByDataInicioDesc(Long veiculoId, String status);
     
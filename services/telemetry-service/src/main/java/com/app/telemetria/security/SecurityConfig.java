@@ -36,6 +36,8 @@ public class SecurityConfig {
 
                     .requestMatchers("/api/v1/auth/**").permitAll()
 
+                    .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
+
                     .requestMatchers("/api/v1/desvios/**")
                         .hasAnyRole("ADMIN", "GESTOR", "OPERADOR")
 
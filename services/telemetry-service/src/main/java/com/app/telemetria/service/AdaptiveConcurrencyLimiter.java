@@ -0,0 +1,135 @@
+package com.app.telemetria.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limite de concorrência adaptativo (AIMD) para o trabalho em andamento do consumer.
+ *
+ * Cada tarefa concluída informa sua latência: abaixo do alvo o limite cresce
+ * de forma aditiva (+1 por "janela" de limite tarefas), acima do alvo ou com erro
+ * o limite cai de forma multiplicativa. Substitui o Semaphore(10) fixo.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private final int limiteMinimo;
+    private final int limiteMaximo;
+    private final long latenciaAlvoMs;
+    private final double fatorReducao;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition liberado = lock.newCondition();
+
+    private double limite;
+    private int emExecucao = 0;
+    private int aguardando = 0;
+    private long ultimaReducao = 0;
+
+    public AdaptiveConcurrencyLimiter(
+            @Value("${telemetria.concorrencia.limite-inicial:10}") int limiteInicial,
+            @Value("${telemetria.concorrencia.limite-minimo:2}") int limiteMinimo,
+            @Value("${telemetria.concorrencia.limite-maximo:200}") int limiteMaximo,
+            @Value("${telemetria.concorrencia.latencia-alvo-ms:250}") long latenciaAlvoMs,
+            @Value("${telemetria.concorrencia.fator-reducao:0.9}") double fatorReducao) {
+        this.limiteMinimo = limiteMinimo;
+        this.limiteMaximo = limiteMaximo;
+        this.latenciaAlvoMs = latenciaAlvoMs;
+        this.fatorReducao = fatorReducao;
+        this.limite = limiteInicial;
+    }
+
+    /**
+     * Tenta obter uma vaga aguardando no máximo o tempo informado
+     */
+    public boolean acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long restanteNanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            aguardando++;
+            try {
+                while (emExecucao >= (int) limite) {
+                    if (restanteNanos <= 0) {
+                        return false;
+                    }
+                    restanteNanos = liberado.awaitNanos(restanteNanos);
+                }
+                emExecucao++;
+                return true;
+            } finally {
+                aguardando--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Libera a vaga e ajusta o limite conforme a latência medida
+     */
+    public void release(long latenciaMs, boolean sucesso) {
+        lock.lock();
+        try {
+            emExecucao = Math.max(0, emExecucao - 1);
+
+            if (sucesso && latenciaMs <= latenciaAlvoMs) {
+                // Aumento aditivo: +1 a cada "limite" tarefas rápidas
+                limite = Math.min(limiteMaximo, limite + 1.0 / limite);
+            } else {
+                // Redução multiplicativa, no máximo uma vez por janela de latência
+                long agora = System.currentTimeMillis();
+                if (agora - ultimaReducao >= latenciaAlvoMs) {
+                    limite = Math.max(limiteMinimo, limite * fatorReducao);
+                    ultimaReducao = agora;
+                }
+            }
+
+            liberado.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Indica que há threads esperando vaga (o processamento está saturado)
+     */
+    public boolean isSaturado() {
+        lock.lock();
+        try {
+            return aguardando > 0 || emExecucao >= (int) limite;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimite() {
+        lock.lock();
+        try {
+            return (int) limite;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getEmExecucao() {
+        lock.lock();
+        try {
+            return emExecucao;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getAguardando() {
+        lock.lock();
+        try {
+            return aguardando;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -7,10 +7,15 @@ import com.app.telemetria.repository.AlertaRepository;
 import com.app.telemetria.repository.VeiculoRepository;
 import com.app.telemetria.repository.ViagemRepository;
 import com.app.telemetria.client.RoutingClient;
-import com.app.telemetria.dto.RouteResponse;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Async;
@@ -23,11 +28,12 @@ import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
 @Service
 public class AlertaService {
+
+    private static final Logger log = LoggerFactory.getLogger(AlertaService.class);
     
     private final AlertaRepository alertaRepository;
     private final VeiculoRepository veiculoRepository;
@@ -35,13 +41,17 @@ public class AlertaService {
     private final LocationClassifierService locationClassifierService;
     private final SimpMessagingTemplate messagingTemplate;
     private final RoutingClient routingClient;
+    private final EstadoVeiculoStore estadoVeiculoStore;
+    private final DetectorDesvioRotaService detectorDesvioRotaService;
+    private final MotorRegrasAlerta motorRegrasAlerta;
+    private final GravacaoAlertasService gravacaoAlertas;
     
-    // Configurações
-    private static final double VELOCIDADE_MAXIMA = 110.0; // km/h
-    private static final double VELOCIDADE_MINIMA = 10.0; // km/h
+    // Viagem -> desde quando a chegada estimada passa da prevista, antes de abrir o alerta
+    private final Cache<Long, LocalDateTime> atrasoDesde;
+    private final long persistenciaAtrasoMinutos;
+    
+    // Configurações (os limites por telemetria ficam no LimitesAlertaService, por tipo de veículo)
     private static final int TEMPO_PARADA_MAXIMO = 30; // minutos
-    private static final int NIVEL_COMBUSTIVEL_MINIMO = 15; // percentual
-    private static final int TEMPO_DIRECAO_MAXIMO = 240; // minutos (4 horas)
     
     public AlertaService(
             AlertaRepository alertaRepository,
@@ -49,7 +59,13 @@ public class AlertaService {
             ViagemRepository viagemRepository,
             LocationClassifierService locationClassifierService,
             SimpMessagingTemplate messagingTemplate,
-            RoutingClient routingClient) {
+            RoutingClient routingClient,
+            EstadoVeiculoStore estadoVeiculoStore,
+            DetectorDesvioRotaService detectorDesvioRotaService,
+            MotorRegrasAlerta motorRegrasAlerta,
+            GravacaoAlertasService gravacaoAlertas,
+            @Value("${telemetria.alertas.atraso.persistencia-minutos:5}") long persistenciaAtrasoMinutos,
+            @Value("${telemetria.alertas.atraso.max-viagens:100000}") long maxViagens) {
     	
         this.alertaRepository = alertaRepository;
         this.veiculoRepository = veiculoRepository;
@@ -57,6 +73,15 @@ public class AlertaService {
         this.locationClassifierService = locationClassifierService;
         this.messagingTemplate = messagingTemplate;
         this.routingClient = routingClient;
+        this.estadoVeiculoStore = estadoVeiculoStore;
+        this.detectorDesvioRotaService = detectorDesvioRotaService;
+        this.motorRegrasAlerta = motorRegrasAlerta;
+        this.gravacaoAlertas = gravacaoAlertas;
+        this.persistenciaAtrasoMinutos = persistenciaAtrasoMinutos;
+        this.atrasoDesde = Caffeine.newBuilder()
+            .maximumSize(maxViagens)
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
     }
     
     // ================ MÉTODOS PARA O CONTROLLER ================
@@ -153,65 +178,6 @@ public class AlertaService {
         return alertaRepository.findByDataHoraBetweenOrderByDataHoraDesc(inicio, fim);
     }
     
-    // ================ ALERTAS DE VELOCIDADE ================
-    
-    @Transactional
-    public void verificarExcessoVelocidade(Telemetria telemetria) {
-        if (telemetria.getVelocidade() == null) return;
-        
-        if (telemetria.getVelocidade() > VELOCIDADE_MAXIMA) {
-            // Verifica se já existe um alerta recente para este veículo
-            Optional<Alerta> alertaRecente = alertaRepository
-                .findPrimeiroByVeiculoAndTipoOrderByDataHoraDesc(
-                    telemetria.getVeiculo(), 
-                    TipoAlerta.EXCESSO_VELOCIDADE.name()
-                );
-            
-            if (alertaRecente.isEmpty() || 
-                Duration.between(alertaRecente.get().getDataHora(), LocalDateTime.now()).toMinutes() > 5) {
-                
-                criarAlerta(
-                    telemetria.getVeiculo(),
-                    null,
-                    null,
-                    TipoAlerta.EXCESSO_VELOCIDADE.name(),
-                    GravidadeAlerta.ALTA.name(),
-                    String.format("Veículo %.2f km/h acima do limite (%.0f km/h)",
-                        telemetria.getVelocidade() - VELOCIDADE_MAXIMA, VELOCIDADE_MAXIMA),
-                    telemetria.getLatitude(),
-                    telemetria.getLongitude(),
-                    telemetria.getVelocidade(),
-                    telemetria.getOdometro()
-                );
-            }
-        }
-    }
-    
-    @Transactional
-    public void verificarVelocidadeBaixa(Telemetria telemetria, Viagem viagem) {
-        if (telemetria.getVelocidade() == null || viagem == null) return;
-        
-        if (telemetria.getVelocidade() < VELOCIDADE_MINIMA && telemetria.getVelocidade() > 0) {
-            // Verifica se está em trecho urbano (lógica simplificada)
-            boolean emAreaUrbana = verificarAreaUrbana(telemetria.getLatitude(), telemetria.getLongitude());
-            
-            if (!emAreaUrbana) {
-                criarAlerta(
-                    telemetria.getVeiculo(),
-                    viagem.getMotorista(),
-                    viagem,
-                    TipoAlerta.VELOCIDADE_BAIXA.name(),
-                    GravidadeAlerta.MEDIA.name(),
-                    String.format("Velocidade muito baixa: %.1f km/h", telemetria.getVelocidade()),
-                    telemetria.getLatitude(),
-                    telemetria.getLongitude(),
-                    telemetria.getVelocidade(),
-                    telemetria.getOdometro()
-                );
-            }
-        }
-    }
-    
     // ================ ALERTAS DE PARADA ================
     
     @Transactional
@@ -222,8 +188,7 @@ public class AlertaService {
         
         if (minutosParado > TEMPO_PARADA_MAXIMO) {
             // Verifica se já existe alerta ativo para esta parada
-            boolean alertaAtivo = alertaRepository.existsByVeiculoAndTipoAndResolvidoFalse(
-                veiculo, TipoAlerta.PARADA_PROLONGADA.name());
+            boolean alertaAtivo = alertaAberto(veiculo, TipoAlerta.PARADA_PROLONGADA.name());
             
             if (!alertaAtivo) {
                 criarAlerta(
@@ -288,174 +253,133 @@ public class AlertaService {
         }
     }
     
+    /**
+     * ETA pelo progresso ao longo da rota (restante / velocidade na janela,
+     * com a velocidade planejada como piso, vindo do DetectorDesvioRotaService);
+     * o routing-service só é consultado quando a rota da viagem ainda não tem
+     * progresso calculado. O alerta só abre se o atraso se mantiver por
+     * persistencia-minutos e é resolvido quando a chegada estimada volta para
+     * antes da prevista.
+     */
     @Transactional
     public void verificarAtrasoViagemInteligente(Viagem viagem, Telemetria ultimaTelemetria) {
 
         if (viagem == null || ultimaTelemetria == null) return;
+        if (viagem.getRota() == null || viagem.getDataChegadaPrevista() == null) return;
 
-        RouteResponse rota = routingClient.calcular(
-                ultimaTelemetria.getLatitude(),
-                ultimaTelemetria.getLongitude(),
-                viagem.getRota().getLatitudeDestino(),
-                viagem.getRota().getLongitudeDestino()
-        );
+        LocalDateTime agora = ultimaTelemetria.getDataHora() != null
+            ? ultimaTelemetria.getDataHora()
+            : LocalDateTime.now();
+        ProgressoRota progresso = detectorDesvioRotaService.getProgresso(viagem.getRota().getId());
+        LocalDateTime etaReal = estimarChegada(viagem, ultimaTelemetria, progresso, agora);
+        if (etaReal == null) return;
 
-        if (rota == null) return;
+        Veiculo veiculo = viagem.getVeiculo();
+        boolean aberto = alertaAberto(veiculo, TipoAlerta.ATRASO_VIAGEM.name());
 
-        double minutosRestantes = rota.getDuracaoMinutos();
-
-        LocalDateTime etaReal = LocalDateTime.now()
-                .plusMinutes((long) minutosRestantes);
+        if (!etaReal.isAfter(viagem.getDataChegadaPrevista())) {
+            atrasoDesde.invalidate(viagem.getId());
+            if (aberto) {
+                // Relógio do dispositivo adiantado não pode deixar o alerta de fora
+                LocalDateTime agoraServidor = LocalDateTime.now();
+                gravacaoAlertas.resolver(veiculo.getId(), TipoAlerta.ATRASO_VIAGEM.name(),
+                    agora.isAfter(agoraServidor) ? agora : agoraServidor);
+                log.debug("✅ Atraso da viagem {} resolvido: chegada estimada {}", viagem.getId(), etaReal);
+            }
+            return;
+        }
+        if (aberto) return;
 
-        if (etaReal.isAfter(viagem.getDataChegadaPrevista())) {
+        LocalDateTime desde = atrasoDesde.get(viagem.getId(), id -> agora);
+        if (Duration.between(desde, agora).toMinutes() < persistenciaAtrasoMinutos) return;
+        atrasoDesde.invalidate(viagem.getId());
 
-            long atrasoReal =
-                    Duration.between(viagem.getDataChegadaPrevista(), etaReal)
-                            .toMinutes();
+        long atrasoReal = Duration.between(viagem.getDataChegadaPrevista(), etaReal).toMinutes();
 
-            criarAlerta(
-                    viagem.getVeiculo(),
-                    viagem.getMotorista(),
-                    viagem,
-                    TipoAlerta.ATRASO_VIAGEM.name(),
-                    GravidadeAlerta.ALTA.name(),
-                    "Atraso real estimado: " + atrasoReal + " minutos",
-                    ultimaTelemetria.getLatitude(),
-                    ultimaTelemetria.getLongitude(),
-                    ultimaTelemetria.getVelocidade(),
-                    ultimaTelemetria.getOdometro()
-            );
-        }
-    }
-    
-    // ================ ALERTAS DE GPS ================
-    
-    @Transactional
-    public void verificarGpsSemSinal(Veiculo veiculo, Telemetria ultimaTelemetria) {
-        if (ultimaTelemetria == null) return;
-        
-        LocalDateTime agora = LocalDateTime.now();
-        long minutosSemSinal = Duration.between(ultimaTelemetria.getDataHora(), agora).toMinutes();
-        
-        if (minutosSemSinal > 15) { // 15 minutos sem sinal
-            boolean alertaAtivo = alertaRepository.existsByVeiculoAndTipoAndResolvidoFalse(
-                veiculo, TipoAlerta.GPS_SEM_SINAL.name());
-            
-            if (!alertaAtivo) {
-                criarAlerta(
-                    veiculo,
-                    null,
-                    null,
-                    TipoAlerta.GPS_SEM_SINAL.name(),
-                    GravidadeAlerta.ALTA.name(),
-                    String.format("Veículo sem sinal GPS há %d minutos", minutosSemSinal),
-                    ultimaTelemetria.getLatitude(),
-                    ultimaTelemetria.getLongitude(),
-                    ultimaTelemetria.getVelocidade(),
-                    ultimaTelemetria.getOdometro()
-                );
-            }
+        String mensagem = "Atraso real estimado: " + atrasoReal + " minutos";
+        if (progresso != null) {
+            mensagem += String.format(" (%.0f%% da rota concluída, %.1f km restantes)",
+                    progresso.fracaoConcluida() * 100, progresso.restanteMetros() / 1000);
         }
+
+        criarAlerta(
+                veiculo,
+                viagem.getMotorista(),
+                viagem,
+                TipoAlerta.ATRASO_VIAGEM.name(),
+                GravidadeAlerta.ALTA.name(),
+                mensagem,
+                ultimaTelemetria.getLatitude(),
+                ultimaTelemetria.getLongitude(),
+                ultimaTelemetria.getVelocidade(),
+                ultimaTelemetria.getOdometro(),
+                agora
+        );
     }
-    
-    // ================ ALERTAS DE MOTORISTA ================
-    
-    @Transactional
-    public void verificarTempoDirecao(Viagem viagem, Telemetria ultimaTelemetria) {
-        if (viagem == null || viagem.getMotorista() == null) return;
-        
-        if (viagem.getDataInicio() != null) {
-            long minutosDirigindo = Duration.between(viagem.getDataInicio(), LocalDateTime.now()).toMinutes();
-            
-            if (minutosDirigindo > TEMPO_DIRECAO_MAXIMO) {
-                boolean alertaAtivo = alertaRepository.existsByVeiculoAndTipoAndResolvidoFalse(
-                    viagem.getVeiculo(), TipoAlerta.TEMPO_DIRECAO.name());
-                
-                if (!alertaAtivo) {
-                    criarAlerta(
-                        viagem.getVeiculo(),
-                        viagem.getMotorista(),
-                        viagem,
-                        TipoAlerta.TEMPO_DIRECAO.name(),
-                        GravidadeAlerta.ALTA.name(),
-                        String.format("Motorista dirigindo por %d minutos sem pausa", minutosDirigindo),
-                        ultimaTelemetria != null ? ultimaTelemetria.getLatitude() : null,
-                        ultimaTelemetria != null ? ultimaTelemetria.getLongitude() : null,
-                        ultimaTelemetria != null ? ultimaTelemetria.getVelocidade() : null,
-                        ultimaTelemetria != null ? ultimaTelemetria.getOdometro() : null
-                    );
-                }
-            }
+
+    /**
+     * Chegada estimada pelo progresso na rota; sem progresso, a do
+     * routing-service em cache. null enquanto não há estimativa.
+     */
+    private LocalDateTime estimarChegada(Viagem viagem, Telemetria telemetria,
+                                         ProgressoRota progresso, LocalDateTime agora) {
+        if (progresso != null) {
+            LocalDateTime eta = progresso.estimarChegada();
+            if (eta != null) return eta;
+            // Parado numa rota sem previsão: só dá para afirmar atraso depois de passar da chegada prevista
+            return agora.isAfter(viagem.getDataChegadaPrevista()) ? agora : null;
         }
-    }
-    
-    // ================ ALERTAS DE COMBUSTÍVEL ================
-    
-    @Transactional
-    public void verificarNivelCombustivel(Telemetria telemetria, Viagem viagem) {
-        if (telemetria.getNivelCombustivel() == null) return;
-        
-        if (telemetria.getNivelCombustivel() < NIVEL_COMBUSTIVEL_MINIMO) {
-            criarAlerta(
-                telemetria.getVeiculo(),
-                viagem != null ? viagem.getMotorista() : null,
-                viagem,
-                TipoAlerta.NIVEL_COMBUSTIVEL_BAIXO.name(),
-                GravidadeAlerta.MEDIA.name(),
-                String.format("Nível de combustível baixo: %.0f%%", telemetria.getNivelCombustivel()),
+        return routingClient.estimarChegada(
+                viagem.getVeiculo().getId(),
                 telemetria.getLatitude(),
                 telemetria.getLongitude(),
-                telemetria.getVelocidade(),
-                telemetria.getOdometro()
-            );
-        }
+                viagem.getRota().getLatitudeDestino(),
+                viagem.getRota().getLongitudeDestino()
+        );
     }
     
     // ================ MÉTODO PRINCIPAL (AGORA ASSÍNCRONO) ================
     
     /**
-     * Método principal agora é assíncrono e retorna CompletableFuture
+     * Método principal, assíncrono. As regras por telemetria (velocidade,
+     * combustível, GPS, tempo de direção) são avaliadas em memória pelo
+     * MotorRegrasAlerta; só as mudanças de estado das regras vão para o
+     * banco, em lote, pelo GravacaoAlertasService.
      */
     @Async("alertaTaskExecutor")
-    @Transactional
     public CompletableFuture<String> processarTelemetria(Telemetria telemetria) {
         if (telemetria == null || telemetria.getVeiculo() == null) {
             return CompletableFuture.completedFuture("Telemetria inválida");
         }
         
         long inicio = System.currentTimeMillis();
-        String threadName = Thread.currentThread().getName();
-        System.out.println("🔄 [Thread: " + threadName + "] Iniciando processamento assíncrono de alertas");
+        log.trace("🔄 Iniciando processamento assíncrono de alertas do veículo {}", telemetria.getVeiculo().getId());
         
         try {
-            // Buscar viagem ativa do veículo
-            Viagem viagemAtiva = viagemRepository.findByVeiculoAndStatus(
-                telemetria.getVeiculo(), "EM_ANDAMENTO").orElse(null);
-            
-            // Verificar todos os tipos de alerta (tudo continua igual)
-            verificarExcessoVelocidade(telemetria);
-            verificarVelocidadeBaixa(telemetria, viagemAtiva);
-            verificarNivelCombustivel(telemetria, viagemAtiva);
+            // Viagem ativa do estado em memória do veículo
+            EstadoVeiculo estado = estadoVeiculoStore.getEstado(telemetria.getVeiculo().getId());
+            Viagem viagemAtiva = estado != null
+                ? estado.getViagemAtiva()
+                : viagemRepository.findByVeiculoAndStatus(telemetria.getVeiculo(), "EM_ANDAMENTO").orElse(null);
             
-            // Verificações adicionais que podem ser feitas assincronamente
-            verificarGpsSemSinal(telemetria.getVeiculo(), telemetria);
+            if (estado != null) {
+                List<TransicaoAlerta> transicoes = motorRegrasAlerta.avaliar(estado, telemetria, viagemAtiva);
+                if (!transicoes.isEmpty()) {
+                    aplicarTransicoes(transicoes, telemetria, viagemAtiva);
+                }
+            }
             
             if (viagemAtiva != null) {
-                verificarTempoDirecao(viagemAtiva, telemetria);
                 verificarAtrasoViagemInteligente(viagemAtiva, telemetria);
             }
             
-            // Atualizar status de alertas resolvidos
-            resolverAlertas(telemetria);
-            
             long fim = System.currentTimeMillis();
-            System.out.println("✅ [Thread: " + threadName + "] Alertas processados em " + (fim - inicio) + "ms");
+            log.debug("✅ Alertas do veículo {} processados em {}ms", telemetria.getVeiculo().getId(), fim - inicio);
             
             return CompletableFuture.completedFuture("Alertas processados com sucesso");
             
         } catch (Exception e) {
-            System.err.println("❌ [Thread: " + threadName + "] Erro no processamento: " + e.getMessage());
-            e.printStackTrace();
+            log.error("❌ Erro no processamento de alertas do veículo {}", telemetria.getVeiculo().getId(), e);
             return CompletableFuture.failedFuture(e);
         }
     }
@@ -481,9 +405,44 @@ public class AlertaService {
     
     // ================ MÉTODOS AUXILIARES ================
     
+    /**
+     * Enfileira as transições do motor de regras (abrir = alerta novo, fechar =
+     * resolver os abertos do tipo) para a gravação em lote
+     */
+    private void aplicarTransicoes(List<TransicaoAlerta> transicoes, Telemetria telemetria, Viagem viagem) {
+        for (TransicaoAlerta transicao : transicoes) {
+            if (transicao.abrir()) {
+                criarAlerta(
+                    telemetria.getVeiculo(),
+                    viagem != null ? viagem.getMotorista() : null,
+                    viagem,
+                    transicao.tipo().name(),
+                    transicao.gravidade().name(),
+                    transicao.mensagem(),
+                    telemetria.getLatitude(),
+                    telemetria.getLongitude(),
+                    telemetria.getVelocidade(),
+                    telemetria.getOdometro(),
+                    transicao.dataHora()
+                );
+            } else {
+                gravacaoAlertas.resolver(telemetria.getVeiculo().getId(), transicao.tipo().name(), transicao.dataHora());
+                log.debug("✅ Alertas {} do veículo {} resolvidos", transicao.tipo(), telemetria.getVeiculo().getId());
+            }
+        }
+    }
+    
     private void criarAlerta(Veiculo veiculo, Motorista motorista, Viagem viagem,
                              String tipo, String gravidade, String mensagem,
                              Double latitude, Double longitude, Double velocidade, Double odometro) {
+        criarAlerta(veiculo, motorista, viagem, tipo, gravidade, mensagem,
+            latitude, longitude, velocidade, odometro, LocalDateTime.now());
+    }
+    
+    private void criarAlerta(Veiculo veiculo, Motorista motorista, Viagem viagem,
+                             String tipo, String gravidade, String mensagem,
+                             Double latitude, Double longitude, Double velocidade, Double odometro,
+                             LocalDateTime dataHora) {
         
         Alerta alerta = new Alerta();
         alerta.setVeiculo(veiculo);
@@ -496,28 +455,23 @@ public class AlertaService {
         alerta.setLongitude(longitude);
         alerta.setVelocidade(velocidade);
         alerta.setOdometro(odometro);
-        alerta.setDataHora(LocalDateTime.now());
+        alerta.setDataHora(dataHora);
         alerta.setLido(false);
         alerta.setResolvido(false);
         
-        alertaRepository.save(alerta);
-        
-        String threadName = Thread.currentThread().getName();
-        System.out.println("🚨 [Thread: " + threadName + "] ALERTA GERADO: " + mensagem);
+        gravacaoAlertas.abrir(alerta);
+        log.info("🚨 Alerta {} [{}] gerado para veículo {}: {}", tipo, gravidade, veiculo.getId(), mensagem);
     }
     
-    private void resolverAlertas(Telemetria telemetria) {
-        if (telemetria.getVelocidade() != null && telemetria.getVelocidade() <= VELOCIDADE_MAXIMA) {
-            List<Alerta> alertasExcesso = alertaRepository
-                .findByVeiculoAndTipoAndResolvidoFalseOrderByDataHoraDesc(
-                    telemetria.getVeiculo(), TipoAlerta.EXCESSO_VELOCIDADE.name());
-            
-            for (Alerta alerta : alertasExcesso) {
-                alerta.setResolvido(true);
-                alerta.setDataHoraResolucao(LocalDateTime.now());
-                alertaRepository.save(alerta);
-            }
+    /**
+     * Consulta o estado em memória do veículo; sem estado carregado, vai ao banco
+     */
+    private boolean alertaAberto(Veiculo veiculo, String tipo) {
+        EstadoVeiculo estado = estadoVeiculoStore.getEstadoEmMemoria(veiculo.getId());
+        if (estado != null) {
+            return estado.isAlertaAberto(tipo);
         }
+        return alertaRepository.existsByVeiculoAndTipoAndResolvidoFalse(veiculo, tipo);
     }
     
     private boolean verificarAreaUrbana(Double latitude, Double longitude) {
@@ -528,10 +482,10 @@ public class AlertaService {
              String classificacao =
                      locationClassifierService.classify(latitude, longitude);
              
-             return "AREA_URBANA".equals(classificacao);
+             return LocationClassifierService.AREA_URBANA.equals(classificacao);
     		    		
     	} catch (Exception e) {
-    		System.err.println("Erro ao verificar area urbana: " + e.getMessage());
+    		log.warn("Erro ao verificar area urbana: {}", e.getMessage());
     		return false;
     	}
     }
@@ -555,7 +509,7 @@ public class AlertaService {
     			  mensagem
     	  );
     		
-    	  System.out.println("WebSocket enviado:" + mensagem);
+    	  log.debug("WebSocket enviado: {}", mensagem);
     	}
     }
 }
\ No newline at end of file
@@ -0,0 +1,274 @@
+package com.app.telemetria.service;
+
+import com.app.telemetria.codec.TelemetriaMensagem;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Amostragem determinística por veículo em área crítica.
+ *
+ * Cada veículo acumula fatorReducao de crédito por telemetria e mantém uma
+ * quando o crédito chega a 1, então os pontos mantidos ficam espaçados e a
+ * carga cai na mesma proporção da amostragem aleatória. Por intervalo (pelo
+ * horário da telemetria) são mantidos no máximo max-pontos-por-intervalo.
+ * Telemetrias que cruzam um limiar de alerta (excesso de velocidade, parada
+ * ou partida, combustível entrando na reserva; o tipo do veículo não é
+ * conhecido aqui, então vale o limite mais restritivo entre os tipos) são
+ * sempre mantidas e consomem crédito. As descartadas viram um ResumoAreaCritica por intervalo.
+ *
+ * O resumo de um intervalo sai quando chega telemetria de um intervalo
+ * seguinte, na varredura periódica (veículo sem telemetria há um intervalo,
+ * ex.: saiu da área crítica) ou quando o estado expira/é removido do cache.
+ * Como a varredura e o removalListener rodam fora da thread do listener, o
+ * estado de cada veículo é protegido pelo próprio monitor.
+ */
+@Service
+public class AmostradorAreaCritica {
+
+    private static final Logger log = LoggerFactory.getLogger(AmostradorAreaCritica.class);
+    private static final ZoneId ZONA = ZoneId.systemDefault();
+
+    public enum Modo { TAXA, ALEATORIA }
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final Cache<Long, EstadoAmostragem> estados;
+
+    private final Modo modo;
+    private final long intervaloMs;
+    private final int maxPontosPorIntervalo;
+    private final double velocidadeMaxima;
+    private final double nivelCombustivelMinimo;
+
+    private final LongAdder mantidasPorLimiar = new LongAdder();
+    private final LongAdder resumosPublicados = new LongAdder();
+
+    public AmostradorAreaCritica(
+            ApplicationEventPublisher eventPublisher,
+            SimpMessagingTemplate messagingTemplate,
+            LimitesAlertaService limitesAlertaService,
+            @Value("${telemetria.areas-criticas.amostragem.modo:TAXA}") Modo modo,
+            @Value("${telemetria.areas-criticas.amostragem.intervalo-segundos:30}") long intervaloSegundos,
+            @Value("${telemetria.areas-criticas.amostragem.max-pontos-por-intervalo:10}") int maxPontosPorIntervalo,
+            @Value("${telemetria.areas-criticas.amostragem.max-veiculos:50000}") long maxVeiculos,
+            @Value("${telemetria.areas-criticas.amostragem.expiracao-minutos:30}") long expiracaoMinutos) {
+        this.eventPublisher = eventPublisher;
+        this.messagingTemplate = messagingTemplate;
+        this.modo = modo;
+        this.intervaloMs = intervaloSegundos * 1000;
+        this.maxPontosPorIntervalo = maxPontosPorIntervalo;
+        this.velocidadeMaxima = limitesAlertaService.getMenorVelocidadeMaxima();
+        this.nivelCombustivelMinimo = limitesAlertaService.getMaiorNivelCombustivelMinimo();
+        this.estados = Caffeine.newBuilder()
+            .maximumSize(maxVeiculos)
+            .expireAfterAccess(Duration.ofMinutes(expiracaoMinutos))
+            // Expirado ou removido por tamanho: publica o que estava acumulado
+            .removalListener((Long veiculoId, EstadoAmostragem estado, RemovalCause causa) -> {
+                if (veiculoId != null && estado != null && causa.wasEvicted()) {
+                    synchronized (estado) {
+                        fecharIntervalo(veiculoId, estado);
+                        estado.removido = true;
+                    }
+                }
+            })
+            .build();
+    }
+
+    /**
+     * Decide se a telemetria em área crítica (fatorReducao < 1) é mantida
+     */
+    public boolean manter(TelemetriaMensagem dados, double fatorReducao) {
+        if (modo == Modo.ALEATORIA) {
+            return ThreadLocalRandom.current().nextDouble() <= fatorReducao;
+        }
+
+        long instante = dados.temTimestamp() ? dados.getTimestampMillis() : System.currentTimeMillis();
+        long intervalo = Math.floorDiv(instante, intervaloMs);
+        while (true) {
+            EstadoAmostragem estado = estados.get(dados.getVeiculoId(), id -> new EstadoAmostragem());
+            synchronized (estado) {
+                // Removido do cache entre o get e o lock: o resumo já saiu, usa um estado novo
+                if (!estado.removido) {
+                    return manter(estado, dados, fatorReducao, instante, intervalo);
+                }
+            }
+        }
+    }
+
+    private boolean manter(EstadoAmostragem estado, TelemetriaMensagem dados, double fatorReducao,
+                           long instante, long intervalo) {
+        estado.atualizadoEm = System.currentTimeMillis();
+
+        // Telemetria atrasada de um intervalo já fechado conta no atual
+        if (intervalo > estado.intervalo) {
+            fecharIntervalo(dados.getVeiculoId(), estado);
+            estado.intervalo = intervalo;
+        }
+        estado.recebidas++;
+
+        boolean limiar = cruzaLimiar(estado, dados);
+        estado.credito = Math.min(estado.credito + fatorReducao, 1 + fatorReducao);
+
+        boolean manter;
+        if (limiar) {
+            mantidasPorLimiar.increment();
+            manter = true;
+        } else {
+            manter = estado.credito >= 1 && estado.mantidas < maxPontosPorIntervalo;
+        }
+
+        if (manter) {
+            // Pode ficar negativo depois de vários limiares seguidos: compensa nos próximos
+            estado.credito = Math.max(estado.credito - 1, -1);
+            estado.mantidas++;
+        } else {
+            estado.descartar(dados, instante);
+        }
+        return manter;
+    }
+
+    /**
+     * Classifica a telemetria e compara com a anterior do veículo: muda de
+     * faixa (parado / em movimento / acima do limite) ou entra na reserva
+     */
+    private boolean cruzaLimiar(EstadoAmostragem estado, TelemetriaMensagem dados) {
+        double velocidade = dados.getVelocidade();
+        int faixa = velocidade > velocidadeMaxima ? 2 : velocidade > 0 ? 1 : 0;
+        boolean reserva = dados.temNivelCombustivel()
+            && dados.getNivelCombustivel() < nivelCombustivelMinimo;
+
+        boolean cruzou = faixa == 2 || faixa != estado.faixa || (reserva && !estado.reserva);
+        estado.faixa = faixa;
+        estado.reserva = reserva;
+        return cruzou;
+    }
+
+    /**
+     * Fecha os intervalos de veículos sem telemetria há pelo menos um
+     * intervalo, que de outra forma só seriam publicados na próxima
+     * telemetria em área crítica. Chamado pelo AreaCriticaScheduler.
+     */
+    public void fecharIntervalosVencidos() {
+        long limite = System.currentTimeMillis() - intervaloMs;
+        int fechados = 0;
+        for (Map.Entry<Long, EstadoAmostragem> entrada : estados.asMap().entrySet()) {
+            EstadoAmostragem estado = entrada.getValue();
+            synchronized (estado) {
+                if (estado.descartadas > 0 && estado.atualizadoEm <= limite) {
+                    fecharIntervalo(entrada.getKey(), estado);
+                    fechados++;
+                }
+            }
+        }
+        if (fechados > 0) {
+            log.debug("🧹 {} intervalos de amostragem em área crítica fechados por inatividade", fechados);
+        }
+    }
+
+    private void fecharIntervalo(long veiculoId, EstadoAmostragem estado) {
+        if (estado.descartadas > 0) {
+            publicar(new ResumoAreaCritica(
+                veiculoId,
+                dataHora(estado.primeiraDescartada),
+                dataHora(estado.ultimaDescartada),
+                estado.recebidas,
+                estado.descartadas,
+                estado.velocidadeMinima,
+                estado.velocidadeMaxima,
+                estado.somaVelocidade / estado.descartadas,
+                estado.ultimaLatitude,
+                estado.ultimaLongitude));
+        }
+        estado.reiniciarIntervalo();
+    }
+
+    private void publicar(ResumoAreaCritica resumo) {
+        resumosPublicados.increment();
+        try {
+            eventPublisher.publishEvent(resumo);
+            messagingTemplate.convertAndSend("/topic/areas-criticas/resumos", resumo);
+        } catch (Exception e) {
+            // Falha de um assinante não pode derrubar o lote
+            log.error("❌ Erro ao publicar resumo de área crítica do veículo {}: {}", resumo.veiculoId(), e.getMessage());
+        }
+    }
+
+    private static LocalDateTime dataHora(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZONA);
+    }
+
+    public Modo getModo() {
+        return modo;
+    }
+
+    public long getMantidasPorLimiar() {
+        return mantidasPorLimiar.sum();
+    }
+
+    public long getResumosPublicados() {
+        return resumosPublicados.sum();
+    }
+
+    /**
+     * Estado de um veículo; acessado sempre com o monitor do próprio objeto
+     */
+    private static final class EstadoAmostragem {
+        long intervalo = Long.MIN_VALUE;
+        long atualizadoEm; // relógio local da última telemetria, para a varredura
+        boolean removido;
+        double credito;
+        int faixa = -1; // sem telemetria anterior: a primeira cruza o limiar e é mantida
+        boolean reserva;
+
+        int recebidas;
+        int mantidas;
+        int descartadas;
+        long primeiraDescartada;
+        long ultimaDescartada;
+        double velocidadeMinima;
+        double velocidadeMaxima;
+        double somaVelocidade;
+        double ultimaLatitude;
+        double ultimaLongitude;
+
+        void descartar(TelemetriaMensagem dados, long instante) {
+            double velocidade = dados.getVelocidade();
+            if (descartadas++ == 0) {
+                primeiraDescartada = instante;
+                velocidadeMinima = velocidade;
+                velocidadeMaxima = velocidade;
+            } else {
+                velocidadeMinima = Math.min(velocidadeMinima, velocidade);
+                velocidadeMaxima = Math.max(velocidadeMaxima, velocidade);
+            }
+            ultimaDescartada = Math.max(ultimaDescartada, instante);
+            somaVelocidade += velocidade;
+            ultimaLatitude = dados.getLatitude();
+            ultimaLongitude = dados.getLongitude();
+        }
+
+        void reiniciarIntervalo() {
+            recebidas = 0;
+            mantidas = 0;
+            descartadas = 0;
+            primeiraDescartada = 0;
+            ultimaDescartada = 0;
+            somaVelocidade = 0;
+        }
+    }
+}
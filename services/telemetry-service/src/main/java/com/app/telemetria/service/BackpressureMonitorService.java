@@ -1,15 +1,30 @@
 package com.app.telemetria.service;
 
+import com.app.telemetria.consumer.TelemetriaKafkaConsumer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
 import java.lang.management.OperatingSystemMXBean;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class BackpressureMonitorService {
 
+    private static final Logger log = LoggerFactory.getLogger(BackpressureMonitorService.class);
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final ConsumerLagService lagService;
+
     // Contadores para monitoramento
     private final AtomicInteger mensagensRecebidas = new AtomicInteger(0);
     private final AtomicInteger mensagensProcessadas = new AtomicInteger(0);
@@ -26,12 +41,36 @@ public class BackpressureMonitorService {
     private int pauseDurationMs = 1000;
     
     // Estado do backpressure
-    private boolean backpressureAtivo = false;
-    private long ultimoPico = 0;
+    private volatile boolean backpressureAtivo = false;
+    private volatile long ultimoPico = 0;
+    // Pausa pedida pelo listener ao não encontrar vaga no limitador
+    private volatile boolean pausaPorSaturacao = false;
 
-    public BackpressureMonitorService() {
+    public BackpressureMonitorService(KafkaListenerEndpointRegistry registry,
+                                      AdaptiveConcurrencyLimiter limiter,
+                                      ConsumerLagService lagService,
+                                      MeterRegistry meterRegistry) {
+        this.registry = registry;
+        this.limiter = limiter;
+        this.lagService = lagService;
         this.osBean = ManagementFactory.getOperatingSystemMXBean();
         this.memoryBean = ManagementFactory.getMemoryMXBean();
+
+        Gauge.builder("telemetria.backpressure.ativo", this, m -> m.backpressureAtivo ? 1 : 0)
+            .description("1 quando o backpressure está ativo")
+            .register(meterRegistry);
+        Gauge.builder("telemetria.consumer.pausado", this, m -> m.isPausado() ? 1 : 0)
+            .description("1 quando o container do listener está pausado")
+            .register(meterRegistry);
+        Gauge.builder("telemetria.concorrencia.limite", limiter, AdaptiveConcurrencyLimiter::getLimite)
+            .description("Limite atual do limitador de concorrência AIMD")
+            .register(meterRegistry);
+        Gauge.builder("telemetria.concorrencia.em-execucao", limiter, AdaptiveConcurrencyLimiter::getEmExecucao)
+            .description("Tarefas assíncronas em andamento")
+            .register(meterRegistry);
+        Gauge.builder("telemetria.processo.cpu", this, BackpressureMonitorService::getCpuUsage)
+            .description("Uso de CPU do processo (%)")
+            .register(meterRegistry);
     }
 
     /**
@@ -50,10 +89,18 @@ public class BackpressureMonitorService {
     }
 
     /**
-     * Calcula o lag atual (mensagens não processadas)
+     * Lag atual do consumer group (soma de todas as partições), consultado
+     * periodicamente via AdminClient pelo ConsumerLagService
      */
     public int calcularLag() {
-        return mensagensRecebidas.get() - mensagensProcessadas.get();
+        return (int) Math.min(Integer.MAX_VALUE, lagService.getLagTotal());
+    }
+
+    /**
+     * Lag por partição na última consulta ao AdminClient
+     */
+    public Map<String, Long> getLagPorParticao() {
+        return lagService.getLagPorParticao();
     }
 
     /**
@@ -69,10 +116,14 @@ public class BackpressureMonitorService {
     }
 
     /**
-     * Verifica uso de CPU
+     * Uso de CPU do próprio processo (0-100%). Sem suporte da JVM retorna 0.
      */
     public double getCpuUsage() {
-        return osBean.getSystemLoadAverage() * 100;
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean sunOsBean) {
+            double carga = sunOsBean.getProcessCpuLoad();
+            return carga < 0 ? 0 : carga * 100;
+        }
+        return 0;
     }
 
     /**
@@ -85,70 +136,111 @@ public class BackpressureMonitorService {
     }
 
     /**
-     * Verifica se precisa aplicar backpressure
+     * Verifica se precisa aplicar backpressure.
+     * Lag alto sozinho não justifica pausar (pausar só aumenta o lag); ele pesa
+     * quando o limitador de concorrência também está saturado, ou seja, quando o
+     * gargalo está a jusante do consumer.
      */
     public boolean precisaBackpressure() {
         int lag = calcularLag();
         double cpu = getCpuUsage();
         double memory = getMemoryUsage();
         
-        boolean lagExcedido = lag > lagThreshold;
+        boolean lagExcedido = lag > lagThreshold && limiter.isSaturado();
         boolean cpuExcedido = cpu > cpuThreshold;
         boolean memoryExcedido = memory > memoryThreshold;
         
         if (lagExcedido || cpuExcedido || memoryExcedido) {
             if (!backpressureAtivo) {
-                System.out.println("🚨 BACKPRESSURE ATIVADO!");
-                System.out.println("   - Lag: " + lag + " mensagens (limite: " + lagThreshold + ")");
-                System.out.println("   - CPU: " + String.format("%.1f", cpu) + "% (limite: " + cpuThreshold + "%)");
-                System.out.println("   - Memória: " + String.format("%.1f", memory) + "% (limite: " + memoryThreshold + "%)");
+                log.warn("🚨 Backpressure ativado - lag: {} (limite {}), concorrência: {}/{}, CPU: {}% (limite {}%), memória: {}% (limite {}%)",
+                    lag, lagThreshold, limiter.getEmExecucao(), limiter.getLimite(),
+                    String.format("%.1f", cpu), cpuThreshold, String.format("%.1f", memory), memoryThreshold);
                 backpressureAtivo = true;
                 ultimoPico = System.currentTimeMillis();
             }
             return true;
         }
         
-        if (backpressureAtivo) {
-            System.out.println("✅ Backpressure desativado - sistema normalizado");
+        // Mantém pausado pelo tempo mínimo para evitar liga/desliga
+        if (backpressureAtivo && System.currentTimeMillis() - ultimoPico >= pauseDurationMs) {
+            log.info("✅ Backpressure desativado - sistema normalizado");
             backpressureAtivo = false;
         }
         
-        return false;
+        return backpressureAtivo;
+    }
+
+    /**
+     * Avalia periodicamente e pausa/retoma as partições do container do listener.
+     * O pause do Spring Kafka mantém o consumer fazendo poll (sem rebalance),
+     * apenas sem receber registros.
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void avaliarBackpressure() {
+        MessageListenerContainer container = getContainer();
+        if (container == null || !container.isRunning()) return;
+
+        // A pausa por saturação dura enquanto o limitador continuar sem vagas
+        boolean saturado = pausaPorSaturacao && limiter.isSaturado();
+        if (!saturado) {
+            pausaPorSaturacao = false;
+        }
+
+        if (precisaBackpressure() || saturado) {
+            if (!container.isPauseRequested()) {
+                log.info("⏸️ Pausando partições do listener {}", TelemetriaKafkaConsumer.LISTENER_ID);
+                container.pause();
+            }
+        } else if (container.isPauseRequested()) {
+            log.info("▶️ Retomando partições do listener {}", TelemetriaKafkaConsumer.LISTENER_ID);
+            container.resume();
+        }
     }
 
     /**
-     * Aplica backpressure (pausa a execução)
+     * Chamado pela thread do listener quando o limitador não tem vaga: pausa o
+     * container já no próximo poll, sem esperar a avaliação periódica. A
+     * retomada fica com avaliarBackpressure quando o limitador desafoga.
      */
-    public void aplicarBackpressure() throws InterruptedException {
-        if (precisaBackpressure()) {
-            System.out.println("⏸️ Aplicando backpressure - pausa de " + pauseDurationMs + "ms");
-            Thread.sleep(pauseDurationMs);
+    public void pausarPorSaturacao() {
+        MessageListenerContainer container = getContainer();
+        if (container == null || !container.isRunning()) return;
+
+        pausaPorSaturacao = true;
+        if (!container.isPauseRequested()) {
+            log.info("⏸️ Limitador saturado ({}/{}) - pausando partições do listener {}",
+                limiter.getEmExecucao(), limiter.getLimite(), TelemetriaKafkaConsumer.LISTENER_ID);
+            container.pause();
         }
     }
 
+    /**
+     * Indica se o container está com pausa solicitada
+     */
+    public boolean isPausado() {
+        MessageListenerContainer container = getContainer();
+        return container != null && container.isPauseRequested();
+    }
+
+    private MessageListenerContainer getContainer() {
+        return registry.getListenerContainer(TelemetriaKafkaConsumer.LISTENER_ID);
+    }
+
     /**
      * Obtém estatísticas detalhadas
      */
     public void imprimirEstatisticas() {
+        if (!log.isInfoEnabled()) return;
+        
         int lag = calcularLag();
         double taxa = calcularTaxaProcessamento();
-        double cpu = getCpuUsage();
-        double memory = getMemoryUsage();
-        
-        System.out.println("\n📊 ESTATÍSTICAS DE BACKPRESSURE");
-        System.out.println("================================");
-        System.out.println("📥 Mensagens recebidas: " + mensagensRecebidas.get());
-        System.out.println("✅ Mensagens processadas: " + mensagensProcessadas.get());
-        System.out.println("⏳ Lag atual: " + lag + " mensagens");
-        System.out.println("⚡ Taxa processamento: " + String.format("%.2f", taxa) + " msg/s");
-        System.out.println("💻 CPU: " + String.format("%.1f", cpu) + "%");
-        System.out.println("🧠 Memória: " + String.format("%.1f", memory) + "%");
-        System.out.println("🚦 Backpressure ativo: " + (backpressureAtivo ? "SIM" : "NÃO"));
+        long tempoEstimado = lag > 0 && taxa > 0 ? (long) (lag / taxa * 1000) : 0;
         
-        if (lag > 0) {
-            long tempoEstimado = (long)(lag / taxa * 1000);
-            System.out.println("⏱️ Tempo estimado para recuperação: " + tempoEstimado + "ms");
-        }
+        log.info("📊 Backpressure: recebidas={} processadas={} lag={} taxa={} msg/s cpu={}% memória={}% " +
+                "ativo={} concorrência={}/{} recuperação estimada={}ms",
+            mensagensRecebidas.get(), mensagensProcessadas.get(), lag, String.format("%.2f", taxa),
+            String.format("%.1f", getCpuUsage()), String.format("%.1f", getMemoryUsage()),
+            backpressureAtivo ? "SIM" : "NÃO", limiter.getEmExecucao(), limiter.getLimite(), tempoEstimado);
     }
 
     // ===== NOVOS MÉTODOS ADICIONADOS =====
@@ -198,6 +290,7 @@ public class BackpressureMonitorService {
         this.memoryThreshold = memoryThreshold; 
     }
     
+    // Tempo mínimo que o container permanece pausado
     public void setPauseDurationMs(int pauseDurationMs) { 
         this.pauseDurationMs = pauseDurationMs; 
     }
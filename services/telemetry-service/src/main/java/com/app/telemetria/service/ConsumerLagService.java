@@ -0,0 +1,148 @@
+package com.app.telemetria.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lag real do consumer group por partição: offset final de cada partição
+ * menos o offset confirmado pelo grupo, consultado via AdminClient.
+ * Publicado como gauge telemetria.consumer.lag{topic,partition}.
+ */
+@Service
+public class ConsumerLagService {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsumerLagService.class);
+
+    private final KafkaAdmin kafkaAdmin;
+    private final MeterRegistry meterRegistry;
+    private final String groupId;
+    private final long timeoutMs;
+
+    private final Map<TopicPartition, AtomicLong> lagPorParticao = new ConcurrentHashMap<>();
+    private final AtomicLong lagTotal = new AtomicLong(0);
+
+    private volatile AdminClient adminClient;
+
+    public ConsumerLagService(KafkaAdmin kafkaAdmin,
+                              MeterRegistry meterRegistry,
+                              @Value("${spring.kafka.consumer.group-id:telemetria-group}") String groupId,
+                              @Value("${telemetria.lag.timeout-ms:5000}") long timeoutMs) {
+        this.kafkaAdmin = kafkaAdmin;
+        this.meterRegistry = meterRegistry;
+        this.groupId = groupId;
+        this.timeoutMs = timeoutMs;
+
+        Gauge.builder("telemetria.consumer.lag.total", lagTotal, AtomicLong::get)
+            .description("Soma do lag do consumer group em todas as partições")
+            .tag("group", groupId)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Atualiza o lag de todas as partições com offset confirmado pelo grupo
+     */
+    @Scheduled(fixedDelayString = "${telemetria.lag.intervalo-ms:10000}")
+    public void atualizarLag() {
+        try {
+            AdminClient admin = getAdminClient();
+
+            Map<TopicPartition, OffsetAndMetadata> confirmados = admin
+                .listConsumerGroupOffsets(groupId)
+                .partitionsToOffsetAndMetadata()
+                .get(timeoutMs, TimeUnit.MILLISECONDS);
+            if (confirmados.isEmpty()) return;
+
+            Map<TopicPartition, OffsetSpec> consulta = new HashMap<>();
+            confirmados.keySet().forEach(tp -> consulta.put(tp, OffsetSpec.latest()));
+
+            Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> finais = admin
+                .listOffsets(consulta)
+                .all()
+                .get(timeoutMs, TimeUnit.MILLISECONDS);
+
+            long total = 0;
+            for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : confirmados.entrySet()) {
+                if (entry.getValue() == null) continue;
+                ListOffsetsResult.ListOffsetsResultInfo fim = finais.get(entry.getKey());
+                if (fim == null) continue;
+
+                long lag = Math.max(0, fim.offset() - entry.getValue().offset());
+                gaugeDaParticao(entry.getKey()).set(lag);
+                total += lag;
+            }
+            lagTotal.set(total);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("⚠️ Não foi possível consultar o lag do grupo {}: {}", groupId, e.getMessage());
+        }
+    }
+
+    /**
+     * Soma do lag de todas as partições na última consulta
+     */
+    public long getLagTotal() {
+        return lagTotal.get();
+    }
+
+    /**
+     * Lag por partição ("topico-particao" -> lag) na última consulta
+     */
+    public Map<String, Long> getLagPorParticao() {
+        Map<String, Long> resultado = new HashMap<>();
+        lagPorParticao.forEach((tp, lag) -> resultado.put(tp.toString(), lag.get()));
+        return resultado;
+    }
+
+    private AtomicLong gaugeDaParticao(TopicPartition tp) {
+        return lagPorParticao.computeIfAbsent(tp, chave -> {
+            AtomicLong valor = new AtomicLong(0);
+            Gauge.builder("telemetria.consumer.lag", valor, AtomicLong::get)
+                .description("Lag do consumer group por partição")
+                .tag("group", groupId)
+                .tag("topic", chave.topic())
+                .tag("partition", String.valueOf(chave.partition()))
+                .register(meterRegistry);
+            return valor;
+        });
+    }
+
+    private AdminClient getAdminClient() {
+        AdminClient admin = adminClient;
+        if (admin == null) {
+            synchronized (this) {
+                if (adminClient == null) {
+                    adminClient = AdminClient.create(kafkaAdmin.getConfigurationProperties());
+                }
+                admin = adminClient;
+            }
+        }
+        return admin;
+    }
+
+    @PreDestroy
+    public void fechar() {
+        if (adminClient != null) {
+            adminClient.close();
+        }
+    }
+}
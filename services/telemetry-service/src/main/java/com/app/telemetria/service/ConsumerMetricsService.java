@@ -0,0 +1,108 @@
+package com.app.telemetria.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Métricas Micrometer do pipeline de consumo (expostas pelo actuator em
+ * /actuator/metrics e /actuator/prometheus).
+ */
+@Service
+public class ConsumerMetricsService {
+
+    /**
+     * Etapas do processamento de um lote no consumer
+     */
+    public enum Etapa {
+        PARSE("parse"),
+        VEICULO("veiculo"),
+        GEOFENCE("geofence"),
+        PERSISTENCIA("persistencia"),
+        ALERTAS("alertas"),
+        CLIMA("clima"),
+        DESVIO("desvio"),
+        ACK("ack");
+
+        private final String tag;
+
+        Etapa(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final Map<Etapa, Timer> timers = new EnumMap<>(Etapa.class);
+    private final Timer timerLote;
+    private final DistributionSummary tamanhoLote;
+    private final Counter processadas;
+    private final Counter descartadas;
+    private final Counter dlq;
+    private final Counter semVaga;
+
+    public ConsumerMetricsService(MeterRegistry registry) {
+        for (Etapa etapa : Etapa.values()) {
+            timers.put(etapa, Timer.builder("telemetria.consumer.etapa")
+                .description("Tempo de cada etapa do processamento do consumer")
+                .tag("etapa", etapa.tag)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry));
+        }
+
+        this.timerLote = Timer.builder("telemetria.consumer.lote")
+            .description("Tempo total de processamento de um lote do Kafka")
+            .publishPercentileHistogram()
+            .register(registry);
+
+        this.tamanhoLote = DistributionSummary.builder("telemetria.consumer.lote.tamanho")
+            .description("Quantidade de registros por lote")
+            .publishPercentileHistogram()
+            .register(registry);
+
+        this.processadas = Counter.builder("telemetria.consumer.mensagens")
+            .tag("resultado", "processada").register(registry);
+        this.descartadas = Counter.builder("telemetria.consumer.mensagens")
+            .tag("resultado", "descartada").register(registry);
+        this.dlq = Counter.builder("telemetria.consumer.mensagens")
+            .tag("resultado", "dlq").register(registry);
+        this.semVaga = Counter.builder("telemetria.concorrencia.sem-vaga")
+            .description("Alertas disparados sem vaga no limitador após o prazo de espera do lote")
+            .register(registry);
+    }
+
+    /**
+     * Registra a duração de uma etapa medida com System.nanoTime()
+     */
+    public void registrar(Etapa etapa, long inicioNanos) {
+        timers.get(etapa).record(System.nanoTime() - inicioNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void registrarLote(int tamanho, long inicioNanos) {
+        tamanhoLote.record(tamanho);
+        timerLote.record(System.nanoTime() - inicioNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void incrementarProcessadas(int quantidade) {
+        processadas.increment(quantidade);
+    }
+
+    public void incrementarDescartadas() {
+        descartadas.increment();
+    }
+
+    public void incrementarDlq() {
+        dlq.increment();
+    }
+
+    public void incrementarSemVaga() {
+        semVaga.increment();
+    }
+}
@@ -1,136 +1,348 @@
 package com.app.telemetria.service;
 
+import com.app.telemetria.entity.AreaCritica;
+import com.app.telemetria.repository.AreaCriticaRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Áreas críticas: regiões onde, dentro de uma janela de horário, o consumer
+ * mantém só uma fração das telemetrias (fator de redução).
+ *
+ * As áreas vêm da tabela areas_criticas e são compiladas num índice imutável
+ * (GradeEspacial sobre as caixas + janelas em segundos do dia e máscara de
+ * dias da semana), trocado por inteiro na recarga (admin API ou
+ * AreaCriticaScheduler). Fora de qualquer área a consulta é uma leitura de
+ * célula; o relógio só é consultado quando o ponto cai numa área, e mesmo
+ * assim é recalculado no máximo uma vez por segundo.
+ */
 @Service
 public class CriticalAreaService {
-    
-    // Configurações de áreas críticas
-    private static final List<AreaCritica> AREAS_CRITICAS = Arrays.asList(
-        // São Paulo (área metropolitana) - horário de pico
-        new AreaCritica(-23.65, -46.75, -23.45, -46.55, "SP", 
-            LocalTime.of(17, 0), LocalTime.of(20, 0), 0.3), // 30% da frequência
-        
-        // Rio de Janeiro - horário comercial
-        new AreaCritica(-23.05, -43.35, -22.75, -43.05, "RJ",
-            LocalTime.of(8, 0), LocalTime.of(18, 0), 0.5), // 50% da frequência
-        
-        // Belo Horizonte - horário de almoço
-        new AreaCritica(-20.0, -44.1, -19.7, -43.7, "BH",
-            LocalTime.of(11, 0), LocalTime.of(14, 0), 0.4) // 40% da frequência
-    );
-    
-    // Estatísticas por veículo
-    private final ConcurrentHashMap<Long, EstatisticasVeiculo> estatisticas = new ConcurrentHashMap<>();
-    
+
+    private static final Logger log = LoggerFactory.getLogger(CriticalAreaService.class);
+
+    private final AreaCriticaRepository areaCriticaRepository;
+
+    private volatile IndiceAreas indice = IndiceAreas.VAZIO;
+    private volatile Relogio relogio = new Relogio(0, 0, 0);
+
+    // Aplicações por área (sobrevivem à recarga enquanto a área existir)
+    private final Map<Long, LongAdder> aplicacoesPorArea = new ConcurrentHashMap<>();
+
+    // Estatísticas por veículo, com retenção limitada; os totais não dependem delas
+    private final Cache<Long, EstatisticasVeiculo> estatisticas;
+    private final LongAdder totalProcessadas = new LongAdder();
+    private final LongAdder totalDescartadas = new LongAdder();
+
+    private final AtomicLong proximoLog = new AtomicLong();
+    private final long intervaloLogMs;
+    private final double celulaGraus;
+
+    public CriticalAreaService(
+            AreaCriticaRepository areaCriticaRepository,
+            @Value("${telemetria.areas-criticas.estatisticas.max-veiculos:10000}") long maxVeiculos,
+            @Value("${telemetria.areas-criticas.estatisticas.expiracao-minutos:60}") long expiracaoMinutos,
+            @Value("${telemetria.areas-criticas.log-intervalo-ms:60000}") long intervaloLogMs,
+            @Value("${telemetria.areas-criticas.celula-graus:0.05}") double celulaGraus) {
+        this.areaCriticaRepository = areaCriticaRepository;
+        this.estatisticas = Caffeine.newBuilder()
+            .maximumSize(maxVeiculos)
+            .expireAfterAccess(Duration.ofMinutes(expiracaoMinutos))
+            .build();
+        this.intervaloLogMs = intervaloLogMs;
+        this.celulaGraus = celulaGraus;
+    }
+
+    // ================ RECARGA ================
+
     /**
-     * Verifica se coordenada está em área crítica
+     * Compila as áreas ativas do banco e troca o índice atual
      */
-    public boolean isAreaCritica(double latitude, double longitude) {
-        for (AreaCritica area : AREAS_CRITICAS) {
-            if (area.contem(latitude, longitude)) {
-                return true;
+    public synchronized void recarregar() {
+        List<AreaCompilada> compiladas = new ArrayList<>();
+        for (AreaCritica area : areaCriticaRepository.findByAtivoTrue()) {
+            String erro = validar(area);
+            if (erro != null) {
+                log.warn("⚠️ Área crítica {} ({}) ignorada: {}", area.getId(), area.getNome(), erro);
+                continue;
             }
+            compiladas.add(new AreaCompilada(area, aplicacoesPorArea.computeIfAbsent(area.getId(), id -> new LongAdder())));
         }
-        return false;
+
+        indice = new IndiceAreas(compiladas.toArray(new AreaCompilada[0]), celulaGraus);
+        aplicacoesPorArea.keySet().retainAll(compiladas.stream().map(a -> a.id).toList());
+        log.debug("🗺️ Áreas críticas recarregadas: {}", compiladas.size());
     }
-    
+
     /**
-     * Obtém fator de redução para uma coordenada
+     * Mensagem de erro se a área não puder ser usada; null se estiver ok
+     */
+    public String validar(AreaCritica area) {
+        if (area.getNome() == null || area.getNome().isBlank()) return "nome é obrigatório";
+        if (area.getLatitudeMin() == null || area.getLatitudeMax() == null
+                || area.getLongitudeMin() == null || area.getLongitudeMax() == null) {
+            return "limites da área são obrigatórios";
+        }
+        if (area.getLatitudeMin() > area.getLatitudeMax() || area.getLongitudeMin() > area.getLongitudeMax()) {
+            return "mínimo maior que o máximo";
+        }
+        if (area.getHoraInicio() == null || area.getHoraFim() == null) return "janela de horário é obrigatória";
+        if (area.getFatorReducao() == null || area.getFatorReducao() < 0 || area.getFatorReducao() > 1) {
+            return "fatorReducao deve estar entre 0 e 1";
+        }
+        try {
+            mascaraDias(area.getDiasSemana());
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    // ================ CONSULTAS (caminho quente) ================
+
+    /**
+     * Verifica se coordenada está em área crítica (qualquer horário)
+     */
+    public boolean isAreaCritica(double latitude, double longitude) {
+        IndiceAreas atual = indice;
+        return atual.primeira(latitude, longitude, null) != null;
+    }
+
+    /**
+     * Obtém fator de redução para uma coordenada; com áreas sobrepostas vale
+     * o menor fator
      */
     public double getFatorReducao(double latitude, double longitude) {
-        LocalTime agora = LocalTime.now();
-        
-        for (AreaCritica area : AREAS_CRITICAS) {
-            if (area.contem(latitude, longitude) && area.emHorarioCritico(agora)) {
-                System.out.println("📍 Área crítica detectada: " + area.nome + 
-                    " - Fator de redução: " + (area.fatorReducao * 100) + "%");
-                return area.fatorReducao;
-            }
+        IndiceAreas atual = indice;
+        if (!atual.temCandidatas(latitude, longitude)) {
+            return 1.0; // Sem redução
         }
-        
-        return 1.0; // Sem redução
+
+        AreaCompilada area = atual.menorFator(latitude, longitude, relogio());
+        if (area == null) return 1.0;
+
+        area.aplicacoes.increment();
+        return area.fatorReducao;
     }
-    
+
     /**
      * Registra processamento de uma mensagem
      */
     public void registrarProcessamento(Long veiculoId, boolean processado) {
-        estatisticas.computeIfAbsent(veiculoId, k -> new EstatisticasVeiculo())
-            .incrementar(processado);
+        (processado ? totalProcessadas : totalDescartadas).increment();
+        estatisticas.get(veiculoId, k -> new EstatisticasVeiculo()).incrementar(processado);
     }
-    
+
+    /**
+     * Segundo do dia e dia da semana atuais, recalculados no máximo uma vez por segundo
+     */
+    private Relogio relogio() {
+        Relogio r = relogio;
+        long agora = System.currentTimeMillis();
+        if (agora < r.validoAte) return r;
+
+        LocalDateTime dataHora = LocalDateTime.now();
+        r = new Relogio(dataHora.toLocalTime().toSecondOfDay(), dataHora.getDayOfWeek().getValue(),
+            agora - agora % 1000 + 1000);
+        relogio = r;
+        return r;
+    }
+
+    // ================ ESTATÍSTICAS ================
+
     /**
-     * Imprime estatísticas de redução
+     * Loga o resumo da redução, no máximo uma vez a cada telemetria.areas-criticas.log-intervalo-ms
      */
     public void imprimirEstatisticas() {
-        System.out.println("\n📊 ESTATÍSTICAS DE REDUÇÃO");
-        System.out.println("============================");
-        
-        estatisticas.forEach((veiculoId, stats) -> {
-            long total = stats.processadas + stats.descartadas;
-            double taxaReducao = total > 0 ? 
-                100.0 * stats.descartadas / total : 0;
-            
-            System.out.printf("Veículo %d: %d processadas, %d descartadas, taxa redução: %.1f%%\n",
-                veiculoId, stats.processadas, stats.descartadas, taxaReducao);
-        });
+        if (!log.isInfoEnabled()) return;
+
+        long agora = System.currentTimeMillis();
+        long proximo = proximoLog.get();
+        if (agora < proximo || !proximoLog.compareAndSet(proximo, agora + intervaloLogMs)) return;
+
+        long processadas = totalProcessadas.sum();
+        long descartadas = totalDescartadas.sum();
+        long total = processadas + descartadas;
+        log.info("📊 Redução em áreas críticas: {} veículos, {} processadas, {} descartadas ({}%)",
+            estatisticas.estimatedSize(), processadas, descartadas,
+            String.format("%.1f", total > 0 ? 100.0 * descartadas / total : 0));
+
+        if (log.isDebugEnabled()) {
+            estatisticas.asMap().forEach((veiculoId, stats) -> {
+                long p = stats.processadas.sum();
+                long d = stats.descartadas.sum();
+                log.debug("Veículo {}: {} processadas, {} descartadas, taxa redução: {}%",
+                    veiculoId, p, d, String.format("%.1f", p + d > 0 ? 100.0 * d / (p + d) : 0));
+            });
+        }
+    }
+
+    public Map<String, Object> getEstatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("areas", indice.areas.length);
+        stats.put("processadas", totalProcessadas.sum());
+        stats.put("descartadas", totalDescartadas.sum());
+        stats.put("veiculosComEstatistica", estatisticas.estimatedSize());
+
+        Map<String, Long> porArea = new LinkedHashMap<>();
+        for (AreaCompilada area : indice.areas) {
+            porArea.put(area.id + " - " + area.nome, area.aplicacoes.sum());
+        }
+        stats.put("aplicacoesPorArea", porArea);
+        return stats;
+    }
+
+    /**
+     * "1,2,3" -> bits 1..7 (ISO); vazio/null = todos os dias
+     */
+    private static int mascaraDias(String dias) {
+        if (dias == null || dias.isBlank()) return 0xFE;
+        int mascara = 0;
+        for (String parte : dias.split(",")) {
+            int dia;
+            try {
+                dia = Integer.parseInt(parte.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("diasSemana inválido: " + dias);
+            }
+            if (dia < 1 || dia > 7) throw new IllegalArgumentException("diasSemana fora de 1..7: " + dias);
+            mascara |= 1 << dia;
+        }
+        return mascara;
     }
-    
+
     // ========== CLASSES INTERNAS ==========
-    
+
+    record Relogio(int segundoDoDia, int diaSemana, long validoAte) {
+    }
+
+    /**
+     * Índice imutável das áreas ativas
+     */
+    private static final class IndiceAreas {
+        static final IndiceAreas VAZIO = new IndiceAreas(new AreaCompilada[0], 1);
+
+        final AreaCompilada[] areas;
+        final GradeEspacial grade;
+
+        IndiceAreas(AreaCompilada[] areas, double celulaGraus) {
+            this.areas = areas;
+            int n = areas.length;
+            double[] minLat = new double[n], maxLat = new double[n], minLon = new double[n], maxLon = new double[n];
+            for (int i = 0; i < n; i++) {
+                minLat[i] = areas[i].minLat;
+                maxLat[i] = areas[i].maxLat;
+                minLon[i] = areas[i].minLon;
+                maxLon[i] = areas[i].maxLon;
+            }
+            this.grade = new GradeEspacial(minLat, maxLat, minLon, maxLon, celulaGraus, 4096);
+        }
+
+        boolean temCandidatas(double lat, double lon) {
+            return grade.candidatos(lat, lon) != null || grade.abrangentes().length > 0;
+        }
+
+        /**
+         * Primeira área que contém o ponto (com relogio != null, só as em horário crítico)
+         */
+        AreaCompilada primeira(double lat, double lon, Relogio relogio) {
+            for (int passo = 0; passo < 2; passo++) {
+                int[] lista = passo == 0 ? grade.candidatos(lat, lon) : grade.abrangentes();
+                if (lista == null) continue;
+                for (int i : lista) {
+                    AreaCompilada a = areas[i];
+                    if (a.contem(lat, lon) && (relogio == null || a.ativa(relogio))) return a;
+                }
+            }
+            return null;
+        }
+
+        AreaCompilada menorFator(double lat, double lon, Relogio relogio) {
+            AreaCompilada melhor = null;
+            for (int passo = 0; passo < 2; passo++) {
+                int[] lista = passo == 0 ? grade.candidatos(lat, lon) : grade.abrangentes();
+                if (lista == null) continue;
+                for (int i : lista) {
+                    AreaCompilada a = areas[i];
+                    if ((melhor == null || a.fatorReducao < melhor.fatorReducao)
+                            && a.contem(lat, lon) && a.ativa(relogio)) {
+                        melhor = a;
+                    }
+                }
+            }
+            return melhor;
+        }
+    }
+
     /**
-     * Representa uma área crítica (bounding box)
+     * Área compilada: caixa, janela em segundos do dia e máscara de dias
      */
-    private static class AreaCritica {
-        double minLat, maxLat, minLon, maxLon;
-        String nome;
-        LocalTime inicioCritico, fimCritico;
-        double fatorReducao; // 0.0 a 1.0
-        
-        AreaCritica(double minLat, double minLon, double maxLat, double maxLon,
-                   String nome, LocalTime inicio, LocalTime fim, double fator) {
-            this.minLat = minLat;
-            this.maxLat = maxLat;
-            this.minLon = minLon;
-            this.maxLon = maxLon;
-            this.nome = nome;
-            this.inicioCritico = inicio;
-            this.fimCritico = fim;
-            this.fatorReducao = fator;
-        }
-        
+    static final class AreaCompilada {
+        final long id;
+        final String nome;
+        final double minLat, maxLat, minLon, maxLon;
+        final int inicio, fim; // segundos do dia, fim inclusivo
+        final int mascaraDias;
+        final double fatorReducao;
+        final LongAdder aplicacoes;
+
+        AreaCompilada(AreaCritica area, LongAdder aplicacoes) {
+            this.id = area.getId();
+            this.nome = area.getNome();
+            this.minLat = area.getLatitudeMin();
+            this.maxLat = area.getLatitudeMax();
+            this.minLon = area.getLongitudeMin();
+            this.maxLon = area.getLongitudeMax();
+            this.inicio = area.getHoraInicio().toSecondOfDay();
+            this.fim = area.getHoraFim().toSecondOfDay();
+            this.mascaraDias = mascaraDias(area.getDiasSemana());
+            this.fatorReducao = area.getFatorReducao();
+            this.aplicacoes = aplicacoes;
+        }
+
         boolean contem(double lat, double lon) {
             return lat >= minLat && lat <= maxLat &&
                    lon >= minLon && lon <= maxLon;
         }
-        
-        boolean emHorarioCritico(LocalTime agora) {
-            return !agora.isBefore(inicioCritico) && !agora.isAfter(fimCritico);
+
+        boolean ativa(Relogio relogio) {
+            int s = relogio.segundoDoDia();
+            int dia = relogio.diaSemana();
+            if (inicio <= fim) return s >= inicio && s <= fim && noDia(dia);
+            // Janela que atravessa a meia-noite (ex.: 22:00 -> 05:00): a parte
+            // depois da meia-noite pertence à janela que começou no dia anterior
+            if (s >= inicio) return noDia(dia);
+            return s <= fim && noDia(dia == 1 ? 7 : dia - 1);
+        }
+
+        private boolean noDia(int diaSemana) {
+            return (mascaraDias & (1 << diaSemana)) != 0;
         }
     }
-    
+
     /**
      * Estatísticas por veículo
      */
-    private static class EstatisticasVeiculo {
-        long processadas = 0;
-        long descartadas = 0;
-        
-        synchronized void incrementar(boolean processado) {
-            if (processado) {
-                processadas++;
-            } else {
-                descartadas++;
-            }
+    private static final class EstatisticasVeiculo {
+        final LongAdder processadas = new LongAdder();
+        final LongAdder descartadas = new LongAdder();
+
+        void incrementar(boolean processado) {
+            (processado ? processadas : descartadas).increment();
         }
     }
 }
- 
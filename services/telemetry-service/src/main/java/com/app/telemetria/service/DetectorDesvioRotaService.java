@@ -2,198 +2,411 @@ package com.app.telemetria.service;
 
 import com.app.telemetria.entity.*;
 import com.app.telemetria.repository.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Detecção de desvio de rota.
+ *
+ * Cada telemetria salva é conferida no próprio consumer contra as rotas em
+ * andamento do veículo (que vêm do EstadoVeiculo). A geometria de cada rota é
+ * pré-processada uma vez (SegmentosRota) e o desvio aberto fica em memória,
+ * então o caminho quente só vai ao banco quando um desvio abre ou fecha.
+ *
+ * Cada monitor guarda um cursor no segmento em que o veículo estava: a
+ * próxima telemetria testa só alguns segmentos ao redor dele e a R-tree fica
+ * para quando o veículo se perde. A mesma projeção dá o progresso ao longo da
+ * rota (ProgressoRota), usado pelo AlertaService para estimar a chegada sem
+ * consultar o routing-service.
+ *
+ * A verificação periódica (DesvioRotaScheduler) virou um watchdog: ela só
+ * olha os veículos com rota em andamento que pararam de enviar telemetria.
+ */
 @Service
 public class DetectorDesvioRotaService {
-    
+
+    private static final Logger log = LoggerFactory.getLogger(DetectorDesvioRotaService.class);
+
     private final RotaRepository rotaRepository;
     private final TelemetriaRepository telemetriaRepository;
     private final DesvioRotaRepository desvioRotaRepository;
     private final GeocodingService geocodingService;
-    
+    private final EstadoVeiculoStore estadoVeiculoStore;
+
+    // rota id -> geometria pré-processada e desvio aberto
+    private final Map<Long, MonitorRota> monitores = new ConcurrentHashMap<>();
+
     // Constantes
-    private static final double RAIO_TERRA = 6371000; // metros
-    private static final double TOLERANCIA_DESVIO = 50.0; // 50 metros
-    
+    private static final String STATUS_EM_ANDAMENTO = "EM_ANDAMENTO";
+    // Teto de posições guardadas por rota na janela de velocidade
+    private static final int MAX_AMOSTRAS_JANELA = 1024;
+
+    @Value("${telemetria.desvio.tolerancia-metros:50}")
+    private double toleranciaDesvio;
+
+    @Value("${telemetria.desvio.silencio-segundos:300}")
+    private long silencioSegundos;
+
+    // Segmentos testados ao redor do cursor antes de recorrer à R-tree
+    @Value("${telemetria.desvio.cursor.janela-frente:10}")
+    private int janelaFrente;
+
+    @Value("${telemetria.desvio.cursor.janela-atras:2}")
+    private int janelaAtras;
+
+    // Janela de tempo da velocidade ao longo da rota; abaixo de janela-minima-segundos não há velocidade medida
+    @Value("${telemetria.desvio.progresso.janela-velocidade-segundos:600}")
+    private long janelaVelocidadeSegundos;
+
+    @Value("${telemetria.desvio.progresso.janela-minima-segundos:60}")
+    private long janelaMinimaSegundos;
+
+    // Fração da velocidade planejada da rota usada como piso na estimativa de chegada
+    @Value("${telemetria.desvio.progresso.fator-velocidade-piso:0.5}")
+    private double fatorVelocidadePiso;
+
     public DetectorDesvioRotaService(
             RotaRepository rotaRepository,
             TelemetriaRepository telemetriaRepository,
             DesvioRotaRepository desvioRotaRepository,
-            GeocodingService geocodingService) {
+            GeocodingService geocodingService,
+            EstadoVeiculoStore estadoVeiculoStore) {
         this.rotaRepository = rotaRepository;
         this.telemetriaRepository = telemetriaRepository;
         this.desvioRotaRepository = desvioRotaRepository;
         this.geocodingService = geocodingService;
+        this.estadoVeiculoStore = estadoVeiculoStore;
     }
-    
-    @Transactional
-    public void verificarDesviosAtivos() {
-        // Busca rotas em andamento
-        List<Rota> rotasAtivas = rotaRepository.findByStatus("EM_ANDAMENTO");
-        
-        for (Rota rota : rotasAtivas) {
-            verificarDesvioParaRota(rota);
-        }
-    }
-    
-    private void verificarDesvioParaRota(Rota rota) {
-        // Busca última telemetria do veículo
-    	Telemetria ultimaTelemetria = telemetriaRepository
-    		    .findUltimaTelemetriaByVeiculo(rota.getVeiculo())
-    		    .orElse(null);
-    	
-        if (ultimaTelemetria == null) return;
-        
-        // Calcula distância até a rota planejada
-        double distanciaAteRota = calcularDistanciaAteRota(
-            ultimaTelemetria.getLatitude(),
-            ultimaTelemetria.getLongitude(),
-            rota
-        );
-        
-        // Verifica se está em desvio
-        if (distanciaAteRota > TOLERANCIA_DESVIO) {
-            registrarDesvio(rota, ultimaTelemetria, distanciaAteRota);
-        } else {
-            verificarRetornoRota(rota, ultimaTelemetria);
-        }
-    }
-    
-    private double calcularDistanciaAteRota(double lat, double lng, Rota rota) {
-        // Implementação simplificada - distância ponto a linha
-        // Implementação de uma biblioteca de geometria como JTS
-        
-        double distanciaMinima = Double.MAX_VALUE;
-        
-        // Pontos da rota (e necessario ter a lista de pontos)
-        List<PontoRota> pontos = obterPontosRota(rota);
-        
-        for (int i = 0; i < pontos.size() - 1; i++) {
-            PontoRota p1 = pontos.get(i);
-            PontoRota p2 = pontos.get(i + 1);
-            
-            double distancia = distanciaPontoParaSegmento(
-                lat, lng,
-                p1.getLatitude(), p1.getLongitude(),
-                p2.getLatitude(), p2.getLongitude()
-            );
-            
-            distanciaMinima = Math.min(distanciaMinima, distancia);
-        }
-        
-        return distanciaMinima;
-    }
-    
-    private double distanciaPontoParaSegmento(
-            double px, double py,
-            double x1, double y1,
-            double x2, double y2) {
-        
-        // Algoritmo para distância de ponto a segmento de reta
-        double A = px - x1;
-        double B = py - y1;
-        double C = x2 - x1;
-        double D = y2 - y1;
-        
-        double dot = A * C + B * D;
-        double len_sq = C * C + D * D;
-        double param = len_sq != 0 ? dot / len_sq : -1;
-        
-        double xx, yy;
-        
-        if (param < 0) {
-            xx = x1;
-            yy = y1;
-        } else if (param > 1) {
-            xx = x2;
-            yy = y2;
+
+    // ================ CAMINHO QUENTE (consumer) ================
+
+    /**
+     * Confere uma telemetria já persistida contra as rotas em andamento do
+     * veículo e a rota da viagem ativa
+     */
+    public void verificarTelemetria(EstadoVeiculo estado, Telemetria telemetria) {
+        if (telemetria.getLatitude() == null || telemetria.getLongitude() == null) return;
+
+        List<Rota> rotas = estado.getRotasAtivas();
+        for (Rota rota : rotas) {
+            verificarRota(rota, telemetria);
+        }
+
+        Viagem viagem = estado.getViagemAtiva();
+        Rota rotaViagem = viagem != null ? viagem.getRota() : null;
+        if (rotaViagem != null && rotaViagem.getId() != null && !contem(rotas, rotaViagem.getId())) {
+            verificarRota(rotaViagem, telemetria);
+        }
+    }
+
+    private void verificarRota(Rota rota, Telemetria telemetria) {
+        try {
+            verificar(obterMonitor(rota), telemetria);
+        } catch (Exception e) {
+            // Falha no desvio não pode derrubar o lote
+            log.error("❌ Erro ao verificar desvio da rota {}: {}", rota.getId(), e.getMessage());
+        }
+    }
+
+    private static boolean contem(List<Rota> rotas, Long rotaId) {
+        for (Rota rota : rotas) {
+            if (rotaId.equals(rota.getId())) return true;
+        }
+        return false;
+    }
+
+    private void verificar(MonitorRota monitor, Telemetria telemetria) {
+        synchronized (monitor) {
+            // Pontos fora de ordem ou repetidos não reabrem/fecham desvio
+            LocalDateTime dataHora = telemetria.getDataHora();
+            if (dataHora != null && monitor.ultimaDataHora != null && !dataHora.isAfter(monitor.ultimaDataHora)) {
+                return;
+            }
+
+            SegmentosRota.Proximidade proximidade = monitor.segmentos.maisProximoPerto(
+                telemetria.getLatitude(), telemetria.getLongitude(),
+                monitor.cursor, janelaAtras, janelaFrente, toleranciaDesvio);
+            if (proximidade == null) return;
+            double distanciaAteRota = proximidade.distanciaMetros();
+
+            atualizarProgresso(monitor, proximidade, dataHora);
+            if (dataHora != null) monitor.ultimaDataHora = dataHora;
+            monitor.atualizadoEm = System.currentTimeMillis();
+            monitor.silencioNotificado = false;
+
+            if (distanciaAteRota > toleranciaDesvio) {
+                registrarDesvio(monitor, telemetria, distanciaAteRota);
+            } else {
+                verificarRetornoRota(monitor);
+            }
+        }
+    }
+
+    /**
+     * Monitor da rota, montado na primeira telemetria (geometria + desvio aberto no banco)
+     */
+    private MonitorRota obterMonitor(Rota rota) {
+        return monitores.computeIfAbsent(rota.getId(), id -> {
+            MonitorRota monitor = new MonitorRota(rota, montarSegmentos(rota));
+            monitor.desvioAberto = desvioRotaRepository.findByRotaAndResolvidoFalse(rota).orElse(null);
+            return monitor;
+        });
+    }
+
+    /**
+     * Avança o cursor e o progresso. Fora da rota o cursor e o percorrido ficam
+     * onde estavam (a projeção não significa avanço); só a distância até a
+     * rota é atualizada.
+     */
+    private void atualizarProgresso(MonitorRota monitor, SegmentosRota.Proximidade proximidade, LocalDateTime dataHora) {
+        ProgressoRota anterior = monitor.progresso;
+        SegmentosRota segmentos = monitor.segmentos;
+        double comprimento = segmentos.getComprimentoTotal();
+        LocalDateTime agora = dataHora != null ? dataHora : LocalDateTime.now();
+
+        boolean naRota = proximidade.distanciaMetros() <= toleranciaDesvio;
+        double percorrido;
+        double velocidade;
+        if (naRota) {
+            monitor.cursor = proximidade.segmento();
+            percorrido = segmentos.distanciaAoLongo(proximidade);
+            velocidade = velocidadeNaJanela(monitor, percorrido, agora);
+        } else if (anterior != null) {
+            percorrido = anterior.percorridoMetros();
+            velocidade = anterior.velocidadeMediaMs();
         } else {
-            xx = x1 + param * C;
-            yy = y1 + param * D;
-        }
-        
-        double dx = px - xx;
-        double dy = py - yy;
-        
-        return Math.sqrt(dx * dx + dy * dy) * 111320; // Converte graus para metros (aproximado)
-    }
-    
-    private void registrarDesvio(Rota rota, Telemetria telemetria, double distancia) {
-        // Verifica se já existe um desvio ativo para esta rota
-        DesvioRota desvioAtivo = desvioRotaRepository
-            .findByRotaAndResolvidoFalse(rota)
-            .orElse(null);
-        
-        if (desvioAtivo == null) {
-            // Cria novo registro de desvio
-            DesvioRota desvio = new DesvioRota();
-            desvio.setRota(rota);
-            desvio.setVeiculo(rota.getVeiculo());
-            desvio.setLatitudeDesvio(telemetria.getLatitude());
-            desvio.setLongitudeDesvio(telemetria.getLongitude());
-            desvio.setDistanciaDesvio(distancia);
-            desvio.setDataHoraDesvio(LocalDateTime.now());
-            desvio.setResolvido(false);
-            
-            desvioRotaRepository.save(desvio);
-            
-            // Dispara notificação
-            notificarDesvio(desvio);
-        }
-    }
-    
-    private void verificarRetornoRota(Rota rota, Telemetria telemetria) {
-        // Verifica se havia um desvio ativo
-        DesvioRota desvioAtivo = desvioRotaRepository
-            .findByRotaAndResolvidoFalse(rota)
-            .orElse(null);
-        
-        if (desvioAtivo != null) {
-            desvioAtivo.setResolvido(true);
-            desvioAtivo.setDataHoraRetorno(LocalDateTime.now());
-            desvioRotaRepository.save(desvioAtivo);
-            
-            // Notifica retorno à rota
-            notificarRetorno(rota);
-        }
-    }
-    
+            percorrido = 0;
+            velocidade = 0;
+        }
+
+        monitor.progresso = new ProgressoRota(
+            monitor.rota.getId(),
+            monitor.rota.getVeiculo() != null ? monitor.rota.getVeiculo().getId() : null,
+            monitor.cursor,
+            percorrido,
+            Math.max(0, comprimento - percorrido),
+            comprimento > 0 ? Math.min(1, percorrido / comprimento) : 0,
+            proximidade.distanciaMetros(),
+            velocidade,
+            fatorVelocidadePiso * monitor.velocidadePlanejadaMs,
+            agora);
+    }
+
+    /**
+     * Registra a posição ao longo da rota e devolve os metros avançados na
+     * janela divididos pela duração dela. A amostra mais antiga mantida é a
+     * última anterior ao início da janela, então o tempo parado entra com o
+     * peso que teve, independente de quantas telemetrias chegaram nele.
+     */
+    private double velocidadeNaJanela(MonitorRota monitor, double percorrido, LocalDateTime agora) {
+        ArrayDeque<AmostraPercorrido> amostras = monitor.amostras;
+        long agoraMs = agora.toInstant(ZoneOffset.UTC).toEpochMilli();
+        AmostraPercorrido ultima = amostras.peekLast();
+        // Recuo por ruído de GPS conta como parado, não como velocidade negativa
+        double avanco = ultima != null ? Math.max(percorrido, ultima.percorridoMetros()) : percorrido;
+        amostras.addLast(new AmostraPercorrido(agoraMs, avanco));
+
+        long inicioJanela = agoraMs - janelaVelocidadeSegundos * 1000;
+        while (amostras.size() > 1) {
+            AmostraPercorrido antiga = amostras.pollFirst();
+            if (amostras.peekFirst().epochMs() > inicioJanela) {
+                amostras.addFirst(antiga);
+                break;
+            }
+        }
+        while (amostras.size() > MAX_AMOSTRAS_JANELA) {
+            amostras.pollFirst();
+        }
+
+        AmostraPercorrido primeira = amostras.peekFirst();
+        long duracaoMs = agoraMs - primeira.epochMs();
+        if (duracaoMs < janelaMinimaSegundos * 1000) return 0;
+        return (avanco - primeira.percorridoMetros()) * 1000.0 / duracaoMs;
+    }
+
+    private void registrarDesvio(MonitorRota monitor, Telemetria telemetria, double distancia) {
+        // Já existe um desvio ativo para esta rota
+        if (monitor.desvioAberto != null) return;
+
+        Rota rota = monitor.rota;
+        DesvioRota desvio = new DesvioRota();
+        desvio.setRota(rota);
+        desvio.setVeiculo(rota.getVeiculo());
+        desvio.setLatitudeDesvio(telemetria.getLatitude());
+        desvio.setLongitudeDesvio(telemetria.getLongitude());
+        desvio.setDistanciaDesvio(distancia);
+        desvio.setDataHoraDesvio(LocalDateTime.now());
+        desvio.setResolvido(false);
+
+        monitor.desvioAberto = desvioRotaRepository.save(desvio);
+
+        // Dispara notificação
+        notificarDesvio(desvio);
+    }
+
+    private void verificarRetornoRota(MonitorRota monitor) {
+        DesvioRota desvioAtivo = monitor.desvioAberto;
+        if (desvioAtivo == null) return;
+
+        desvioAtivo.setResolvido(true);
+        desvioAtivo.setDataHoraRetorno(LocalDateTime.now());
+        desvioRotaRepository.save(desvioAtivo);
+        monitor.desvioAberto = null;
+
+        // Notifica retorno à rota
+        notificarRetorno(monitor.rota);
+    }
+
+    // ================ WATCHDOG ================
+
+    /**
+     * Rotas em andamento cujo veículo está sem telemetria há mais de
+     * telemetria.desvio.silencio-segundos: avisa uma vez por período de
+     * silêncio e confere a última posição gravada no banco (cobre reinício do
+     * serviço e veículos que saíram do estado em memória).
+     */
+    public void verificarVeiculosSilenciosos() {
+        LocalDateTime limite = LocalDateTime.now().minusSeconds(silencioSegundos);
+        List<Rota> rotasAtivas = rotaRepository.findByStatus(STATUS_EM_ANDAMENTO);
+
+        for (Rota rota : rotasAtivas) {
+            if (rota.getVeiculo() == null) continue;
+
+            EstadoVeiculo estado = estadoVeiculoStore.getEstadoEmMemoria(rota.getVeiculo().getId());
+            Telemetria ultima = estado != null ? estado.getUltimaTelemetria() : null;
+            if (ultima != null && ultima.getDataHora() != null && ultima.getDataHora().isAfter(limite)) {
+                continue;
+            }
+
+            try {
+                verificarRotaSilenciosa(rota, limite);
+            } catch (Exception e) {
+                log.error("❌ Erro no watchdog da rota {}: {}", rota.getId(), e.getMessage());
+            }
+        }
+
+        // Descarta monitores de rotas que não estão mais em andamento; rotas de
+        // viagem (que não precisam estar EM_ANDAMENTO) ficam enquanto recebem telemetria
+        Set<Long> idsAtivos = new HashSet<>();
+        rotasAtivas.forEach(r -> idsAtivos.add(r.getId()));
+        long limiteAtualizacao = System.currentTimeMillis() - silencioSegundos * 1000;
+        monitores.entrySet().removeIf(e ->
+            !idsAtivos.contains(e.getKey()) && e.getValue().atualizadoEm < limiteAtualizacao);
+    }
+
+    private void verificarRotaSilenciosa(Rota rota, LocalDateTime limite) {
+        Telemetria ultima = telemetriaRepository.findUltimaTelemetriaByVeiculo(rota.getVeiculo()).orElse(null);
+        MonitorRota monitor = obterMonitor(rota);
+
+        if (ultima != null) {
+            verificar(monitor, ultima);
+        }
+
+        synchronized (monitor) {
+            boolean silencioso = ultima == null || ultima.getDataHora() == null || !ultima.getDataHora().isAfter(limite);
+            if (silencioso && !monitor.silencioNotificado) {
+                monitor.silencioNotificado = true;
+                log.warn("📵 Veículo {} sem telemetria há mais de {}s em rota em andamento ({})",
+                    rota.getVeiculo().getPlaca(), silencioSegundos, rota.getNome());
+            }
+        }
+    }
+
+    /**
+     * Descarta a geometria/estado de uma rota alterada ou removida; é remontado
+     * na próxima telemetria (chamado pelo EstadoVeiculoListener após o commit)
+     */
+    public void aoAlterarRota(Rota rota) {
+        if (rota.getId() != null) {
+            monitores.remove(rota.getId());
+        }
+    }
+
+    public int getTotalRotasMonitoradas() {
+        return monitores.size();
+    }
+
+    /**
+     * Último progresso calculado da rota; null se ela não está sendo monitorada
+     * ou ainda não recebeu telemetria
+     */
+    public ProgressoRota getProgresso(Long rotaId) {
+        MonitorRota monitor = monitores.get(rotaId);
+        return monitor != null ? monitor.progresso : null;
+    }
+
     private void notificarDesvio(DesvioRota desvio) {
         // Implementar notificação (email, push, websocket, etc)
-        String mensagem = String.format(
-            "🚨 DESVIO DE ROTA DETECTADO!\n" +
-            "Rota: %s\n" +
-            "Veículo: %s\n" +
-            "Distância: %.2f metros\n" +
-            "Local: %.6f, %.6f",
+        log.warn("🚨 Desvio de rota detectado - rota: {}, veículo: {}, distância: {} metros, local: {}, {}",
             desvio.getRota().getNome(),
             desvio.getVeiculo().getPlaca(),
-            desvio.getDistanciaDesvio(),
+            String.format("%.2f", desvio.getDistanciaDesvio()),
             desvio.getLatitudeDesvio(),
-            desvio.getLongitudeDesvio()
-        );
-        
-        System.out.println(mensagem);
-        // Aqui você pode integrar com websockets, email, etc
+            desvio.getLongitudeDesvio());
     }
-    
+
     private void notificarRetorno(Rota rota) {
-        String mensagem = String.format(
-            "✅ VEÍCULO RETORNOU À ROTA!\n" +
-            "Rota: %s\n" +
-            "Veículo: %s",
-            rota.getNome(),
-            rota.getVeiculo().getPlaca()
-        );
-        
-        System.out.println(mensagem);
-    }
-    
-    private List<PontoRota> obterPontosRota(Rota rota) {
-        return geocodingService.obterPontosRota(rota);
-    }
-}
\ No newline at end of file
+        log.info("✅ Veículo retornou à rota - rota: {}, veículo: {}", rota.getNome(), rota.getVeiculo().getPlaca());
+    }
+
+    /**
+     * Traçado do routing-service; sem ele, os pontos gravados na rota; sem
+     * eles, a reta origem -> destino
+     */
+    private SegmentosRota montarSegmentos(Rota rota) {
+        GeometriaRota geometria = rota.getGeometria();
+        if (geometria != null && geometria.getTotalPontos() >= 2) {
+            return SegmentosRota.de(geometria);
+        }
+        List<PontoRota> pontos = rota.getPontosRota();
+        if (pontos != null && pontos.size() >= 2) {
+            return SegmentosRota.de(pontos);
+        }
+        return SegmentosRota.de(geocodingService.obterPontosRota(rota));
+    }
+
+    /**
+     * Rota em monitoramento: geometria, desvio aberto, cursor, progresso e
+     * último ponto conferido
+     */
+    private static class MonitorRota {
+        final Rota rota;
+        final SegmentosRota segmentos;
+        // Distância e tempo previstos da rota; 0 se ela não tem previsão
+        final double velocidadePlanejadaMs;
+        // Posições ao longo da rota na janela de velocidade, em ordem de tempo
+        final ArrayDeque<AmostraPercorrido> amostras = new ArrayDeque<>();
+        DesvioRota desvioAberto;
+        LocalDateTime ultimaDataHora;
+        boolean silencioNotificado;
+        int cursor = -1;
+        volatile ProgressoRota progresso;
+        volatile long atualizadoEm = System.currentTimeMillis();
+
+        MonitorRota(Rota rota, SegmentosRota segmentos) {
+            this.rota = rota;
+            this.segmentos = segmentos;
+            this.velocidadePlanejadaMs = velocidadePlanejada(rota);
+        }
+
+        private static double velocidadePlanejada(Rota rota) {
+            Double distanciaKm = rota.getDistanciaPrevista();
+            Integer tempoMinutos = rota.getTempoPrevisto();
+            if (distanciaKm == null || tempoMinutos == null || distanciaKm <= 0 || tempoMinutos <= 0) return 0;
+            return distanciaKm * 1000 / (tempoMinutos * 60.0);
+        }
+    }
+
+    private record AmostraPercorrido(long epochMs, double percorridoMetros) {
+    }
+}
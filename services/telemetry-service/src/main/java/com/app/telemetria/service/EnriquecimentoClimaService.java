@@ -0,0 +1,134 @@
+package com.app.telemetria.service;
+
+import com.app.telemetria.entity.Viagem;
+import com.app.telemetria.service.ConsumerMetricsService.Etapa;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Etapa assíncrona da verificação climática, fora das threads do consumer.
+ *
+ * Cada veículo tem no máximo um pedido pendente: uma telemetria nova antes
+ * do processamento só troca a posição do pedido (coalescência). Os pedidos
+ * vão para um pool próprio com fila limitada; com a fila cheia o pedido é
+ * descartado, e a próxima telemetria do veículo tenta de novo. Nada aqui
+ * participa do commit de offsets do Kafka.
+ */
+@Service
+public class EnriquecimentoClimaService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(EnriquecimentoClimaService.class);
+
+    private final WeatherAlertService weatherAlertService;
+    private final ConsumerMetricsService metrics;
+
+    // Veículo -> posição mais recente ainda não processada
+    private final Map<Long, Pedido> pendentes = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder agendados = new LongAdder();
+    private final LongAdder coalescidos = new LongAdder();
+    private final LongAdder descartados = new LongAdder();
+    private final LongAdder processados = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+
+    public EnriquecimentoClimaService(
+            WeatherAlertService weatherAlertService,
+            ConsumerMetricsService metrics,
+            MeterRegistry registry,
+            @Value("${telemetria.clima.enriquecimento.threads:4}") int threads,
+            @Value("${telemetria.clima.enriquecimento.fila:1000}") int fila) {
+        this.weatherAlertService = weatherAlertService;
+        this.metrics = metrics;
+
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(fila),
+            r -> {
+                Thread t = new Thread(r, "clima-enriquecimento-" + contador.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+        Gauge.builder("telemetria.clima.fila", executor, e -> e.getQueue().size())
+            .description("Pedidos de verificação climática aguardando processamento")
+            .register(registry);
+    }
+
+    /**
+     * Enfileira a verificação climática do veículo sem esperar por ela
+     */
+    public void agendar(Long veiculoId, Double latitude, Double longitude, Viagem viagem) {
+        if (veiculoId == null || latitude == null || longitude == null) return;
+
+        if (pendentes.put(veiculoId, new Pedido(latitude, longitude, viagem)) != null) {
+            // Já há pedido na fila; ele vai usar esta posição
+            coalescidos.increment();
+            return;
+        }
+        try {
+            executor.execute(() -> processar(veiculoId));
+            agendados.increment();
+        } catch (RejectedExecutionException e) {
+            pendentes.remove(veiculoId);
+            descartados.increment();
+            log.debug("⚠️ Fila de verificação climática cheia, pedido do veículo {} descartado", veiculoId);
+        }
+    }
+
+    private void processar(Long veiculoId) {
+        Pedido pedido = pendentes.remove(veiculoId);
+        if (pedido == null) return;
+
+        long inicio = System.nanoTime();
+        try {
+            weatherAlertService.verificarClimaParaVeiculo(
+                veiculoId, pedido.latitude(), pedido.longitude(), pedido.viagem());
+            processados.increment();
+        } catch (Exception e) {
+            falhas.increment();
+            log.warn("❌ Falha na verificação climática do veículo {}: {}", veiculoId, e.getMessage());
+        } finally {
+            metrics.registrar(Etapa.CLIMA, inicio);
+        }
+    }
+
+    public Map<String, Object> getEstatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("agendados", agendados.sum());
+        stats.put("coalescidos", coalescidos.sum());
+        stats.put("descartados", descartados.sum());
+        stats.put("processados", processados.sum());
+        stats.put("falhas", falhas.sum());
+        stats.put("pendentes", pendentes.size());
+        stats.put("fila", executor.getQueue().size());
+        stats.put("ativos", executor.getActiveCount());
+        return stats;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private record Pedido(double latitude, double longitude, Viagem viagem) {
+    }
+}
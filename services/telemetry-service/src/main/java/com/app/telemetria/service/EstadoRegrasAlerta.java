@@ -0,0 +1,77 @@
+package com.app.telemetria.service;
+
+import com.app.telemetria.enums.TipoAlerta;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Estado das regras de alerta de um veículo, guardado no EstadoVeiculo e
+ * avaliado pelo MotorRegrasAlerta: por tipo de alerta, se está aberto,
+ * quando abriu, a contagem de telemetrias consecutivas na direção da
+ * próxima transição e o último disparo.
+ *
+ * O acesso é sincronizado no próprio objeto (as telemetrias de um veículo
+ * podem ser avaliadas em threads diferentes do executor de alertas).
+ */
+public class EstadoRegrasAlerta {
+
+    private final Map<TipoAlerta, Regra> regras = new EnumMap<>(TipoAlerta.class);
+
+    public EstadoRegrasAlerta() {
+        for (TipoAlerta tipo : MotorRegrasAlerta.TIPOS) {
+            regras.put(tipo, new Regra());
+        }
+    }
+
+    Regra regra(TipoAlerta tipo) {
+        return regras.get(tipo);
+    }
+
+    /**
+     * Alerta aberto no banco (carga do estado ou commit de um alerta novo)
+     */
+    public synchronized void marcarAberto(String tipo, LocalDateTime dataHora) {
+        Regra regra = regra(tipo);
+        if (regra == null) return;
+        regra.aberta = true;
+        regra.consecutivas = 0;
+        if (regra.abertaEm == null || (dataHora != null && dataHora.isAfter(regra.abertaEm))) {
+            regra.abertaEm = dataHora;
+        }
+    }
+
+    /**
+     * Último alerta aberto do tipo foi resolvido no banco. Só fecha a regra se
+     * ele é o alerta que a regra abriu (ou mais novo): a resolução atrasada de
+     * um alerta antigo não fecha um alerta novo ainda não gravado.
+     */
+    public synchronized void marcarResolvido(String tipo, LocalDateTime dataHora) {
+        Regra regra = regra(tipo);
+        if (regra == null || !regra.aberta) return;
+        if (regra.abertaEm == null || dataHora == null || !dataHora.isBefore(regra.abertaEm)) {
+            regra.aberta = false;
+            regra.consecutivas = 0;
+        }
+    }
+
+    public synchronized boolean isAberto(TipoAlerta tipo) {
+        Regra regra = regra(tipo);
+        return regra != null && regra.aberta;
+    }
+
+    private Regra regra(String tipo) {
+        for (TipoAlerta t : MotorRegrasAlerta.TIPOS) {
+            if (t.name().equals(tipo)) return regras.get(t);
+        }
+        return null;
+    }
+
+    static final class Regra {
+        boolean aberta;
+        LocalDateTime abertaEm;
+        int consecutivas;
+        long ultimoDisparoMs;
+    }
+}
@@ -0,0 +1,102 @@
+package com.app.telemetria.service;
+
+import com.app.telemetria.entity.Rota;
+import com.app.telemetria.entity.Telemetria;
+import com.app.telemetria.entity.Veiculo;
+import com.app.telemetria.entity.Viagem;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estado "quente" de um veículo mantido em memória pelo EstadoVeiculoStore:
+ * o veículo, a viagem em andamento (com a rota), as rotas em andamento
+ * atribuídas ao veículo, os alertas abertos por tipo, o estado das regras
+ * de alerta e a última telemetria recebida.
+ */
+public class EstadoVeiculo {
+
+    private final Long veiculoId;
+    private volatile Veiculo veiculo;
+    private volatile Viagem viagemAtiva;
+    private volatile Telemetria ultimaTelemetria;
+    // Lista imutável, trocada inteira a cada alteração
+    private volatile List<Rota> rotasAtivas = List.of();
+
+    // id do alerta não resolvido -> tipo e data/hora
+    private final Map<Long, AlertaAberto> alertasAbertos = new ConcurrentHashMap<>();
+    // Acompanha alertasAbertos (aberturas e resoluções feitas fora do motor de regras)
+    private final EstadoRegrasAlerta regrasAlerta = new EstadoRegrasAlerta();
+
+    public EstadoVeiculo(Veiculo veiculo) {
+        this.veiculoId = veiculo.getId();
+        this.veiculo = veiculo;
+    }
+
+    public Long getVeiculoId() { return veiculoId; }
+
+    public Veiculo getVeiculo() { return veiculo; }
+    public void setVeiculo(Veiculo veiculo) { this.veiculo = veiculo; }
+
+    public Viagem getViagemAtiva() { return viagemAtiva; }
+    public void setViagemAtiva(Viagem viagemAtiva) { this.viagemAtiva = viagemAtiva; }
+
+    public Telemetria getUltimaTelemetria() { return ultimaTelemetria; }
+    public void setUltimaTelemetria(Telemetria ultimaTelemetria) { this.ultimaTelemetria = ultimaTelemetria; }
+
+    public List<Rota> getRotasAtivas() { return rotasAtivas; }
+    public void setRotasAtivas(List<Rota> rotasAtivas) { this.rotasAtivas = List.copyOf(rotasAtivas); }
+
+    public EstadoRegrasAlerta getRegrasAlerta() { return regrasAlerta; }
+
+    public boolean isAlertaAberto(String tipo) {
+        for (AlertaAberto alerta : alertasAbertos.values()) {
+            if (alerta.tipo().equals(tipo)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Data/hora do alerta aberto mais recente do tipo, ou null se não houver
+     */
+    public LocalDateTime getUltimoAlertaAberto(String tipo) {
+        LocalDateTime ultimo = null;
+        for (AlertaAberto alerta : alertasAbertos.values()) {
+            if (alerta.tipo().equals(tipo) && (ultimo == null || alerta.dataHora().isAfter(ultimo))) {
+                ultimo = alerta.dataHora();
+            }
+        }
+        return ultimo;
+    }
+
+    public void registrarAlertaAberto(Long alertaId, String tipo, LocalDateTime dataHora) {
+        AlertaAberto alerta = new AlertaAberto(tipo, dataHora != null ? dataHora : LocalDateTime.now());
+        alertasAbertos.put(alertaId, alerta);
+        regrasAlerta.marcarAberto(tipo, alerta.dataHora());
+    }
+
+    public void registrarAlertaResolvido(Long alertaId) {
+        AlertaAberto alerta = alertasAbertos.remove(alertaId);
+        if (alerta != null && !isAlertaAberto(alerta.tipo())) {
+            regrasAlerta.marcarResolvido(alerta.tipo(), alerta.dataHora());
+        }
+    }
+
+    /**
+     * Resolução em lote (GravacaoAlertasService): todos os alertas abertos do
+     * tipo com data/hora até a informada
+     */
+    public void registrarAlertasResolvidos(String tipo, LocalDateTime ate) {
+        for (Map.Entry<Long, AlertaAberto> entrada : alertasAbertos.entrySet()) {
+            AlertaAberto alerta = entrada.getValue();
+            if (alerta.tipo().equals(tipo) && !alerta.dataHora().isAfter(ate)) {
+                registrarAlertaResolvido(entrada.getKey());
+            }
+        }
+    }
+
+    private record AlertaAberto(String tipo, LocalDateTime dataHora) {
+    }
+}
@@ -0,0 +1,246 @@
+package com.app.telemetria.service;
+
+import com.app.telemetria.entity.Alerta;
+import com.app.telemetria.entity.Rota;
+import com.app.telemetria.entity.Telemetria;
+import com.app.telemetria.entity.Veiculo;
+import com.app.telemetria.entity.Viagem;
+import com.app.telemetria.repository.AlertaRepository;
+import com.app.telemetria.repository.RotaRepository;
+import com.app.telemetria.repository.VeiculoRepository;
+import com.app.telemetria.repository.ViagemRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Estado por veículo em memória para o caminho quente do consumo.
+ *
+ * Um veículo é carregado do banco uma única vez (veículo, viagem em andamento,
+ * rotas em andamento e alertas abertos) e depois mantido em sincronia pelo EstadoVeiculoListener,
+ * que repassa as alterações das entidades após o commit. Assim cada ponto GPS
+ * custa apenas o insert da telemetria.
+ */
+@Service
+public class EstadoVeiculoStore {
+
+    private static final String STATUS_EM_ANDAMENTO = "EM_ANDAMENTO";
+
+    private final VeiculoRepository veiculoRepository;
+    private final ViagemRepository viagemRepository;
+    private final AlertaRepository alertaRepository;
+    private final RotaRepository rotaRepository;
+    private final Cache<Long, EstadoVeiculo> estados;
+
+    public EstadoVeiculoStore(
+            VeiculoRepository veiculoRepository,
+            ViagemRepository viagemRepository,
+            AlertaRepository alertaRepository,
+            RotaRepository rotaRepository,
+            @Value("${telemetria.estado.max-veiculos:50000}") long maxVeiculos,
+            @Value("${telemetria.estado.expiracao-minutos:120}") long expiracaoMinutos) {
+        this.veiculoRepository = veiculoRepository;
+        this.viagemRepository = viagemRepository;
+        this.alertaRepository = alertaRepository;
+        this.rotaRepository = rotaRepository;
+        this.estados = Caffeine.newBuilder()
+            .maximumSize(maxVeiculos)
+            .expireAfterAccess(Duration.ofMinutes(expiracaoMinutos))
+            .build();
+    }
+
+    /**
+     * Retorna o estado dos veículos informados, carregando do banco (em uma
+     * consulta por tabela) apenas os que ainda não estão em memória.
+     * Veículos inexistentes não aparecem no resultado.
+     */
+    public Map<Long, EstadoVeiculo> carregar(Collection<Long> veiculoIds) {
+        Map<Long, EstadoVeiculo> resultado = new HashMap<>();
+        Set<Long> faltantes = new HashSet<>();
+
+        for (Long id : veiculoIds) {
+            EstadoVeiculo estado = estados.getIfPresent(id);
+            if (estado != null) {
+                resultado.put(id, estado);
+            } else {
+                faltantes.add(id);
+            }
+        }
+
+        if (faltantes.isEmpty()) return resultado;
+
+        Map<Long, EstadoVeiculo> novos = new HashMap<>();
+        veiculoRepository.findAllById(faltantes).forEach(v -> novos.put(v.getId(), new EstadoVeiculo(v)));
+
+        if (!novos.isEmpty()) {
+            viagemRepository.findByVeiculoIdInAndStatus(novos.keySet(), STATUS_EM_ANDAMENTO)
+                .forEach(v -> novos.get(v.getVeiculo().getId()).setViagemAtiva(v));
+
+            Map<Long, List<Rota>> rotas = new HashMap<>();
+            rotaRepository.findByVeiculoIdInAndStatus(novos.keySet(), STATUS_EM_ANDAMENTO)
+                .forEach(r -> rotas.computeIfAbsent(r.getVeiculo().getId(), k -> new ArrayList<>()).add(r));
+            rotas.forEach((id, lista) -> novos.get(id).setRotasAtivas(lista));
+
+            alertaRepository.findByVeiculoIdInAndResolvidoFalse(novos.keySet())
+                .forEach(a -> novos.get(a.getVeiculo().getId())
+                    .registrarAlertaAberto(a.getId(), a.getTipo(), a.getDataHora()));
+        }
+
+        // Se outra thread carregou o mesmo veículo nesse meio tempo, mantém o dela
+        novos.forEach((id, estado) -> resultado.put(id, estados.asMap().computeIfAbsent(id, k -> estado)));
+        return resultado;
+    }
+
+    /**
+     * Estado de um único veículo (carrega do banco se necessário), ou null se não existir
+     */
+    public EstadoVeiculo getEstado(Long veiculoId) {
+        if (veiculoId == null) return null;
+        EstadoVeiculo estado = estados.getIfPresent(veiculoId);
+        return estado != null ? estado : carregar(Set.of(veiculoId)).get(veiculoId);
+    }
+
+    /**
+     * Estado do veículo somente se já estiver em memória
+     */
+    public EstadoVeiculo getEstadoEmMemoria(Long veiculoId) {
+        return veiculoId != null ? estados.getIfPresent(veiculoId) : null;
+    }
+
+    /**
+     * Registra a última telemetria persistida do veículo (o insert em lote é
+     * feito via JDBC e não passa pelos listeners JPA)
+     */
+    public void registrarTelemetria(Telemetria telemetria) {
+        if (telemetria.getVeiculo() == null) return;
+        EstadoVeiculo estado = getEstadoEmMemoria(telemetria.getVeiculo().getId());
+        if (estado == null) return;
+
+        Telemetria anterior = estado.getUltimaTelemetria();
+        if (anterior == null || anterior.getDataHora() == null || telemetria.getDataHora() == null
+                || !telemetria.getDataHora().isBefore(anterior.getDataHora())) {
+            estado.setUltimaTelemetria(telemetria);
+        }
+    }
+
+    // ================ SINCRONIZAÇÃO (chamado pelo EstadoVeiculoListener) ================
+
+    public void aoSalvar(Object entidade) {
+        if (entidade instanceof Veiculo veiculo) {
+            EstadoVeiculo estado = getEstadoEmMemoria(veiculo.getId());
+            if (estado != null) estado.setVeiculo(veiculo);
+
+        } else if (entidade instanceof Viagem viagem) {
+            atualizarViagem(viagem);
+
+        } else if (entidade instanceof Alerta alerta) {
+            if (alerta.getVeiculo() == null) return;
+            EstadoVeiculo estado = getEstadoEmMemoria(alerta.getVeiculo().getId());
+            if (estado == null) return;
+
+            if (Boolean.TRUE.equals(alerta.getResolvido())) {
+                estado.registrarAlertaResolvido(alerta.getId());
+            } else {
+                estado.registrarAlertaAberto(alerta.getId(), alerta.getTipo(), alerta.getDataHora());
+            }
+
+        } else if (entidade instanceof Rota rota) {
+            for (EstadoVeiculo estado : estados.asMap().values()) {
+                Viagem viagem = estado.getViagemAtiva();
+                if (viagem != null && viagem.getRota() != null
+                        && Objects.equals(viagem.getRota().getId(), rota.getId())) {
+                    viagem.setRota(rota);
+                }
+            }
+            atualizarRota(rota);
+        }
+    }
+
+    public void aoRemover(Object entidade) {
+        if (entidade instanceof Veiculo veiculo) {
+            estados.invalidate(veiculo.getId());
+
+        } else if (entidade instanceof Viagem viagem) {
+            removerViagemAtiva(viagem);
+
+        } else if (entidade instanceof Alerta alerta) {
+            if (alerta.getVeiculo() == null) return;
+            EstadoVeiculo estado = getEstadoEmMemoria(alerta.getVeiculo().getId());
+            if (estado != null) estado.registrarAlertaResolvido(alerta.getId());
+
+        } else if (entidade instanceof Rota rota) {
+            removerRotaAtiva(rota);
+        }
+    }
+
+    private void atualizarRota(Rota rota) {
+        // A rota pode ter trocado de veículo ou de status
+        removerRotaAtiva(rota);
+
+        if (rota.getVeiculo() != null && STATUS_EM_ANDAMENTO.equals(rota.getStatus())) {
+            EstadoVeiculo estado = getEstadoEmMemoria(rota.getVeiculo().getId());
+            if (estado != null) {
+                List<Rota> rotas = new ArrayList<>(estado.getRotasAtivas());
+                rotas.add(rota);
+                estado.setRotasAtivas(rotas);
+            }
+        }
+    }
+
+    private void removerRotaAtiva(Rota rota) {
+        for (EstadoVeiculo estado : estados.asMap().values()) {
+            List<Rota> rotas = estado.getRotasAtivas();
+            if (rotas.stream().anyMatch(r -> Objects.equals(r.getId(), rota.getId()))) {
+                estado.setRotasAtivas(rotas.stream()
+                    .filter(r -> !Objects.equals(r.getId(), rota.getId()))
+                    .toList());
+            }
+        }
+    }
+
+    private void atualizarViagem(Viagem viagem) {
+        if (viagem.getVeiculo() == null) {
+            removerViagemAtiva(viagem);
+            return;
+        }
+
+        // A viagem pode ter trocado de veículo
+        removerViagemAtiva(viagem);
+
+        if (STATUS_EM_ANDAMENTO.equals(viagem.getStatus())) {
+            EstadoVeiculo estado = getEstadoEmMemoria(viagem.getVeiculo().getId());
+            if (estado != null) estado.setViagemAtiva(viagem);
+        }
+    }
+
+    private void removerViagemAtiva(Viagem viagem) {
+        for (EstadoVeiculo estado : estados.asMap().values()) {
+            Viagem atual = estado.getViagemAtiva();
+            if (atual != null && Objects.equals(atual.getId(), viagem.getId())) {
+                estado.setViagemAtiva(null);
+            }
+        }
+    }
+
+    /**
+     * Descarta todo o estado em memória (será recarregado sob demanda)
+     */
+    public void limpar() {
+        estados.invalidateAll();
+    }
+
+    public long getTotalVeiculos() {
+        return estados.estimatedSize();
+    }
+}
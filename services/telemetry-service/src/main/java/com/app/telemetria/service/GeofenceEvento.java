@@ -0,0 +1,19 @@
+package com.app.telemetria.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entrada ou saída de um veículo numa cerca; publicado como evento Spring
+ * (ApplicationEventPublisher) e no tópico WebSocket /topic/geofences
+ */
+public record GeofenceEvento(
+        Tipo tipo,
+        Long veiculoId,
+        Long geofenceId,
+        String geofenceNome,
+        double latitude,
+        double longitude,
+        LocalDateTime dataHora) {
+
+    public enum Tipo { ENTRADA, SAIDA }
+}
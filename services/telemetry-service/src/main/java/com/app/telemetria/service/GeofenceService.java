@@ -0,0 +1,278 @@
+package com.app.telemetria.service;
+
+import com.app.telemetria.entity.Geofence;
+import com.app.telemetria.entity.Telemetria;
+import com.app.telemetria.exception.BusinessException;
+import com.app.telemetria.exception.ErrorCode;
+import com.app.telemetria.repository.GeofenceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Motor de geofences avaliado no consumer, antes da persistência.
+ *
+ * As cercas ativas e os vínculos de veiculo_geofence ficam num
+ * IndiceGeofences imutável, trocado por inteiro a cada recarga (periódica
+ * pelo GeofenceScheduler e imediata quando uma Geofence é salva), então a
+ * avaliação nunca espera a recarga. Para cada veículo monitorado guarda-se o
+ * conjunto de cercas em que ele está; a diferença para a posição anterior
+ * gera os eventos de ENTRADA e SAIDA.
+ *
+ * geofence_violada na telemetria significa "fora de todas as cercas
+ * vinculadas ao veículo" (cercas como área permitida).
+ */
+@Service
+public class GeofenceService {
+
+    private static final Logger log = LoggerFactory.getLogger(GeofenceService.class);
+
+    private final GeofenceRepository geofenceRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    private volatile IndiceGeofences indice = IndiceGeofences.VAZIO;
+
+    // veículo -> cercas em que está
+    private final Map<Long, EstadoCercas> estados = new ConcurrentHashMap<>();
+
+    private final LongAdder avaliacoes = new LongAdder();
+    private final LongAdder entradas = new LongAdder();
+    private final LongAdder saidas = new LongAdder();
+    private volatile LocalDateTime ultimaRecarga;
+
+    @Value("${telemetria.geofence.celula-graus:0.01}")
+    private double celulaGraus;
+
+    // Cercas que ocupariam mais células que isto vão para a lista testada sempre
+    @Value("${telemetria.geofence.max-celulas-por-cerca:4096}")
+    private int maxCelulas;
+
+    public GeofenceService(GeofenceRepository geofenceRepository,
+                           ApplicationEventPublisher eventPublisher,
+                           SimpMessagingTemplate messagingTemplate) {
+        this.geofenceRepository = geofenceRepository;
+        this.eventPublisher = eventPublisher;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    // ================ CADASTRO ================
+    // Alterações entram no índice logo após o commit (GeofenceListener)
+
+    public List<Geofence> listar() {
+        return geofenceRepository.findAll();
+    }
+
+    public Geofence buscarPorId(Long id) {
+        return geofenceRepository.findById(id)
+            .orElseThrow(() -> new BusinessException(ErrorCode.GEOFENCE_NOT_FOUND, id.toString()));
+    }
+
+    public Geofence criar(Geofence geofence) {
+        geofence.setId(null);
+        if (geofence.getAtivo() == null) geofence.setAtivo(true);
+        validarCadastro(geofence);
+        return geofenceRepository.save(geofence);
+    }
+
+    /**
+     * Atualização parcial: só os campos informados
+     */
+    public Geofence atualizar(Long id, Geofence dados) {
+        Geofence geofence = buscarPorId(id);
+
+        if (dados.getNome() != null) geofence.setNome(dados.getNome());
+        if (dados.getTipo() != null) geofence.setTipo(dados.getTipo());
+        if (dados.getLatitudeCentro() != null) geofence.setLatitudeCentro(dados.getLatitudeCentro());
+        if (dados.getLongitudeCentro() != null) geofence.setLongitudeCentro(dados.getLongitudeCentro());
+        if (dados.getRaio() != null) geofence.setRaio(dados.getRaio());
+        if (dados.getVertices() != null) geofence.setVertices(dados.getVertices());
+        if (dados.getAtivo() != null) geofence.setAtivo(dados.getAtivo());
+
+        validarCadastro(geofence);
+        return geofenceRepository.save(geofence);
+    }
+
+    public void deletar(Long id) {
+        geofenceRepository.delete(buscarPorId(id));
+    }
+
+    private void validarCadastro(Geofence geofence) {
+        if (geofence.getNome() == null || geofence.getNome().trim().isEmpty()) {
+            throw new BusinessException(ErrorCode.VALIDATION_ERROR, "Nome da geofence é obrigatório");
+        }
+        String erro = validar(geofence);
+        if (erro != null) {
+            throw new BusinessException(ErrorCode.VALIDATION_ERROR, erro);
+        }
+    }
+
+    // ================ RECARGA ================
+
+    /**
+     * Monta um índice novo com as cercas e vínculos do banco e troca o atual
+     */
+    public synchronized void recarregar() {
+        List<String> invalidas = new ArrayList<>();
+        IndiceGeofences novo = IndiceGeofences.montar(
+            geofenceRepository.findByAtivoTrue(),
+            geofenceRepository.findVinculosAtivos(),
+            celulaGraus, maxCelulas, invalidas);
+
+        indice = novo;
+        ultimaRecarga = LocalDateTime.now();
+
+        // Veículos sem cerca vinculada não precisam mais de estado
+        estados.keySet().removeIf(veiculoId -> !novo.monitora(veiculoId));
+
+        for (String invalida : invalidas) {
+            log.warn("⚠️ Geofence ignorada: {}", invalida);
+        }
+        log.debug("🗺️ Geofences recarregadas: {} cercas, {} veículos monitorados",
+            novo.getTotalCercas(), novo.getTotalVeiculos());
+    }
+
+    /**
+     * Mensagem de erro se a cerca não puder ser compilada (tipo/vértices
+     * inválidos); null se estiver ok
+     */
+    public String validar(Geofence geofence) {
+        List<String> invalidas = new ArrayList<>();
+        IndiceGeofences.montar(List.of(geofence), List.of(), celulaGraus, maxCelulas, invalidas);
+        return invalidas.isEmpty() ? null : invalidas.get(0);
+    }
+
+    // ================ CAMINHO QUENTE (consumer) ================
+
+    /**
+     * Avalia a posição da telemetria (ainda não persistida): define
+     * geofenceViolada e publica as entradas/saídas em relação à posição anterior
+     */
+    public void avaliar(Telemetria telemetria) {
+        if (telemetria.getVeiculo() == null || telemetria.getLatitude() == null || telemetria.getLongitude() == null) {
+            return;
+        }
+        long veiculoId = telemetria.getVeiculo().getId();
+        IndiceGeofences atual = indice;
+        if (!atual.monitora(veiculoId)) {
+            telemetria.setGeofenceViolada(false);
+            return;
+        }
+
+        avaliacoes.increment();
+        double lat = telemetria.getLatitude();
+        double lon = telemetria.getLongitude();
+        long[] dentro = atual.cercasContendo(veiculoId, lat, lon);
+        telemetria.setGeofenceViolada(dentro.length == 0);
+
+        List<GeofenceEvento> eventos;
+        EstadoCercas estado = estados.computeIfAbsent(veiculoId, id -> new EstadoCercas());
+        synchronized (estado) {
+            // Posição mais antiga que a última avaliada não muda o estado
+            LocalDateTime dataHora = telemetria.getDataHora();
+            if (dataHora != null && estado.ultimaDataHora != null && dataHora.isBefore(estado.ultimaDataHora)) {
+                return;
+            }
+            if (dataHora != null) estado.ultimaDataHora = dataHora;
+
+            long[] anteriores = estado.dentro;
+            estado.dentro = dentro;
+            // Primeira posição (ou reinício do serviço): só inicializa, sem eventos
+            if (anteriores == null || Arrays.equals(anteriores, dentro)) return;
+
+            eventos = diferenca(atual, veiculoId, anteriores, dentro, lat, lon,
+                dataHora != null ? dataHora : LocalDateTime.now());
+        }
+
+        for (GeofenceEvento evento : eventos) {
+            publicar(evento);
+        }
+    }
+
+    /**
+     * Merge de dois arrays ordenados: ids só no novo = ENTRADA, só no anterior =
+     * SAIDA (cercas removidas ou desvinculadas na recarga saem em silêncio)
+     */
+    private List<GeofenceEvento> diferenca(IndiceGeofences atual, long veiculoId, long[] anteriores, long[] novos,
+                                          double lat, double lon, LocalDateTime dataHora) {
+        List<GeofenceEvento> eventos = new ArrayList<>(2);
+        int i = 0, j = 0;
+        while (i < anteriores.length || j < novos.length) {
+            if (j == novos.length || (i < anteriores.length && anteriores[i] < novos[j])) {
+                long id = anteriores[i++];
+                String nome = atual.getNome(id);
+                if (nome != null && atual.vinculada(veiculoId, id)) {
+                    eventos.add(new GeofenceEvento(GeofenceEvento.Tipo.SAIDA, veiculoId, id, nome, lat, lon, dataHora));
+                }
+            } else if (i == anteriores.length || novos[j] < anteriores[i]) {
+                long id = novos[j++];
+                eventos.add(new GeofenceEvento(GeofenceEvento.Tipo.ENTRADA, veiculoId, id, atual.getNome(id), lat, lon, dataHora));
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return eventos;
+    }
+
+    private void publicar(GeofenceEvento evento) {
+        if (evento.tipo() == GeofenceEvento.Tipo.ENTRADA) {
+            entradas.increment();
+            log.info("📍 Veículo {} entrou na geofence {} ({})", evento.veiculoId(), evento.geofenceNome(), evento.geofenceId());
+        } else {
+            saidas.increment();
+            log.info("🚧 Veículo {} saiu da geofence {} ({})", evento.veiculoId(), evento.geofenceNome(), evento.geofenceId());
+        }
+
+        try {
+            eventPublisher.publishEvent(evento);
+            messagingTemplate.convertAndSend("/topic/geofences", evento);
+        } catch (Exception e) {
+            // Falha de um assinante não pode derrubar o lote
+            log.error("❌ Erro ao publicar evento de geofence do veículo {}: {}", evento.veiculoId(), e.getMessage());
+        }
+    }
+
+    // ================ CONSULTAS ================
+
+    /**
+     * Ids das cercas em que o veículo está segundo a última posição avaliada
+     */
+    public long[] getCercasAtuais(Long veiculoId) {
+        EstadoCercas estado = estados.get(veiculoId);
+        if (estado == null) return IndiceGeofences.NENHUMA;
+        synchronized (estado) {
+            return estado.dentro != null ? estado.dentro.clone() : IndiceGeofences.NENHUMA;
+        }
+    }
+
+    public Map<String, Object> getEstatisticas() {
+        IndiceGeofences atual = indice;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cercas", atual.getTotalCercas());
+        stats.put("veiculosMonitorados", atual.getTotalVeiculos());
+        stats.put("veiculosComEstado", estados.size());
+        stats.put("avaliacoes", avaliacoes.sum());
+        stats.put("entradas", entradas.sum());
+        stats.put("saidas", saidas.sum());
+        stats.put("ultimaRecarga", ultimaRecarga);
+        return stats;
+    }
+
+    private static final class EstadoCercas {
+        long[] dentro;
+        LocalDateTime ultimaDataHora;
+    }
+}
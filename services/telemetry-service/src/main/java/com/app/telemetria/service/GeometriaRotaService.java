@@ -0,0 +1,96 @@
+package com.app.telemetria.service;
+
+import com.app.telemetria.client.RoutingClient;
+import com.app.telemetria.dto.RouteResponse;
+import com.app.telemetria.entity.GeometriaRota;
+import com.app.telemetria.entity.Rota;
+import com.app.telemetria.util.SimplificadorGeometria;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Traçado completo da rota: buscado uma vez no routing-service (criação e
+ * início da rota), simplificado por Douglas-Peucker e gravado como encoded
+ * polyline em Rota.geometria. Sem ele o detector de desvio cai na reta
+ * origem -> destino. Distância e tempo do routing-service preenchem a
+ * previsão da rota quando o cadastro não traz nenhuma.
+ */
+@Service
+public class GeometriaRotaService {
+
+    private static final Logger log = LoggerFactory.getLogger(GeometriaRotaService.class);
+
+    private final RoutingClient routingClient;
+
+    // Desvio máximo do traçado simplificado em relação ao original
+    @Value("${telemetria.rota.geometria.tolerancia-metros:5}")
+    private double toleranciaMetros;
+
+    public GeometriaRotaService(RoutingClient routingClient) {
+        this.routingClient = routingClient;
+    }
+
+    /**
+     * Preenche a geometria se a rota ainda não tiver uma e tiver origem e
+     * destino. Falha no routing-service não impede salvar a rota.
+     */
+    public void preencherSeAusente(Rota rota) {
+        if (rota.getGeometria() != null) return;
+        if (rota.getLatitudeOrigem() == null || rota.getLongitudeOrigem() == null
+                || rota.getLatitudeDestino() == null || rota.getLongitudeDestino() == null) {
+            return;
+        }
+
+        try {
+            RouteResponse resposta = routingClient.calcular(
+                rota.getLatitudeOrigem(), rota.getLongitudeOrigem(),
+                rota.getLatitudeDestino(), rota.getLongitudeDestino());
+            GeometriaRota geometria = resposta != null ? converter(resposta.getGeometria()) : null;
+            if (geometria == null) {
+                log.warn("⚠️ Routing-service não devolveu geometria para a rota {}", rota.getNome());
+                return;
+            }
+            rota.setGeometria(geometria);
+            // Sem previsão no cadastro, a do routing-service vira a velocidade planejada da rota
+            if (rota.getDistanciaPrevista() == null && rota.getTempoPrevisto() == null) {
+                rota.setDistanciaPrevista(resposta.getDistanciaKm());
+                rota.setTempoPrevisto((int) Math.ceil(resposta.getDuracaoMinutos()));
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Falha ao buscar geometria da rota {}: {}", rota.getNome(), e.getMessage());
+        }
+    }
+
+    /**
+     * GeoJSON LineString ([[lon,lat],...]) -> geometria simplificada
+     */
+    GeometriaRota converter(JsonNode geojson) {
+        if (geojson == null) return null;
+        JsonNode coordenadas = geojson.get("coordinates");
+        if (coordenadas == null || !coordenadas.isArray() || coordenadas.size() < 2) return null;
+
+        int n = coordenadas.size();
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            JsonNode c = coordenadas.get(i);
+            lon[i] = c.get(0).asDouble();
+            lat[i] = c.get(1).asDouble();
+        }
+
+        int[] mantidos = SimplificadorGeometria.simplificar(lat, lon, toleranciaMetros);
+        double[] latSimplificada = new double[mantidos.length];
+        double[] lonSimplificada = new double[mantidos.length];
+        for (int i = 0; i < mantidos.length; i++) {
+            latSimplificada[i] = lat[mantidos[i]];
+            lonSimplificada[i] = lon[mantidos[i]];
+        }
+
+        log.debug("🗺️ Geometria da rota: {} pontos -> {} após simplificação ({} m)",
+            n, mantidos.length, toleranciaMetros);
+        return GeometriaRota.de(latSimplificada, lonSimplificada, toleranciaMetros);
+    }
+}
@@ -0,0 +1,279 @@
+package com.app.telemetria.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Grade de classificação pré-calculada, um byte por célula, lida de um
+ * arquivo mapeado em memória: a consulta é uma conta de linha/coluna e um
+ * get no buffer, sem rede e sem alocação.
+ *
+ * O arquivo é gerado a partir de um GeoJSON (polígonos de área urbana e
+ * linhas de rodovia, rasterizados na resolução da grade) e guarda o CRC da
+ * fonte, para ser refeito só quando o GeoJSON muda.
+ *
+ * Formato: cabeçalho de 48 bytes (magic, versão, crc da fonte, latMin,
+ * lonMin, celulaGraus, linhas, colunas) seguido de linhas * colunas bytes,
+ * linha a linha a partir do sul.
+ */
+final class GradeClassificacao {
+
+    static final byte SEM_DADOS = 0;
+    static final byte AREA_URBANA = 1;
+    static final byte RODOVIA = 2;
+
+    private static final int MAGIC = 0x54475244; // "TGRD"
+    private static final int VERSAO = 1;
+    private static final int CABECALHO = 48;
+    private static final long MAX_CELULAS = Integer.MAX_VALUE - CABECALHO;
+
+    private final ByteBuffer celulas;
+    private final long crcFonte;
+    private final double latMin, lonMin, celulaGraus;
+    private final int linhas, colunas;
+
+    private GradeClassificacao(ByteBuffer buffer) {
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSAO) {
+            throw new IllegalArgumentException("arquivo não é uma grade de classificação v" + VERSAO);
+        }
+        this.crcFonte = buffer.getLong(8);
+        this.latMin = buffer.getDouble(16);
+        this.lonMin = buffer.getDouble(24);
+        this.celulaGraus = buffer.getDouble(32);
+        this.linhas = buffer.getInt(40);
+        this.colunas = buffer.getInt(44);
+        if (buffer.capacity() != CABECALHO + (long) linhas * colunas) {
+            throw new IllegalArgumentException("tamanho do arquivo não confere com o cabeçalho");
+        }
+        this.celulas = buffer;
+    }
+
+    /**
+     * Mapeia o arquivo (somente leitura)
+     */
+    static GradeClassificacao abrir(Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            return new GradeClassificacao(buffer);
+        }
+    }
+
+    long getCrcFonte() {
+        return crcFonte;
+    }
+
+    int getLinhas() {
+        return linhas;
+    }
+
+    int getColunas() {
+        return colunas;
+    }
+
+    double getCelulaGraus() {
+        return celulaGraus;
+    }
+
+    /**
+     * Classe da célula do ponto; SEM_DADOS fora da extensão da grade
+     */
+    byte classe(double lat, double lon) {
+        int linha = (int) Math.floor((lat - latMin) / celulaGraus);
+        int coluna = (int) Math.floor((lon - lonMin) / celulaGraus);
+        if (linha < 0 || linha >= linhas || coluna < 0 || coluna >= colunas) return SEM_DADOS;
+        return celulas.get(CABECALHO + linha * colunas + coluna);
+    }
+
+    // ================ GERAÇÃO A PARTIR DO GEOJSON ================
+
+    /**
+     * Rasteriza o GeoJSON e grava a grade em destino (via arquivo temporário
+     * + move, então um leitor nunca vê o arquivo pela metade).
+     *
+     * Feições com properties.classe = AREA_URBANA ou RODOVIA; sem classe,
+     * polígonos são área urbana e linhas são rodovia. Rodovias são gravadas
+     * por último e prevalecem sobre a área urbana na mesma célula.
+     */
+    static void gerar(byte[] geojson, long crcFonte, double celulaGraus, int bufferRodoviaCelulas, Path destino)
+            throws IOException {
+        JsonNode raiz = new ObjectMapper().readTree(geojson);
+        JsonNode features = raiz.path("features");
+
+        List<double[][][]> poligonos = new ArrayList<>(); // anéis de {lon[], lat[]}
+        List<double[][]> linhasRodovia = new ArrayList<>(); // {lon[], lat[]}
+        for (JsonNode f : features) {
+            JsonNode geometria = f.path("geometry");
+            String tipo = geometria.path("type").asText();
+            String classe = f.path("properties").path("classe").asText("");
+            JsonNode coords = geometria.path("coordinates");
+            switch (tipo) {
+                case "Polygon" -> {
+                    if (!classe.equals("RODOVIA")) poligonos.add(aneis(coords));
+                }
+                case "MultiPolygon" -> {
+                    if (!classe.equals("RODOVIA")) for (JsonNode p : coords) poligonos.add(aneis(p));
+                }
+                case "LineString" -> {
+                    if (!classe.equals("AREA_URBANA")) linhasRodovia.add(linha(coords));
+                }
+                case "MultiLineString" -> {
+                    if (!classe.equals("AREA_URBANA")) for (JsonNode l : coords) linhasRodovia.add(linha(l));
+                }
+                default -> {
+                    // Pontos e outras geometrias não entram na grade
+                }
+            }
+        }
+
+        // Extensão = caixa de todas as feições, alinhada à grade
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (double[][][] p : poligonos) {
+            for (double[][] anel : p) {
+                for (int i = 0; i < anel[0].length; i++) {
+                    minLon = Math.min(minLon, anel[0][i]); maxLon = Math.max(maxLon, anel[0][i]);
+                    minLat = Math.min(minLat, anel[1][i]); maxLat = Math.max(maxLat, anel[1][i]);
+                }
+            }
+        }
+        for (double[][] l : linhasRodovia) {
+            for (int i = 0; i < l[0].length; i++) {
+                minLon = Math.min(minLon, l[0][i]); maxLon = Math.max(maxLon, l[0][i]);
+                minLat = Math.min(minLat, l[1][i]); maxLat = Math.max(maxLat, l[1][i]);
+            }
+        }
+        if (minLat > maxLat) {
+            throw new IllegalArgumentException("GeoJSON sem polígonos nem linhas");
+        }
+        double margem = celulaGraus * (bufferRodoviaCelulas + 1);
+        double latOrigem = Math.floor((minLat - margem) / celulaGraus) * celulaGraus;
+        double lonOrigem = Math.floor((minLon - margem) / celulaGraus) * celulaGraus;
+        int linhas = (int) Math.ceil((maxLat + margem - latOrigem) / celulaGraus);
+        int colunas = (int) Math.ceil((maxLon + margem - lonOrigem) / celulaGraus);
+        if ((long) linhas * colunas > MAX_CELULAS) {
+            throw new IllegalArgumentException("grade grande demais (" + linhas + " x " + colunas + "); aumente celula-graus");
+        }
+
+        byte[] grade = new byte[linhas * colunas];
+        for (double[][][] p : poligonos) {
+            preencherPoligono(grade, p, latOrigem, lonOrigem, celulaGraus, linhas, colunas);
+        }
+        for (double[][] l : linhasRodovia) {
+            marcarLinha(grade, l, latOrigem, lonOrigem, celulaGraus, linhas, colunas, bufferRodoviaCelulas);
+        }
+
+        ByteBuffer cabecalho = ByteBuffer.allocate(CABECALHO).order(ByteOrder.BIG_ENDIAN);
+        cabecalho.putInt(MAGIC).putInt(VERSAO).putLong(crcFonte)
+            .putDouble(latOrigem).putDouble(lonOrigem).putDouble(celulaGraus)
+            .putInt(linhas).putInt(colunas);
+
+        Path pasta = destino.toAbsolutePath().getParent();
+        Files.createDirectories(pasta);
+        Path temporario = Files.createTempFile(pasta, "grade", ".tmp");
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.WRITE)) {
+            cabecalho.flip();
+            canal.write(new ByteBuffer[] { cabecalho, ByteBuffer.wrap(grade) });
+        }
+        Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static double[][][] aneis(JsonNode poligono) {
+        double[][][] aneis = new double[poligono.size()][][];
+        for (int i = 0; i < poligono.size(); i++) aneis[i] = linha(poligono.get(i));
+        return aneis;
+    }
+
+    private static double[][] linha(JsonNode coords) {
+        double[] lon = new double[coords.size()];
+        double[] lat = new double[coords.size()];
+        for (int i = 0; i < coords.size(); i++) {
+            lon[i] = coords.get(i).get(0).asDouble();
+            lat[i] = coords.get(i).get(1).asDouble();
+        }
+        return new double[][] { lon, lat };
+    }
+
+    /**
+     * Scanline pelo centro de cada linha da grade (regra par-ímpar, então os
+     * furos do polígono ficam de fora)
+     */
+    private static void preencherPoligono(byte[] grade, double[][][] aneis, double latOrigem, double lonOrigem,
+                                          double celula, int linhas, int colunas) {
+        // O anel externo limita as linhas percorridas
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        for (double v : aneis[0][1]) {
+            minLat = Math.min(minLat, v);
+            maxLat = Math.max(maxLat, v);
+        }
+        int linhaIni = Math.max(0, (int) Math.floor((minLat - latOrigem) / celula));
+        int linhaFim = Math.min(linhas - 1, (int) Math.floor((maxLat - latOrigem) / celula));
+
+        double[] cruzamentos = new double[16];
+        for (int linha = linhaIni; linha <= linhaFim; linha++) {
+            double y = latOrigem + (linha + 0.5) * celula;
+            int n = 0;
+            for (double[][] anel : aneis) {
+                double[] lon = anel[0], lat = anel[1];
+                for (int i = 0, j = lon.length - 1; i < lon.length; j = i++) {
+                    if ((lat[i] > y) != (lat[j] > y)) {
+                        if (n == cruzamentos.length) cruzamentos = Arrays.copyOf(cruzamentos, n * 2);
+                        cruzamentos[n++] = lon[i] + (y - lat[i]) * (lon[j] - lon[i]) / (lat[j] - lat[i]);
+                    }
+                }
+            }
+            Arrays.sort(cruzamentos, 0, n);
+            for (int k = 0; k + 1 < n; k += 2) {
+                // Células cujo centro está entre os dois cruzamentos
+                int colIni = Math.max(0, (int) Math.ceil((cruzamentos[k] - lonOrigem) / celula - 0.5));
+                int colFim = Math.min(colunas - 1, (int) Math.floor((cruzamentos[k + 1] - lonOrigem) / celula - 0.5));
+                for (int col = colIni; col <= colFim; col++) {
+                    grade[linha * colunas + col] = AREA_URBANA;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marca as células tocadas pela linha (passo de meia célula) e as
+     * vizinhas até buffer células de distância
+     */
+    private static void marcarLinha(byte[] grade, double[][] linhaRodovia, double latOrigem, double lonOrigem,
+                                    double celula, int linhas, int colunas, int buffer) {
+        double[] lon = linhaRodovia[0], lat = linhaRodovia[1];
+        marcar(grade, lat[0], lon[0], latOrigem, lonOrigem, celula, linhas, colunas, buffer);
+        for (int i = 1; i < lon.length; i++) {
+            double d = Math.max(Math.abs(lon[i] - lon[i - 1]), Math.abs(lat[i] - lat[i - 1]));
+            int passos = Math.max(1, (int) Math.ceil(d / (celula / 2)));
+            for (int p = 1; p <= passos; p++) {
+                double t = (double) p / passos;
+                marcar(grade, lat[i - 1] + (lat[i] - lat[i - 1]) * t, lon[i - 1] + (lon[i] - lon[i - 1]) * t,
+                    latOrigem, lonOrigem, celula, linhas, colunas, buffer);
+            }
+        }
+    }
+
+    private static void marcar(byte[] grade, double lat, double lon, double latOrigem, double lonOrigem,
+                               double celula, int linhas, int colunas, int buffer) {
+        int linha = (int) Math.floor((lat - latOrigem) / celula);
+        int coluna = (int) Math.floor((lon - lonOrigem) / celula);
+        for (int l = Math.max(0, linha - buffer); l <= Math.min(linhas - 1, linha + buffer); l++) {
+            for (int c = Math.max(0, coluna - buffer); c <= Math.min(colunas - 1, coluna + buffer); c++) {
+                grade[l * colunas + c] = RODOVIA;
+            }
+        }
+    }
+}
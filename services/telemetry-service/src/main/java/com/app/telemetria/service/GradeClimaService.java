@@ -0,0 +1,267 @@
+package com.app.telemetria.service;
+
+import com.app.telemetria.entity.GeometriaRota;
+import com.app.telemetria.entity.PontoRota;
+import com.app.telemetria.entity.Rota;
+import com.app.telemetria.entity.Telemetria;
+import com.app.telemetria.entity.Viagem;
+import com.app.telemetria.util.GeoHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Atualização proativa da grade de clima do WeatherAlertService.
+ *
+ * A cada ciclo monta o conjunto de células cobertas pelo trecho restante
+ * (a partir do progresso do DetectorDesvioRotaService, até horizonte-km)
+ * das viagens EM_ANDAMENTO, mais a posição atual de cada veículo e as
+ * células pedidas sem clima desde o ciclo anterior. As células sem clima
+ * ou com clima mais velho que ttl-minutos são ordenadas por prioridade
+ * (sem clima primeiro; depois veículos na célula x idade) e atualizadas
+ * até o orçamento do ciclo, derivado de chamadas-por-minuto; o resto fica
+ * para o próximo ciclo.
+ */
+@Service
+public class GradeClimaService {
+
+    private static final Logger log = LoggerFactory.getLogger(GradeClimaService.class);
+
+    private final ViagemService viagemService;
+    private final DetectorDesvioRotaService detectorDesvioRotaService;
+    private final EstadoVeiculoStore estadoVeiculoStore;
+    private final WeatherAlertService weatherAlertService;
+
+    private final long ttlMs;
+    private final int orcamentoPorCiclo;
+    private final double horizonteMetros;
+    private final int concorrencia;
+    // Passo de amostragem ao longo dos segmentos: meia célula, para não pular nenhuma
+    private final double passoGraus;
+
+    // Um ciclo por vez; o próximo é pulado se as chamadas do anterior ainda não terminaram
+    private final AtomicBoolean emAndamento = new AtomicBoolean();
+
+    private final LongAdder ciclos = new LongAdder();
+    private final LongAdder ciclosPulados = new LongAdder();
+    private final LongAdder celulasAtualizadas = new LongAdder();
+    private final AtomicLong celulasUltimoCiclo = new AtomicLong();
+    private final AtomicLong vencidasUltimoCiclo = new AtomicLong();
+    private final AtomicLong adiadasUltimoCiclo = new AtomicLong();
+
+    public GradeClimaService(
+            ViagemService viagemService,
+            DetectorDesvioRotaService detectorDesvioRotaService,
+            EstadoVeiculoStore estadoVeiculoStore,
+            WeatherAlertService weatherAlertService,
+            @Value("${telemetria.clima.ttl-minutos:10}") long ttlMinutos,
+            @Value("${telemetria.clima.grade.chamadas-por-minuto:50}") int chamadasPorMinuto,
+            @Value("${telemetria.clima.grade.intervalo-ms:60000}") long intervaloMs,
+            @Value("${telemetria.clima.grade.horizonte-km:300}") double horizonteKm,
+            @Value("${telemetria.clima.grade.concorrencia:4}") int concorrencia) {
+        this.viagemService = viagemService;
+        this.detectorDesvioRotaService = detectorDesvioRotaService;
+        this.estadoVeiculoStore = estadoVeiculoStore;
+        this.weatherAlertService = weatherAlertService;
+
+        this.ttlMs = ttlMinutos * 60_000;
+        this.orcamentoPorCiclo = (int) Math.max(1, chamadasPorMinuto * intervaloMs / 60_000);
+        this.horizonteMetros = horizonteKm * 1000;
+        this.concorrencia = concorrencia;
+
+        double[] celula = GeoHash.limites(0, weatherAlertService.getPrecisaoCelula());
+        this.passoGraus = Math.min(celula[1] - celula[0], celula[3] - celula[2]) / 2;
+    }
+
+    /**
+     * Um ciclo de atualização; as chamadas à API seguem em segundo plano
+     */
+    public void atualizar() {
+        if (!emAndamento.compareAndSet(false, true)) {
+            ciclosPulados.increment();
+            log.debug("⏭️ Atualização da grade de clima anterior ainda em andamento");
+            return;
+        }
+        boolean disparado = false;
+        try {
+            ciclos.increment();
+            Map<Long, Integer> veiculosPorCelula = mapearCelulas();
+
+            long agora = System.currentTimeMillis();
+            List<Candidata> vencidas = new ArrayList<>();
+            veiculosPorCelula.forEach((celula, veiculos) -> {
+                long idade = weatherAlertService.idadeClima(celula);
+                if (idade < 0 || idade >= ttlMs) {
+                    vencidas.add(new Candidata(celula, veiculos, idade));
+                }
+            });
+            // Sem clima primeiro; dentro de cada grupo, maior peso primeiro
+            vencidas.sort(Comparator.comparing((Candidata c) -> c.idadeMs() >= 0)
+                .thenComparing(Comparator.comparingDouble(this::peso).reversed()));
+
+            List<Candidata> selecionadas = vencidas.subList(0, Math.min(orcamentoPorCiclo, vencidas.size()));
+            celulasUltimoCiclo.set(veiculosPorCelula.size());
+            vencidasUltimoCiclo.set(vencidas.size());
+            adiadasUltimoCiclo.set(vencidas.size() - selecionadas.size());
+
+            if (selecionadas.isEmpty()) return;
+
+            log.debug("🌤️ Grade de clima: {} células, {} vencidas, atualizando {}",
+                veiculosPorCelula.size(), vencidas.size(), selecionadas.size());
+
+            Flux.fromIterable(new ArrayList<>(selecionadas))
+                .flatMap(c -> weatherAlertService.atualizarCelula(c.celula()), concorrencia)
+                .filter(Boolean::booleanValue)
+                .doFinally(sinal -> emAndamento.set(false))
+                .subscribe(ok -> celulasAtualizadas.increment(),
+                    e -> log.warn("❌ Erro na atualização da grade de clima: {}", e.getMessage()));
+            disparado = true;
+        } finally {
+            if (!disparado) emAndamento.set(false);
+        }
+    }
+
+    /**
+     * Veículos na célula, ponderados pela idade do clima (em TTLs) quando há clima
+     */
+    private double peso(Candidata c) {
+        if (c.idadeMs() < 0) return c.veiculos();
+        return c.veiculos() * ((double) c.idadeMs() / ttlMs);
+    }
+
+    /**
+     * Célula -> veículos cujo corredor (posição atual + trecho restante) passa por ela
+     */
+    private Map<Long, Integer> mapearCelulas() {
+        Map<Long, Integer> veiculosPorCelula = new HashMap<>();
+
+        for (Viagem viagem : viagemService.listarEmAndamento()) {
+            Set<Long> celulas = new HashSet<>();
+
+            Long veiculoId = viagem.getVeiculo() != null ? viagem.getVeiculo().getId() : null;
+            EstadoVeiculo estado = veiculoId != null ? estadoVeiculoStore.getEstadoEmMemoria(veiculoId) : null;
+            Telemetria ultima = estado != null ? estado.getUltimaTelemetria() : null;
+            if (ultima != null && ultima.getLatitude() != null && ultima.getLongitude() != null) {
+                celulas.add(weatherAlertService.celula(ultima.getLatitude(), ultima.getLongitude()));
+            }
+
+            if (viagem.getRota() != null) {
+                try {
+                    adicionarCorredor(viagem.getRota(), celulas);
+                } catch (Exception e) {
+                    log.warn("⚠️ Traçado da rota {} ignorado na grade de clima: {}",
+                        viagem.getRota().getId(), e.getMessage());
+                }
+            }
+
+            for (Long celula : celulas) {
+                veiculosPorCelula.merge(celula, 1, Integer::sum);
+            }
+        }
+
+        // Veículos sem viagem (ou fora do corredor) que pediram clima
+        weatherAlertService.drenarDemanda().forEach((celula, veiculos) ->
+            veiculosPorCelula.merge(celula, veiculos, Math::max));
+
+        return veiculosPorCelula;
+    }
+
+    /**
+     * Células do trecho restante da rota, do segmento atual até o horizonte
+     */
+    private void adicionarCorredor(Rota rota, Set<Long> celulas) {
+        double[][] coordenadas = coordenadas(rota);
+        if (coordenadas == null) return;
+        double[] lat = coordenadas[0];
+        double[] lon = coordenadas[1];
+        int n = lat.length;
+
+        ProgressoRota progresso = rota.getId() != null ? detectorDesvioRotaService.getProgresso(rota.getId()) : null;
+        int inicio = progresso != null ? Math.max(0, Math.min(progresso.segmento(), n - 2)) : 0;
+
+        celulas.add(weatherAlertService.celula(lat[inicio], lon[inicio]));
+        double restante = horizonteMetros;
+        for (int i = inicio; i < n - 1 && restante > 0; i++) {
+            double comprimento = distanciaMetros(lat[i], lon[i], lat[i + 1], lon[i + 1]);
+            // Segmento que passa do horizonte entra só até ele
+            double fracao = comprimento > restante ? restante / comprimento : 1;
+            double dLat = (lat[i + 1] - lat[i]) * fracao;
+            double dLon = (lon[i + 1] - lon[i]) * fracao;
+            int passos = (int) Math.ceil(Math.max(Math.abs(dLat), Math.abs(dLon)) / passoGraus);
+            for (int k = 1; k <= passos; k++) {
+                double f = (double) k / passos;
+                celulas.add(weatherAlertService.celula(lat[i] + dLat * f, lon[i] + dLon * f));
+            }
+            restante -= comprimento;
+        }
+    }
+
+    /**
+     * Traçado do routing-service; sem ele, os pontos da rota; sem eles, a
+     * reta origem -> destino. {latitudes, longitudes} ou null
+     */
+    private static double[][] coordenadas(Rota rota) {
+        GeometriaRota geometria = rota.getGeometria();
+        if (geometria != null && geometria.getTotalPontos() >= 2) {
+            return new double[][] { geometria.getLatitudes(), geometria.getLongitudes() };
+        }
+        List<PontoRota> pontos = rota.getPontosRota();
+        if (pontos != null && pontos.size() >= 2) {
+            List<PontoRota> validos = pontos.stream()
+                .filter(p -> p.getLatitude() != null && p.getLongitude() != null)
+                .toList();
+            if (validos.size() >= 2) {
+                double[] lat = new double[validos.size()];
+                double[] lon = new double[validos.size()];
+                for (int i = 0; i < lat.length; i++) {
+                    lat[i] = validos.get(i).getLatitude();
+                    lon[i] = validos.get(i).getLongitude();
+                }
+                return new double[][] { lat, lon };
+            }
+        }
+        if (rota.getLatitudeOrigem() != null && rota.getLongitudeOrigem() != null
+                && rota.getLatitudeDestino() != null && rota.getLongitudeDestino() != null) {
+            return new double[][] {
+                { rota.getLatitudeOrigem(), rota.getLatitudeDestino() },
+                { rota.getLongitudeOrigem(), rota.getLongitudeDestino() } };
+        }
+        return null;
+    }
+
+    // Equiretangular: basta para descontar o horizonte
+    private static double distanciaMetros(double lat1, double lon1, double lat2, double lon2) {
+        double x = Math.toRadians(lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return Math.sqrt(x * x + y * y) * 6_371_000;
+    }
+
+    public Map<String, Object> getEstatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ciclos", ciclos.sum());
+        stats.put("ciclosPulados", ciclosPulados.sum());
+        stats.put("orcamentoPorCiclo", orcamentoPorCiclo);
+        stats.put("celulasUltimoCiclo", celulasUltimoCiclo.get());
+        stats.put("vencidasUltimoCiclo", vencidasUltimoCiclo.get());
+        stats.put("adiadasUltimoCiclo", adiadasUltimoCiclo.get());
+        stats.put("celulasAtualizadas", celulasAtualizadas.sum());
+        return stats;
+    }
+
+    private record Candidata(long celula, int veiculos, long idadeMs) {
+    }
+}
@@ -0,0 +1,93 @@
+package com.app.telemetria.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grade fixa em graus sobre caixas envolventes: cada célula guarda os
+ * índices das caixas que a tocam, então a consulta de um ponto lê uma única
+ * célula. Caixas que ocupariam mais de maxCelulas células ficam numa lista
+ * à parte (abrangentes), que o chamador testa sempre.
+ *
+ * Células num array com endereçamento aberto (sem boxing na consulta).
+ * Imutável depois de montada.
+ */
+final class GradeEspacial {
+
+    private final double celulaGraus;
+    private final long[] chaves;
+    private final int[][] valores;
+    private final int mascara;
+    private final int[] abrangentes;
+
+    /**
+     * Caixa i = [minLat[i], maxLat[i]] x [minLon[i], maxLon[i]]
+     */
+    GradeEspacial(double[] minLat, double[] maxLat, double[] minLon, double[] maxLon,
+                  double celulaGraus, int maxCelulas) {
+        this.celulaGraus = celulaGraus;
+
+        Map<Long, List<Integer>> porCelula = new HashMap<>();
+        List<Integer> grandes = new ArrayList<>();
+        for (int i = 0; i < minLat.length; i++) {
+            long linIni = celula(minLat[i]), linFim = celula(maxLat[i]);
+            long colIni = celula(minLon[i]), colFim = celula(maxLon[i]);
+            if ((linFim - linIni + 1) * (colFim - colIni + 1) > maxCelulas) {
+                grandes.add(i);
+                continue;
+            }
+            for (long lin = linIni; lin <= linFim; lin++) {
+                for (long col = colIni; col <= colFim; col++) {
+                    porCelula.computeIfAbsent(chave(lin, col), k -> new ArrayList<>()).add(i);
+                }
+            }
+        }
+        this.abrangentes = grandes.stream().mapToInt(Integer::intValue).toArray();
+
+        int capacidade = Integer.highestOneBit(Math.max(4, porCelula.size() * 2 - 1)) << 1;
+        this.chaves = new long[capacidade];
+        this.valores = new int[capacidade][];
+        this.mascara = capacidade - 1;
+        for (Map.Entry<Long, List<Integer>> e : porCelula.entrySet()) {
+            int pos = posicao(e.getKey());
+            while (valores[pos] != null) pos = (pos + 1) & mascara;
+            chaves[pos] = e.getKey();
+            valores[pos] = e.getValue().stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Caixas que tocam a célula do ponto; null se nenhuma
+     */
+    int[] candidatos(double lat, double lon) {
+        long chave = chave(celula(lat), celula(lon));
+        int pos = posicao(chave);
+        while (valores[pos] != null) {
+            if (chaves[pos] == chave) return valores[pos];
+            pos = (pos + 1) & mascara;
+        }
+        return null;
+    }
+
+    /**
+     * Caixas grandes demais para a grade; sempre candidatas
+     */
+    int[] abrangentes() {
+        return abrangentes;
+    }
+
+    private long celula(double graus) {
+        return (long) Math.floor(graus / celulaGraus);
+    }
+
+    private static long chave(long linha, long coluna) {
+        return (linha << 32) ^ (coluna & 0xffffffffL);
+    }
+
+    private int posicao(long chave) {
+        long h = chave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mascara;
+    }
+}
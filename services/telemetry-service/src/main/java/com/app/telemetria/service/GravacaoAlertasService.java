@@ -0,0 +1,350 @@
+package com.app.telemetria.service;
+
+import com.app.telemetria.entity.Alerta;
+import com.app.telemetria.repository.AlertaRepository;
+import com.app.telemetria.repository.AlertaRepositoryCustom.Resolucao;
+import com.app.telemetria.repository.AlertaRepositoryCustom.SomaOcorrencias;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gravação write-behind dos alertas gerados a partir da telemetria.
+ *
+ * Aberturas e resoluções entram num buffer em memória e vão para o banco
+ * em lote, numa transação por gravação: primeiro os inserts (batch JDBC),
+ * depois as ocorrências somadas a linhas já gravadas e por último as
+ * resoluções. Uma abertura do mesmo veículo e
+ * tipo até janela-segundos depois da primeira, sem resolução no meio, não
+ * gera linha nova: entra em ocorrencias da linha existente.
+ *
+ * As linhas pendentes são limitadas em max-pendentes; cheio, quem
+ * enfileira faz a gravação na hora. Em falha o lote volta para o buffer. Só os alertas
+ * novos podem ser descartados (depois de max-tentativas gravações seguidas
+ * com erro ou se não couberem), contados em
+ * telemetria.alertas.escrita.descartados; resoluções nunca são descartadas:
+ * ficam uma por veículo e tipo (a mais recente cobre as anteriores) e são
+ * tentadas de novo a cada gravação até o banco aceitar. As
+ * escritas JDBC não passam pelo EstadoVeiculoListener, então o estado em
+ * memória dos veículos é atualizado aqui depois do commit. O que estiver
+ * no buffer é gravado no desligamento.
+ */
+@Service
+public class GravacaoAlertasService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(GravacaoAlertasService.class);
+
+    private final AlertaRepository alertaRepository;
+    private final EstadoVeiculoStore estadoVeiculoStore;
+    private final TransactionTemplate transactionTemplate;
+    private final long janelaSegundos;
+    private final int maxPendentes;
+    private final int maxTentativas;
+
+    // Protege o buffer e as linhas
+    private final Object trava = new Object();
+    // Uma gravação por vez: a próxima só lê os IDs depois do commit da anterior
+    private final ReentrantLock gravacao = new ReentrantLock();
+
+    // Linhas com insert ou ocorrências a gravar
+    private List<Linha> pendentes = new ArrayList<>();
+    // (veículo, tipo) -> data/hora da resolução mais recente: resolver até ela
+    // cobre as anteriores, então o mapa cresce no máximo um item por par
+    private Map<ChaveAlerta, LocalDateTime> resolucoes = new LinkedHashMap<>();
+    // (veículo, tipo) -> linha aberta que ainda recebe ocorrências, gravada ou não
+    private final Cache<ChaveAlerta, Linha> abertas;
+    private int falhasSeguidas;
+
+    private final LongAdder aberturas = new LongAdder();
+    private final LongAdder coalescidas = new LongAdder();
+    private final LongAdder resolucoesRecebidas = new LongAdder();
+    private final LongAdder gravacoes = new LongAdder();
+    private final LongAdder inseridos = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+    private final Counter descartados;
+
+    public GravacaoAlertasService(
+            AlertaRepository alertaRepository,
+            EstadoVeiculoStore estadoVeiculoStore,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry registry,
+            @Value("${telemetria.alertas.escrita.janela-segundos:60}") long janelaSegundos,
+            @Value("${telemetria.alertas.escrita.max-pendentes:5000}") int maxPendentes,
+            @Value("${telemetria.alertas.escrita.max-tentativas:3}") int maxTentativas) {
+        this.alertaRepository = alertaRepository;
+        this.estadoVeiculoStore = estadoVeiculoStore;
+        this.transactionTemplate = transactionTemplate;
+        this.janelaSegundos = janelaSegundos;
+        this.maxPendentes = maxPendentes;
+        this.maxTentativas = maxTentativas;
+        this.abertas = Caffeine.newBuilder()
+            .maximumSize(maxPendentes)
+            .expireAfterWrite(Duration.ofSeconds(janelaSegundos))
+            .build();
+
+        Gauge.builder("telemetria.alertas.escrita.pendentes", this, GravacaoAlertasService::tamanho)
+            .description("Aberturas e resoluções de alerta aguardando gravação")
+            .register(registry);
+        this.descartados = Counter.builder("telemetria.alertas.escrita.descartados")
+            .description("Alertas novos descartados depois de falhas seguidas na gravação")
+            .register(registry);
+    }
+
+    // ================ BUFFER ================
+
+    /**
+     * Enfileira um alerta novo; dentro da janela de uma linha aberta do mesmo
+     * veículo e tipo vira mais uma ocorrência dela
+     */
+    public void abrir(Alerta alerta) {
+        if (alerta.getDataHora() == null) alerta.setDataHora(LocalDateTime.now());
+        ChaveAlerta chave = new ChaveAlerta(alerta.getVeiculo().getId(), alerta.getTipo());
+        LocalDateTime dataHora = alerta.getDataHora();
+        aberturas.increment();
+
+        boolean cheio;
+        synchronized (trava) {
+            Linha linha = abertas.getIfPresent(chave);
+            if (linha != null && !dataHora.isAfter(linha.alerta.getDataHora().plusSeconds(janelaSegundos))) {
+                linha.ocorrencias++;
+                if (dataHora.isAfter(linha.ultimaOcorrencia)) linha.ultimaOcorrencia = dataHora;
+                coalescidas.increment();
+            } else {
+                linha = new Linha(alerta);
+                abertas.put(chave, linha);
+            }
+            if (!linha.pendente) {
+                linha.pendente = true;
+                pendentes.add(linha);
+            }
+            cheio = pendentes.size() >= maxPendentes;
+        }
+        if (cheio) gravar();
+    }
+
+    /**
+     * Enfileira a resolução dos alertas abertos do veículo e tipo com
+     * data/hora até a informada
+     */
+    public void resolver(Long veiculoId, String tipo, LocalDateTime dataHora) {
+        ChaveAlerta chave = new ChaveAlerta(veiculoId, tipo);
+        resolucoesRecebidas.increment();
+
+        synchronized (trava) {
+            Linha linha = abertas.getIfPresent(chave);
+            // Resolvida, a linha não recebe mais ocorrências
+            if (linha != null && !linha.alerta.getDataHora().isAfter(dataHora)) {
+                abertas.invalidate(chave);
+            }
+            resolucoes.merge(chave, dataHora, GravacaoAlertasService::maisRecente);
+        }
+    }
+
+    private int tamanho() {
+        return pendentes.size() + resolucoes.size();
+    }
+
+    private static LocalDateTime maisRecente(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    // ================ GRAVAÇÃO ================
+
+    /**
+     * Grava o buffer atual numa transação; chamado pelo GravacaoAlertasScheduler,
+     * com o buffer cheio e no desligamento
+     */
+    public void gravar() {
+        gravacao.lock();
+        try {
+            List<Escrita> escritas = new ArrayList<>();
+            List<Resolucao> resolvidas = new ArrayList<>();
+            synchronized (trava) {
+                if (pendentes.isEmpty() && resolucoes.isEmpty()) return;
+                for (Linha linha : pendentes) {
+                    escritas.add(new Escrita(linha, linha.id, linha.ocorrencias, linha.ultimaOcorrencia));
+                    linha.ocorrencias = 0;
+                    linha.pendente = false;
+                }
+                resolucoes.forEach((chave, dataHora) ->
+                    resolvidas.add(new Resolucao(chave.veiculoId(), chave.tipo(), dataHora)));
+                pendentes = new ArrayList<>();
+                resolucoes = new LinkedHashMap<>();
+            }
+
+            List<Alerta> novos = new ArrayList<>();
+            List<SomaOcorrencias> somas = new ArrayList<>();
+            for (Escrita escrita : escritas) {
+                if (escrita.id() == null) {
+                    Alerta alerta = escrita.linha().alerta;
+                    alerta.setOcorrencias(escrita.ocorrencias());
+                    alerta.setUltimaOcorrencia(escrita.ultimaOcorrencia());
+                    novos.add(alerta);
+                } else {
+                    somas.add(new SomaOcorrencias(escrita.id(), escrita.ocorrencias(), escrita.ultimaOcorrencia()));
+                }
+            }
+
+            long inicio = System.currentTimeMillis();
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    alertaRepository.inserirEmLote(novos);
+                    alertaRepository.somarOcorrencias(somas);
+                    alertaRepository.resolverEmLote(resolvidas);
+                });
+            } catch (RuntimeException e) {
+                devolver(escritas, resolvidas, e);
+                return;
+            }
+
+            synchronized (trava) {
+                falhasSeguidas = 0;
+                for (Escrita escrita : escritas) {
+                    if (escrita.id() == null) escrita.linha().id = escrita.linha().alerta.getId();
+                }
+            }
+            gravacoes.increment();
+            inseridos.add(novos.size());
+            atualizarEstado(novos, resolvidas);
+
+            log.debug("💾 Alertas gravados em {}ms: {} novos, {} com ocorrências somadas, {} resoluções",
+                System.currentTimeMillis() - inicio, novos.size(), somas.size(), resolvidas.size());
+        } finally {
+            gravacao.unlock();
+        }
+    }
+
+    /**
+     * Lote que falhou volta para o buffer, na frente do que chegou depois.
+     * Os alertas novos são descartados se não couberem ou depois de
+     * max-tentativas falhas seguidas; as resoluções voltam sempre.
+     */
+    private void devolver(List<Escrita> escritas, List<Resolucao> resolvidas, RuntimeException erro) {
+        falhas.increment();
+        boolean descartar;
+        synchronized (trava) {
+            for (Escrita escrita : escritas) {
+                // IDs atribuídos por um insert que sofreu rollback
+                if (escrita.id() == null) escrita.linha().alerta.setId(null);
+            }
+
+            // Resoluções sempre voltam; uma mais recente que chegou depois prevalece
+            Map<ChaveAlerta, LocalDateTime> todas = new LinkedHashMap<>();
+            for (Resolucao resolucao : resolvidas) {
+                todas.put(new ChaveAlerta(resolucao.veiculoId(), resolucao.tipo()), resolucao.dataHora());
+            }
+            resolucoes.forEach((chave, dataHora) -> todas.merge(chave, dataHora, GravacaoAlertasService::maisRecente));
+            resolucoes = todas;
+
+            falhasSeguidas++;
+            descartar = !escritas.isEmpty()
+                && (falhasSeguidas >= maxTentativas || pendentes.size() + escritas.size() > maxPendentes);
+            if (descartar) {
+                descartados.increment(escritas.size());
+                falhasSeguidas = 0;
+                for (Escrita escrita : escritas) {
+                    // Linha descartada sem insert não recebe mais ocorrências
+                    Alerta alerta = escrita.linha().alerta;
+                    if (escrita.id() == null) {
+                        abertas.asMap().remove(new ChaveAlerta(alerta.getVeiculo().getId(), alerta.getTipo()),
+                            escrita.linha());
+                    }
+                }
+            } else {
+                for (Escrita escrita : escritas) {
+                    Linha linha = escrita.linha();
+                    linha.ocorrencias += escrita.ocorrencias();
+                    if (!linha.pendente) {
+                        linha.pendente = true;
+                        pendentes.add(linha);
+                    }
+                }
+            }
+        }
+        if (descartar) {
+            log.error("❌ Gravação de alertas falhou, {} alertas descartados e {} resoluções mantidas no buffer: {}",
+                escritas.size(), resolvidas.size(), erro.getMessage());
+        } else {
+            log.warn("⚠️ Gravação de alertas falhou, {} alertas e {} resoluções voltam para o buffer: {}",
+                escritas.size(), resolvidas.size(), erro.getMessage());
+        }
+    }
+
+    /**
+     * Aplica no estado em memória o que o EstadoVeiculoListener aplicaria no
+     * commit, na mesma ordem da gravação
+     */
+    private void atualizarEstado(List<Alerta> novos, List<Resolucao> resolvidas) {
+        for (Alerta alerta : novos) {
+            EstadoVeiculo estado = estadoVeiculoStore.getEstadoEmMemoria(alerta.getVeiculo().getId());
+            if (estado != null) estado.registrarAlertaAberto(alerta.getId(), alerta.getTipo(), alerta.getDataHora());
+        }
+        for (Resolucao resolucao : resolvidas) {
+            EstadoVeiculo estado = estadoVeiculoStore.getEstadoEmMemoria(resolucao.veiculoId());
+            if (estado != null) estado.registrarAlertasResolvidos(resolucao.tipo(), resolucao.dataHora());
+        }
+    }
+
+    public Map<String, Object> getEstatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (trava) {
+            stats.put("pendentes", pendentes.size());
+            stats.put("resolucoesPendentes", resolucoes.size());
+        }
+        stats.put("linhasNaJanela", abertas.estimatedSize());
+        stats.put("aberturas", aberturas.sum());
+        stats.put("coalescidas", coalescidas.sum());
+        stats.put("resolucoes", resolucoesRecebidas.sum());
+        stats.put("gravacoes", gravacoes.sum());
+        stats.put("inseridos", inseridos.sum());
+        stats.put("falhas", falhas.sum());
+        stats.put("descartados", (long) descartados.count());
+        return stats;
+    }
+
+    @Override
+    public void destroy() {
+        gravar();
+        log.info("💾 Buffer de alertas gravado no desligamento");
+    }
+
+    /**
+     * Uma linha da tabela alertas; id null até o insert. Campos protegidos por trava.
+     */
+    private static final class Linha {
+        final Alerta alerta;
+        Long id;
+        // Ocorrências ainda não gravadas
+        int ocorrencias = 1;
+        LocalDateTime ultimaOcorrencia;
+        boolean pendente;
+
+        Linha(Alerta alerta) {
+            this.alerta = alerta;
+            this.ultimaOcorrencia = alerta.getDataHora();
+        }
+    }
+
+    private record Escrita(Linha linha, Long id, int ocorrencias, LocalDateTime ultimaOcorrencia) {
+    }
+
+    private record ChaveAlerta(Long veiculoId, String tipo) {
+    }
+}
@@ -2,34 +2,57 @@ package com.app.telemetria.service;
 
 import com.app.telemetria.entity.GeocodingCache;
 import com.app.telemetria.repository.GeocodingCacheRepository;
+import com.app.telemetria.util.GeoHash;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.geo.*;
 import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.stereotype.Service;
 
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Classificação urbano / não urbano por célula de geohash.
+ *
+ * Níveis: Caffeine local (limitado) -> hash Redis por célula grossa
+ * (geocoding:celulas:{geohash grosso}, um campo curto por célula fina) ->
+ * proximidade no GEO de áreas pré-processadas -> banco -> caixas
+ * pré-processadas -> Nominatim. Misses simultâneos da mesma célula esperam o
+ * mesmo carregamento (single-flight). Quando o Nominatim falha o palpite por
+ * proximidade das capitais fica em cache só por ttl-negativo-segundos, e não
+ * vai para o banco.
+ */
 @Service
 public class HybridGeocodingService {
+
+    private static final Logger log = LoggerFactory.getLogger(HybridGeocodingService.class);
     
-    // Cache de nível 1 (local - Caffeine)
-    private final Map<String, Boolean> memoriaCache;
+    // Cache de nível 1 (local - Caffeine), por id da célula
+    private final AsyncCache<Long, Classificacao> memoriaCache;
     
     // Cache de nível 2 (distribuído - Redis)
-    private final ValueOperations<String, String> redisCache;
+    private final HashOperations<String, String, String> redisCelulas;
     private final RedisTemplate<String, String> redisTemplate; // Adicionado para GEO
     private static final String GEO_KEY = "geocaching:urbano";
+    private static final String CELULAS_KEY = "geocoding:celulas:";
     
     private final GeocodingCacheRepository cacheRepository;
     private final HttpClient httpClient;
@@ -44,18 +67,60 @@ public class HybridGeocodingService {
     @Value("${app.cache.redis.ttl:604800}")
     private long redisTtl;
     
+    private final int precisao;
+    private final int precisaoRedis;
+    private final long ttlNegativoSegundos;
+    
+    private final LongAdder hitsLocal = new LongAdder();
+    private final LongAdder hitsRedis = new LongAdder();
+    private final LongAdder carregamentos = new LongAdder();
+    private final LongAdder consultasNominatim = new LongAdder();
+    private final LongAdder provisorias = new LongAdder();
+    
     private static final long MIN_INTERVALO_MS = 1000;
     private long ultimaConsulta = 0;
     
     public HybridGeocodingService(
             RedisTemplate<String, String> redisTemplate,
-            GeocodingCacheRepository cacheRepository) {
+            GeocodingCacheRepository cacheRepository,
+            @Value("${telemetria.geocoding.celula.precisao:7}") int precisao,
+            @Value("${telemetria.geocoding.celula.precisao-redis:4}") int precisaoRedis,
+            @Value("${telemetria.geocoding.cache.max-celulas:100000}") long maxCelulas,
+            @Value("${telemetria.geocoding.cache.expiracao-minutos:360}") long expiracaoMinutos,
+            @Value("${telemetria.geocoding.cache.ttl-negativo-segundos:600}") long ttlNegativoSegundos) {
+        
+        if (precisaoRedis < 1 || precisaoRedis >= precisao || precisao > GeoHash.PRECISAO_MAXIMA) {
+            throw new IllegalArgumentException("precisões do geohash inválidas: célula " + precisao + ", redis " + precisaoRedis);
+        }
+        this.precisao = precisao;
+        this.precisaoRedis = precisaoRedis;
+        this.ttlNegativoSegundos = ttlNegativoSegundos;
+        
+        long ttlLocalNanos = TimeUnit.MINUTES.toNanos(expiracaoMinutos);
+        this.memoriaCache = Caffeine.newBuilder()
+            .maximumSize(maxCelulas)
+            .expireAfter(new Expiry<Long, Classificacao>() {
+                @Override
+                public long expireAfterCreate(Long celula, Classificacao c, long agora) {
+                    return c.provisoria()
+                        ? TimeUnit.MILLISECONDS.toNanos(Math.max(0, c.expiraEm() - System.currentTimeMillis()))
+                        : ttlLocalNanos;
+                }
+                @Override
+                public long expireAfterUpdate(Long celula, Classificacao c, long agora, long restante) {
+                    return expireAfterCreate(celula, c, agora);
+                }
+                @Override
+                public long expireAfterRead(Long celula, Classificacao c, long agora, long restante) {
+                    return restante;
+                }
+            })
+            .buildAsync();
         
-        this.memoriaCache = new ConcurrentHashMap<>();
         this.redisTemplate = redisTemplate;
-        this.redisCache = redisTemplate.opsForValue();
+        this.redisCelulas = redisTemplate.opsForHash();
         this.cacheRepository = cacheRepository;
-        this.httpClient = HttpClient.newHttpClient();
+        this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
         this.objectMapper = new ObjectMapper();
         this.areasUrbanasPreProcessadas = carregarAreasUrbanasPreProcessadas();
         
@@ -64,7 +129,8 @@ public class HybridGeocodingService {
     }
     
     /**
-     * Inicializa o cache GEO com as áreas urbanas pré-processadas
+     * Inicializa o cache GEO com as áreas urbanas pré-processadas (ids fixos,
+     * então o conjunto não cresce entre reinícios)
      */
     private void inicializarGeoCache() {
         for (BoundingBox box : areasUrbanasPreProcessadas) {
@@ -82,85 +148,166 @@ public class HybridGeocodingService {
             double centroLon = (box.minLon + box.maxLon) / 2;
             adicionarLocalGeo(id + "_center", centroLat, centroLon);
         }
-        System.out.println("✅ Cache GEO inicializado com " + areasUrbanasPreProcessadas.size() + " áreas");
+        log.info("✅ Cache GEO inicializado com {} áreas", areasUrbanasPreProcessadas.size());
     }
     
     /**
-     * Método principal - Cache em 3 níveis + GEO
+     * Método principal - classificação da célula do ponto
      */
     public boolean verificarAreaUrbana(Double latitude, Double longitude) {
         if (latitude == null || longitude == null) return false;
         
-        String chaveFormatada = String.format("%.4f,%.4f", latitude, longitude);
-        String chaveRedis = "geocoding:" + chaveFormatada;
+        long celula = GeoHash.codificar(latitude, longitude, precisao);
         
-        // 1. CAFFEINE (Nível 1 - mais rápido)
-        Boolean cached = memoriaCache.get(chaveFormatada);
-        if (cached != null) {
-            return cached;
+        // 1. CAFFEINE (Nível 1 - mais rápido); carregamento em andamento também conta
+        CompletableFuture<Classificacao> existente = memoriaCache.getIfPresent(celula);
+        if (existente != null) {
+            hitsLocal.increment();
+            return aguardar(existente).urbano();
         }
         
+        CompletableFuture<Classificacao> novo = new CompletableFuture<>();
+        existente = memoriaCache.asMap().putIfAbsent(celula, novo);
+        if (existente != null) {
+            hitsLocal.increment();
+            return aguardar(existente).urbano();
+        }
+        
+        // Esta thread carrega; as demais esperam o mesmo future
+        try {
+            novo.complete(carregar(celula, latitude, longitude));
+        } catch (Throwable e) {
+            // Future com falha sai do cache sozinho
+            novo.completeExceptionally(e);
+        }
+        return aguardar(novo).urbano();
+    }
+    
+    private static Classificacao aguardar(CompletableFuture<Classificacao> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+    }
+    
+    /**
+     * Níveis 2 a 6 para uma célula que não está no cache local
+     */
+    private Classificacao carregar(long celula, double latitude, double longitude) {
+        carregamentos.increment();
+        String chaveRedis = CELULAS_KEY + GeoHash.texto(GeoHash.reduzir(celula, precisao, precisaoRedis), precisaoRedis);
+        String campo = GeoHash.texto(celula, precisao).substring(precisaoRedis);
+        
         try {
             // 2. REDIS (Nível 2 - distribuído)
-            String redisValue = redisCache.get(chaveRedis);
-            if (redisValue != null) {
-                boolean resultado = Boolean.parseBoolean(redisValue);
-                memoriaCache.put(chaveFormatada, resultado);
-                return resultado;
+            Classificacao redis = Classificacao.ler(redisCelulas.get(chaveRedis, campo));
+            if (redis != null) {
+                hitsRedis.increment();
+                return redis;
             }
             
             // 2.5. REDIS GEO - Busca por proximidade (cache espacial)
-            boolean isProximoUrbano = isProximoUrbano(latitude, longitude, 5.0); // raio de 5km
-            if (isProximoUrbano) {
-                memoriaCache.put(chaveFormatada, true);
-                redisCache.set(chaveRedis, "true", redisTtl, TimeUnit.SECONDS);
-                return true;
+            if (isProximoUrbano(latitude, longitude, 5.0)) { // raio de 5km
+                return salvarNoRedis(chaveRedis, campo, Classificacao.definitiva(true));
             }
             
         } catch (Exception e) {
-            System.err.println("Erro ao acessar Redis: " + e.getMessage());
+            log.warn("Erro ao acessar Redis: {}", e.getMessage());
         }
         
-        // 3. BANCO DE DADOS (Nível 3 - persistente)
-        Optional<GeocodingCache> cacheDB = cacheRepository.findProximo(latitude, longitude);
+        // 3. BANCO DE DADOS (Nível 3 - persistente), qualquer consulta dentro da célula
+        double[] limites = GeoHash.limites(celula, precisao);
+        Optional<GeocodingCache> cacheDB = cacheRepository
+            .findFirstByLatitudeBetweenAndLongitudeBetweenOrderByDataConsultaDesc(
+                limites[0], limites[1], limites[2], limites[3]);
         if (cacheDB.isPresent()) {
-            boolean resultado = cacheDB.get().getIsUrbano();
-            memoriaCache.put(chaveFormatada, resultado);
-            redisCache.set(chaveRedis, String.valueOf(resultado), redisTtl, TimeUnit.SECONDS);
-            
-            // Também adiciona no GEO cache
-            adicionarLocalGeo("cache:" + cacheDB.get().getId(), latitude, longitude);
-            
-            return resultado;
+            return salvarNoRedis(chaveRedis, campo, Classificacao.definitiva(cacheDB.get().getIsUrbano()));
         }
         
         // 4. ÁREAS PRÉ-PROCESSADAS (fallback rápido)
         Boolean areaPreProcessada = verificarAreaPreProcessada(latitude, longitude);
         if (areaPreProcessada != null) {
-            salvarEmTodosCaches(chaveFormatada, chaveRedis, areaPreProcessada);
-            adicionarLocalGeo("preprocessado:" + UUID.randomUUID(), latitude, longitude);
-            return areaPreProcessada;
+            return salvarNoRedis(chaveRedis, campo, Classificacao.definitiva(areaPreProcessada));
         }
         
         // 5. NOMINATIM (preciso, mas lento)
+        Boolean resultado = null;
         try {
-            Boolean resultado = consultarNominatim(latitude, longitude);
-            salvarEmTodosCaches(chaveFormatada, chaveRedis, resultado);
+            consultasNominatim.increment();
+            resultado = consultarNominatim(latitude, longitude);
+        } catch (Exception e) {
+            log.debug("Nominatim indisponível para a célula {}: {}", GeoHash.texto(celula, precisao), e.getMessage());
+        }
+        if (resultado != null) {
             salvarNoBanco(latitude, longitude, resultado, "nominatim");
-            adicionarLocalGeo("nominatim:" + UUID.randomUUID(), latitude, longitude);
-            return resultado;
+            return salvarNoRedis(chaveRedis, campo, Classificacao.definitiva(resultado));
+        }
+        
+        // 6. Cache negativo: palpite por proximidade, tenta o Nominatim de novo depois
+        provisorias.increment();
+        Classificacao fallback = new Classificacao(verificarProximidadeCidadesConhecidas(latitude, longitude),
+            System.currentTimeMillis() + ttlNegativoSegundos * 1000);
+        return salvarNoRedis(chaveRedis, campo, fallback);
+    }
+    
+    private Classificacao salvarNoRedis(String chaveRedis, String campo, Classificacao classificacao) {
+        try {
+            redisCelulas.put(chaveRedis, campo, classificacao.escrever());
+            redisTemplate.expire(chaveRedis, redisTtl, TimeUnit.SECONDS);
         } catch (Exception e) {
-            Boolean fallback = verificarProximidadeCidadesConhecidas(latitude, longitude);
-            salvarEmTodosCaches(chaveFormatada, chaveRedis, fallback);
-            salvarNoBanco(latitude, longitude, fallback, "fallback");
-            adicionarLocalGeo("fallback:" + UUID.randomUUID(), latitude, longitude);
-            return fallback;
+            log.warn("Erro ao gravar no Redis: {}", e.getMessage());
         }
+        return classificacao;
+    }
+    
+    public Map<String, Object> getEstatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("precisaoCelula", precisao);
+        stats.put("precisaoRedis", precisaoRedis);
+        stats.put("celulasEmMemoria", memoriaCache.synchronous().estimatedSize());
+        stats.put("hitsLocal", hitsLocal.sum());
+        stats.put("hitsRedis", hitsRedis.sum());
+        stats.put("carregamentos", carregamentos.sum());
+        stats.put("consultasNominatim", consultasNominatim.sum());
+        stats.put("provisorias", provisorias.sum());
+        return stats;
     }
     
-    private void salvarEmTodosCaches(String chaveLocal, String chaveRedis, Boolean valor) {
-        memoriaCache.put(chaveLocal, valor);
-        redisCache.set(chaveRedis, String.valueOf(valor), redisTtl, TimeUnit.SECONDS);
+    /**
+     * Classificação de uma célula; expiraEm > 0 = provisória (cache negativo)
+     *
+     * No Redis: "1" / "0", ou "1:<epoch s>" / "0:<epoch s>" quando provisória
+     */
+    private record Classificacao(boolean urbano, long expiraEm) {
+        
+        static Classificacao definitiva(boolean urbano) {
+            return new Classificacao(urbano, 0);
+        }
+        
+        boolean provisoria() {
+            return expiraEm > 0;
+        }
+        
+        String escrever() {
+            String valor = urbano ? "1" : "0";
+            return provisoria() ? valor + ":" + (expiraEm / 1000) : valor;
+        }
+        
+        /**
+         * null se ausente, ilegível ou provisória vencida
+         */
+        static Classificacao ler(String valor) {
+            if (valor == null || valor.isEmpty()) return null;
+            boolean urbano = valor.charAt(0) == '1';
+            if (valor.length() == 1) return definitiva(urbano);
+            try {
+                long expiraEm = Long.parseLong(valor.substring(2)) * 1000;
+                return expiraEm > System.currentTimeMillis() ? new Classificacao(urbano, expiraEm) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
     }
     
     /**
@@ -195,7 +342,7 @@ public class HybridGeocodingService {
             return results != null && !results.getContent().isEmpty();
             
         } catch (Exception e) {
-            System.err.println("Erro na busca GEO: " + e.getMessage());
+            log.warn("Erro na busca GEO: {}", e.getMessage());
             return false;
         }
     }
@@ -238,7 +385,7 @@ public class HybridGeocodingService {
             }
             
         } catch (Exception e) {
-            System.err.println("Erro na busca GEO: " + e.getMessage());
+            log.warn("Erro na busca GEO: {}", e.getMessage());
         }
         
         return locais;
@@ -294,7 +441,8 @@ public class HybridGeocodingService {
         return null;
     }
     
-    private Boolean consultarNominatim(Double lat, Double lon) throws Exception {
+    // synchronized: carregamentos de células diferentes respeitam juntos o 1 req/s do Nominatim
+    private synchronized Boolean consultarNominatim(Double lat, Double lon) throws Exception {
         long agora = System.currentTimeMillis();
         if (agora - ultimaConsulta < MIN_INTERVALO_MS) {
             Thread.sleep(MIN_INTERVALO_MS - (agora - ultimaConsulta));
@@ -306,6 +454,7 @@ public class HybridGeocodingService {
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(url))
                 .header("User-Agent", "TelemetriaApp/1.0")
+                .timeout(Duration.ofSeconds(10))
                 .build();
         
         HttpResponse<String> response = httpClient.send(request, 
@@ -0,0 +1,263 @@
+package com.app.telemetria.service;
+
+import com.app.telemetria.entity.Geofence;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cercas ativas compiladas para consulta ponto -> cercas.
+ *
+ * Cada cerca vira uma caixa envolvente mais o teste exato (círculo em metros
+ * ou ray casting com as arestas pré-calculadas). As caixas vão para uma
+ * GradeEspacial: a consulta lê uma única célula e só testa as cercas cuja
+ * caixa a toca.
+ *
+ * Imutável: o GeofenceService monta um índice novo a cada recarga e troca a
+ * referência, sem bloquear o consumer.
+ */
+final class IndiceGeofences {
+
+    static final long[] NENHUMA = new long[0];
+    static final IndiceGeofences VAZIO = new IndiceGeofences(new Cerca[0], Map.of(), 0.01, 4096);
+
+    private static final double METROS_POR_GRAU = 111320;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Cerca[] cercas;
+    private final Map<Long, Cerca> cercasPorId = new HashMap<>();
+    // veículo -> ids das cercas vinculadas, ordenados (busca binária)
+    private final Map<Long, long[]> cercasPorVeiculo;
+
+    private final GradeEspacial grade;
+
+    private IndiceGeofences(Cerca[] cercas, Map<Long, long[]> cercasPorVeiculo, double celulaGraus, int maxCelulas) {
+        this.cercas = cercas;
+        this.cercasPorVeiculo = cercasPorVeiculo;
+        for (Cerca c : cercas) cercasPorId.put(c.id, c);
+
+        int n = cercas.length;
+        double[] minLat = new double[n], maxLat = new double[n], minLon = new double[n], maxLon = new double[n];
+        for (int i = 0; i < n; i++) {
+            minLat[i] = cercas[i].minLat;
+            maxLat[i] = cercas[i].maxLat;
+            minLon[i] = cercas[i].minLon;
+            maxLon[i] = cercas[i].maxLon;
+        }
+        this.grade = new GradeEspacial(minLat, maxLat, minLon, maxLon, celulaGraus, maxCelulas);
+    }
+
+    /**
+     * Compila as cercas (as de formato inválido são ignoradas e devolvidas
+     * em invalidas) e os vínculos [veiculo_id, geofence_id]
+     */
+    static IndiceGeofences montar(List<Geofence> geofences, List<Object[]> vinculos,
+                                  double celulaGraus, int maxCelulas, List<String> invalidas) {
+        List<Cerca> compiladas = new ArrayList<>(geofences.size());
+        for (Geofence g : geofences) {
+            try {
+                compiladas.add(compilar(g));
+            } catch (Exception e) {
+                invalidas.add(g.getId() + " (" + g.getNome() + "): " + e.getMessage());
+            }
+        }
+
+        Map<Long, List<Long>> agrupados = new HashMap<>();
+        for (Object[] v : vinculos) {
+            long veiculoId = ((Number) v[0]).longValue();
+            long geofenceId = ((Number) v[1]).longValue();
+            agrupados.computeIfAbsent(veiculoId, k -> new ArrayList<>()).add(geofenceId);
+        }
+        Map<Long, long[]> porVeiculo = new HashMap<>();
+        agrupados.forEach((veiculo, ids) -> {
+            long[] arr = ids.stream().mapToLong(Long::longValue).distinct().sorted().toArray();
+            porVeiculo.put(veiculo, arr);
+        });
+
+        return new IndiceGeofences(compiladas.toArray(new Cerca[0]), porVeiculo, celulaGraus, maxCelulas);
+    }
+
+    int getTotalCercas() {
+        return cercas.length;
+    }
+
+    int getTotalVeiculos() {
+        return cercasPorVeiculo.size();
+    }
+
+    boolean monitora(long veiculoId) {
+        return cercasPorVeiculo.containsKey(veiculoId);
+    }
+
+    boolean vinculada(long veiculoId, long geofenceId) {
+        long[] vinculadas = cercasPorVeiculo.get(veiculoId);
+        return vinculadas != null && Arrays.binarySearch(vinculadas, geofenceId) >= 0;
+    }
+
+    String getNome(long geofenceId) {
+        Cerca c = cercasPorId.get(geofenceId);
+        return c != null ? c.nome : null;
+    }
+
+    /**
+     * Ids (ordenados) das cercas vinculadas ao veículo que contêm o ponto;
+     * NENHUMA quando não há (sem alocação no caso comum)
+     */
+    long[] cercasContendo(long veiculoId, double lat, double lon) {
+        long[] vinculadas = cercasPorVeiculo.get(veiculoId);
+        if (vinculadas == null) return NENHUMA;
+
+        long[] resultado = NENHUMA;
+        int total = 0;
+
+        int[] naCelula = grade.candidatos(lat, lon);
+        for (int passo = 0; passo < 2; passo++) {
+            int[] lista = passo == 0 ? naCelula : grade.abrangentes();
+            if (lista == null) continue;
+            for (int i : lista) {
+                Cerca c = cercas[i];
+                if (Arrays.binarySearch(vinculadas, c.id) < 0 || !c.contem(lat, lon)) continue;
+                if (total == resultado.length) {
+                    resultado = Arrays.copyOf(resultado, Math.max(4, total * 2));
+                }
+                resultado[total++] = c.id;
+            }
+        }
+
+        if (total == 0) return NENHUMA;
+        long[] ids = total == resultado.length ? resultado : Arrays.copyOf(resultado, total);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    // ================ COMPILAÇÃO ================
+
+    private static Cerca compilar(Geofence g) throws Exception {
+        String tipo = g.getTipo() != null ? g.getTipo().toUpperCase() : "";
+        switch (tipo) {
+            case "CIRCULO": {
+                if (g.getLatitudeCentro() == null || g.getLongitudeCentro() == null || g.getRaio() == null) {
+                    throw new IllegalArgumentException("círculo sem centro ou raio");
+                }
+                return Cerca.circulo(g.getId(), g.getNome(), g.getLatitudeCentro(), g.getLongitudeCentro(), g.getRaio());
+            }
+            case "RETANGULO": {
+                JsonNode v = MAPPER.readTree(g.getVertices());
+                double norte = v.get("norte").asDouble(), sul = v.get("sul").asDouble();
+                double leste = v.get("leste").asDouble(), oeste = v.get("oeste").asDouble();
+                return Cerca.poligono(g.getId(), g.getNome(),
+                    new double[] { sul, sul, norte, norte },
+                    new double[] { oeste, leste, leste, oeste });
+            }
+            case "POLIGONO": {
+                JsonNode v = MAPPER.readTree(g.getVertices());
+                if (v == null || !v.isArray() || v.size() < 3) {
+                    throw new IllegalArgumentException("polígono precisa de ao menos 3 vértices");
+                }
+                double[] lat = new double[v.size()];
+                double[] lon = new double[v.size()];
+                for (int i = 0; i < v.size(); i++) {
+                    JsonNode p = v.get(i);
+                    if (p.isArray()) {
+                        lat[i] = p.get(0).asDouble();
+                        lon[i] = p.get(1).asDouble();
+                    } else {
+                        lat[i] = p.get("latitude").asDouble();
+                        lon[i] = p.get("longitude").asDouble();
+                    }
+                }
+                return Cerca.poligono(g.getId(), g.getNome(), lat, lon);
+            }
+            default:
+                throw new IllegalArgumentException("tipo desconhecido: " + g.getTipo());
+        }
+    }
+
+    /**
+     * Cerca compilada: caixa envolvente + teste exato
+     */
+    private static final class Cerca {
+        final long id;
+        final String nome;
+        final double minLat, maxLat, minLon, maxLon;
+
+        // Círculo (raio2 > 0)
+        final double latCentro, lonCentro, raio2, metrosPorGrauLon;
+
+        // Polígono: aresta i vai do vértice i-1 ao i
+        final double[] latVertice, lonVertice, latAnterior, inclinacao;
+
+        private Cerca(long id, String nome, double minLat, double maxLat, double minLon, double maxLon,
+                      double latCentro, double lonCentro, double raio2, double metrosPorGrauLon,
+                      double[] latVertice, double[] lonVertice, double[] latAnterior, double[] inclinacao) {
+            this.id = id;
+            this.nome = nome;
+            this.minLat = minLat;
+            this.maxLat = maxLat;
+            this.minLon = minLon;
+            this.maxLon = maxLon;
+            this.latCentro = latCentro;
+            this.lonCentro = lonCentro;
+            this.raio2 = raio2;
+            this.metrosPorGrauLon = metrosPorGrauLon;
+            this.latVertice = latVertice;
+            this.lonVertice = lonVertice;
+            this.latAnterior = latAnterior;
+            this.inclinacao = inclinacao;
+        }
+
+        static Cerca circulo(long id, String nome, double lat, double lon, double raio) {
+            double metrosPorGrauLon = METROS_POR_GRAU * Math.cos(Math.toRadians(lat));
+            double dLat = raio / METROS_POR_GRAU;
+            double dLon = raio / Math.max(1, metrosPorGrauLon);
+            return new Cerca(id, nome, lat - dLat, lat + dLat, lon - dLon, lon + dLon,
+                lat, lon, raio * raio, metrosPorGrauLon, null, null, null, null);
+        }
+
+        static Cerca poligono(long id, String nome, double[] lat, double[] lon) {
+            int n = lat.length;
+            double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+            double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+            double[] latAnterior = new double[n];
+            double[] inclinacao = new double[n];
+            for (int i = 0; i < n; i++) {
+                int j = i == 0 ? n - 1 : i - 1;
+                minLat = Math.min(minLat, lat[i]);
+                maxLat = Math.max(maxLat, lat[i]);
+                minLon = Math.min(minLon, lon[i]);
+                maxLon = Math.max(maxLon, lon[i]);
+                latAnterior[i] = lat[j];
+                // Arestas horizontais nunca cruzam o raio; inclinação irrelevante
+                inclinacao[i] = lat[j] != lat[i] ? (lon[j] - lon[i]) / (lat[j] - lat[i]) : 0;
+            }
+            return new Cerca(id, nome, minLat, maxLat, minLon, maxLon,
+                0, 0, 0, 0, lat.clone(), lon.clone(), latAnterior, inclinacao);
+        }
+
+        boolean contem(double lat, double lon) {
+            if (lat < minLat || lat > maxLat || lon < minLon || lon > maxLon) return false;
+
+            if (latVertice == null) {
+                double dy = (lat - latCentro) * METROS_POR_GRAU;
+                double dx = (lon - lonCentro) * metrosPorGrauLon;
+                return dx * dx + dy * dy <= raio2;
+            }
+
+            // Ray casting na direção de longitude crescente
+            boolean dentro = false;
+            for (int i = 0; i < latVertice.length; i++) {
+                double li = latVertice[i];
+                if ((li > lat) != (latAnterior[i] > lat)
+                        && lon < lonVertice[i] + (lat - li) * inclinacao[i]) {
+                    dentro = !dentro;
+                }
+            }
+            return dentro;
+        }
+    }
+}
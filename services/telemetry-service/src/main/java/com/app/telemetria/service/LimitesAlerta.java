@@ -0,0 +1,26 @@
+package com.app.telemetria.service;
+
+/**
+ * Limites das regras de alerta para um tipo de veículo.
+ *
+ * As histereses definem quanto o valor precisa voltar além do limite para o
+ * alerta fechar; amostrasAbrir/amostrasFechar são telemetrias consecutivas
+ * exigidas para cada transição, e intervaloReaberturaSegundos o tempo mínimo
+ * entre dois alertas do mesmo tipo no mesmo veículo.
+ */
+public record LimitesAlerta(
+        double velocidadeMaxima,
+        double velocidadeMinima,
+        double histereseVelocidade,
+        double nivelCombustivelMinimo,
+        double histereseCombustivel,
+        long tempoDirecaoMaximoMinutos,
+        long gpsSemSinalMinutos,
+        int amostrasAbrir,
+        int amostrasFechar,
+        long intervaloReaberturaSegundos) {
+
+    // Valores que estavam fixos no AlertaService
+    public static final LimitesAlerta PADRAO = new LimitesAlerta(
+        110.0, 10.0, 5.0, 15.0, 5.0, 240, 15, 2, 3, 300);
+}
@@ -0,0 +1,84 @@
+package com.app.telemetria.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Limites de alerta por tipo de veículo (veiculos.tipo_veiculo).
+ *
+ * telemetria.alertas.padrao.* vale para todos; cada tipo listado em
+ * telemetria.alertas.tipos pode sobrescrever qualquer limite em
+ * telemetria.alertas.tipo.{TIPO}.*. Tudo é lido uma vez na inicialização.
+ */
+@Service
+public class LimitesAlertaService {
+
+    private static final Logger log = LoggerFactory.getLogger(LimitesAlertaService.class);
+
+    private final LimitesAlerta padrao;
+    private final Map<String, LimitesAlerta> porTipo = new HashMap<>();
+
+    public LimitesAlertaService(Environment env,
+                                @Value("${telemetria.alertas.tipos:}") List<String> tipos) {
+        this.padrao = ler(env, "telemetria.alertas.padrao", LimitesAlerta.PADRAO);
+        for (String tipo : tipos) {
+            if (tipo.isBlank()) continue;
+            String chave = tipo.trim().toUpperCase(Locale.ROOT);
+            porTipo.put(chave, ler(env, "telemetria.alertas.tipo." + chave, padrao));
+        }
+        log.info("🚦 Limites de alerta: padrão {} + {} tipo(s) {}", padrao, porTipo.size(), porTipo.keySet());
+    }
+
+    private static LimitesAlerta ler(Environment env, String prefixo, LimitesAlerta base) {
+        return new LimitesAlerta(
+            env.getProperty(prefixo + ".velocidade-maxima", Double.class, base.velocidadeMaxima()),
+            env.getProperty(prefixo + ".velocidade-minima", Double.class, base.velocidadeMinima()),
+            env.getProperty(prefixo + ".histerese-velocidade", Double.class, base.histereseVelocidade()),
+            env.getProperty(prefixo + ".nivel-combustivel-minimo", Double.class, base.nivelCombustivelMinimo()),
+            env.getProperty(prefixo + ".histerese-combustivel", Double.class, base.histereseCombustivel()),
+            env.getProperty(prefixo + ".tempo-direcao-maximo-minutos", Long.class, base.tempoDirecaoMaximoMinutos()),
+            env.getProperty(prefixo + ".gps-sem-sinal-minutos", Long.class, base.gpsSemSinalMinutos()),
+            env.getProperty(prefixo + ".amostras-abrir", Integer.class, base.amostrasAbrir()),
+            env.getProperty(prefixo + ".amostras-fechar", Integer.class, base.amostrasFechar()),
+            env.getProperty(prefixo + ".intervalo-reabertura-segundos", Long.class, base.intervaloReaberturaSegundos()));
+    }
+
+    /**
+     * Limites do tipo de veículo; tipo nulo ou não configurado usa o padrão
+     */
+    public LimitesAlerta para(String tipoVeiculo) {
+        if (tipoVeiculo == null || porTipo.isEmpty()) return padrao;
+        LimitesAlerta limites = porTipo.get(tipoVeiculo.toUpperCase(Locale.ROOT));
+        return limites != null ? limites : padrao;
+    }
+
+    public LimitesAlerta getPadrao() {
+        return padrao;
+    }
+
+    /**
+     * Menor velocidade máxima entre todos os tipos (para quem não conhece o tipo do veículo)
+     */
+    public double getMenorVelocidadeMaxima() {
+        double menor = padrao.velocidadeMaxima();
+        for (LimitesAlerta l : porTipo.values()) menor = Math.min(menor, l.velocidadeMaxima());
+        return menor;
+    }
+
+    /**
+     * Maior nível mínimo de combustível entre todos os tipos
+     */
+    public double getMaiorNivelCombustivelMinimo() {
+        double maior = padrao.nivelCombustivelMinimo();
+        for (LimitesAlerta l : porTipo.values()) maior = Math.max(maior, l.nivelCombustivelMinimo());
+        return maior;
+    }
+}
@@ -1,29 +1,197 @@
 package com.app.telemetria.service;
 
+import com.app.telemetria.util.GeoHash;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Service;
 
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
 
+/**
+ * Classifica uma coordenada como AREA_URBANA, RODOVIA ou DESCONHECIDA sem rede.
+ *
+ * O GeoJSON de telemetria.classificador.geojson (polígonos urbanos e,
+ * opcionalmente, linhas de rodovia) é rasterizado uma vez numa
+ * GradeClassificacao, gravada em telemetria.classificador.grade e mapeada em
+ * memória; nas próximas inicializações o arquivo é reaproveitado enquanto o
+ * CRC do GeoJSON bater. O arquivo empacotado só tem os polígonos urbanos das
+ * capitais, sem rodovias: sem um extrato do OSM ou o Nominatim, nenhum ponto
+ * sai como RODOVIA. Pontos fora dos dados da grade são
+ * telemetria.classificador.sem-dados, DESCONHECIDA por padrão.
+ *
+ * Com telemetria.classificador.nominatim.habilitado, células sem dado na
+ * grade são enviadas ao Nominatim em segundo plano (uma thread, fila
+ * limitada) e o resultado vale para as consultas seguintes; a consulta em
+ * si nunca espera a rede.
+ */
 @Service
-public class LocationClassifierService {
+public class LocationClassifierService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(LocationClassifierService.class);
+
+    public static final String AREA_URBANA = "AREA_URBANA";
+    public static final String RODOVIA = "RODOVIA";
+    public static final String DESCONHECIDA = "DESCONHECIDA";
+
+    private static final int PRECISAO_ENRIQUECIMENTO = 6; // ~1,2 km x 0,6 km
 
     private final OSMService osmService;
+    private final GradeClassificacao grade;
+    private final String classeSemDados;
+
+    // Enriquecimento opcional pelo Nominatim, por célula de geohash
+    private final boolean nominatimHabilitado;
+    private final Cache<Long, String> enriquecidas;
+    private final ThreadPoolExecutor executorNominatim;
+
+    private final LongAdder consultas = new LongAdder();
+    private final LongAdder semDados = new LongAdder();
+    private final LongAdder enriquecimentosDescartados = new LongAdder();
+
+    public LocationClassifierService(
+            OSMService osmService,
+            ResourceLoader resourceLoader,
+            @Value("${telemetria.classificador.geojson:classpath:geo/classificacao-local.geojson}") String geojson,
+            @Value("${telemetria.classificador.grade:${java.io.tmpdir}/telemetria-classificacao.grid}") String arquivoGrade,
+            @Value("${telemetria.classificador.celula-graus:0.01}") double celulaGraus,
+            @Value("${telemetria.classificador.rodovia-buffer-celulas:0}") int bufferRodovia,
+            @Value("${telemetria.classificador.sem-dados:DESCONHECIDA}") String classeSemDados,
+            @Value("${telemetria.classificador.nominatim.habilitado:false}") boolean nominatimHabilitado,
+            @Value("${telemetria.classificador.nominatim.max-celulas:50000}") long maxCelulasEnriquecidas,
+            @Value("${telemetria.classificador.nominatim.fila:1000}") int filaNominatim) throws Exception {
 
-    public LocationClassifierService(OSMService osmService) {
         this.osmService = osmService;
+        this.classeSemDados = classeSemDados;
+        this.grade = carregarGrade(resourceLoader.getResource(geojson), Path.of(arquivoGrade), celulaGraus, bufferRodovia);
+
+        this.nominatimHabilitado = nominatimHabilitado;
+        this.enriquecidas = Caffeine.newBuilder()
+            .maximumSize(maxCelulasEnriquecidas)
+            .expireAfterWrite(Duration.ofDays(7))
+            .build();
+        this.executorNominatim = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(filaNominatim),
+            r -> {
+                Thread t = new Thread(r, "classificador-nominatim");
+                t.setDaemon(true);
+                return t;
+            });
+    }
+
+    /**
+     * Abre a grade gravada se ela foi gerada deste GeoJSON; senão gera de novo
+     */
+    private static GradeClassificacao carregarGrade(Resource fonte, Path arquivo, double celulaGraus,
+                                                    int bufferRodovia) throws Exception {
+        byte[] geojson;
+        try (InputStream in = fonte.getInputStream()) {
+            geojson = in.readAllBytes();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(geojson);
+        // A resolução também define a grade
+        crc.update(Double.toString(celulaGraus).getBytes());
+        crc.update(bufferRodovia);
+
+        if (Files.exists(arquivo)) {
+            try {
+                GradeClassificacao existente = GradeClassificacao.abrir(arquivo);
+                if (existente.getCrcFonte() == crc.getValue()) {
+                    log.info("🗺️ Grade de classificação carregada de {} ({} x {})",
+                        arquivo, existente.getLinhas(), existente.getColunas());
+                    return existente;
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ Grade de classificação em {} ilegível, gerando de novo: {}", arquivo, e.getMessage());
+            }
+        }
+
+        long inicio = System.currentTimeMillis();
+        GradeClassificacao.gerar(geojson, crc.getValue(), celulaGraus, bufferRodovia, arquivo);
+        GradeClassificacao gerada = GradeClassificacao.abrir(arquivo);
+        log.info("🗺️ Grade de classificação gerada de {} em {} ms ({} x {}, {}°)", fonte.getDescription(),
+            System.currentTimeMillis() - inicio, gerada.getLinhas(), gerada.getColunas(), celulaGraus);
+        return gerada;
     }
 
     public String classify(Double latitude, Double longitude) {
+        if (latitude == null || longitude == null) return classeSemDados;
+        consultas.increment();
 
-        Map<String, Object> response =
-                osmService.reverseGeocode(latitude, longitude);
+        switch (grade.classe(latitude, longitude)) {
+            case GradeClassificacao.AREA_URBANA:
+                return AREA_URBANA;
+            case GradeClassificacao.RODOVIA:
+                return RODOVIA;
+            default:
+                break;
+        }
+
+        semDados.increment();
+        if (!nominatimHabilitado) return classeSemDados;
 
-        if (response == null) return "DESCONHECIDO";
+        long celula = GeoHash.codificar(latitude, longitude, PRECISAO_ENRIQUECIMENTO);
+        String enriquecida = enriquecidas.getIfPresent(celula);
+        if (enriquecida != null) return enriquecida;
 
-        Map<String, Object> address =
-                (Map<String, Object>) response.get("address");
+        // Marca a célula antes de enfileirar para não pedir a mesma célula duas vezes
+        if (enriquecidas.asMap().putIfAbsent(celula, classeSemDados) == null) {
+            try {
+                executorNominatim.execute(() -> enriquecer(celula, latitude, longitude));
+            } catch (RejectedExecutionException e) {
+                // Fila cheia: a célula pode ser pedida de novo depois
+                enriquecidas.invalidate(celula);
+                enriquecimentosDescartados.increment();
+            }
+        }
+        return classeSemDados;
+    }
 
-        if (address == null) return "DESCONHECIDO";
+    private void enriquecer(long celula, double latitude, double longitude) {
+        try {
+            Map<String, Object> response = osmService.reverseGeocode(latitude, longitude);
+            String classificacao = classificarEndereco(response);
+            if (classificacao != null) {
+                enriquecidas.put(celula, classificacao);
+            }
+        } catch (Exception e) {
+            enriquecidas.invalidate(celula);
+            log.debug("Nominatim indisponível para {},{}: {}", latitude, longitude, e.getMessage());
+        }
+        try {
+            // Política de uso do Nominatim público: no máximo 1 requisição por segundo
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Regras sobre o address do reverse do Nominatim; null sem endereço
+     */
+    @SuppressWarnings("unchecked")
+    static String classificarEndereco(Map<String, Object> response) {
+        if (response == null) return null;
+
+        Map<String, Object> address = (Map<String, Object>) response.get("address");
+        if (address == null) return null;
 
         String road = (String) address.get("road");
         String city = (String) address.get("city");
@@ -36,18 +204,37 @@ public class LocationClassifierService {
                 (highway.contains("motorway")
                         || highway.contains("trunk")
                         || highway.contains("primary"))) {
-            return "RODOVIA";
+            return RODOVIA;
         }
 
         // 🏙 Área urbana
         if (city != null || town != null || village != null) {
-            return "AREA_URBANA";
+            return AREA_URBANA;
         }
 
         if (road != null && road.toLowerCase().contains("rua")) {
-            return "AREA_URBANA";
+            return AREA_URBANA;
         }
 
-        return "RODOVIA";
+        return RODOVIA;
+    }
+
+    public Map<String, Object> getEstatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("linhas", grade.getLinhas());
+        stats.put("colunas", grade.getColunas());
+        stats.put("celulaGraus", grade.getCelulaGraus());
+        stats.put("consultas", consultas.sum());
+        stats.put("semDados", semDados.sum());
+        stats.put("nominatimHabilitado", nominatimHabilitado);
+        stats.put("celulasEnriquecidas", enriquecidas.estimatedSize());
+        stats.put("enriquecimentosPendentes", executorNominatim.getQueue().size());
+        stats.put("enriquecimentosDescartados", enriquecimentosDescartados.sum());
+        return stats;
+    }
+
+    @Override
+    public void destroy() {
+        executorNominatim.shutdownNow();
     }
-}
\ No newline at end of file
+}
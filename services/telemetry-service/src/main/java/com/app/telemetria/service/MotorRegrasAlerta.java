@@ -0,0 +1,246 @@
+package com.app.telemetria.service;
+
+import com.app.telemetria.entity.Telemetria;
+import com.app.telemetria.entity.Veiculo;
+import com.app.telemetria.entity.Viagem;
+import com.app.telemetria.enums.GravidadeAlerta;
+import com.app.telemetria.enums.TipoAlerta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Regras de alerta avaliadas em memória contra o EstadoRegrasAlerta do
+ * veículo, com os limites do tipo do veículo (LimitesAlertaService).
+ *
+ * Cada regra tem uma condição de abertura e uma de normalidade (o limite
+ * mais a histerese); entre as duas o estado não muda. Uma transição só
+ * acontece depois de amostrasAbrir/amostrasFechar telemetrias seguidas, e
+ * um tipo não reabre antes de intervaloReaberturaSegundos. O resultado são
+ * só as transições; sem mudança a lista é vazia e nada vai ao banco.
+ *
+ * Só os tipos em telemetria.alertas.auto-resolver fecham sozinhos quando a
+ * condição normaliza; os demais ficam abertos até a resolução pela API (e
+ * não reabrem enquanto isso).
+ *
+ * VELOCIDADE_BAIXA só abre fora de área urbana. Com
+ * telemetria.alertas.velocidade-baixa.exigir-rodovia o local precisa ser
+ * RODOVIA na grade do LocationClassifierService (só faz sentido com um
+ * GeoJSON que traga as rodovias ou com o Nominatim habilitado); por padrão
+ * local DESCONHECIDA também conta como fora da cidade.
+ */
+@Service
+public class MotorRegrasAlerta {
+
+    private static final Logger log = LoggerFactory.getLogger(MotorRegrasAlerta.class);
+
+    // Tipos controlados pelo motor (os demais continuam no AlertaService)
+    static final TipoAlerta[] TIPOS = {
+        TipoAlerta.EXCESSO_VELOCIDADE,
+        TipoAlerta.VELOCIDADE_BAIXA,
+        TipoAlerta.NIVEL_COMBUSTIVEL_BAIXO,
+        TipoAlerta.GPS_SEM_SINAL,
+        TipoAlerta.TEMPO_DIRECAO
+    };
+
+    private static final int SEM_MUDANCA = 0;
+    private static final int ABRIU = 1;
+    private static final int FECHOU = 2;
+
+    private final LimitesAlertaService limitesAlertaService;
+    private final LocationClassifierService locationClassifierService;
+    private final Set<TipoAlerta> autoResolver = EnumSet.noneOf(TipoAlerta.class);
+    private final boolean lentaSoEmRodovia;
+
+    public MotorRegrasAlerta(LimitesAlertaService limitesAlertaService,
+                             LocationClassifierService locationClassifierService,
+                             @Value("${telemetria.alertas.auto-resolver:EXCESSO_VELOCIDADE,VELOCIDADE_BAIXA,NIVEL_COMBUSTIVEL_BAIXO,GPS_SEM_SINAL,TEMPO_DIRECAO}")
+                             List<String> autoResolver,
+                             @Value("${telemetria.alertas.velocidade-baixa.exigir-rodovia:false}") boolean lentaSoEmRodovia) {
+        this.limitesAlertaService = limitesAlertaService;
+        this.locationClassifierService = locationClassifierService;
+        this.lentaSoEmRodovia = lentaSoEmRodovia;
+        for (String tipo : autoResolver) {
+            if (tipo.isBlank()) continue;
+            TipoAlerta t = TipoAlerta.valueOf(tipo.trim());
+            if (!List.of(TIPOS).contains(t)) {
+                throw new IllegalArgumentException("Tipo fora do motor de regras em telemetria.alertas.auto-resolver: " + t);
+            }
+            this.autoResolver.add(t);
+        }
+        log.info("🔔 Alertas resolvidos automaticamente pelo motor de regras: {}", this.autoResolver);
+    }
+
+    /**
+     * Avalia todas as regras para a telemetria e devolve as transições
+     * (normalmente nenhuma); o estado do veículo já sai atualizado
+     */
+    public List<TransicaoAlerta> avaliar(EstadoVeiculo estado, Telemetria telemetria, Viagem viagem) {
+        Veiculo veiculo = estado.getVeiculo();
+        LimitesAlerta limites = limitesAlertaService.para(veiculo != null ? veiculo.getTipoVeiculo() : null);
+        EstadoRegrasAlerta regras = estado.getRegrasAlerta();
+        long reaberturaMs = limites.intervaloReaberturaSegundos() * 1000;
+        long agoraMs = System.currentTimeMillis();
+        LocalDateTime agora = LocalDateTime.now();
+        List<TransicaoAlerta> transicoes = null;
+
+        synchronized (regras) {
+            // ===== VELOCIDADE =====
+            Double velocidade = telemetria.getVelocidade();
+            if (velocidade != null) {
+                double maxima = limites.velocidadeMaxima();
+                int excesso = passo(regras.regra(TipoAlerta.EXCESSO_VELOCIDADE),
+                    velocidade > maxima,
+                    normal(TipoAlerta.EXCESSO_VELOCIDADE, velocidade <= maxima - limites.histereseVelocidade()),
+                    limites.amostrasAbrir(), limites.amostrasFechar(), reaberturaMs, agoraMs, agora);
+                if (excesso == ABRIU) {
+                    transicoes = adicionar(transicoes, TransicaoAlerta.abrir(TipoAlerta.EXCESSO_VELOCIDADE,
+                        GravidadeAlerta.ALTA,
+                        String.format("Veículo %.2f km/h acima do limite (%.0f km/h)", velocidade - maxima, maxima),
+                        agora));
+                } else if (excesso == FECHOU) {
+                    transicoes = adicionar(transicoes, TransicaoAlerta.fechar(TipoAlerta.EXCESSO_VELOCIDADE, agora));
+                }
+
+                // Lenta fora da cidade (ou só em rodovia, conforme exigir-rodovia), só em
+                // viagem; parado (0) não muda o estado. Trânsito urbano lento é normal
+                double minima = limites.velocidadeMinima();
+                boolean lenta = viagem != null && velocidade > 0 && velocidade < minima
+                    && foraDaCidade(telemetria);
+                int baixa = passo(regras.regra(TipoAlerta.VELOCIDADE_BAIXA),
+                    lenta,
+                    normal(TipoAlerta.VELOCIDADE_BAIXA, viagem == null || velocidade >= minima + limites.histereseVelocidade()),
+                    limites.amostrasAbrir(), limites.amostrasFechar(), reaberturaMs, agoraMs, agora);
+                if (baixa == ABRIU) {
+                    transicoes = adicionar(transicoes, TransicaoAlerta.abrir(TipoAlerta.VELOCIDADE_BAIXA,
+                        GravidadeAlerta.MEDIA,
+                        String.format("Velocidade muito baixa: %.1f km/h", velocidade),
+                        agora));
+                } else if (baixa == FECHOU) {
+                    transicoes = adicionar(transicoes, TransicaoAlerta.fechar(TipoAlerta.VELOCIDADE_BAIXA, agora));
+                }
+            }
+
+            // ===== COMBUSTÍVEL =====
+            Double nivel = telemetria.getNivelCombustivel();
+            if (nivel != null) {
+                double minimo = limites.nivelCombustivelMinimo();
+                int combustivel = passo(regras.regra(TipoAlerta.NIVEL_COMBUSTIVEL_BAIXO),
+                    nivel < minimo,
+                    normal(TipoAlerta.NIVEL_COMBUSTIVEL_BAIXO, nivel >= minimo + limites.histereseCombustivel()),
+                    limites.amostrasAbrir(), limites.amostrasFechar(), reaberturaMs, agoraMs, agora);
+                if (combustivel == ABRIU) {
+                    transicoes = adicionar(transicoes, TransicaoAlerta.abrir(TipoAlerta.NIVEL_COMBUSTIVEL_BAIXO,
+                        GravidadeAlerta.MEDIA,
+                        String.format("Nível de combustível baixo: %.0f%%", nivel),
+                        agora));
+                } else if (combustivel == FECHOU) {
+                    transicoes = adicionar(transicoes, TransicaoAlerta.fechar(TipoAlerta.NIVEL_COMBUSTIVEL_BAIXO, agora));
+                }
+            }
+
+            // ===== GPS (telemetria chegando com atraso) =====
+            if (telemetria.getDataHora() != null) {
+                long minutosSemSinal = Duration.between(telemetria.getDataHora(), agora).toMinutes();
+                boolean semSinal = minutosSemSinal > limites.gpsSemSinalMinutos();
+                int gps = passo(regras.regra(TipoAlerta.GPS_SEM_SINAL),
+                    semSinal, normal(TipoAlerta.GPS_SEM_SINAL, !semSinal), 1, 1, reaberturaMs, agoraMs, agora);
+                if (gps == ABRIU) {
+                    transicoes = adicionar(transicoes, TransicaoAlerta.abrir(TipoAlerta.GPS_SEM_SINAL,
+                        GravidadeAlerta.ALTA,
+                        String.format("Veículo sem sinal GPS há %d minutos", minutosSemSinal),
+                        agora));
+                } else if (gps == FECHOU) {
+                    transicoes = adicionar(transicoes, TransicaoAlerta.fechar(TipoAlerta.GPS_SEM_SINAL, agora));
+                }
+            }
+
+            // ===== TEMPO DE DIREÇÃO =====
+            long minutosDirigindo = viagem != null && viagem.getMotorista() != null && viagem.getDataInicio() != null
+                ? Duration.between(viagem.getDataInicio(), agora).toMinutes()
+                : -1;
+            boolean excedido = minutosDirigindo > limites.tempoDirecaoMaximoMinutos();
+            int direcao = passo(regras.regra(TipoAlerta.TEMPO_DIRECAO),
+                excedido, normal(TipoAlerta.TEMPO_DIRECAO, !excedido), 1, 1, reaberturaMs, agoraMs, agora);
+            if (direcao == ABRIU) {
+                transicoes = adicionar(transicoes, TransicaoAlerta.abrir(TipoAlerta.TEMPO_DIRECAO,
+                    GravidadeAlerta.ALTA,
+                    String.format("Motorista dirigindo por %d minutos sem pausa", minutosDirigindo),
+                    agora));
+            } else if (direcao == FECHOU) {
+                transicoes = adicionar(transicoes, TransicaoAlerta.fechar(TipoAlerta.TEMPO_DIRECAO, agora));
+            }
+        }
+
+        return transicoes != null ? transicoes : List.of();
+    }
+
+    /**
+     * Condição de normalidade; sempre falsa para tipos que não se resolvem sozinhos
+     */
+    private boolean normal(TipoAlerta tipo, boolean condicao) {
+        return condicao && autoResolver.contains(tipo);
+    }
+
+    /**
+     * Avança uma regra: conta telemetrias seguidas na direção da transição e
+     * muda o estado ao atingir o número exigido
+     */
+    private static int passo(EstadoRegrasAlerta.Regra regra, boolean condicao, boolean normal,
+                             int amostrasAbrir, int amostrasFechar, long reaberturaMs,
+                             long agoraMs, LocalDateTime agora) {
+        if (!regra.aberta) {
+            if (!condicao) {
+                regra.consecutivas = 0;
+                return SEM_MUDANCA;
+            }
+            // Dentro do intervalo de reabertura não abre; se a condição continuar, abre logo depois
+            if (++regra.consecutivas < amostrasAbrir || agoraMs - regra.ultimoDisparoMs < reaberturaMs) {
+                return SEM_MUDANCA;
+            }
+            regra.aberta = true;
+            regra.abertaEm = agora;
+            regra.ultimoDisparoMs = agoraMs;
+            regra.consecutivas = 0;
+            return ABRIU;
+        }
+
+        if (!normal) {
+            regra.consecutivas = 0;
+            return SEM_MUDANCA;
+        }
+        if (++regra.consecutivas < amostrasFechar) {
+            return SEM_MUDANCA;
+        }
+        regra.aberta = false;
+        regra.consecutivas = 0;
+        return FECHOU;
+    }
+
+    private static List<TransicaoAlerta> adicionar(List<TransicaoAlerta> transicoes, TransicaoAlerta transicao) {
+        if (transicoes == null) transicoes = new ArrayList<>(2);
+        transicoes.add(transicao);
+        return transicoes;
+    }
+
+    private boolean foraDaCidade(Telemetria telemetria) {
+        if (telemetria.getLatitude() == null || telemetria.getLongitude() == null) return false;
+        try {
+            String local = locationClassifierService.classify(telemetria.getLatitude(), telemetria.getLongitude());
+            return lentaSoEmRodovia
+                ? LocationClassifierService.RODOVIA.equals(local)
+                : !LocationClassifierService.AREA_URBANA.equals(local);
+        } catch (Exception e) {
+            log.warn("Erro ao classificar o local: {}", e.getMessage());
+            return false;
+        }
+    }
+}
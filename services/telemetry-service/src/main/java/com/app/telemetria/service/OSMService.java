@@ -1,6 +1,7 @@
 package com.app.telemetria.service;
 
 import org.springframework.stereotype.Service;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpEntity;
@@ -15,7 +16,14 @@ public class OSMService {
     private static final String NOMINATIM_URL =
             "https://nominatim.openstreetmap.org/reverse?format=json&lat=%s&lon=%s";
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
+
+    public OSMService() {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(5000);
+        factory.setReadTimeout(10000);
+        this.restTemplate = new RestTemplate(factory);
+    }
 
     public Map<String, Object> reverseGeocode(Double latitude, Double longitude) {
 
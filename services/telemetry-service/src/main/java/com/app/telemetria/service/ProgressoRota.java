@@ -0,0 +1,51 @@
+package com.app.telemetria.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progresso de um veículo ao longo de uma rota em andamento, calculado pelo
+ * DetectorDesvioRotaService a cada telemetria (projeção no segmento do cursor).
+ *
+ * velocidadeMediaMs é a velocidade ao longo da rota numa janela de tempo
+ * (metros avançados nos últimos minutos / duração da janela), não a
+ * velocidade instantânea do GPS nem uma média por amostra: uma parada curta
+ * pesa pelo tempo que durou, andando em círculos fora da rota ela não sobe.
+ * velocidadePisoMs é uma fração da velocidade planejada da rota (distância e
+ * tempo previstos, do cadastro ou do routing-service); a estimativa nunca
+ * usa menos que ela, então um semáforo ou uma parada para abastecer não
+ * jogam a chegada para o infinito.
+ */
+public record ProgressoRota(
+        Long rotaId,
+        Long veiculoId,
+        int segmento,
+        double percorridoMetros,
+        double restanteMetros,
+        double fracaoConcluida,
+        double distanciaAteRotaMetros,
+        double velocidadeMediaMs,
+        double velocidadePisoMs,
+        LocalDateTime dataHora) {
+
+    // Abaixo disso o veículo é tratado como parado e não há estimativa
+    private static final double VELOCIDADE_MINIMA_MS = 0.5;
+
+    /**
+     * Segundos restantes no ritmo da janela, nunca abaixo do piso; null se o
+     * veículo estiver parado e a rota não tiver velocidade planejada
+     */
+    public Long estimarSegundosRestantes() {
+        double velocidade = Math.max(velocidadeMediaMs, velocidadePisoMs);
+        if (velocidade < VELOCIDADE_MINIMA_MS) return null;
+        return Math.round(restanteMetros / velocidade);
+    }
+
+    /**
+     * Chegada estimada a partir da última telemetria; null se não há estimativa
+     */
+    public LocalDateTime estimarChegada() {
+        Long segundos = estimarSegundosRestantes();
+        if (segundos == null || dataHora == null) return null;
+        return dataHora.plusSeconds(segundos);
+    }
+}
@@ -0,0 +1,21 @@
+package com.app.telemetria.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Telemetrias descartadas de um veículo num intervalo de amostragem em área
+ * crítica, resumidas; publicado como evento Spring e no tópico WebSocket
+ * /topic/areas-criticas/resumos quando o intervalo fecha
+ */
+public record ResumoAreaCritica(
+        Long veiculoId,
+        LocalDateTime inicio,
+        LocalDateTime fim,
+        int recebidas,
+        int descartadas,
+        double velocidadeMinima,
+        double velocidadeMaxima,
+        double velocidadeMedia,
+        double ultimaLatitude,
+        double ultimaLongitude) {
+}
@@ -6,6 +6,7 @@ import java.util.List;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.app.telemetria.entity.Rota;
 import com.app.telemetria.entity.Veiculo;
@@ -14,18 +15,27 @@ import com.app.telemetria.exception.ErrorCode;
 import com.app.telemetria.repository.RotaRepository;
 import com.app.telemetria.repository.VeiculoRepository;
 
+/**
+ * Cadastro e status das rotas. O traçado (GeometriaRotaService, chamada HTTP
+ * ao routing-service) é buscado antes de abrir a transação de gravação, para
+ * não segurar conexão do pool durante a chamada.
+ */
 @Service
 public class RotaService {
 
     private final RotaRepository repository;
     private final VeiculoRepository veiculoRepository;
+    private final GeometriaRotaService geometriaRotaService;
+    private final TransactionTemplate transactionTemplate;
 
-    public RotaService(RotaRepository repository, VeiculoRepository veiculoRepository) {
+    public RotaService(RotaRepository repository, VeiculoRepository veiculoRepository,
+                       GeometriaRotaService geometriaRotaService, TransactionTemplate transactionTemplate) {
         this.repository = repository;
         this.veiculoRepository = veiculoRepository;
+        this.geometriaRotaService = geometriaRotaService;
+        this.transactionTemplate = transactionTemplate;
     }
 
-    @Transactional
     public Rota salvar(Rota rota) {
 
         validarRota(rota);
@@ -34,6 +44,10 @@ public class RotaService {
             rota.setStatus("PLANEJADA");
         }
 
+        // Traçado enviado pelo cliente não é aceito; vem sempre do routing-service
+        rota.setGeometria(null);
+        geometriaRotaService.preencherSeAusente(rota);
+
         try {
             return repository.save(rota);
         } catch (DataIntegrityViolationException e) {
@@ -55,11 +69,19 @@ public class RotaService {
                 ));
     }
 
-    @Transactional
     public Rota atualizar(Long id, Rota dados) {
 
+        // Lida na própria transação (somente leitura); alterada fora dela
         Rota rota = buscarPorId(id);
 
+        // Origem/destino alterados invalidam o traçado
+        if (alterado(rota.getLatitudeOrigem(), dados.getLatitudeOrigem())
+                || alterado(rota.getLongitudeOrigem(), dados.getLongitudeOrigem())
+                || alterado(rota.getLatitudeDestino(), dados.getLatitudeDestino())
+                || alterado(rota.getLongitudeDestino(), dados.getLongitudeDestino())) {
+            rota.setGeometria(null);
+        }
+
         if (dados.getNome() != null) rota.setNome(dados.getNome());
         if (dados.getOrigem() != null) rota.setOrigem(dados.getOrigem());
         if (dados.getDestino() != null) rota.setDestino(dados.getDestino());
@@ -75,17 +97,22 @@ public class RotaService {
 
         atualizarStatusSeNecessario(rota, dados.getStatus());
 
-        if (dados.getVeiculo() != null && dados.getVeiculo().getId() != null) {
-            Veiculo veiculo = veiculoRepository.findById(dados.getVeiculo().getId())
-                    .orElseThrow(() -> new BusinessException(
-                            ErrorCode.VEICULO_NOT_FOUND,
-                            "Veículo não encontrado com id: " + dados.getVeiculo().getId()
-                    ));
-            rota.setVeiculo(veiculo);
+        if ("EM_ANDAMENTO".equals(rota.getStatus())) {
+            geometriaRotaService.preencherSeAusente(rota);
         }
 
         try {
-            return repository.save(rota);
+            return transactionTemplate.execute(status -> {
+                if (dados.getVeiculo() != null && dados.getVeiculo().getId() != null) {
+                    Veiculo veiculo = veiculoRepository.findById(dados.getVeiculo().getId())
+                            .orElseThrow(() -> new BusinessException(
+                                    ErrorCode.VEICULO_NOT_FOUND,
+                                    "Veículo não encontrado com id: " + dados.getVeiculo().getId()
+                            ));
+                    rota.setVeiculo(veiculo);
+                }
+                return repository.save(rota);
+            });
         } catch (DataIntegrityViolationException e) {
             throw handleIntegrityException(e, dados.getNome());
         }
@@ -101,9 +128,9 @@ public class RotaService {
     // GERENCIAMENTO DE STATUS
     // ===============================
 
-    @Transactional
     public Rota iniciarRota(Long id) {
         Rota rota = buscarPorId(id);
+        geometriaRotaService.preencherSeAusente(rota);
         rota.setStatus("EM_ANDAMENTO");
         rota.setDataInicio(LocalDateTime.now());
         return repository.save(rota);
@@ -147,6 +174,10 @@ public class RotaService {
         }
     }
 
+    private static boolean alterado(Double atual, Double novo) {
+        return novo != null && !novo.equals(atual);
+    }
+
     private BusinessException handleIntegrityException(DataIntegrityViolationException e, String nome) {
 
         String message = e.getMostSpecificCause().getMessage();
@@ -0,0 +1,431 @@
+package com.app.telemetria.service;
+
+import com.app.telemetria.entity.GeometriaRota;
+import com.app.telemetria.entity.PontoRota;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Geometria de uma rota pré-processada para o cálculo de desvio.
+ *
+ * Os pontos são projetados uma vez em metros (equiretangular na latitude
+ * média da rota, o que mantém o erro de escala desprezível na extensão de
+ * uma rota) e os segmentos ficam numa R-tree estática empacotada por STR
+ * (Sort-Tile-Recursive). A consulta "segmento mais próximo" desce a árvore
+ * podando os nós cuja caixa já está mais longe que o melhor candidato, então
+ * rotas com milhares de pontos (overview completo do OSRM) custam poucas
+ * dezenas de testes de segmento por telemetria.
+ *
+ * Imutável depois de montada; pode ser consultada por várias threads.
+ */
+public final class SegmentosRota {
+
+    private static final double RAIO_TERRA = 6371000; // metros
+    private static final int CAPACIDADE_NO = 16;
+
+    private final double escalaX; // metros por radiano de longitude na latitude de referência
+
+    // Pontos projetados (metros)
+    private final double[] x;
+    private final double[] y;
+    private final int totalSegmentos;
+    // Distância ao longo da rota até cada ponto (metros); acumulado[último] é o comprimento total
+    private final double[] acumulado;
+
+    // Árvore: níveis[0] são as folhas (grupos de segmentos), o último nível é a raiz
+    private final Nivel[] niveis;
+    // Segmentos na ordem STR; as folhas apontam para faixas contíguas deste array
+    private final int[] segmentosOrdenados;
+
+    private SegmentosRota(double[] lat, double[] lon) {
+        double somaLat = 0;
+        for (double l : lat) somaLat += l;
+        double latRef = lat.length > 0 ? somaLat / lat.length : 0;
+        this.escalaX = RAIO_TERRA * Math.cos(Math.toRadians(latRef));
+
+        this.x = new double[lat.length];
+        this.y = new double[lat.length];
+        for (int i = 0; i < lat.length; i++) {
+            x[i] = projetarX(lon[i]);
+            y[i] = projetarY(lat[i]);
+        }
+
+        this.totalSegmentos = lat.length >= 2 ? lat.length - 1 : lat.length;
+        this.acumulado = new double[lat.length];
+        for (int i = 1; i < lat.length; i++) {
+            acumulado[i] = acumulado[i - 1] + Math.hypot(x[i] - x[i - 1], y[i] - y[i - 1]);
+        }
+        this.segmentosOrdenados = new int[totalSegmentos];
+        this.niveis = construirArvore();
+    }
+
+    /**
+     * Monta a geometria a partir dos pontos (na ordem da lista); pontos sem
+     * coordenada são ignorados. Uma rota de um único ponto vira um segmento
+     * degenerado (distância até o ponto).
+     */
+    public static SegmentosRota de(List<PontoRota> pontos) {
+        int validos = 0;
+        for (PontoRota p : pontos) {
+            if (p.getLatitude() != null && p.getLongitude() != null) validos++;
+        }
+        double[] lat = new double[validos];
+        double[] lon = new double[validos];
+        int i = 0;
+        for (PontoRota p : pontos) {
+            if (p.getLatitude() == null || p.getLongitude() == null) continue;
+            lat[i] = p.getLatitude();
+            lon[i] = p.getLongitude();
+            i++;
+        }
+        return new SegmentosRota(lat, lon);
+    }
+
+    /**
+     * Mesma montagem a partir de arrays de coordenadas (graus)
+     */
+    public static SegmentosRota de(double[] latitudes, double[] longitudes) {
+        if (latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("latitudes e longitudes com tamanhos diferentes");
+        }
+        return new SegmentosRota(latitudes.clone(), longitudes.clone());
+    }
+
+    /**
+     * Montagem direto dos arrays decodificados do traçado (não são alterados
+     * nem retidos, então dispensam cópia)
+     */
+    public static SegmentosRota de(GeometriaRota geometria) {
+        return new SegmentosRota(geometria.getLatitudes(), geometria.getLongitudes());
+    }
+
+    public int getTotalSegmentos() {
+        return totalSegmentos;
+    }
+
+    public int getTotalPontos() {
+        return x.length;
+    }
+
+    /**
+     * Comprimento da rota em metros (soma dos segmentos)
+     */
+    public double getComprimentoTotal() {
+        return acumulado.length > 0 ? acumulado[acumulado.length - 1] : 0;
+    }
+
+    // ================ CONSULTAS ================
+
+    /**
+     * Menor distância em metros do ponto até a rota; Double.MAX_VALUE se a
+     * rota não tiver pontos
+     */
+    public double distanciaAte(double latitude, double longitude) {
+        Proximidade p = maisProximo(latitude, longitude);
+        return p != null ? p.distanciaMetros() : Double.MAX_VALUE;
+    }
+
+    /**
+     * Segmento mais próximo do ponto, a distância em metros e a fração (0..1)
+     * da projeção ao longo do segmento; null se a rota não tiver pontos
+     */
+    public Proximidade maisProximo(double latitude, double longitude) {
+        if (totalSegmentos == 0) return null;
+
+        double px = projetarX(longitude);
+        double py = projetarY(latitude);
+        Busca busca = new Busca();
+        semear(px, py, busca);
+        Nivel raiz = niveis[niveis.length - 1];
+        for (int no = 0; no < raiz.total; no++) {
+            buscar(niveis.length - 1, no, px, py, busca);
+        }
+        return new Proximidade(busca.segmento, Math.sqrt(busca.melhorD2), fracao(busca.segmento, px, py));
+    }
+
+    /**
+     * Busca com cursor para quem acompanha um veículo ao longo da rota: testa
+     * primeiro os segmentos [cursor - atras, cursor + frente] e só recorre à
+     * árvore quando o melhor deles está a mais de limiteMetros (veículo
+     * "perdido": desvio, salto de GPS ou cursor ainda não inicializado).
+     * Com cursor negativo vai direto à árvore.
+     */
+    public Proximidade maisProximoPerto(double latitude, double longitude,
+                                        int cursor, int atras, int frente, double limiteMetros) {
+        if (totalSegmentos == 0) return null;
+        if (cursor < 0) return maisProximo(latitude, longitude);
+
+        double px = projetarX(longitude);
+        double py = projetarY(latitude);
+        int inicio = Math.max(0, cursor - atras);
+        int fim = Math.min(totalSegmentos - 1, cursor + frente);
+        int melhor = -1;
+        double melhorD2 = Double.MAX_VALUE;
+        for (int s = inicio; s <= fim; s++) {
+            double d2 = distancia2(s, px, py);
+            if (d2 < melhorD2) {
+                melhorD2 = d2;
+                melhor = s;
+            }
+        }
+
+        if (melhor < 0 || melhorD2 > limiteMetros * limiteMetros) {
+            return maisProximo(latitude, longitude);
+        }
+        return new Proximidade(melhor, Math.sqrt(melhorD2), fracao(melhor, px, py));
+    }
+
+    /**
+     * Distância percorrida ao longo da rota (metros) até a projeção do ponto
+     */
+    public double distanciaAoLongo(Proximidade proximidade) {
+        int s = proximidade.segmento();
+        int b = Math.min(s + 1, acumulado.length - 1);
+        return acumulado[s] + proximidade.fracao() * (acumulado[b] - acumulado[s]);
+    }
+
+    /**
+     * Varredura linear de todos os segmentos (referência para testes e
+     * benchmark; mesma projeção da árvore)
+     */
+    public double distanciaAteLinear(double latitude, double longitude) {
+        if (totalSegmentos == 0) return Double.MAX_VALUE;
+
+        double px = projetarX(longitude);
+        double py = projetarY(latitude);
+        double menor = Double.MAX_VALUE;
+        for (int s = 0; s < totalSegmentos; s++) {
+            menor = Math.min(menor, distancia2(s, px, py));
+        }
+        return Math.sqrt(menor);
+    }
+
+    /**
+     * Descida gulosa pelo filho de caixa mais próxima até uma folha: dá um
+     * primeiro candidato bom, o que faz a busca completa podar quase tudo
+     */
+    private void semear(double px, double py, Busca busca) {
+        int nivel = niveis.length - 1;
+        int inicio = 0;
+        int fim = niveis[nivel].total;
+        while (true) {
+            Nivel n = niveis[nivel];
+            int melhor = inicio;
+            double melhorD2 = Double.MAX_VALUE;
+            for (int no = inicio; no < fim; no++) {
+                double d2 = distancia2Caixa(n, no, px, py);
+                if (d2 < melhorD2) {
+                    melhorD2 = d2;
+                    melhor = no;
+                }
+            }
+            inicio = n.primeiroFilho[melhor];
+            fim = n.fimFilhos[melhor];
+            if (nivel == 0) break;
+            nivel--;
+        }
+        for (int i = inicio; i < fim; i++) {
+            int s = segmentosOrdenados[i];
+            double d2 = distancia2(s, px, py);
+            if (d2 < busca.melhorD2) {
+                busca.melhorD2 = d2;
+                busca.segmento = s;
+            }
+        }
+    }
+
+    private void buscar(int nivel, int no, double px, double py, Busca busca) {
+        Nivel n = niveis[nivel];
+        if (distancia2Caixa(n, no, px, py) >= busca.melhorD2) return;
+
+        int inicio = n.primeiroFilho[no];
+        int fim = n.fimFilhos[no];
+        if (nivel == 0) {
+            for (int i = inicio; i < fim; i++) {
+                int s = segmentosOrdenados[i];
+                double d2 = distancia2(s, px, py);
+                if (d2 < busca.melhorD2 || (d2 == busca.melhorD2 && s < busca.segmento)) {
+                    busca.melhorD2 = d2;
+                    busca.segmento = s;
+                }
+            }
+        } else {
+            for (int filho = inicio; filho < fim; filho++) {
+                buscar(nivel - 1, filho, px, py, busca);
+            }
+        }
+    }
+
+    /**
+     * Distância ao quadrado (m²) do ponto projetado até o segmento s
+     */
+    private double distancia2(int s, double px, double py) {
+        double t = fracao(s, px, py);
+        int b = Math.min(s + 1, x.length - 1);
+        double qx = x[s] + t * (x[b] - x[s]) - px;
+        double qy = y[s] + t * (y[b] - y[s]) - py;
+        return qx * qx + qy * qy;
+    }
+
+    private double fracao(int s, double px, double py) {
+        int b = Math.min(s + 1, x.length - 1);
+        double dx = x[b] - x[s];
+        double dy = y[b] - y[s];
+        double comprimento2 = dx * dx + dy * dy;
+        if (comprimento2 == 0) return 0;
+        double t = ((px - x[s]) * dx + (py - y[s]) * dy) / comprimento2;
+        return t < 0 ? 0 : (t > 1 ? 1 : t);
+    }
+
+    private static double distancia2Caixa(Nivel n, int no, double px, double py) {
+        double dx = px < n.minX[no] ? n.minX[no] - px : (px > n.maxX[no] ? px - n.maxX[no] : 0);
+        double dy = py < n.minY[no] ? n.minY[no] - py : (py > n.maxY[no] ? py - n.maxY[no] : 0);
+        return dx * dx + dy * dy;
+    }
+
+    private double projetarX(double longitude) {
+        return Math.toRadians(longitude) * escalaX;
+    }
+
+    private double projetarY(double latitude) {
+        return Math.toRadians(latitude) * RAIO_TERRA;
+    }
+
+    // ================ CONSTRUÇÃO (STR) ================
+
+    private Nivel[] construirArvore() {
+        if (totalSegmentos == 0) return new Nivel[] { new Nivel(0) };
+
+        // Caixas dos segmentos
+        int n = totalSegmentos;
+        double[] minX = new double[n], minY = new double[n], maxX = new double[n], maxY = new double[n];
+        for (int s = 0; s < n; s++) {
+            int b = Math.min(s + 1, x.length - 1);
+            minX[s] = Math.min(x[s], x[b]);
+            maxX[s] = Math.max(x[s], x[b]);
+            minY[s] = Math.min(y[s], y[b]);
+            maxY[s] = Math.max(y[s], y[b]);
+        }
+
+        int[] ordem = ordenarStr(minX, minY, maxX, maxY, n);
+        System.arraycopy(ordem, 0, segmentosOrdenados, 0, n);
+
+        // Folhas: grupos consecutivos de segmentos na ordem STR
+        List<Nivel> resultado = new ArrayList<>();
+        Nivel atual = agrupar(ordem, minX, minY, maxX, maxY, n);
+        resultado.add(atual);
+
+        // Níveis internos: os nós do nível abaixo são reordenados por STR e agrupados
+        while (atual.total > 1) {
+            Nivel abaixo = atual;
+            int[] ordemNos = ordenarStr(abaixo.minX, abaixo.minY, abaixo.maxX, abaixo.maxY, abaixo.total);
+            abaixo.permutar(ordemNos);
+            int[] identidade = new int[abaixo.total];
+            for (int i = 0; i < identidade.length; i++) identidade[i] = i;
+            atual = agrupar(identidade, abaixo.minX, abaixo.minY, abaixo.maxX, abaixo.maxY, abaixo.total);
+            resultado.add(atual);
+        }
+        return resultado.toArray(new Nivel[0]);
+    }
+
+    /**
+     * Ordem STR: fatia por x do centro em ceil(sqrt(P)) faixas e ordena cada
+     * faixa por y do centro, onde P é o número de grupos resultantes
+     */
+    private static int[] ordenarStr(double[] minX, double[] minY, double[] maxX, double[] maxY, int n) {
+        Integer[] idx = new Integer[n];
+        for (int i = 0; i < n; i++) idx[i] = i;
+
+        Arrays.sort(idx, (a, b) -> Double.compare(minX[a] + maxX[a], minX[b] + maxX[b]));
+
+        int grupos = (n + CAPACIDADE_NO - 1) / CAPACIDADE_NO;
+        int fatias = (int) Math.ceil(Math.sqrt(grupos));
+        int porFatia = fatias * CAPACIDADE_NO;
+        for (int inicio = 0; inicio < n; inicio += porFatia) {
+            int fim = Math.min(n, inicio + porFatia);
+            Arrays.sort(idx, inicio, fim, (a, b) -> Double.compare(minY[a] + maxY[a], minY[b] + maxY[b]));
+        }
+
+        int[] ordem = new int[n];
+        for (int i = 0; i < n; i++) ordem[i] = idx[i];
+        return ordem;
+    }
+
+    /**
+     * Agrupa os itens (na ordem dada) em nós de até CAPACIDADE_NO filhos
+     * contíguos; o nó guarda a caixa que envolve os filhos
+     */
+    private static Nivel agrupar(int[] ordem, double[] minX, double[] minY, double[] maxX, double[] maxY, int n) {
+        int total = (n + CAPACIDADE_NO - 1) / CAPACIDADE_NO;
+        Nivel nivel = new Nivel(total);
+        for (int no = 0; no < total; no++) {
+            int inicio = no * CAPACIDADE_NO;
+            int fim = Math.min(n, inicio + CAPACIDADE_NO);
+            nivel.primeiroFilho[no] = inicio;
+            nivel.fimFilhos[no] = fim;
+            nivel.minX[no] = Double.MAX_VALUE;
+            nivel.minY[no] = Double.MAX_VALUE;
+            nivel.maxX[no] = -Double.MAX_VALUE;
+            nivel.maxY[no] = -Double.MAX_VALUE;
+            for (int i = inicio; i < fim; i++) {
+                int item = ordem[i];
+                nivel.minX[no] = Math.min(nivel.minX[no], minX[item]);
+                nivel.minY[no] = Math.min(nivel.minY[no], minY[item]);
+                nivel.maxX[no] = Math.max(nivel.maxX[no], maxX[item]);
+                nivel.maxY[no] = Math.max(nivel.maxY[no], maxY[item]);
+            }
+        }
+        return nivel;
+    }
+
+    /**
+     * Nós de um nível da árvore em arrays paralelos; os filhos do nó i são
+     * [primeiroFilho[i], fimFilhos[i]) no nível abaixo (ou em segmentosOrdenados)
+     */
+    private static final class Nivel {
+        final int total;
+        final double[] minX, minY, maxX, maxY;
+        final int[] primeiroFilho, fimFilhos;
+
+        Nivel(int total) {
+            this.total = total;
+            this.minX = new double[total];
+            this.minY = new double[total];
+            this.maxX = new double[total];
+            this.maxY = new double[total];
+            this.primeiroFilho = new int[total];
+            this.fimFilhos = new int[total];
+        }
+
+        /**
+         * Reordena os nós (a faixa de filhos de cada nó vai junto)
+         */
+        void permutar(int[] ordem) {
+            double[] aMinX = minX.clone(), aMinY = minY.clone(), aMaxX = maxX.clone(), aMaxY = maxY.clone();
+            int[] aPrimeiro = primeiroFilho.clone(), aFim = fimFilhos.clone();
+            for (int i = 0; i < total; i++) {
+                int o = ordem[i];
+                minX[i] = aMinX[o];
+                minY[i] = aMinY[o];
+                maxX[i] = aMaxX[o];
+                maxY[i] = aMaxY[o];
+                primeiroFilho[i] = aPrimeiro[o];
+                fimFilhos[i] = aFim[o];
+            }
+        }
+    }
+
+    private static final class Busca {
+        double melhorD2 = Double.MAX_VALUE;
+        int segmento = -1;
+    }
+
+    /**
+     * Resultado da consulta: índice do segmento (ponto inicial na ordem da
+     * rota), distância em metros e fração da projeção ao longo do segmento
+     */
+    public record Proximidade(int segmento, double distanciaMetros, double fracao) {
+    }
+}
@@ -0,0 +1,284 @@
+package com.app.telemetria.service;
+
+import com.app.telemetria.codec.TelemetriaCodec;
+import com.app.telemetria.codec.TelemetriaMensagem;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingestão em lote de telemetrias acumuladas por gateways (cenário de baixa
+ * conectividade). O corpo é lido registro a registro - com o JsonParser do
+ * Jackson para array JSON/NDJSON, ou frame a frame no formato binário v1 - e
+ * nunca é carregado inteiro em memória. Os registros válidos vão para o
+ * telemetria-raw em blocos; o resultado de cada registro é escrito na
+ * resposta assim que o bloco dele é confirmado pelo Kafka.
+ */
+@Service
+public class TelemetriaLoteService {
+
+    private static final Logger log = LoggerFactory.getLogger(TelemetriaLoteService.class);
+
+    public static final String STATUS_ACEITO = "ACEITO";
+    public static final String STATUS_REJEITADO = "REJEITADO";
+
+    private final KafkaTemplate<String, TelemetriaMensagem> kafkaTemplate;
+    private final VeiculoIdCache veiculoIdCache;
+    private final ObjectMapper objectMapper;
+
+    @Value("${spring.kafka.topic.telemetria:telemetria-raw}")
+    private String topicoTelemetria;
+
+    @Value("${telemetria.lote.tamanho-envio:500}")
+    private int tamanhoEnvio;
+
+    @Value("${telemetria.lote.max-registros:100000}")
+    private int maxRegistros;
+
+    @Value("${telemetria.lote.timeout-envio-ms:10000}")
+    private long timeoutEnvioMs;
+
+    public TelemetriaLoteService(KafkaTemplate<String, TelemetriaMensagem> kafkaTemplate,
+                                 VeiculoIdCache veiculoIdCache,
+                                 ObjectMapper objectMapper) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.veiculoIdCache = veiculoIdCache;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Lê um array JSON ou NDJSON da entrada e escreve na saída:
+     * {"resultados":[{"indice":0,"veiculoId":1,"status":"ACEITO"},...],
+     *  "total":n,"aceitos":a,"rejeitados":r,"truncado":false}
+     */
+    public void processar(InputStream entrada, JsonGenerator saida) throws IOException {
+        Sessao sessao = new Sessao(saida);
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(entrada)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+
+            // NDJSON: o parser lê valores raiz em sequência separados por espaço/quebra de linha
+            while (token != null && token != JsonToken.END_ARRAY) {
+                if (sessao.limiteAtingido()) break;
+
+                int indice = sessao.proximoIndice();
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    sessao.adicionar(Resultado.rejeitado(indice, null, "registro não é um objeto JSON"));
+                } else {
+                    sessao.adicionar(enviarJson(indice, parser));
+                }
+                token = parser.nextToken();
+            }
+        } catch (JsonProcessingException e) {
+            // JSON malformado: não há como ressincronizar, o restante do corpo é descartado
+            sessao.erro = "JSON inválido após o registro " + sessao.total + ": " + e.getOriginalMessage();
+        }
+
+        sessao.finalizar();
+    }
+
+    /**
+     * Lê uma sequência de frames binários v1 (36 bytes cada) e escreve o mesmo
+     * relatório de processar(...)
+     */
+    public void processarBinario(InputStream entrada, JsonGenerator saida) throws IOException {
+        Sessao sessao = new Sessao(saida);
+        byte[] frame = new byte[TelemetriaCodec.TAMANHO_V1];
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+
+        while (!sessao.limiteAtingido()) {
+            int lidos = entrada.readNBytes(frame, 0, frame.length);
+            if (lidos == 0) break;
+
+            int indice = sessao.proximoIndice();
+            if (lidos < frame.length) {
+                sessao.adicionar(Resultado.rejeitado(indice, null, "frame binário incompleto"));
+                break;
+            }
+
+            buffer.clear();
+            try {
+                sessao.adicionar(enviar(indice, TelemetriaCodec.decodificarBinario(buffer, new TelemetriaMensagem())));
+            } catch (IllegalArgumentException e) {
+                // Sem o byte mágico/versão não dá para confiar no alinhamento dos próximos frames
+                sessao.adicionar(Resultado.rejeitado(indice, null, e.getMessage()));
+                sessao.erro = "frame inválido no registro " + indice + ", restante descartado";
+                break;
+            }
+        }
+
+        sessao.finalizar();
+    }
+
+    private Resultado enviarJson(int indice, JsonParser parser) throws IOException {
+        TelemetriaMensagem mensagem = new TelemetriaMensagem();
+        try {
+            return enviar(indice, TelemetriaCodec.decodificarJson(parser, mensagem));
+        } catch (IllegalArgumentException e) {
+            Long veiculoId = mensagem.getVeiculoId() > 0 ? mensagem.getVeiculoId() : null;
+            return Resultado.rejeitado(indice, veiculoId, e.getMessage());
+        }
+    }
+
+    /**
+     * Valida a mensagem e publica no Kafka no formato binário v1. A mensagem
+     * é exclusiva do registro: o ProducerRecord e os callbacks do envio
+     * continuam com a referência depois do send.
+     */
+    private Resultado enviar(int indice, TelemetriaMensagem mensagem) {
+        Long veiculoId = mensagem.getVeiculoId() > 0 ? mensagem.getVeiculoId() : null;
+        try {
+            TelemetriaCodec.validar(mensagem);
+        } catch (IllegalArgumentException e) {
+            return Resultado.rejeitado(indice, veiculoId, e.getMessage());
+        }
+        if (!veiculoIdCache.existe(veiculoId)) {
+            return Resultado.rejeitado(indice, veiculoId, "veículo não encontrado");
+        }
+
+        try {
+            CompletableFuture<SendResult<String, TelemetriaMensagem>> envio = kafkaTemplate.send(
+                topicoTelemetria, veiculoId.toString(), mensagem);
+            return new Resultado(indice, veiculoId, envio, null);
+        } catch (Exception e) {
+            return Resultado.rejeitado(indice, veiculoId, "falha no envio: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Aguarda a confirmação dos envios do bloco e escreve os resultados em ordem
+     */
+    private int concluirBloco(List<Resultado> bloco, JsonGenerator saida) throws IOException {
+        if (bloco.isEmpty()) return 0;
+
+        // Não espera o linger.ms do producer para fechar o bloco
+        kafkaTemplate.flush();
+
+        int aceitos = 0;
+        long limite = System.currentTimeMillis() + timeoutEnvioMs;
+        for (Resultado resultado : bloco) {
+            String motivo = resultado.motivo;
+            if (resultado.envio != null) {
+                try {
+                    long restante = Math.max(1, limite - System.currentTimeMillis());
+                    resultado.envio.get(restante, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    motivo = "envio interrompido";
+                } catch (Exception e) {
+                    motivo = "falha no envio ao Kafka";
+                }
+            }
+
+            saida.writeStartObject();
+            saida.writeNumberField("indice", resultado.indice);
+            if (resultado.veiculoId != null) {
+                saida.writeNumberField("veiculoId", resultado.veiculoId);
+            }
+            if (motivo == null) {
+                saida.writeStringField("status", STATUS_ACEITO);
+                aceitos++;
+            } else {
+                saida.writeStringField("status", STATUS_REJEITADO);
+                saida.writeStringField("motivo", motivo);
+            }
+            saida.writeEndObject();
+        }
+
+        saida.flush();
+        bloco.clear();
+        return aceitos;
+    }
+
+    /**
+     * Estado de uma requisição: contadores, bloco pendente e escrita do relatório
+     */
+    private class Sessao {
+        final JsonGenerator saida;
+        final List<Resultado> bloco = new ArrayList<>(tamanhoEnvio);
+        int total = 0;
+        int aceitos = 0;
+        boolean truncado = false;
+        String erro;
+
+        Sessao(JsonGenerator saida) throws IOException {
+            this.saida = saida;
+            saida.writeStartObject();
+            saida.writeArrayFieldStart("resultados");
+        }
+
+        boolean limiteAtingido() {
+            if (total >= maxRegistros) {
+                truncado = true;
+            }
+            return truncado;
+        }
+
+        int proximoIndice() {
+            return total++;
+        }
+
+        void adicionar(Resultado resultado) throws IOException {
+            bloco.add(resultado);
+            if (bloco.size() >= tamanhoEnvio) {
+                aceitos += concluirBloco(bloco, saida);
+            }
+        }
+
+        void finalizar() throws IOException {
+            aceitos += concluirBloco(bloco, saida);
+
+            saida.writeEndArray();
+            saida.writeNumberField("total", total);
+            saida.writeNumberField("aceitos", aceitos);
+            saida.writeNumberField("rejeitados", total - aceitos);
+            saida.writeBooleanField("truncado", truncado);
+            if (erro != null) {
+                saida.writeStringField("erro", erro);
+            }
+            saida.writeEndObject();
+            saida.flush();
+
+            log.info("📦 Lote de telemetria: {}/{} registros aceitos{}", aceitos, total,
+                truncado ? " (truncado em " + maxRegistros + ")" : "");
+        }
+    }
+
+    private static class Resultado {
+        final int indice;
+        final Long veiculoId;
+        final CompletableFuture<SendResult<String, TelemetriaMensagem>> envio;
+        final String motivo;
+
+        Resultado(int indice, Long veiculoId, CompletableFuture<SendResult<String, TelemetriaMensagem>> envio, String motivo) {
+            this.indice = indice;
+            this.veiculoId = veiculoId;
+            this.envio = envio;
+            this.motivo = motivo;
+        }
+
+        static Resultado rejeitado(int indice, Long veiculoId, String motivo) {
+            return new Resultado(indice, veiculoId, null, motivo);
+        }
+    }
+}
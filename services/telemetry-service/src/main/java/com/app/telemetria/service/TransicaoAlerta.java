@@ -0,0 +1,26 @@
+package com.app.telemetria.service;
+
+import com.app.telemetria.enums.GravidadeAlerta;
+import com.app.telemetria.enums.TipoAlerta;
+
+import java.time.LocalDateTime;
+
+/**
+ * Mudança de estado de uma regra de alerta: abrir (gravar um alerta novo)
+ * ou fechar (resolver os alertas abertos do tipo)
+ */
+public record TransicaoAlerta(
+        TipoAlerta tipo,
+        boolean abrir,
+        GravidadeAlerta gravidade,
+        String mensagem,
+        LocalDateTime dataHora) {
+
+    static TransicaoAlerta abrir(TipoAlerta tipo, GravidadeAlerta gravidade, String mensagem, LocalDateTime dataHora) {
+        return new TransicaoAlerta(tipo, true, gravidade, mensagem, dataHora);
+    }
+
+    static TransicaoAlerta fechar(TipoAlerta tipo, LocalDateTime dataHora) {
+        return new TransicaoAlerta(tipo, false, null, null, dataHora);
+    }
+}
@@ -0,0 +1,51 @@
+package com.app.telemetria.service;
+
+import com.app.telemetria.repository.VeiculoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+
+/**
+ * Conjunto de IDs de veículos cadastrados, usado para validar a ingestão
+ * sem consultar o banco a cada registro. É recarregado por inteiro quando
+ * fica mais velho que o intervalo configurado ou quando aparece um ID
+ * desconhecido (no máximo uma recarga por segundo, para IDs inválidos não
+ * virarem uma consulta por registro).
+ */
+@Service
+public class VeiculoIdCache {
+
+    private final VeiculoRepository veiculoRepository;
+    private final long intervaloRecargaMs;
+
+    private volatile Set<Long> ids = Set.of();
+    private volatile long ultimaRecarga = 0;
+
+    public VeiculoIdCache(VeiculoRepository veiculoRepository,
+                          @Value("${telemetria.veiculo-ids.recarga-ms:30000}") long intervaloRecargaMs) {
+        this.veiculoRepository = veiculoRepository;
+        this.intervaloRecargaMs = intervaloRecargaMs;
+    }
+
+    public boolean existe(Long veiculoId) {
+        if (veiculoId == null) return false;
+
+        long agora = System.currentTimeMillis();
+        boolean expirado = agora - ultimaRecarga > intervaloRecargaMs;
+
+        if (expirado || (!ids.contains(veiculoId) && agora - ultimaRecarga > 1000)) {
+            recarregar(expirado);
+        }
+        return ids.contains(veiculoId);
+    }
+
+    private synchronized void recarregar(boolean expirado) {
+        // Outra thread pode ter recarregado enquanto esta esperava
+        long desdeUltima = System.currentTimeMillis() - ultimaRecarga;
+        if (expirado ? desdeUltima <= intervaloRecargaMs : desdeUltima <= 1000) return;
+
+        ids = Set.copyOf(veiculoRepository.findAllIds());
+        ultimaRecarga = System.currentTimeMillis();
+    }
+}
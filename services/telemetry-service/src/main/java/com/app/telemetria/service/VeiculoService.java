@@ -41,6 +41,9 @@ public class VeiculoService {
         veiculo.setPlaca(dados.getPlaca());
         veiculo.setModelo(dados.getModelo());
         veiculo.setCapacidadeCarga(dados.getCapacidadeCarga());
+        if (dados.getTipoVeiculo() != null) {
+            veiculo.setTipoVeiculo(dados.getTipoVeiculo());
+        }
 
         Veiculo atualizado = repository.save(veiculo);
 
@@ -56,7 +59,8 @@ public class VeiculoService {
                 veiculo.getId(),
                 veiculo.getPlaca(),
                 veiculo.getModelo(),
-                veiculo.getCapacidadeCarga()
+                veiculo.getCapacidadeCarga(),
+                veiculo.getTipoVeiculo()
         );
     }
 }
@@ -4,8 +4,12 @@ import com.app.telemetria.entity.Alerta;
 import com.app.telemetria.entity.Veiculo;
 import com.app.telemetria.entity.Viagem;
 import com.app.telemetria.exception.WeatherApiException;
-import com.app.telemetria.repository.AlertaRepository;
 import com.app.telemetria.repository.VeiculoRepository;
+import com.app.telemetria.util.GeoHash;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Recover;
@@ -20,17 +24,44 @@ import jakarta.annotation.PostConstruct;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+/**
+ * Alertas climáticos por veículo a partir do OpenWeather.
+ *
+ * O clima fica numa grade por célula de geohash (telemetria.clima.celula-precisao,
+ * 5 ~ 4,9 km), consultado no centro da célula. Quem preenche a grade é o
+ * GradeClimaService, que atualiza as células dos corredores das viagens em
+ * andamento dentro do limite de chamadas da API; a verificação por veículo
+ * só lê a grade e nunca chama a rede. Uma célula pedida sem clima na grade
+ * fica registrada como demanda e entra na próxima atualização.
+ */
 @Service
 public class WeatherAlertService {
     
+    private static final Logger log = LoggerFactory.getLogger(WeatherAlertService.class);
+    
     private final WebClient webClient;
-    private final AlertaRepository alertaRepository;
+    private final GravacaoAlertasService gravacaoAlertas;
     private final VeiculoRepository veiculoRepository;
-    private final Map<Long, LocalDateTime> ultimoAlertaPorVeiculo = new HashMap<>();
+    // Veículo -> último alerta; expira sozinho ao fim do intervalo entre alertas
+    private final Cache<Long, LocalDateTime> ultimoAlertaPorVeiculo;
+    // Célula de geohash -> último clima obtido; descartado após idade-maxima-minutos
+    private final Cache<Long, ClimaCelula> climaPorCelula;
+    // Células pedidas sem clima na grade -> veículos que pediram (drenado a cada atualização)
+    private final Map<Long, Set<Long>> demanda = new ConcurrentHashMap<>();
+    private final int precisaoCelula;
+    private final Duration timeoutConsulta = Duration.ofSeconds(10);
+    
+    private final LongAdder consultas = new LongAdder();
+    private final LongAdder semDadosNaGrade = new LongAdder();
+    private final LongAdder chamadasApi = new LongAdder();
+    private final LongAdder falhasApi = new LongAdder();
+    private final LongAdder veiculosNoIntervalo = new LongAdder();
     
     @Value("${openweather.api.key:}")
     private String apiKey;
@@ -45,38 +76,46 @@ public class WeatherAlertService {
     private String lang;
     
     // ========== CONSTRUTOR ==========
-    public WeatherAlertService(AlertaRepository alertaRepository, VeiculoRepository veiculoRepository) {
-        this.alertaRepository = alertaRepository;
+    public WeatherAlertService(
+            GravacaoAlertasService gravacaoAlertas,
+            VeiculoRepository veiculoRepository,
+            @Value("${telemetria.clima.celula-precisao:5}") int precisaoCelula,
+            @Value("${telemetria.clima.idade-maxima-minutos:60}") long idadeMaximaMinutos,
+            @Value("${telemetria.clima.max-celulas:10000}") long maxCelulas,
+            @Value("${telemetria.clima.intervalo-alerta-minutos:60}") long intervaloAlertaMinutos,
+            @Value("${telemetria.clima.max-veiculos:100000}") long maxVeiculos) {
+        this.gravacaoAlertas = gravacaoAlertas;
         this.veiculoRepository = veiculoRepository;
         this.webClient = WebClient.builder()
             .baseUrl("https://api.openweathermap.org/data/2.5")
             .build();
         
-        System.out.println("🌦️ WeatherAlertService inicializado");
+        this.precisaoCelula = precisaoCelula;
+        this.ultimoAlertaPorVeiculo = Caffeine.newBuilder()
+            .maximumSize(maxVeiculos)
+            .expireAfterWrite(Duration.ofMinutes(intervaloAlertaMinutos))
+            .build();
+        
+        // Clima velho ainda vale enquanto a atualização não chega; depois disso some
+        this.climaPorCelula = Caffeine.newBuilder()
+            .maximumSize(maxCelulas)
+            .expireAfterWrite(Duration.ofMinutes(idadeMaximaMinutos))
+            .build();
     }
     
     @PostConstruct
     public void init() {
-        System.out.println("\n🌤️ ===== CONFIGURAÇÃO DO OPENWEATHER ===== 🌤️");
-        
         if (apiKey == null || apiKey.isEmpty()) {
-            System.err.println("❌ API KEY DO OPENWEATHER NÃO CONFIGURADA!");
-            System.err.println("📝 Configure em application.properties: openweather.api.key=SUA_CHAVE");
-            System.err.println("🔑 Chave atual: '" + apiKey + "'");
+            log.error("❌ API key do OpenWeather não configurada (openweather.api.key) - verificação climática desativada");
         } else {
-            System.out.println("✅ API Key configurada: " + apiKey.substring(0, Math.min(5, apiKey.length())) + "...");
-            System.out.println("📊 Tamanho da chave: " + apiKey.length() + " caracteres");
-            System.out.println("🌐 URL Base: " + apiBaseUrl);
-            System.out.println("📏 Unidades: " + units);
-            System.out.println("🗣️ Idioma: " + lang);
+            log.info("🌤️ OpenWeather configurado: chave {}... ({} caracteres), url={}, unidades={}, idioma={}",
+                apiKey.substring(0, Math.min(5, apiKey.length())), apiKey.length(), apiBaseUrl, units, lang);
             
             // Testar se a chave tem o formato correto
             if (apiKey.length() != 32) {
-                System.err.println("⚠️ ATENÇÃO: A chave API parece ter tamanho diferente do esperado (32 caracteres)");
-                System.err.println("⚠️ Tamanho atual: " + apiKey.length() + " caracteres");
+                log.warn("⚠️ A chave da API tem {} caracteres (esperado: 32)", apiKey.length());
             }
         }
-        System.out.println("==========================================\n");
     }
     
     // ========== ENUMS ==========
@@ -178,49 +217,147 @@ public class WeatherAlertService {
         public record Clouds(int all) {}
     }
     
+    /**
+     * Clima de uma célula e quando foi obtido (epoch ms)
+     */
+    private record ClimaCelula(WeatherResponse resposta, long obtidoEm) {}
+    
     // ========== MÉTODO PRINCIPAL ==========
     
     public void verificarClimaParaVeiculo(Long veiculoId, Double latitude, Double longitude, Viagem viagem) {
-        System.out.println("🌤️ Verificando clima para veículo " + veiculoId + " em (" + latitude + ", " + longitude + ")");
+        log.debug("🌤️ Verificando clima para veículo {} em ({}, {})", veiculoId, latitude, longitude);
         
         if (latitude == null || longitude == null) {
-            System.out.println("⚠️ Coordenadas inválidas para veículo " + veiculoId);
+            log.debug("⚠️ Coordenadas inválidas para veículo {}", veiculoId);
             return;
         }
         
         // Verificar se API key está configurada
         if (apiKey == null || apiKey.isEmpty()) {
-            System.err.println("❌ API Key não configurada! Pulando verificação climática.");
             return;
         }
         
-        // Verificar limite de 1 hora
-        if (ultimoAlertaPorVeiculo.getOrDefault(veiculoId, LocalDateTime.MIN)
-            .plusHours(1).isAfter(LocalDateTime.now())) {
-            System.out.println("⏰ Último alerta foi há menos de 1 hora para veículo " + veiculoId);
+        // Limite de 1 alerta por intervalo: o veículo é reservado antes da consulta,
+        // então scheduler e consumers não geram dois alertas ao mesmo tempo
+        if (ultimoAlertaPorVeiculo.asMap().putIfAbsent(veiculoId, LocalDateTime.now()) != null) {
+            veiculosNoIntervalo.increment();
+            log.debug("⏰ Último alerta climático ainda no intervalo para veículo {}", veiculoId);
             return;
         }
         
-        veiculoRepository.findById(veiculoId).ifPresent(veiculo -> {
-            try {
-                // Chamada com retry automático
-                WeatherResponse weather = getWeatherWithRetry(latitude, longitude);
-                
-                if (weather != null && weather.weather() != null && weather.weather().length > 0) {
+        boolean alertaGerado = false;
+        try {
+            WeatherResponse weather = climaDaCelula(veiculoId, latitude, longitude);
+            
+            if (weather != null && weather.weather() != null && weather.weather().length > 0) {
+                Optional<Veiculo> veiculo = veiculoRepository.findById(veiculoId);
+                if (veiculo.isPresent()) {
                     String mensagem = gerarMensagemClimatica(weather);
                     String gravidade = determinarGravidade(weather);
                     
-                    criarAlertaClimatico(veiculo, viagem, mensagem, gravidade);
-                    ultimoAlertaPorVeiculo.put(veiculoId, LocalDateTime.now());
+                    criarAlertaClimatico(veiculo.get(), viagem, mensagem, gravidade);
+                    alertaGerado = true;
                     
-                    System.out.println("✅ Alerta climático gerado para veículo " + veiculoId);
-                } else {
-                    System.out.println("⚠️ Resposta da API sem dados climáticos válidos");
+                    log.debug("✅ Alerta climático gerado para veículo {}", veiculoId);
                 }
-            } catch (Exception e) {
-                System.err.println("❌ Falha ao obter dados climáticos após retries: " + e.getMessage());
+            } else {
+                log.debug("⚠️ Sem dados climáticos válidos para veículo {}", veiculoId);
+            }
+        } catch (Exception e) {
+            log.warn("❌ Falha na verificação climática do veículo {}: {}", veiculoId, e.getMessage());
+        } finally {
+            if (!alertaGerado) {
+                // Sem alerta, o veículo pode tentar de novo na próxima telemetria
+                ultimoAlertaPorVeiculo.invalidate(veiculoId);
             }
-        });
+        }
+    }
+    
+    // ========== GRADE POR CÉLULA ==========
+    
+    /**
+     * Clima da célula que contém o ponto, só da grade; null (e a célula vira
+     * demanda para a próxima atualização) se ainda não há clima para ela
+     */
+    private WeatherResponse climaDaCelula(Long veiculoId, double latitude, double longitude) {
+        consultas.increment();
+        long celula = celula(latitude, longitude);
+        ClimaCelula clima = climaPorCelula.getIfPresent(celula);
+        if (clima == null) {
+            semDadosNaGrade.increment();
+            demanda.computeIfAbsent(celula, c -> ConcurrentHashMap.newKeySet()).add(veiculoId);
+            return null;
+        }
+        return clima.resposta();
+    }
+    
+    public long celula(double latitude, double longitude) {
+        return GeoHash.codificar(latitude, longitude, precisaoCelula);
+    }
+    
+    public int getPrecisaoCelula() {
+        return precisaoCelula;
+    }
+    
+    /**
+     * Idade em ms do clima da célula; -1 se não há clima na grade
+     */
+    public long idadeClima(long celula) {
+        ClimaCelula clima = climaPorCelula.getIfPresent(celula);
+        return clima != null ? System.currentTimeMillis() - clima.obtidoEm() : -1;
+    }
+    
+    /**
+     * Células pedidas sem clima desde a última chamada -> quantos veículos pediram
+     */
+    public Map<Long, Integer> drenarDemanda() {
+        Map<Long, Integer> drenada = new HashMap<>();
+        for (Long celula : new ArrayList<>(demanda.keySet())) {
+            Set<Long> veiculos = demanda.remove(celula);
+            if (veiculos != null) drenada.put(celula, veiculos.size());
+        }
+        return drenada;
+    }
+    
+    /**
+     * Consulta o clima no centro da célula e grava na grade; em falha mantém
+     * o clima anterior. Completa com true se gravou
+     */
+    public Mono<Boolean> atualizarCelula(long celula) {
+        if (apiKey == null || apiKey.isEmpty()) {
+            return Mono.just(false);
+        }
+        chamadasApi.increment();
+        double[] limites = GeoHash.limites(celula, precisaoCelula);
+        double lat = (limites[0] + limites[1]) / 2;
+        double lon = (limites[2] + limites[3]) / 2;
+        
+        return getWeatherForLocation(lat, lon)
+            .timeout(timeoutConsulta)
+            .map(resposta -> {
+                climaPorCelula.put(celula, new ClimaCelula(resposta, System.currentTimeMillis()));
+                return true;
+            })
+            .defaultIfEmpty(false)
+            .onErrorResume(ex -> {
+                falhasApi.increment();
+                log.warn("❌ Erro na consulta à OpenWeatherMap para célula {}: {}",
+                    GeoHash.texto(celula, precisaoCelula), ex.getMessage());
+                return Mono.just(false);
+            });
+    }
+    
+    public Map<String, Object> getEstatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("consultas", consultas.sum());
+        stats.put("semDadosNaGrade", semDadosNaGrade.sum());
+        stats.put("chamadasApi", chamadasApi.sum());
+        stats.put("falhasApi", falhasApi.sum());
+        stats.put("celulasNaGrade", climaPorCelula.estimatedSize());
+        stats.put("celulasDemandadas", demanda.size());
+        stats.put("veiculosNoIntervalo", veiculosNoIntervalo.sum());
+        stats.put("veiculosComAlertaRecente", ultimoAlertaPorVeiculo.estimatedSize());
+        return stats;
     }
     
     /**
@@ -238,7 +375,7 @@ public class WeatherAlertService {
         recover = "recoverWeatherApi"
     )
     public WeatherResponse getWeatherWithRetry(double lat, double lon) {
-        System.out.println("🔄 Consultando OpenWeatherMap para coordenadas: " + lat + ", " + lon);
+        log.debug("🔄 Consultando OpenWeatherMap para coordenadas: {}, {}", lat, lon);
         
         if (apiKey == null || apiKey.isEmpty()) {
             throw new WeatherApiException("API Key não configurada");
@@ -247,15 +384,8 @@ public class WeatherAlertService {
         // Chamada síncrona com timeout
         return getWeatherForLocation(lat, lon)
             .timeout(Duration.ofSeconds(10))
-            .doOnSuccess(weather -> System.out.println("✅ Consulta à OpenWeatherMap bem-sucedida"))
-            .doOnError(e -> {
-                if (e instanceof WebClientResponseException.Unauthorized) {
-                    System.err.println("❌ Erro 401: API Key inválida ou não autorizada");
-                    System.err.println("🔑 Chave atual: " + apiKey.substring(0, Math.min(5, apiKey.length())) + "...");
-                } else {
-                    System.err.println("❌ Erro na consulta: " + e.getMessage());
-                }
-            })
+            .doOnSuccess(weather -> log.debug("✅ Consulta à OpenWeatherMap bem-sucedida"))
+            .doOnError(e -> log.warn("❌ Erro na consulta à OpenWeatherMap: {}", e.getMessage()))
             .block(); // Aguarda o resultado (é síncrono)
     }
     
@@ -264,19 +394,13 @@ public class WeatherAlertService {
      */
     @Recover
     public WeatherResponse recoverWeatherApi(Exception e, double lat, double lon) {
-        System.err.println("⚠️ Todas as 5 tentativas falharam. Usando fallback para coordenadas: " + lat + ", " + lon);
-        System.err.println("Erro: " + e.getClass().getSimpleName() + " - " + e.getMessage());
-        
-        if (e instanceof WebClientResponseException.Unauthorized) {
-            System.err.println("🔑 PROVIDENCIE: Configure a API key correta no application.properties");
-        }
+        log.warn("⚠️ Todas as 5 tentativas falharam. Usando fallback para ({}, {}): {} - {}",
+            lat, lon, e.getClass().getSimpleName(), e.getMessage());
         
         return criarRespostaFallback(lat, lon);
     }
     
     public Mono<WeatherResponse> getWeatherForLocation(double lat, double lon) {
-        System.out.println("🔑 Usando API Key: " + (apiKey != null ? apiKey.substring(0, Math.min(5, apiKey.length())) + "..." : "NÃO CONFIGURADA"));
-        
         return webClient.get()
             .uri(uriBuilder -> uriBuilder
                 .path("/weather")
@@ -289,9 +413,7 @@ public class WeatherAlertService {
             .retrieve()
             .bodyToMono(WeatherResponse.class)
             .onErrorResume(WebClientResponseException.Unauthorized.class, e -> {
-                System.err.println("❌ ERRO 401: API Key inválida!");
-                System.err.println("🔑 Sua chave: '" + apiKey + "'");
-                System.err.println("📝 Verifique se a chave está correta no application.properties");
+                log.error("❌ Erro 401: API key do OpenWeather inválida - verifique openweather.api.key");
                 return Mono.error(new WeatherApiException("API Key inválida: 401 Unauthorized"));
             });
     }
@@ -396,8 +518,6 @@ public class WeatherAlertService {
     }
     
     private void criarAlertaClimatico(Veiculo veiculo, Viagem viagem, String mensagem, String gravidade) {
-        System.out.println("📝 Criando alerta climático para veículo " + veiculo.getId() + " - Gravidade: " + gravidade);
-        
         Alerta alerta = new Alerta();
         alerta.setVeiculo(veiculo);
         alerta.setMotorista(viagem != null ? viagem.getMotorista() : null);
@@ -409,17 +529,14 @@ public class WeatherAlertService {
         alerta.setLido(false);
         alerta.setResolvido(false);
         
-        alertaRepository.save(alerta);
-        System.out.println("🚨 [" + gravidade + "] " + mensagem);
-        System.out.println("✅ Alerta climático salvo no banco de dados");
+        gravacaoAlertas.abrir(alerta);
+        log.info("🚨 Alerta climático [{}] para veículo {}: {}", gravidade, veiculo.getId(), mensagem);
     }
     
     /**
      * Cria uma resposta fallback quando a API está indisponível
      */
     private WeatherResponse criarRespostaFallback(double lat, double lon) {
-        System.out.println("🔄 Criando resposta fallback para coordenadas: " + lat + ", " + lon);
-        
         // Determinar clima baseado na localização (fallback inteligente)
         String condicao;
         int codigo;
@@ -458,17 +575,14 @@ public class WeatherAlertService {
      * Método para testar a API manualmente
      */
     public void testarApi() {
-        System.out.println("\n🧪 TESTANDO CONEXÃO COM OPENWEATHERMAP");
         try {
             WeatherResponse response = getWeatherWithRetry(-23.5505, -46.6333);
             if (response != null) {
-                System.out.println("✅ CONEXÃO BEM-SUCEDIDA!");
-                System.out.println("Clima: " + response.weather()[0].description());
-                System.out.println("Temperatura: " + response.main().temp() + "°C");
+                log.info("🧪 Conexão com OpenWeatherMap OK: {}, {}°C",
+                    response.weather()[0].description(), response.main().temp());
             }
         } catch (Exception e) {
-            System.err.println("❌ FALHA NO TESTE: " + e.getMessage());
+            log.error("🧪 Falha no teste da OpenWeatherMap: {}", e.getMessage());
         }
-        System.out.println("====================================\n");
     }
 }
\ No newline at end of file
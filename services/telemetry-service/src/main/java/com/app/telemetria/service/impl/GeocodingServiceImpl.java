@@ -1,5 +1,6 @@
 package com.app.telemetria.service.impl;
 
+import com.app.telemetria.entity.GeometriaRota;
 import com.app.telemetria.entity.PontoRota;
 import com.app.telemetria.entity.Rota;
 import com.app.telemetria.service.GeocodingService;
@@ -13,7 +14,19 @@ public class GeocodingServiceImpl implements GeocodingService {
     
     @Override
     public List<PontoRota> obterPontosRota(Rota rota) {
-        // Versão simplificada - apenas pontos de origem e destino
+        // Traçado do routing-service, quando a rota já tem
+        GeometriaRota geometria = rota.getGeometria();
+        if (geometria != null && geometria.getTotalPontos() >= 2) {
+            double[] latitudes = geometria.getLatitudes();
+            double[] longitudes = geometria.getLongitudes();
+            List<PontoRota> pontos = new ArrayList<>(latitudes.length);
+            for (int i = 0; i < latitudes.length; i++) {
+                pontos.add(new PontoRota(latitudes[i], longitudes[i], i));
+            }
+            return pontos;
+        }
+
+        // Sem traçado - apenas pontos de origem e destino
         List<PontoRota> pontos = new ArrayList<>();
         
         if (rota.getLatitudeOrigem() != null && rota.getLongitudeOrigem() != null) {
@@ -0,0 +1,99 @@
+package com.app.telemetria.util;
+
+/**
+ * Geohash como long: bits de longitude e latitude intercalados (longitude
+ * primeiro), 5 bits por caractere. Com a mesma precisão, pontos na mesma
+ * célula têm o mesmo id, e o id de uma célula maior é um prefixo
+ * (deslocamento à direita) do id das células contidas nela.
+ *
+ * Precisão 7 ~ 153 m x 153 m; 5 ~ 4,9 km x 4,9 km; 4 ~ 39 km x 19,5 km.
+ */
+public final class GeoHash {
+
+    public static final int PRECISAO_MAXIMA = 12;
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private GeoHash() {
+    }
+
+    /**
+     * Id da célula que contém o ponto, com precisao caracteres (1 a 12)
+     */
+    public static long codificar(double latitude, double longitude, int precisao) {
+        validarPrecisao(precisao);
+        int totalBits = precisao * 5;
+        int bitsLon = (totalBits + 1) / 2;
+        int bitsLat = totalBits / 2;
+
+        long lat = quantizar(latitude, -90, 90, bitsLat);
+        long lon = quantizar(longitude, -180, 180, bitsLon);
+
+        long hash = 0;
+        for (int i = 0; i < totalBits; i++) {
+            // Bits pares (a partir do mais significativo) são de longitude
+            if ((i & 1) == 0) {
+                hash = (hash << 1) | ((lon >>> (--bitsLon)) & 1);
+            } else {
+                hash = (hash << 1) | ((lat >>> (--bitsLat)) & 1);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Id da célula com precisaoMenor que contém a célula informada
+     */
+    public static long reduzir(long hash, int precisao, int precisaoMenor) {
+        return hash >>> ((precisao - precisaoMenor) * 5);
+    }
+
+    /**
+     * Limites da célula: {latMin, latMax, lonMin, lonMax}
+     */
+    public static double[] limites(long hash, int precisao) {
+        validarPrecisao(precisao);
+        int totalBits = precisao * 5;
+        long lat = 0, lon = 0;
+        int bitsLat = 0, bitsLon = 0;
+        for (int i = 0; i < totalBits; i++) {
+            long bit = (hash >>> (totalBits - 1 - i)) & 1;
+            if ((i & 1) == 0) {
+                lon = (lon << 1) | bit;
+                bitsLon++;
+            } else {
+                lat = (lat << 1) | bit;
+                bitsLat++;
+            }
+        }
+        double alturaLat = 180.0 / (1L << bitsLat);
+        double larguraLon = 360.0 / (1L << bitsLon);
+        double latMin = -90 + lat * alturaLat;
+        double lonMin = -180 + lon * larguraLon;
+        return new double[] { latMin, latMin + alturaLat, lonMin, lonMin + larguraLon };
+    }
+
+    /**
+     * Representação base32 usual do geohash (ex.: "6gyf4bf")
+     */
+    public static String texto(long hash, int precisao) {
+        char[] c = new char[precisao];
+        for (int i = precisao - 1; i >= 0; i--) {
+            c[i] = BASE32[(int) (hash & 31)];
+            hash >>>= 5;
+        }
+        return new String(c);
+    }
+
+    private static long quantizar(double valor, double min, double max, int bits) {
+        long celulas = 1L << bits;
+        long q = (long) Math.floor((valor - min) / (max - min) * celulas);
+        return Math.max(0, Math.min(celulas - 1, q));
+    }
+
+    private static void validarPrecisao(int precisao) {
+        if (precisao < 1 || precisao > PRECISAO_MAXIMA) {
+            throw new IllegalArgumentException("precisão do geohash deve estar entre 1 e " + PRECISAO_MAXIMA);
+        }
+    }
+}
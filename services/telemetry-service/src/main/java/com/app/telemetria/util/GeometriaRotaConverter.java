@@ -0,0 +1,37 @@
+package com.app.telemetria.util;
+
+import com.app.telemetria.entity.GeometriaRota;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * rota_geojson: {"polyline":"...","totalPontos":n,"toleranciaMetros":t}
+ */
+@Converter
+public class GeometriaRotaConverter implements AttributeConverter<GeometriaRota, String> {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @Override
+    public String convertToDatabaseColumn(GeometriaRota attribute) {
+        if (attribute == null) return null;
+        try {
+            return mapper.writeValueAsString(attribute);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    public GeometriaRota convertToEntityAttribute(String dbData) {
+        if (dbData == null || dbData.isBlank()) return null;
+        try {
+            GeometriaRota geometria = mapper.readValue(dbData, GeometriaRota.class);
+            return geometria.getPolyline() != null ? geometria : null;
+        } catch (Exception e) {
+            // Conteúdo antigo/inválido: a rota volta a usar pontosRota
+            return null;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.app.telemetria.util;
+
+/**
+ * Encoded polyline (algoritmo do Google, o mesmo do OSRM com
+ * geometries=polyline): cada coordenada vira a diferença para a anterior,
+ * arredondada em 1e-5 grau (~1,1 m) e escrita em blocos de 5 bits como ASCII.
+ * Uma rota de milhares de pontos cabe em poucos KB, contra dezenas de KB do
+ * mesmo traçado em JSON.
+ */
+public final class PolylineCodec {
+
+    private static final double FATOR = 1e5;
+
+    private PolylineCodec() {
+    }
+
+    /**
+     * Codifica os pontos (graus, na ordem da rota)
+     */
+    public static String codificar(double[] latitudes, double[] longitudes) {
+        if (latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("latitudes e longitudes com tamanhos diferentes");
+        }
+        StringBuilder sb = new StringBuilder(latitudes.length * 8);
+        long latAnterior = 0;
+        long lonAnterior = 0;
+        for (int i = 0; i < latitudes.length; i++) {
+            long lat = Math.round(latitudes[i] * FATOR);
+            long lon = Math.round(longitudes[i] * FATOR);
+            escrever(lat - latAnterior, sb);
+            escrever(lon - lonAnterior, sb);
+            latAnterior = lat;
+            lonAnterior = lon;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Número de pontos codificados (sem montar os arrays)
+     */
+    public static int contarPontos(String polyline) {
+        int valores = 0;
+        for (int i = 0; i < polyline.length(); i++) {
+            // Último bloco de cada valor não tem o bit de continuação (0x20)
+            if (((polyline.charAt(i) - 63) & 0x20) == 0) valores++;
+        }
+        return valores / 2;
+    }
+
+    /**
+     * Decodifica em dois arrays paralelos: [0] latitudes, [1] longitudes
+     */
+    public static double[][] decodificar(String polyline) {
+        int total = contarPontos(polyline);
+        double[] latitudes = new double[total];
+        double[] longitudes = new double[total];
+
+        int pos = 0;
+        long lat = 0;
+        long lon = 0;
+        for (int i = 0; i < total; i++) {
+            for (int eixo = 0; eixo < 2; eixo++) {
+                long valor = 0;
+                int deslocamento = 0;
+                int b;
+                do {
+                    b = polyline.charAt(pos++) - 63;
+                    valor |= (long) (b & 0x1f) << deslocamento;
+                    deslocamento += 5;
+                } while (b >= 0x20);
+                long delta = (valor & 1) != 0 ? ~(valor >> 1) : valor >> 1;
+                if (eixo == 0) lat += delta; else lon += delta;
+            }
+            latitudes[i] = lat / FATOR;
+            longitudes[i] = lon / FATOR;
+        }
+        return new double[][] { latitudes, longitudes };
+    }
+
+    private static void escrever(long valor, StringBuilder sb) {
+        long v = valor < 0 ? ~(valor << 1) : valor << 1;
+        while (v >= 0x20) {
+            sb.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        sb.append((char) (v + 63));
+    }
+}
@@ -0,0 +1,93 @@
+package com.app.telemetria.util;
+
+/**
+ * Simplificação de traçados por Douglas-Peucker com tolerância em metros.
+ *
+ * Os pontos são projetados em metros (equiretangular na latitude média, a
+ * mesma aproximação do SegmentosRota) e um ponto só sobrevive se estiver a
+ * mais de toleranciaMetros da reta entre os pontos mantidos ao redor dele,
+ * então o traçado simplificado nunca se afasta mais que a tolerância do
+ * original. Iterativo (pilha explícita) para aguentar overviews de dezenas
+ * de milhares de pontos.
+ */
+public final class SimplificadorGeometria {
+
+    private static final double RAIO_TERRA = 6371000; // metros
+
+    private SimplificadorGeometria() {
+    }
+
+    /**
+     * Índices (crescentes) dos pontos mantidos; primeiro e último sempre ficam
+     */
+    public static int[] simplificar(double[] latitudes, double[] longitudes, double toleranciaMetros) {
+        int n = latitudes.length;
+        if (n <= 2) {
+            int[] todos = new int[n];
+            for (int i = 0; i < n; i++) todos[i] = i;
+            return todos;
+        }
+
+        double somaLat = 0;
+        for (double l : latitudes) somaLat += l;
+        double escalaX = RAIO_TERRA * Math.cos(Math.toRadians(somaLat / n));
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = Math.toRadians(longitudes[i]) * escalaX;
+            y[i] = Math.toRadians(latitudes[i]) * RAIO_TERRA;
+        }
+
+        boolean[] manter = new boolean[n];
+        manter[0] = true;
+        manter[n - 1] = true;
+        double tolerancia2 = toleranciaMetros * toleranciaMetros;
+
+        int[] pilha = new int[2 * n];
+        int topo = 0;
+        pilha[topo++] = 0;
+        pilha[topo++] = n - 1;
+        while (topo > 0) {
+            int fim = pilha[--topo];
+            int inicio = pilha[--topo];
+
+            int maisLonge = -1;
+            double maior2 = tolerancia2;
+            for (int i = inicio + 1; i < fim; i++) {
+                double d2 = distancia2Segmento(x[i], y[i], x[inicio], y[inicio], x[fim], y[fim]);
+                if (d2 > maior2) {
+                    maior2 = d2;
+                    maisLonge = i;
+                }
+            }
+
+            if (maisLonge >= 0) {
+                manter[maisLonge] = true;
+                pilha[topo++] = inicio;
+                pilha[topo++] = maisLonge;
+                pilha[topo++] = maisLonge;
+                pilha[topo++] = fim;
+            }
+        }
+
+        int mantidos = 0;
+        for (boolean m : manter) if (m) mantidos++;
+        int[] indices = new int[mantidos];
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            if (manter[i]) indices[j++] = i;
+        }
+        return indices;
+    }
+
+    private static double distancia2Segmento(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double comprimento2 = dx * dx + dy * dy;
+        double t = comprimento2 == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / comprimento2;
+        t = t < 0 ? 0 : (t > 1 ? 1 : t);
+        double qx = ax + t * dx - px;
+        double qy = ay + t * dy - py;
+        return qx * qx + qy * qy;
+    }
+}
@@ -0,0 +1,30 @@
+-- =========================================
+-- TABELA: areas_criticas
+-- Áreas (caixas lat/lon) onde a frequência de telemetria é reduzida
+-- dentro de uma janela de horário
+-- =========================================
+CREATE TABLE areas_criticas (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    nome VARCHAR(255) NOT NULL,
+    latitude_min DOUBLE NOT NULL,
+    longitude_min DOUBLE NOT NULL,
+    latitude_max DOUBLE NOT NULL,
+    longitude_max DOUBLE NOT NULL,
+    hora_inicio TIME NOT NULL,
+    hora_fim TIME NOT NULL
+        COMMENT 'Inclusiva; menor que hora_inicio atravessa a meia-noite',
+    dias_semana VARCHAR(20)
+        COMMENT 'Dias ISO separados por vírgula (1=segunda ... 7=domingo); NULL = todos',
+    fator_reducao DOUBLE NOT NULL
+        COMMENT 'Fração das mensagens mantidas (0.0 a 1.0)',
+    ativo BOOLEAN DEFAULT TRUE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX idx_area_critica_ativo (ativo)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Áreas que estavam fixas no CriticalAreaService
+INSERT INTO areas_criticas (nome, latitude_min, longitude_min, latitude_max, longitude_max, hora_inicio, hora_fim, dias_semana, fator_reducao, ativo) VALUES
+('SP', -23.65, -46.75, -23.45, -46.55, '17:00:00', '20:00:00', NULL, 0.3, TRUE),
+('RJ', -23.05, -43.35, -22.75, -43.05, '08:00:00', '18:00:00', NULL, 0.5, TRUE),
+('BH', -20.0, -44.1, -19.7, -43.7, '11:00:00', '14:00:00', NULL, 0.4, TRUE);
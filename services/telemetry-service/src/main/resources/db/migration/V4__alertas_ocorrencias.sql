@@ -0,0 +1,11 @@
+-- =========================================
+-- ALERTAS: ocorrências agrupadas
+-- Aberturas repetidas do mesmo veículo e tipo dentro da janela de
+-- gravação viram uma linha só, com a contagem e a última ocorrência
+-- =========================================
+ALTER TABLE alertas
+    ADD COLUMN ocorrencias INT NOT NULL DEFAULT 1 AFTER data_hora,
+    ADD COLUMN ultima_ocorrencia DATETIME AFTER ocorrencias;
+
+-- Resolução em lote por veículo e tipo
+CREATE INDEX idx_alertas_veiculo_tipo_resolvido ON alertas(veiculo_id, tipo, resolvido);
@@ -0,0 +1,84 @@
+package com.app.telemetria.benchmark;
+
+import com.app.telemetria.service.LocationClassifierService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo de LocationClassifierService.classify sobre a grade mapeada em
+ * memória gerada do GeoJSON empacotado (células de 0,01°), com pontos
+ * espalhados pelo Sudeste: dentro de área urbana, em rodovia e sem dados.
+ *
+ * Execução: ver TelemetriaDecodeBenchmark (classe principal desta).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocationClassifierBenchmark {
+
+    private static final int CONSULTAS = 1024;
+
+    private LocationClassifierService classificador;
+    private Path arquivoGrade;
+    private double[] lat;
+    private double[] lon;
+    private int proxima;
+
+    @Setup
+    public void preparar() throws Exception {
+        arquivoGrade = Files.createTempFile("classificacao-benchmark", ".grid");
+        Files.delete(arquivoGrade);
+        classificador = new LocationClassifierService(null, new DefaultResourceLoader(),
+            "classpath:geo/classificacao-local.geojson", arquivoGrade.toString(),
+            0.01, 0, LocationClassifierService.DESCONHECIDA, false, 1000, 10);
+
+        Random random = new Random(42);
+        lat = new double[CONSULTAS];
+        lon = new double[CONSULTAS];
+        for (int i = 0; i < CONSULTAS; i++) {
+            lat[i] = -25 + random.nextDouble() * 6;
+            lon[i] = -49 + random.nextDouble() * 7;
+        }
+    }
+
+    @TearDown
+    public void encerrar() throws Exception {
+        classificador.destroy();
+        Files.deleteIfExists(arquivoGrade);
+    }
+
+    @Benchmark
+    public String classificar() {
+        int i = proxima++ & (CONSULTAS - 1);
+        return classificador.classify(lat[i], lon[i]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opcoes = new OptionsBuilder()
+            .include(LocationClassifierBenchmark.class.getSimpleName())
+            .build();
+        new Runner(opcoes).run();
+    }
+}
@@ -0,0 +1,140 @@
+package com.app.telemetria.benchmark;
+
+import com.app.telemetria.service.SegmentosRota;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distância ponto -> rota em rotas do tamanho de um overview completo do
+ * OSRM: R-tree STR (SegmentosRota) x varredura linear na mesma projeção x
+ * varredura linear em graus * 111320 (cálculo antigo do detector).
+ * "cursor" simula um veículo percorrendo a rota em ordem, como o detector
+ * faz com maisProximoPerto (janela 2 atrás / 10 à frente, limite 50 m).
+ *
+ * Execução: ver TelemetriaDecodeBenchmark (classe principal desta).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SegmentosRotaBenchmark {
+
+    private static final int CONSULTAS = 1024;
+
+    @Param({"5000"})
+    private int pontos;
+
+    private SegmentosRota segmentos;
+    private double[] lat;
+    private double[] lon;
+    private double[] consultaLat;
+    private double[] consultaLon;
+    private int proxima;
+
+    // Percurso sobre a própria rota (ruído de ~5 m) para o benchmark com cursor
+    private double[] percursoLat;
+    private double[] percursoLon;
+    private int passo;
+    private int cursor = -1;
+
+    @Setup
+    public void preparar() {
+        // Caminho aleatório saindo de São Paulo, ~30 m entre pontos
+        Random random = new Random(42);
+        lat = new double[pontos];
+        lon = new double[pontos];
+        lat[0] = -23.55;
+        lon[0] = -46.63;
+        double rumo = random.nextDouble() * 2 * Math.PI;
+        for (int i = 1; i < pontos; i++) {
+            rumo += random.nextGaussian() * 0.2;
+            lat[i] = lat[i - 1] + Math.cos(rumo) * 0.00027;
+            lon[i] = lon[i - 1] + Math.sin(rumo) * 0.00029;
+        }
+        segmentos = SegmentosRota.de(lat, lon);
+
+        // Telemetrias perto da rota (até ~500 m de um ponto qualquer)
+        consultaLat = new double[CONSULTAS];
+        consultaLon = new double[CONSULTAS];
+        for (int i = 0; i < CONSULTAS; i++) {
+            int p = random.nextInt(pontos);
+            consultaLat[i] = lat[p] + (random.nextDouble() - 0.5) * 0.009;
+            consultaLon[i] = lon[p] + (random.nextDouble() - 0.5) * 0.009;
+        }
+
+        percursoLat = new double[pontos];
+        percursoLon = new double[pontos];
+        for (int i = 0; i < pontos; i++) {
+            percursoLat[i] = lat[i] + random.nextGaussian() * 0.00005;
+            percursoLon[i] = lon[i] + random.nextGaussian() * 0.00005;
+        }
+    }
+
+    @Benchmark
+    public double indice() {
+        int i = proxima++ & (CONSULTAS - 1);
+        return segmentos.distanciaAte(consultaLat[i], consultaLon[i]);
+    }
+
+    @Benchmark
+    public double cursor() {
+        if (passo == pontos) {
+            passo = 0;
+            cursor = -1;
+        }
+        int i = passo++;
+        SegmentosRota.Proximidade p = segmentos.maisProximoPerto(percursoLat[i], percursoLon[i], cursor, 2, 10, 50);
+        cursor = p.segmento();
+        return segmentos.distanciaAoLongo(p);
+    }
+
+    @Benchmark
+    public double linear() {
+        int i = proxima++ & (CONSULTAS - 1);
+        return segmentos.distanciaAteLinear(consultaLat[i], consultaLon[i]);
+    }
+
+    @Benchmark
+    public double linearGraus() {
+        int i = proxima++ & (CONSULTAS - 1);
+        double px = consultaLat[i];
+        double py = consultaLon[i];
+        double menor = Double.MAX_VALUE;
+        for (int s = 0; s < pontos - 1; s++) {
+            double a = px - lat[s], b = py - lon[s];
+            double c = lat[s + 1] - lat[s], d = lon[s + 1] - lon[s];
+            double comprimento2 = c * c + d * d;
+            double t = comprimento2 != 0 ? (a * c + b * d) / comprimento2 : -1;
+            double xx = t < 0 ? lat[s] : (t > 1 ? lat[s + 1] : lat[s] + t * c);
+            double yy = t < 0 ? lon[s] : (t > 1 ? lon[s + 1] : lon[s] + t * d);
+            double dx = px - xx, dy = py - yy;
+            menor = Math.min(menor, Math.sqrt(dx * dx + dy * dy) * 111320);
+        }
+        return menor;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opcoes = new OptionsBuilder()
+            .include(SegmentosRotaBenchmark.class.getSimpleName())
+            .build();
+        new Runner(opcoes).run();
+    }
+}
@@ -0,0 +1,88 @@
+package com.app.telemetria.benchmark;
+
+import com.app.telemetria.codec.TelemetriaCodec;
+import com.app.telemetria.codec.TelemetriaMensagem;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo de decodificação de uma telemetria (ns/op e, com -prof gc, bytes/op):
+ * árvore JsonNode (caminho antigo), JSON em streaming no registro
+ * reaproveitado e frame binário v1.
+ *
+ * Execução (não faz parte do mvn test; troque a classe para os outros benchmarks):
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *      com.app.telemetria.benchmark.TelemetriaDecodeBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TelemetriaDecodeBenchmark {
+
+    private static final String JSON = "{\"vehicle_id\":42,\"latitude\":-23.5505199,\"longitude\":-46.6333094,"
+        + "\"velocidade\":87.5,\"nivelCombustivel\":63.2,\"timestamp\":1760000000}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TelemetriaMensagem registro = new TelemetriaMensagem();
+
+    private byte[] json;
+    private byte[] binario;
+
+    @Setup
+    public void preparar() {
+        json = JSON.getBytes(StandardCharsets.UTF_8);
+        binario = TelemetriaCodec.codificar(TelemetriaCodec.decodificar(json));
+    }
+
+    @Benchmark
+    public double jsonArvore() throws Exception {
+        JsonNode node = objectMapper.readTree(json);
+        return node.get("vehicle_id").asLong()
+            + node.get("latitude").asDouble()
+            + node.get("longitude").asDouble()
+            + node.get("velocidade").asDouble()
+            + node.get("nivelCombustivel").asDouble()
+            + node.get("timestamp").asLong();
+    }
+
+    @Benchmark
+    public TelemetriaMensagem jsonStreaming() {
+        return TelemetriaCodec.decodificar(json, registro);
+    }
+
+    @Benchmark
+    public TelemetriaMensagem binario() {
+        return TelemetriaCodec.decodificar(binario, registro);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opcoes = new OptionsBuilder()
+            .include(TelemetriaDecodeBenchmark.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+        new Runner(opcoes).run();
+    }
+}
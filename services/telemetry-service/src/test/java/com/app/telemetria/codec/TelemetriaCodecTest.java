@@ -0,0 +1,185 @@
+package com.app.telemetria.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Binário v1 e JSON legado: ida e volta com os campos opcionais (combustível
+ * e timestamp) presentes ou ausentes, e as rejeições de validar
+ */
+class TelemetriaCodecTest {
+
+    private static final long TIMESTAMP = 1_700_000_000_123L;
+
+    @Test
+    void binarioIdaEVoltaComOpcionais() {
+        TelemetriaMensagem lida = idaEVolta(new TelemetriaMensagem(42, -23.5505199, -46.6333094, 87.5, 63.25, TIMESTAMP));
+
+        assertEquals(42, lida.getVeiculoId());
+        assertEquals(-23.5505199, lida.getLatitude(), 1e-7);
+        assertEquals(-46.6333094, lida.getLongitude(), 1e-7);
+        assertEquals(87.5, lida.getVelocidade(), 0);
+        assertTrue(lida.temNivelCombustivel());
+        assertEquals(63.25, lida.getNivelCombustivel(), 0);
+        assertTrue(lida.temTimestamp());
+        assertEquals(TIMESTAMP, lida.getTimestampMillis());
+    }
+
+    @Test
+    void binarioIdaEVoltaSemOpcionais() {
+        TelemetriaMensagem lida = idaEVolta(
+            new TelemetriaMensagem(7, 0, 0, 0, Double.NaN, TelemetriaMensagem.SEM_TIMESTAMP));
+
+        assertFalse(lida.temNivelCombustivel());
+        assertFalse(lida.temTimestamp());
+    }
+
+    @Test
+    void binarioIdaEVoltaSoComUmOpcional() {
+        TelemetriaMensagem soCombustivel = idaEVolta(
+            new TelemetriaMensagem(7, 10, 20, 30, 0, TelemetriaMensagem.SEM_TIMESTAMP));
+        assertTrue(soCombustivel.temNivelCombustivel());
+        assertEquals(0, soCombustivel.getNivelCombustivel(), 0);
+        assertFalse(soCombustivel.temTimestamp());
+
+        TelemetriaMensagem soTimestamp = idaEVolta(new TelemetriaMensagem(7, 10, 20, 30, Double.NaN, 0));
+        assertFalse(soTimestamp.temNivelCombustivel());
+        assertTrue(soTimestamp.temTimestamp());
+        assertEquals(0, soTimestamp.getTimestampMillis());
+    }
+
+    @Test
+    void binarioNosLimitesDasCoordenadas() {
+        TelemetriaMensagem lida = idaEVolta(new TelemetriaMensagem(1, -90, 180, 0, Double.NaN, TIMESTAMP));
+
+        assertEquals(-90, lida.getLatitude(), 0);
+        assertEquals(180, lida.getLongitude(), 0);
+    }
+
+    @Test
+    void registroReaproveitadoNaoHerdaOpcionais() {
+        TelemetriaMensagem registro = new TelemetriaMensagem();
+        TelemetriaCodec.decodificar(TelemetriaCodec.codificar(
+            new TelemetriaMensagem(1, 1, 1, 1, 50, TIMESTAMP)), registro);
+
+        TelemetriaCodec.decodificar(json("{\"veiculoId\":2,\"latitude\":3,\"longitude\":4}"), registro);
+
+        assertEquals(2, registro.getVeiculoId());
+        assertFalse(registro.temNivelCombustivel());
+        assertFalse(registro.temTimestamp());
+    }
+
+    @Test
+    void binarioInvalidoRejeitado() {
+        byte[] frame = TelemetriaCodec.codificar(new TelemetriaMensagem(1, 1, 1, 1, Double.NaN, TIMESTAMP));
+
+        byte[] versao = frame.clone();
+        versao[1] = 2;
+        assertThrows(IllegalArgumentException.class, () -> TelemetriaCodec.decodificar(versao));
+
+        byte[] curto = new byte[TelemetriaCodec.TAMANHO_V1 - 1];
+        System.arraycopy(frame, 0, curto, 0, curto.length);
+        assertThrows(IllegalArgumentException.class, () -> TelemetriaCodec.decodificar(curto));
+
+        assertThrows(IllegalArgumentException.class,
+            () -> TelemetriaCodec.decodificarBinario(ByteBuffer.wrap(new byte[] { 1, 1 }), new TelemetriaMensagem()));
+    }
+
+    @Test
+    void jsonComOpcionais() {
+        TelemetriaMensagem lida = TelemetriaCodec.decodificar(json(
+            "{\"vehicle_id\":\"42\",\"latitude\":-23.55,\"longitude\":-46.63,\"velocidade\":80,"
+                + "\"nivelCombustible\":40.5,\"timestamp\":1700000000,\"extra\":{\"a\":[1,2]}}"));
+
+        assertEquals(42, lida.getVeiculoId());
+        assertEquals(-23.55, lida.getLatitude(), 0);
+        assertEquals(-46.63, lida.getLongitude(), 0);
+        assertEquals(80, lida.getVelocidade(), 0);
+        assertEquals(40.5, lida.getNivelCombustivel(), 0);
+        assertEquals(1_700_000_000_000L, lida.getTimestampMillis());
+    }
+
+    @Test
+    void jsonSemOpcionais() {
+        TelemetriaMensagem lida = TelemetriaCodec.decodificar(json(
+            "{\"veiculo\":{\"id\":9,\"placa\":\"ABC1D23\"},\"latitude\":1,\"longitude\":2}"));
+
+        assertEquals(9, lida.getVeiculoId());
+        assertFalse(lida.temNivelCombustivel());
+        assertFalse(lida.temTimestamp());
+    }
+
+    @Test
+    void jsonComDataHoraLocal() {
+        TelemetriaMensagem lida = TelemetriaCodec.decodificar(json(
+            "{\"veiculoId\":1,\"latitude\":1,\"longitude\":2,\"dataHora\":\"2024-03-01T10:15:30\"}"));
+
+        long esperado = LocalDateTime.of(2024, 3, 1, 10, 15, 30)
+            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        assertEquals(esperado, lida.getTimestampMillis());
+    }
+
+    @Test
+    void jsonInvalidoRejeitado() {
+        assertThrows(IllegalArgumentException.class, () -> TelemetriaCodec.decodificar(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> TelemetriaCodec.decodificar(json("[1,2]")));
+        assertThrows(IllegalArgumentException.class,
+            () -> TelemetriaCodec.decodificar(json("{\"veiculoId\":1,\"latitude\":\"abc\"")));
+        assertThrows(IllegalArgumentException.class,
+            () -> TelemetriaCodec.decodificar(json("{\"veiculoId\":1,\"latitude\":1}")));
+        assertThrows(IllegalArgumentException.class,
+            () -> TelemetriaCodec.decodificar(json("{\"veiculoId\":1,\"latitude\":1,\"longitude\":2,\"dataHora\":\"ontem\"}")));
+    }
+
+    @Test
+    void validarRejeitaVeiculoAusenteECoordenadasForaDaFaixa() {
+        assertRejeitada(new TelemetriaMensagem(0, 1, 1, 0, Double.NaN, TIMESTAMP), "veículo não informado");
+        assertRejeitada(new TelemetriaMensagem(-5, 1, 1, 0, Double.NaN, TIMESTAMP), "veículo não informado");
+        assertRejeitada(new TelemetriaMensagem(1, 90.0001, 1, 0, Double.NaN, TIMESTAMP), "coordenadas inválidas");
+        assertRejeitada(new TelemetriaMensagem(1, -90.0001, 1, 0, Double.NaN, TIMESTAMP), "coordenadas inválidas");
+        assertRejeitada(new TelemetriaMensagem(1, 1, 180.0001, 0, Double.NaN, TIMESTAMP), "coordenadas inválidas");
+        assertRejeitada(new TelemetriaMensagem(1, 1, -180.0001, 0, Double.NaN, TIMESTAMP), "coordenadas inválidas");
+
+        assertRejeitada(new TelemetriaMensagem(1, Double.NaN, 1, 0, Double.NaN, TIMESTAMP), "coordenadas inválidas");
+        assertRejeitada(new TelemetriaMensagem(1, 1, Double.NaN, 0, Double.NaN, TIMESTAMP), "coordenadas inválidas");
+
+        TelemetriaCodec.validar(new TelemetriaMensagem(1, -90, -180, 0, Double.NaN, TelemetriaMensagem.SEM_TIMESTAMP));
+        TelemetriaCodec.validar(new TelemetriaMensagem(1, 90, 180, 0, Double.NaN, TelemetriaMensagem.SEM_TIMESTAMP));
+    }
+
+    @Test
+    void codificarRejeitaCoordenadasForaDaFaixa() {
+        // 400 x 1e7 estoura o int e voltaria como cerca de -29,5
+        assertThrows(IllegalArgumentException.class,
+            () -> TelemetriaCodec.codificar(new TelemetriaMensagem(1, -23.5, 400, 0, Double.NaN, TIMESTAMP)));
+        assertThrows(IllegalArgumentException.class,
+            () -> TelemetriaCodec.codificar(new TelemetriaMensagem(1, 91, -46.6, 0, Double.NaN, TIMESTAMP)));
+        assertThrows(IllegalArgumentException.class,
+            () -> TelemetriaCodec.codificar(new TelemetriaMensagem(1, Double.NaN, -46.6, 0, Double.NaN, TIMESTAMP)));
+    }
+
+    private static TelemetriaMensagem idaEVolta(TelemetriaMensagem original) {
+        byte[] frame = TelemetriaCodec.codificar(original);
+        assertEquals(TelemetriaCodec.TAMANHO_V1, frame.length);
+        assertTrue(TelemetriaCodec.isBinario(frame));
+        return TelemetriaCodec.decodificar(frame);
+    }
+
+    private static void assertRejeitada(TelemetriaMensagem mensagem, String motivo) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> TelemetriaCodec.validar(mensagem));
+        assertEquals(motivo, e.getMessage());
+    }
+
+    private static byte[] json(String texto) {
+        return texto.getBytes(StandardCharsets.UTF_8);
+    }
+}
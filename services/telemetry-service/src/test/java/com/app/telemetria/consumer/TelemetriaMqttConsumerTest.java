@@ -0,0 +1,237 @@
+package com.app.telemetria.consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.integration.config.EnableIntegration;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import com.app.telemetria.codec.TelemetriaCodec;
+import com.app.telemetria.codec.TelemetriaMensagem;
+import com.app.telemetria.config.MqttConfig;
+
+import io.moquette.broker.Server;
+import io.moquette.broker.config.IConfig;
+import io.moquette.broker.config.MemoryConfig;
+
+/**
+ * Ponte MQTT -> Kafka de ponta a ponta: MqttConfig e TelemetriaMqttConsumer
+ * assinando um broker Moquette embarcado, com os KafkaTemplates simulados
+ */
+@SpringJUnitConfig(TelemetriaMqttConsumerTest.Contexto.class)
+@DirtiesContext
+class TelemetriaMqttConsumerTest {
+
+    private static Server broker;
+    private static Path dados;
+    private static int porta;
+
+    @Autowired
+    private KafkaTemplate<String, TelemetriaMensagem> kafkaTemplate;
+
+    @Autowired
+    private KafkaTemplate<String, byte[]> dlqKafkaTemplate;
+
+    private MqttClient dispositivo;
+
+    @Configuration
+    @EnableIntegration
+    @Import({ MqttConfig.class, TelemetriaMqttConsumer.class })
+    static class Contexto {
+
+        // Parado no fechamento do contexto, depois que o adaptador MQTT desconecta
+        @Bean(destroyMethod = "stopServer")
+        Server brokerMqtt() {
+            return broker;
+        }
+
+        @Bean
+        @SuppressWarnings("unchecked")
+        KafkaTemplate<String, TelemetriaMensagem> kafkaTemplate() {
+            return mock(KafkaTemplate.class);
+        }
+
+        @Bean
+        @SuppressWarnings("unchecked")
+        KafkaTemplate<String, byte[]> dlqKafkaTemplate() {
+            return mock(KafkaTemplate.class);
+        }
+    }
+
+    @BeforeAll
+    static void iniciarBroker() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            porta = socket.getLocalPort();
+        }
+        dados = Files.createTempDirectory("moquette");
+
+        Properties config = new Properties();
+        config.setProperty(IConfig.HOST_PROPERTY_NAME, "127.0.0.1");
+        config.setProperty(IConfig.PORT_PROPERTY_NAME, String.valueOf(porta));
+        config.setProperty(IConfig.WEB_SOCKET_PORT_PROPERTY_NAME, "disabled");
+        config.setProperty(IConfig.ALLOW_ANONYMOUS_PROPERTY_NAME, "true");
+        config.setProperty(IConfig.PERSISTENCE_ENABLED_PROPERTY_NAME, "false");
+        config.setProperty(IConfig.DATA_PATH_PROPERTY_NAME, dados.toString());
+
+        broker = new Server();
+        broker.startServer(new MemoryConfig(config));
+    }
+
+    @AfterAll
+    static void removerDados() throws IOException {
+        try (var arquivos = Files.walk(dados)) {
+            arquivos.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @DynamicPropertySource
+    static void propriedades(DynamicPropertyRegistry registry) {
+        registry.add("mqtt.broker.url", () -> "tcp://127.0.0.1:" + porta);
+        registry.add("mqtt.client.id", () -> "telemetria-teste");
+        // Moquette com MQTT 3.1.1: assinatura comum em vez de $share
+        registry.add("mqtt.shared.group", () -> "");
+        registry.add("mqtt.connection.timeout", () -> "5");
+        registry.add("spring.kafka.topic.telemetria", () -> "telemetria-raw");
+        registry.add("spring.kafka.topic.dlq", () -> "telemetria-dlq");
+    }
+
+    @BeforeEach
+    void conectar() throws Exception {
+        reset(kafkaTemplate, dlqKafkaTemplate);
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(new CompletableFuture<>());
+        when(dlqKafkaTemplate.send(anyString(), any())).thenReturn(new CompletableFuture<>());
+
+        dispositivo = new MqttClient("tcp://127.0.0.1:" + porta, "esp32-teste", new MemoryPersistence());
+        MqttConnectOptions opcoes = new MqttConnectOptions();
+        opcoes.setCleanSession(true);
+        dispositivo.connect(opcoes);
+    }
+
+    @AfterEach
+    void desconectar() throws Exception {
+        dispositivo.disconnect();
+        dispositivo.close();
+    }
+
+    @Test
+    void telemetriaJsonVaiParaOTopicoComAChaveDoVeiculoDoTopico() throws Exception {
+        // O id do tópico prevalece sobre o do payload
+        byte[] payload = """
+            {"veiculoId":7,"latitude":-23.55,"longitude":-46.63,"velocidade":62.5,"nivelCombustivel":40}
+            """.getBytes(StandardCharsets.UTF_8);
+
+        publicar("/veiculo/42/telemetria", payload);
+
+        ArgumentCaptor<TelemetriaMensagem> mensagem = ArgumentCaptor.forClass(TelemetriaMensagem.class);
+        verify(kafkaTemplate, timeout(10_000)).send(eq("telemetria-raw"), eq("42"), mensagem.capture());
+        assertEquals(42, mensagem.getValue().getVeiculoId());
+        assertEquals(-23.55, mensagem.getValue().getLatitude(), 1e-9);
+        assertEquals(-46.63, mensagem.getValue().getLongitude(), 1e-9);
+        assertEquals(62.5, mensagem.getValue().getVelocidade(), 1e-9);
+        assertEquals(40, mensagem.getValue().getNivelCombustivel(), 1e-9);
+        verify(dlqKafkaTemplate, never()).send(anyString(), any());
+    }
+
+    @Test
+    void telemetriaBinariaVaiParaOTopicoComAChaveDoVeiculo() throws Exception {
+        byte[] payload = TelemetriaCodec.codificar(
+            new TelemetriaMensagem(0, -22.9, -43.2, 80, Double.NaN, 1_700_000_000_000L));
+
+        publicar("/veiculo/15/telemetria", payload);
+
+        ArgumentCaptor<TelemetriaMensagem> mensagem = ArgumentCaptor.forClass(TelemetriaMensagem.class);
+        verify(kafkaTemplate, timeout(10_000)).send(eq("telemetria-raw"), eq("15"), mensagem.capture());
+        assertEquals(15, mensagem.getValue().getVeiculoId());
+        assertEquals(1_700_000_000_000L, mensagem.getValue().getTimestampMillis());
+    }
+
+    @Test
+    void payloadInvalidoVaiParaADlq() throws Exception {
+        byte[] payload = "{\"latitude\":\"abc\"".getBytes(StandardCharsets.UTF_8);
+
+        publicar("/veiculo/42/telemetria", payload);
+
+        verify(dlqKafkaTemplate, timeout(10_000)).send(eq("telemetria-dlq"), aryEq(payload));
+        verify(kafkaTemplate, after(200).never()).send(anyString(), anyString(), any());
+    }
+
+    @Test
+    void coordenadasForaDaFaixaVaoParaADlq() throws Exception {
+        byte[] payload = """
+            {"latitude":-123.0,"longitude":-46.63,"velocidade":10}
+            """.getBytes(StandardCharsets.UTF_8);
+
+        publicar("/veiculo/42/telemetria", payload);
+
+        verify(dlqKafkaTemplate, timeout(10_000)).send(eq("telemetria-dlq"), aryEq(payload));
+        verify(kafkaTemplate, after(200).never()).send(anyString(), anyString(), any());
+    }
+
+    @Test
+    void mensagensDoMesmoVeiculoChegamNaOrdem() throws Exception {
+        int total = 300;
+        for (int i = 0; i < total; i++) {
+            publicar("/veiculo/42/telemetria", TelemetriaCodec.codificar(
+                new TelemetriaMensagem(0, -23.55, -46.63, i, Double.NaN, 1_700_000_000_000L + i)));
+        }
+
+        ArgumentCaptor<TelemetriaMensagem> mensagens = ArgumentCaptor.forClass(TelemetriaMensagem.class);
+        verify(kafkaTemplate, timeout(10_000).times(total)).send(eq("telemetria-raw"), eq("42"), mensagens.capture());
+        List<TelemetriaMensagem> recebidas = mensagens.getAllValues();
+        for (int i = 0; i < total; i++) {
+            assertEquals(1_700_000_000_000L + i, recebidas.get(i).getTimestampMillis());
+        }
+    }
+
+    @Test
+    void falhaNaDlqNaoInterrompeOProcessamento() throws Exception {
+        when(dlqKafkaTemplate.send(anyString(), any())).thenThrow(new IllegalStateException("broker fora"));
+
+        publicar("/veiculo/42/telemetria", "lixo".getBytes(StandardCharsets.UTF_8));
+        publicar("/veiculo/42/telemetria", TelemetriaCodec.codificar(
+            new TelemetriaMensagem(0, -22.9, -43.2, 80, Double.NaN, 1_700_000_000_000L)));
+
+        verify(dlqKafkaTemplate, timeout(10_000)).send(eq("telemetria-dlq"), any());
+        verify(kafkaTemplate, timeout(10_000)).send(eq("telemetria-raw"), eq("42"), any());
+    }
+
+    private void publicar(String topico, byte[] payload) throws Exception {
+        dispositivo.publish(topico, payload, 1, false);
+    }
+}
@@ -0,0 +1,79 @@
+package com.app.telemetria.service;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalTime;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+import com.app.telemetria.entity.AreaCritica;
+import com.app.telemetria.service.CriticalAreaService.AreaCompilada;
+import com.app.telemetria.service.CriticalAreaService.Relogio;
+
+/**
+ * Janela de horário e dias da semana de uma área crítica compilada
+ */
+class CriticalAreaServiceTest {
+
+    private static final int SEGUNDA = 1, TERCA = 2, SEXTA = 5, SABADO = 6, DOMINGO = 7;
+
+    @Test
+    void janelaNoMesmoDia() {
+        AreaCompilada area = area("08:00", "18:00", "1,2,3,4,5");
+
+        assertTrue(area.ativa(relogio("08:00", SEGUNDA)));
+        assertTrue(area.ativa(relogio("18:00", TERCA)));
+        assertFalse(area.ativa(relogio("18:01", TERCA)));
+        assertFalse(area.ativa(relogio("12:00", SABADO)));
+    }
+
+    @Test
+    void depoisDaMeiaNoiteValeODiaEmQueAJanelaComecou() {
+        // Sexta 22:00 -> sábado 05:00
+        AreaCompilada area = area("22:00", "05:00", "5");
+
+        assertTrue(area.ativa(relogio("23:00", SEXTA)));
+        assertTrue(area.ativa(relogio("03:00", SABADO)));
+        assertFalse(area.ativa(relogio("03:00", SEXTA)));
+        assertFalse(area.ativa(relogio("23:00", SABADO)));
+        assertFalse(area.ativa(relogio("06:00", SABADO)));
+    }
+
+    @Test
+    void janelaDeDomingoTerminaNaSegunda() {
+        AreaCompilada area = area("22:00", "05:00", "7");
+
+        assertTrue(area.ativa(relogio("04:59", SEGUNDA)));
+        assertFalse(area.ativa(relogio("04:59", DOMINGO)));
+    }
+
+    @Test
+    void semDiasConfiguradosValeTodoDia() {
+        AreaCompilada area = area("22:00", "05:00", null);
+
+        assertTrue(area.ativa(relogio("03:00", SEGUNDA)));
+        assertTrue(area.ativa(relogio("23:00", DOMINGO)));
+        assertFalse(area.ativa(relogio("12:00", TERCA)));
+    }
+
+    private static AreaCompilada area(String inicio, String fim, String dias) {
+        AreaCritica area = new AreaCritica();
+        area.setId(1L);
+        area.setNome("Centro");
+        area.setLatitudeMin(-23.6);
+        area.setLatitudeMax(-23.5);
+        area.setLongitudeMin(-46.7);
+        area.setLongitudeMax(-46.6);
+        area.setHoraInicio(LocalTime.parse(inicio));
+        area.setHoraFim(LocalTime.parse(fim));
+        area.setDiasSemana(dias);
+        area.setFatorReducao(0.5);
+        return new AreaCompilada(area, new LongAdder());
+    }
+
+    private static Relogio relogio(String hora, int diaSemana) {
+        return new Relogio(LocalTime.parse(hora).toSecondOfDay(), diaSemana, Long.MAX_VALUE);
+    }
+}
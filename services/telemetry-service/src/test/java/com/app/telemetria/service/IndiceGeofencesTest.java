@@ -0,0 +1,397 @@
+package com.app.telemetria.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.app.telemetria.entity.Geofence;
+
+/**
+ * Consulta pela GradeEspacial em IndiceGeofences contra o teste de todas as
+ * cercas vinculadas, um a um, incluindo pontos em bordas de célula e de cerca
+ */
+class IndiceGeofencesTest {
+
+    private static final double METROS_POR_GRAU = 111320;
+    private static final double CELULA = 0.01;
+
+    @Test
+    void gradeIgualAForcaBrutaEmPontosAleatorios() {
+        Random random = new Random(42);
+        Cenario cenario = cenarioAleatorio(random, -23.7, -46.8, 0.4, 60);
+
+        for (double celula : new double[] { CELULA, 0.003, 0.5 }) {
+            IndiceGeofences indice = cenario.montar(celula, 4096);
+            for (int i = 0; i < 20_000; i++) {
+                double lat = -23.7 + random.nextDouble() * 0.4;
+                double lon = -46.8 + random.nextDouble() * 0.4;
+                cenario.conferir(indice, random.nextInt(cenario.veiculos) + 1, lat, lon);
+            }
+        }
+    }
+
+    @Test
+    void gradeIgualAForcaBrutaNasBordasDeCelula() {
+        Random random = new Random(7);
+        Cenario cenario = cenarioAleatorio(random, -23.7, -46.8, 0.4, 60);
+        IndiceGeofences indice = cenario.montar(CELULA, 4096);
+
+        for (int i = 0; i < 20_000; i++) {
+            // Múltiplos exatos da célula em uma ou nas duas coordenadas
+            double lat = -23.7 + random.nextDouble() * 0.4;
+            double lon = -46.8 + random.nextDouble() * 0.4;
+            int borda = random.nextInt(3);
+            if (borda != 1) lat = Math.floor(lat / CELULA) * CELULA;
+            if (borda != 0) lon = Math.floor(lon / CELULA) * CELULA;
+            cenario.conferir(indice, random.nextInt(cenario.veiculos) + 1, lat, lon);
+        }
+    }
+
+    @Test
+    void gradeIgualAForcaBrutaNasBordasDasCercas() {
+        Random random = new Random(11);
+        Cenario cenario = cenarioAleatorio(random, -23.7, -46.8, 0.4, 60);
+        IndiceGeofences indice = cenario.montar(CELULA, 4096);
+
+        for (Geofence g : cenario.cercas) {
+            for (double[] p : pontosDaBorda(g, random)) {
+                for (int veiculo = 1; veiculo <= cenario.veiculos; veiculo++) {
+                    cenario.conferir(indice, veiculo, p[0], p[1]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void cercasAbrangentesTestadasEmTodaConsulta() {
+        // maxCelulas = 1: quase todas as cercas ficam fora da grade
+        Random random = new Random(3);
+        Cenario cenario = cenarioAleatorio(random, -23.7, -46.8, 0.4, 40);
+        IndiceGeofences indice = cenario.montar(CELULA, 1);
+
+        for (int i = 0; i < 10_000; i++) {
+            double lat = -23.7 + random.nextDouble() * 0.4;
+            double lon = -46.8 + random.nextDouble() * 0.4;
+            cenario.conferir(indice, random.nextInt(cenario.veiculos) + 1, lat, lon);
+        }
+    }
+
+    @Test
+    void gradeIgualAForcaBrutaAtravessandoEquadorEMeridiano() {
+        Random random = new Random(5);
+        Cenario cenario = cenarioAleatorio(random, -0.2, -0.2, 0.4, 30);
+        IndiceGeofences indice = cenario.montar(CELULA, 4096);
+
+        for (int i = 0; i < 10_000; i++) {
+            double lat = -0.2 + random.nextDouble() * 0.4;
+            double lon = -0.2 + random.nextDouble() * 0.4;
+            if (i % 4 == 0) lat = 0;
+            if (i % 4 == 1) lon = 0;
+            cenario.conferir(indice, random.nextInt(cenario.veiculos) + 1, lat, lon);
+        }
+    }
+
+    @Test
+    void retanguloInclusivoAoSulEOesteExclusivoAoNorteELeste() {
+        Geofence g = retangulo(1, -23.50, -23.60, -46.60, -46.70);
+        IndiceGeofences indice = IndiceGeofences.montar(List.of(g), List.<Object[]>of(new Object[] { 1L, 1L }),
+            CELULA, 4096, new ArrayList<>());
+
+        assertArrayEquals(new long[] { 1 }, indice.cercasContendo(1, -23.55, -46.65));
+        assertArrayEquals(new long[] { 1 }, indice.cercasContendo(1, -23.60, -46.65));   // sul
+        assertArrayEquals(new long[] { 1 }, indice.cercasContendo(1, -23.55, -46.70));   // oeste
+        assertArrayEquals(new long[] { 1 }, indice.cercasContendo(1, -23.60, -46.70));   // canto sudoeste
+        assertEquals(0, indice.cercasContendo(1, -23.50, -46.65).length);               // norte
+        assertEquals(0, indice.cercasContendo(1, -23.55, -46.60).length);               // leste
+        assertEquals(0, indice.cercasContendo(1, -23.6000001, -46.65).length);
+        assertEquals(0, indice.cercasContendo(1, -23.55, -46.7000001).length);
+    }
+
+    @Test
+    void circuloInclusivoNaBorda() {
+        Geofence g = circulo(1, -23.55, -46.63, 500);
+        IndiceGeofences indice = IndiceGeofences.montar(List.of(g), List.<Object[]>of(new Object[] { 1L, 1L }),
+            CELULA, 4096, new ArrayList<>());
+
+        double dLat = 500 / METROS_POR_GRAU;
+        assertArrayEquals(new long[] { 1 }, indice.cercasContendo(1, -23.55, -46.63));
+        assertArrayEquals(new long[] { 1 }, indice.cercasContendo(1, -23.55 + dLat * 0.999, -46.63));
+        assertEquals(0, indice.cercasContendo(1, -23.55 + dLat * 1.001, -46.63).length);
+        // Canto da caixa envolvente: fora do círculo
+        double dLon = 500 / (METROS_POR_GRAU * Math.cos(Math.toRadians(-23.55)));
+        assertEquals(0, indice.cercasContendo(1, -23.55 + dLat * 0.9, -46.63 + dLon * 0.9).length);
+    }
+
+    @Test
+    void poligonoConcavoNaoContemOEntalhe() {
+        // "U": entalhe entre as longitudes -46.62 e -46.58, acima de -23.56
+        Geofence g = poligono(1, new double[][] {
+            { -23.60, -46.64 }, { -23.60, -46.56 }, { -23.50, -46.56 }, { -23.50, -46.58 },
+            { -23.56, -46.58 }, { -23.56, -46.62 }, { -23.50, -46.62 }, { -23.50, -46.64 } });
+        IndiceGeofences indice = IndiceGeofences.montar(List.of(g), List.<Object[]>of(new Object[] { 1L, 1L }),
+            CELULA, 4096, new ArrayList<>());
+
+        assertArrayEquals(new long[] { 1 }, indice.cercasContendo(1, -23.58, -46.60));
+        assertArrayEquals(new long[] { 1 }, indice.cercasContendo(1, -23.52, -46.63));
+        assertArrayEquals(new long[] { 1 }, indice.cercasContendo(1, -23.52, -46.57));
+        assertEquals(0, indice.cercasContendo(1, -23.52, -46.60).length);
+    }
+
+    @Test
+    void verticesComoObjetosIguaisAVerticesComoPares() {
+        Geofence pares = poligono(1, new double[][] { { -23.60, -46.70 }, { -23.60, -46.60 }, { -23.50, -46.65 } });
+        Geofence objetos = poligono(2, null);
+        objetos.setVertices("[{\"latitude\":-23.60,\"longitude\":-46.70},"
+            + "{\"latitude\":-23.60,\"longitude\":-46.60},{\"latitude\":-23.50,\"longitude\":-46.65}]");
+        IndiceGeofences indice = IndiceGeofences.montar(List.of(pares, objetos),
+            List.<Object[]>of(new Object[] { 1L, 1L }, new Object[] { 1L, 2L }), CELULA, 4096, new ArrayList<>());
+
+        Random random = new Random(9);
+        for (int i = 0; i < 5_000; i++) {
+            double lat = -23.62 + random.nextDouble() * 0.14;
+            double lon = -46.72 + random.nextDouble() * 0.14;
+            long[] dentro = indice.cercasContendo(1, lat, lon);
+            assertTrue(dentro.length == 0 || Arrays.equals(dentro, new long[] { 1, 2 }),
+                () -> "(" + lat + ", " + lon + "): " + Arrays.toString(dentro));
+        }
+    }
+
+    @Test
+    void soCercasVinculadasAoVeiculo() {
+        Geofence a = circulo(1, -23.55, -46.63, 1000);
+        Geofence b = circulo(2, -23.55, -46.63, 2000);
+        IndiceGeofences indice = IndiceGeofences.montar(List.of(a, b),
+            List.<Object[]>of(new Object[] { 1L, 2L }, new Object[] { 2L, 1L }, new Object[] { 2L, 2L }),
+            CELULA, 4096, new ArrayList<>());
+
+        assertArrayEquals(new long[] { 2 }, indice.cercasContendo(1, -23.55, -46.63));
+        assertArrayEquals(new long[] { 1, 2 }, indice.cercasContendo(2, -23.55, -46.63));
+        assertEquals(0, indice.cercasContendo(3, -23.55, -46.63).length);
+        assertTrue(indice.monitora(1));
+        assertTrue(!indice.monitora(3));
+    }
+
+    @Test
+    void cercasInvalidasIgnoradas() {
+        Geofence semRaio = circulo(1, -23.55, -46.63, 100);
+        semRaio.setRaio(null);
+        Geofence doisVertices = poligono(2, new double[][] { { -23.6, -46.7 }, { -23.5, -46.6 } });
+        Geofence tipoDesconhecido = circulo(3, -23.55, -46.63, 100);
+        tipoDesconhecido.setTipo("ESTRELA");
+        Geofence valida = circulo(4, -23.55, -46.63, 100);
+
+        List<String> invalidas = new ArrayList<>();
+        IndiceGeofences indice = IndiceGeofences.montar(List.of(semRaio, doisVertices, tipoDesconhecido, valida),
+            List.<Object[]>of(new Object[] { 1L, 1L }, new Object[] { 1L, 4L }), CELULA, 4096, invalidas);
+
+        assertEquals(3, invalidas.size());
+        assertEquals(1, indice.getTotalCercas());
+        assertArrayEquals(new long[] { 4 }, indice.cercasContendo(1, -23.55, -46.63));
+    }
+
+    // ================ CENÁRIO ================
+
+    /**
+     * Cercas aleatórias numa janela de lado graus e veículos vinculados a
+     * subconjuntos delas
+     */
+    private static Cenario cenarioAleatorio(Random random, double latMin, double lonMin, double lado, int total) {
+        List<Geofence> cercas = new ArrayList<>();
+        for (int id = 1; id <= total; id++) {
+            double lat = latMin + random.nextDouble() * lado;
+            double lon = lonMin + random.nextDouble() * lado;
+            switch (id % 3) {
+                case 0 -> cercas.add(circulo(id, lat, lon, 50 + random.nextDouble() * 5000));
+                case 1 -> {
+                    // Metade com bordas alinhadas às células
+                    double altura = 0.001 + random.nextDouble() * 0.08;
+                    double largura = 0.001 + random.nextDouble() * 0.08;
+                    if (random.nextBoolean()) {
+                        lat = Math.floor(lat / CELULA) * CELULA;
+                        lon = Math.floor(lon / CELULA) * CELULA;
+                        altura = Math.ceil(altura / CELULA) * CELULA;
+                        largura = Math.ceil(largura / CELULA) * CELULA;
+                    }
+                    cercas.add(retangulo(id, lat + altura, lat, lon + largura, lon));
+                }
+                default -> cercas.add(poligono(id, estrela(random, lat, lon)));
+            }
+        }
+
+        int veiculos = 8;
+        List<Object[]> vinculos = new ArrayList<>();
+        for (long veiculo = 1; veiculo <= veiculos; veiculo++) {
+            for (Geofence g : cercas) {
+                // Veículo 1 vinculado a todas
+                if (veiculo == 1 || random.nextInt(3) == 0) vinculos.add(new Object[] { veiculo, g.getId() });
+            }
+        }
+        return new Cenario(cercas, vinculos, veiculos);
+    }
+
+    /**
+     * Polígono simples, em geral côncavo: ângulos crescentes e raios aleatórios
+     */
+    private static double[][] estrela(Random random, double lat, double lon) {
+        int n = 3 + random.nextInt(10);
+        double[][] vertices = new double[n][];
+        for (int i = 0; i < n; i++) {
+            double angulo = 2 * Math.PI * (i + random.nextDouble() * 0.8) / n;
+            double raio = 0.002 + random.nextDouble() * 0.05;
+            vertices[i] = new double[] { lat + raio * Math.sin(angulo), lon + raio * Math.cos(angulo) };
+        }
+        return vertices;
+    }
+
+    private static List<double[]> pontosDaBorda(Geofence g, Random random) {
+        List<double[]> pontos = new ArrayList<>();
+        switch (g.getTipo()) {
+            case "CIRCULO" -> {
+                double metrosPorGrauLon = METROS_POR_GRAU * Math.cos(Math.toRadians(g.getLatitudeCentro()));
+                for (int i = 0; i < 16; i++) {
+                    double angulo = random.nextDouble() * 2 * Math.PI;
+                    pontos.add(new double[] {
+                        g.getLatitudeCentro() + g.getRaio() * Math.sin(angulo) / METROS_POR_GRAU,
+                        g.getLongitudeCentro() + g.getRaio() * Math.cos(angulo) / metrosPorGrauLon });
+                }
+                pontos.add(new double[] { g.getLatitudeCentro(), g.getLongitudeCentro() });
+            }
+            default -> {
+                double[][] v = vertices(g);
+                for (int i = 0; i < v.length; i++) {
+                    double[] a = v[i], b = v[(i + 1) % v.length];
+                    pontos.add(a);
+                    double t = random.nextDouble();
+                    pontos.add(new double[] { a[0] + (b[0] - a[0]) * t, a[1] + (b[1] - a[1]) * t });
+                    pontos.add(new double[] { (a[0] + b[0]) / 2, (a[1] + b[1]) / 2 });
+                }
+            }
+        }
+        return pontos;
+    }
+
+    private record Cenario(List<Geofence> cercas, List<Object[]> vinculos, int veiculos) {
+
+        IndiceGeofences montar(double celula, int maxCelulas) {
+            List<String> invalidas = new ArrayList<>();
+            IndiceGeofences indice = IndiceGeofences.montar(cercas, vinculos, celula, maxCelulas, invalidas);
+            assertTrue(invalidas.isEmpty(), invalidas::toString);
+            return indice;
+        }
+
+        void conferir(IndiceGeofences indice, long veiculo, double lat, double lon) {
+            long[] esperado = vinculos.stream()
+                .filter(v -> (Long) v[0] == veiculo)
+                .map(v -> cercas.get(((Long) v[1]).intValue() - 1))
+                .filter(g -> contem(g, lat, lon))
+                .mapToLong(Geofence::getId)
+                .sorted()
+                .toArray();
+            long[] obtido = indice.cercasContendo(veiculo, lat, lon);
+            assertArrayEquals(esperado, obtido, () -> "veículo " + veiculo + " em (" + lat + ", " + lon + ")");
+        }
+    }
+
+    // ================ CONTENÇÃO POR FORÇA BRUTA ================
+
+    private static boolean contem(Geofence g, double lat, double lon) {
+        switch (g.getTipo()) {
+            case "CIRCULO": {
+                double metrosPorGrauLon = METROS_POR_GRAU * Math.cos(Math.toRadians(g.getLatitudeCentro()));
+                double dy = (lat - g.getLatitudeCentro()) * METROS_POR_GRAU;
+                double dx = (lon - g.getLongitudeCentro()) * metrosPorGrauLon;
+                return dx * dx + dy * dy <= g.getRaio() * g.getRaio();
+            }
+            case "RETANGULO": {
+                double[][] v = vertices(g);
+                // v = sudoeste, sudeste, nordeste, noroeste
+                return lat >= v[0][0] && lat < v[2][0] && lon >= v[0][1] && lon < v[1][1];
+            }
+            default: {
+                // Ray casting com a mesma convenção de borda do índice
+                double[][] v = vertices(g);
+                boolean dentro = false;
+                for (int i = 0, j = v.length - 1; i < v.length; j = i++) {
+                    if ((v[i][0] > lat) != (v[j][0] > lat)
+                            && lon < v[i][1] + (lat - v[i][0]) * ((v[j][1] - v[i][1]) / (v[j][0] - v[i][0]))) {
+                        dentro = !dentro;
+                    }
+                }
+                return dentro;
+            }
+        }
+    }
+
+    // ================ CERCAS ================
+
+    private static Geofence circulo(long id, double lat, double lon, double raio) {
+        Geofence g = nova(id, "CIRCULO");
+        g.setLatitudeCentro(lat);
+        g.setLongitudeCentro(lon);
+        g.setRaio(raio);
+        return g;
+    }
+
+    private static Geofence retangulo(long id, double norte, double sul, double leste, double oeste) {
+        Geofence g = nova(id, "RETANGULO");
+        g.setVertices(String.format(Locale.ROOT, "{\"norte\":%s,\"sul\":%s,\"leste\":%s,\"oeste\":%s}",
+            norte, sul, leste, oeste));
+        return g;
+    }
+
+    private static Geofence poligono(long id, double[][] vertices) {
+        Geofence g = nova(id, "POLIGONO");
+        if (vertices != null) {
+            StringBuilder json = new StringBuilder("[");
+            for (double[] v : vertices) {
+                if (json.length() > 1) json.append(',');
+                json.append('[').append(v[0]).append(',').append(v[1]).append(']');
+            }
+            g.setVertices(json.append(']').toString());
+        }
+        return g;
+    }
+
+    private static Geofence nova(long id, String tipo) {
+        Geofence g = new Geofence();
+        g.setId(id);
+        g.setNome("cerca-" + id);
+        g.setTipo(tipo);
+        g.setAtivo(true);
+        return g;
+    }
+
+    /**
+     * Vértices [lat, lon] como o índice os lê (retângulo: sudoeste, sudeste,
+     * nordeste, noroeste)
+     */
+    private static double[][] vertices(Geofence g) {
+        String json = g.getVertices();
+        if (g.getTipo().equals("RETANGULO")) {
+            double norte = campo(json, "norte"), sul = campo(json, "sul");
+            double leste = campo(json, "leste"), oeste = campo(json, "oeste");
+            return new double[][] { { sul, oeste }, { sul, leste }, { norte, leste }, { norte, oeste } };
+        }
+        String[] numeros = json.replaceAll("[\\[\\]]", "").split(",");
+        double[][] v = new double[numeros.length / 2][];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = new double[] { Double.parseDouble(numeros[2 * i]), Double.parseDouble(numeros[2 * i + 1]) };
+        }
+        return v;
+    }
+
+    private static double campo(String json, String nome) {
+        int inicio = json.indexOf("\"" + nome + "\":") + nome.length() + 3;
+        int fim = inicio;
+        while (fim < json.length() && json.charAt(fim) != ',' && json.charAt(fim) != '}') fim++;
+        return Double.parseDouble(json.substring(inicio, fim));
+    }
+}
@@ -0,0 +1,234 @@
+package com.app.telemetria.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.app.telemetria.entity.Telemetria;
+import com.app.telemetria.entity.Veiculo;
+import com.app.telemetria.entity.Viagem;
+import com.app.telemetria.enums.TipoAlerta;
+
+/**
+ * Regras do MotorRegrasAlerta contra o EstadoRegrasAlerta de um veículo:
+ * histerese, amostras seguidas, intervalo de reabertura, fechamento
+ * automático por tipo (telemetria.alertas.auto-resolver) e local exigido
+ * pela velocidade baixa.
+ *
+ * As sequências usam um caractere por telemetria: '.' sem transição,
+ * 'A' abriu e 'F' fechou.
+ */
+class MotorRegrasAlertaTest {
+
+    private static final List<String> TODOS = List.of(
+        "EXCESSO_VELOCIDADE", "VELOCIDADE_BAIXA", "NIVEL_COMBUSTIVEL_BAIXO", "GPS_SEM_SINAL", "TEMPO_DIRECAO");
+
+    // ================ HISTERESE E AMOSTRAS ================
+
+    @Test
+    void excessoAbreAcimaDoLimiteEFechaAbaixoDoLimiteMenosHisterese() {
+        // Padrão: máxima 110, histerese 5, 2 amostras para abrir e 3 para fechar
+        MotorRegrasAlerta motor = motor(TODOS);
+        EstadoVeiculo estado = estado();
+
+        assertEquals("..", velocidades(motor, estado, 110, 110));
+        assertEquals(".A", velocidades(motor, estado, 111, 111));
+        // Entre 105 e 110 continua aberto
+        assertEquals("....", velocidades(motor, estado, 110, 106, 106, 106));
+        assertEquals("..F", velocidades(motor, estado, 105, 105, 105));
+    }
+
+    @Test
+    void excessoExigeAmostrasSeguidas() {
+        MotorRegrasAlerta motor = motor(TODOS);
+        EstadoVeiculo estado = estado();
+
+        // Uma amostra normal no meio zera a contagem
+        assertEquals("...A", velocidades(motor, estado, 120, 100, 120, 120));
+        assertEquals(".....F", velocidades(motor, estado, 100, 100, 108, 100, 100, 100));
+    }
+
+    @Test
+    void combustivelAbreAbaixoDoMinimoEFechaAcimaDoMinimoMaisHisterese() {
+        // Padrão: mínimo 15%, histerese 5
+        MotorRegrasAlerta motor = motor(TODOS);
+        EstadoVeiculo estado = estado();
+
+        assertEquals("..", niveis(motor, estado, 15, 15));
+        assertEquals(".A", niveis(motor, estado, 14, 14));
+        assertEquals("...", niveis(motor, estado, 19.9, 19.9, 19.9));
+        assertEquals(".....F", niveis(motor, estado, 20, 20, 14, 20, 20, 20));
+    }
+
+    @Test
+    void amostrasConfiguraveis() {
+        MockEnvironment env = new MockEnvironment()
+            .withProperty("telemetria.alertas.padrao.amostras-abrir", "1")
+            .withProperty("telemetria.alertas.padrao.amostras-fechar", "1");
+        MotorRegrasAlerta motor = motor(env, TODOS);
+        EstadoVeiculo estado = estado();
+
+        assertEquals("AF", velocidades(motor, estado, 111, 100));
+    }
+
+    // ================ REABERTURA ================
+
+    @Test
+    void naoReabreDentroDoIntervalo() {
+        // Padrão: 300 s entre dois disparos do mesmo tipo
+        MotorRegrasAlerta motor = motor(TODOS);
+        EstadoVeiculo estado = estado();
+
+        assertEquals(".A..F", velocidades(motor, estado, 111, 111, 100, 100, 100));
+        assertEquals(".....", velocidades(motor, estado, 111, 111, 111, 111, 111));
+    }
+
+    @Test
+    void reabreLogoComIntervaloZero() {
+        MockEnvironment env = new MockEnvironment()
+            .withProperty("telemetria.alertas.padrao.intervalo-reabertura-segundos", "0");
+        MotorRegrasAlerta motor = motor(env, TODOS);
+        EstadoVeiculo estado = estado();
+
+        assertEquals(".A..F", velocidades(motor, estado, 111, 111, 100, 100, 100));
+        assertEquals(".A", velocidades(motor, estado, 111, 111));
+    }
+
+    // ================ AUTO-RESOLVER ================
+
+    @Test
+    void gpsSemSinalFechaSozinhoQuandoNaLista() {
+        MotorRegrasAlerta motor = motor(TODOS);
+        EstadoVeiculo estado = estado();
+
+        List<TransicaoAlerta> abertura = motor.avaliar(estado, telemetria(LocalDateTime.now().minusMinutes(30)), null);
+        assertEquals(1, abertura.size());
+        assertEquals(TipoAlerta.GPS_SEM_SINAL, abertura.get(0).tipo());
+        assertTrue(abertura.get(0).abrir());
+
+        List<TransicaoAlerta> fechamento = motor.avaliar(estado, telemetria(LocalDateTime.now()), null);
+        assertEquals(1, fechamento.size());
+        assertFalse(fechamento.get(0).abrir());
+        assertFalse(estado.getRegrasAlerta().isAberto(TipoAlerta.GPS_SEM_SINAL));
+    }
+
+    @Test
+    void gpsSemSinalForaDaListaFicaAbertoAteAResolucaoManual() {
+        MotorRegrasAlerta motor = motor(List.of("EXCESSO_VELOCIDADE"));
+        EstadoVeiculo estado = estado();
+
+        assertEquals(1, motor.avaliar(estado, telemetria(LocalDateTime.now().minusMinutes(30)), null).size());
+        assertTrue(motor.avaliar(estado, telemetria(LocalDateTime.now()), null).isEmpty());
+        assertTrue(estado.getRegrasAlerta().isAberto(TipoAlerta.GPS_SEM_SINAL));
+
+        // Enquanto aberto não reabre
+        assertTrue(motor.avaliar(estado, telemetria(LocalDateTime.now().minusMinutes(30)), null).isEmpty());
+
+        // Resolução pela API fecha a regra
+        estado.getRegrasAlerta().marcarResolvido(TipoAlerta.GPS_SEM_SINAL.name(), LocalDateTime.now());
+        assertFalse(estado.getRegrasAlerta().isAberto(TipoAlerta.GPS_SEM_SINAL));
+    }
+
+    @Test
+    void tipoForaDoMotorRejeitado() {
+        assertThrows(IllegalArgumentException.class, () -> motor(List.of("ATRASO_VIAGEM")));
+        assertThrows(IllegalArgumentException.class, () -> motor(List.of("INEXISTENTE")));
+    }
+
+    // ================ VELOCIDADE BAIXA ================
+
+    @Test
+    void velocidadeBaixaAbreForaDeAreaUrbanaPorPadrao() {
+        assertEquals(1, aberturasVelocidadeBaixa(false, LocationClassifierService.DESCONHECIDA));
+        assertEquals(1, aberturasVelocidadeBaixa(false, LocationClassifierService.RODOVIA));
+        assertEquals(0, aberturasVelocidadeBaixa(false, LocationClassifierService.AREA_URBANA));
+    }
+
+    @Test
+    void velocidadeBaixaSoEmRodoviaQuandoExigido() {
+        assertEquals(1, aberturasVelocidadeBaixa(true, LocationClassifierService.RODOVIA));
+        assertEquals(0, aberturasVelocidadeBaixa(true, LocationClassifierService.DESCONHECIDA));
+        assertEquals(0, aberturasVelocidadeBaixa(true, LocationClassifierService.AREA_URBANA));
+    }
+
+    /**
+     * Aberturas de VELOCIDADE_BAIXA em 5 telemetrias a 5 km/h, em viagem, no local informado
+     */
+    private static long aberturasVelocidadeBaixa(boolean exigirRodovia, String local) {
+        LocationClassifierService classificador = mock(LocationClassifierService.class);
+        when(classificador.classify(anyDouble(), anyDouble())).thenReturn(local);
+        MotorRegrasAlerta motor = new MotorRegrasAlerta(
+            new LimitesAlertaService(new MockEnvironment(), List.of()), classificador, TODOS, exigirRodovia);
+        EstadoVeiculo estado = estado();
+
+        long aberturas = 0;
+        for (int i = 0; i < 5; i++) {
+            Telemetria telemetria = telemetria(LocalDateTime.now());
+            telemetria.setVelocidade(5.0);
+            aberturas += motor.avaliar(estado, telemetria, new Viagem()).stream()
+                .filter(t -> t.tipo() == TipoAlerta.VELOCIDADE_BAIXA && t.abrir())
+                .count();
+        }
+        return aberturas;
+    }
+
+    private static String velocidades(MotorRegrasAlerta motor, EstadoVeiculo estado, double... valores) {
+        StringBuilder sequencia = new StringBuilder();
+        for (double valor : valores) {
+            Telemetria telemetria = telemetria(LocalDateTime.now());
+            telemetria.setVelocidade(valor);
+            sequencia.append(simbolo(motor.avaliar(estado, telemetria, null), TipoAlerta.EXCESSO_VELOCIDADE));
+        }
+        return sequencia.toString();
+    }
+
+    private static String niveis(MotorRegrasAlerta motor, EstadoVeiculo estado, double... valores) {
+        StringBuilder sequencia = new StringBuilder();
+        for (double valor : valores) {
+            Telemetria telemetria = telemetria(LocalDateTime.now());
+            telemetria.setNivelCombustivel(valor);
+            sequencia.append(simbolo(motor.avaliar(estado, telemetria, null), TipoAlerta.NIVEL_COMBUSTIVEL_BAIXO));
+        }
+        return sequencia.toString();
+    }
+
+    private static char simbolo(List<TransicaoAlerta> transicoes, TipoAlerta tipo) {
+        for (TransicaoAlerta t : transicoes) {
+            if (t.tipo() == tipo) return t.abrir() ? 'A' : 'F';
+        }
+        return '.';
+    }
+
+    private static MotorRegrasAlerta motor(List<String> autoResolver) {
+        return motor(new MockEnvironment(), autoResolver);
+    }
+
+    private static MotorRegrasAlerta motor(MockEnvironment env, List<String> autoResolver) {
+        LimitesAlertaService limites = new LimitesAlertaService(env, List.of());
+        return new MotorRegrasAlerta(limites, mock(LocationClassifierService.class), autoResolver, false);
+    }
+
+    private static EstadoVeiculo estado() {
+        Veiculo veiculo = new Veiculo();
+        veiculo.setId(1L);
+        return new EstadoVeiculo(veiculo);
+    }
+
+    private static Telemetria telemetria(LocalDateTime dataHora) {
+        Telemetria telemetria = new Telemetria();
+        telemetria.setLatitude(-23.55);
+        telemetria.setLongitude(-46.63);
+        telemetria.setDataHora(dataHora);
+        return telemetria;
+    }
+}
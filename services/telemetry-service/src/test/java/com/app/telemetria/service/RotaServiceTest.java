@@ -0,0 +1,93 @@
+package com.app.telemetria.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.app.telemetria.entity.Rota;
+import com.app.telemetria.repository.RotaRepository;
+import com.app.telemetria.repository.VeiculoRepository;
+
+/**
+ * A chamada ao routing-service (preencherSeAusente) acontece antes da
+ * transação de gravação, nunca dentro dela
+ */
+class RotaServiceTest {
+
+    private final RotaRepository repository = mock(RotaRepository.class);
+    private final VeiculoRepository veiculoRepository = mock(VeiculoRepository.class);
+    private final GeometriaRotaService geometriaRotaService = mock(GeometriaRotaService.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+
+    private final RotaService service =
+        new RotaService(repository, veiculoRepository, geometriaRotaService, transactionTemplate);
+
+    @BeforeEach
+    void preparar() {
+        when(repository.save(any(Rota.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+            ((TransactionCallback<?>) inv.getArgument(0)).doInTransaction(null));
+    }
+
+    @Test
+    void salvarBuscaGeometriaAntesDeGravar() {
+        Rota rota = rota(null);
+
+        service.salvar(rota);
+
+        InOrder ordem = inOrder(geometriaRotaService, repository);
+        ordem.verify(geometriaRotaService).preencherSeAusente(rota);
+        ordem.verify(repository).save(rota);
+    }
+
+    @Test
+    void atualizarBuscaGeometriaAntesDaTransacao() {
+        Rota rota = rota(1L);
+        when(repository.findById(1L)).thenReturn(Optional.of(rota));
+        Rota dados = new Rota();
+        dados.setStatus("EM_ANDAMENTO");
+
+        service.atualizar(1L, dados);
+
+        InOrder ordem = inOrder(geometriaRotaService, transactionTemplate, repository);
+        ordem.verify(geometriaRotaService).preencherSeAusente(rota);
+        ordem.verify(transactionTemplate).execute(any());
+        ordem.verify(repository).save(rota);
+    }
+
+    @Test
+    void iniciarRotaBuscaGeometriaAntesDeGravar() {
+        Rota rota = rota(1L);
+        when(repository.findById(1L)).thenReturn(Optional.of(rota));
+
+        Rota iniciada = service.iniciarRota(1L);
+
+        assertEquals("EM_ANDAMENTO", iniciada.getStatus());
+        InOrder ordem = inOrder(geometriaRotaService, repository);
+        ordem.verify(geometriaRotaService).preencherSeAusente(rota);
+        ordem.verify(repository).save(rota);
+    }
+
+    private static Rota rota(Long id) {
+        Rota rota = new Rota();
+        rota.setId(id);
+        rota.setNome("Centro - Aeroporto");
+        rota.setOrigem("Centro");
+        rota.setDestino("Aeroporto");
+        rota.setLatitudeOrigem(-23.55);
+        rota.setLongitudeOrigem(-46.63);
+        rota.setLatitudeDestino(-23.43);
+        rota.setLongitudeDestino(-46.47);
+        return rota;
+    }
+}
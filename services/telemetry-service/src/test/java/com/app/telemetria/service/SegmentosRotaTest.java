@@ -0,0 +1,245 @@
+package com.app.telemetria.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.app.telemetria.service.SegmentosRota.Proximidade;
+
+/**
+ * R-tree e busca com cursor do SegmentosRota contra a varredura linear
+ * (distanciaAteLinear), em rotas e pontos aleatórios com semente fixa
+ */
+class SegmentosRotaTest {
+
+    private static final double TOLERANCIA = 1e-9;
+
+    @Test
+    void arvoreIgualAVarreduraLinearEmRotasAleatorias() {
+        Random random = new Random(20240611L);
+        for (int rota = 0; rota < 60; rota++) {
+            double[][] coordenadas = rotaAleatoria(random, 2 + random.nextInt(rota < 30 ? 40 : 3000));
+            SegmentosRota segmentos = SegmentosRota.de(coordenadas[0], coordenadas[1]);
+            for (int consulta = 0; consulta < 200; consulta++) {
+                double[] ponto = pontoPerto(random, coordenadas);
+                Proximidade p = segmentos.maisProximo(ponto[0], ponto[1]);
+                double linear = segmentos.distanciaAteLinear(ponto[0], ponto[1]);
+
+                assertEquals(linear, p.distanciaMetros(), TOLERANCIA);
+                assertEquals(linear, segmentos.distanciaAte(ponto[0], ponto[1]), TOLERANCIA);
+                assertTrue(p.segmento() >= 0 && p.segmento() < segmentos.getTotalSegmentos());
+                assertTrue(p.fracao() >= 0 && p.fracao() <= 1);
+            }
+        }
+    }
+
+    @Test
+    void buscaComCursorIgualAVarreduraLinear() {
+        Random random = new Random(7L);
+        for (int rota = 0; rota < 40; rota++) {
+            double[][] coordenadas = rotaAleatoria(random, 2 + random.nextInt(500));
+            SegmentosRota segmentos = SegmentosRota.de(coordenadas[0], coordenadas[1]);
+            int total = segmentos.getTotalSegmentos();
+            for (int consulta = 0; consulta < 200; consulta++) {
+                double[] ponto = pontoPerto(random, coordenadas);
+                double linear = segmentos.distanciaAteLinear(ponto[0], ponto[1]);
+                int cursor = random.nextInt(total);
+                int atras = random.nextInt(5);
+                int frente = random.nextInt(20);
+
+                // Limite zero: só fica na janela se o ponto estiver sobre ela
+                Proximidade semLimite = segmentos.maisProximoPerto(ponto[0], ponto[1], cursor, atras, frente, 0);
+                assertEquals(linear, semLimite.distanciaMetros(), TOLERANCIA);
+
+                // Janela cobrindo a rota inteira
+                Proximidade rotaInteira = segmentos.maisProximoPerto(ponto[0], ponto[1], cursor, total, total, 1e9);
+                assertEquals(linear, rotaInteira.distanciaMetros(), TOLERANCIA);
+
+                // Janela parcial: o melhor da janela dentro do limite ou o global
+                double limite = random.nextDouble() * 500;
+                Proximidade janela = segmentos.maisProximoPerto(ponto[0], ponto[1], cursor, atras, frente, limite);
+                assertTrue(janela.distanciaMetros() >= linear - TOLERANCIA);
+                assertTrue(janela.distanciaMetros() <= limite
+                    || Math.abs(janela.distanciaMetros() - linear) <= TOLERANCIA);
+                if (janela.distanciaMetros() <= limite) {
+                    assertTrue(janela.segmento() >= Math.max(0, cursor - atras)
+                        && janela.segmento() <= Math.min(total - 1, cursor + frente)
+                        || Math.abs(janela.distanciaMetros() - linear) <= TOLERANCIA);
+                }
+            }
+        }
+    }
+
+    @Test
+    void cursorNasPontasDaRota() {
+        Random random = new Random(99L);
+        double[][] coordenadas = rotaAleatoria(random, 300);
+        SegmentosRota segmentos = SegmentosRota.de(coordenadas[0], coordenadas[1]);
+        int total = segmentos.getTotalSegmentos();
+
+        for (int consulta = 0; consulta < 500; consulta++) {
+            double[] ponto = pontoPerto(random, coordenadas);
+            double linear = segmentos.distanciaAteLinear(ponto[0], ponto[1]);
+
+            // Janela cortada no início e no fim
+            Proximidade inicio = segmentos.maisProximoPerto(ponto[0], ponto[1], 0, 10, total, 1e9);
+            Proximidade fim = segmentos.maisProximoPerto(ponto[0], ponto[1], total - 1, total, 10, 1e9);
+            assertEquals(linear, inicio.distanciaMetros(), TOLERANCIA);
+            assertEquals(linear, fim.distanciaMetros(), TOLERANCIA);
+
+            // Cursor negativo ou além do último segmento: vai para a árvore
+            assertEquals(linear, segmentos.maisProximoPerto(ponto[0], ponto[1], -1, 3, 3, 1e9).distanciaMetros(),
+                TOLERANCIA);
+            assertEquals(linear, segmentos.maisProximoPerto(ponto[0], ponto[1], total + 5, 3, 3, 1e9).distanciaMetros(),
+                TOLERANCIA);
+        }
+    }
+
+    @Test
+    void rotaDeDoisPontos() {
+        SegmentosRota segmentos = SegmentosRota.de(new double[] { -23.50, -23.50 }, new double[] { -46.60, -46.50 });
+        assertEquals(1, segmentos.getTotalSegmentos());
+
+        // Antes do início, no meio e depois do fim
+        Proximidade antes = segmentos.maisProximo(-23.50, -46.70);
+        Proximidade meio = segmentos.maisProximo(-23.49, -46.55);
+        Proximidade depois = segmentos.maisProximo(-23.50, -46.40);
+        assertEquals(0, antes.fracao(), TOLERANCIA);
+        assertEquals(0.5, meio.fracao(), 1e-6);
+        assertEquals(1, depois.fracao(), TOLERANCIA);
+        assertEquals(0, segmentos.distanciaAoLongo(antes), TOLERANCIA);
+        assertEquals(segmentos.getComprimentoTotal(), segmentos.distanciaAoLongo(depois), TOLERANCIA);
+
+        // 0,01° de latitude ~ 1112 m
+        assertEquals(1112, meio.distanciaMetros(), 1);
+
+        Random random = new Random(3L);
+        for (int i = 0; i < 500; i++) {
+            double lat = -23.6 + random.nextDouble() * 0.2;
+            double lon = -46.8 + random.nextDouble() * 0.5;
+            assertEquals(segmentos.distanciaAteLinear(lat, lon), segmentos.maisProximo(lat, lon).distanciaMetros(),
+                TOLERANCIA);
+            assertEquals(segmentos.distanciaAteLinear(lat, lon),
+                segmentos.maisProximoPerto(lat, lon, 0, 0, 0, 0).distanciaMetros(), TOLERANCIA);
+        }
+    }
+
+    @Test
+    void segmentosDeComprimentoZero() {
+        double[] lat = { -23.50, -23.50, -23.50, -23.51, -23.51, -23.52, -23.52, -23.52 };
+        double[] lon = { -46.60, -46.60, -46.59, -46.59, -46.59, -46.58, -46.58, -46.58 };
+        SegmentosRota segmentos = SegmentosRota.de(lat, lon);
+        assertEquals(lat.length - 1, segmentos.getTotalSegmentos());
+
+        Random random = new Random(11L);
+        for (int i = 0; i < 2000; i++) {
+            double la = -23.53 + random.nextDouble() * 0.04;
+            double lo = -46.61 + random.nextDouble() * 0.04;
+            double linear = segmentos.distanciaAteLinear(la, lo);
+            Proximidade p = segmentos.maisProximo(la, lo);
+            assertEquals(linear, p.distanciaMetros(), TOLERANCIA);
+            assertTrue(!Double.isNaN(p.fracao()));
+            for (int cursor = 0; cursor < segmentos.getTotalSegmentos(); cursor++) {
+                assertEquals(linear, segmentos.maisProximoPerto(la, lo, cursor, 1, 1, 0).distanciaMetros(), TOLERANCIA);
+            }
+        }
+
+        // Rota com todos os pontos iguais: distância até o ponto
+        SegmentosRota parada = SegmentosRota.de(new double[] { -23.5, -23.5, -23.5 }, new double[] { -46.6, -46.6, -46.6 });
+        Proximidade p = parada.maisProximo(-23.49, -46.6);
+        assertEquals(0, p.fracao(), TOLERANCIA);
+        assertEquals(0, parada.getComprimentoTotal(), TOLERANCIA);
+        assertEquals(parada.distanciaAteLinear(-23.49, -46.6), p.distanciaMetros(), TOLERANCIA);
+        assertEquals(1112, p.distanciaMetros(), 1);
+    }
+
+    @Test
+    void pontosSobreOsVertices() {
+        Random random = new Random(5L);
+        double[][] coordenadas = caminhadaAleatoria(random, 400);
+        SegmentosRota segmentos = SegmentosRota.de(coordenadas[0], coordenadas[1]);
+
+        double anterior = -1;
+        for (int i = 0; i < coordenadas[0].length; i++) {
+            double lat = coordenadas[0][i];
+            double lon = coordenadas[1][i];
+            Proximidade p = segmentos.maisProximo(lat, lon);
+            assertEquals(0, p.distanciaMetros(), 1e-6);
+            assertEquals(0, segmentos.distanciaAteLinear(lat, lon), 1e-6);
+            assertEquals(0, segmentos.maisProximoPerto(lat, lon, i, 1, 1, 0).distanciaMetros(), 1e-6);
+
+            // Com o cursor no próprio vértice, a distância ao longo cresce vértice a vértice
+            double aoLongo = segmentos.distanciaAoLongo(segmentos.maisProximoPerto(lat, lon,
+                Math.min(i, segmentos.getTotalSegmentos() - 1), 0, 0, 1e-6));
+            assertTrue(aoLongo >= anterior - 1e-6);
+            anterior = aoLongo;
+        }
+        assertEquals(segmentos.getComprimentoTotal(), anterior, 1e-6);
+    }
+
+    @Test
+    void rotaDeUmPontoOuVazia() {
+        SegmentosRota ponto = SegmentosRota.de(new double[] { -23.5 }, new double[] { -46.6 });
+        assertEquals(1, ponto.getTotalSegmentos());
+        assertEquals(ponto.distanciaAteLinear(-23.51, -46.6), ponto.maisProximo(-23.51, -46.6).distanciaMetros(),
+            TOLERANCIA);
+        assertEquals(1112, ponto.distanciaAte(-23.51, -46.6), 1);
+
+        SegmentosRota vazia = SegmentosRota.de(new double[0], new double[0]);
+        assertEquals(0, vazia.getTotalSegmentos());
+        assertNull(vazia.maisProximo(-23.5, -46.6));
+        assertNull(vazia.maisProximoPerto(-23.5, -46.6, 0, 1, 1, 100));
+        assertEquals(Double.MAX_VALUE, vazia.distanciaAte(-23.5, -46.6));
+        assertEquals(Double.MAX_VALUE, vazia.distanciaAteLinear(-23.5, -46.6));
+    }
+
+    /**
+     * Caminhada aleatória que repete pontos de vez em quando (GPS parado gera
+     * segmentos de comprimento zero)
+     */
+    private static double[][] rotaAleatoria(Random random, int pontos) {
+        double[][] coordenadas = caminhadaAleatoria(random, pontos);
+        for (int i = 1; i < pontos; i++) {
+            if (random.nextInt(20) == 0) {
+                coordenadas[0][i] = coordenadas[0][i - 1];
+                coordenadas[1][i] = coordenadas[1][i - 1];
+            }
+        }
+        return coordenadas;
+    }
+
+    /**
+     * Passos de ~10 a ~150 m com a direção mudando aos poucos
+     */
+    private static double[][] caminhadaAleatoria(Random random, int pontos) {
+        double[] lat = new double[pontos];
+        double[] lon = new double[pontos];
+        lat[0] = -24 + random.nextDouble() * 4;
+        lon[0] = -50 + random.nextDouble() * 6;
+        double direcao = random.nextDouble() * 2 * Math.PI;
+        for (int i = 1; i < pontos; i++) {
+            direcao += (random.nextDouble() - 0.5) * 0.8;
+            double passo = 0.0001 + random.nextDouble() * 0.0013;
+            lat[i] = lat[i - 1] + passo * Math.sin(direcao);
+            lon[i] = lon[i - 1] + passo * Math.cos(direcao);
+        }
+        return new double[][] { lat, lon };
+    }
+
+    /**
+     * Ponto em volta de um vértice aleatório: na maioria das vezes a algumas
+     * centenas de metros, às vezes a dezenas de quilômetros da rota
+     */
+    private static double[] pontoPerto(Random random, double[][] coordenadas) {
+        int vertice = random.nextInt(coordenadas[0].length);
+        double espalhamento = random.nextInt(10) == 0 ? 0.5 : 0.005;
+        return new double[] {
+            coordenadas[0][vertice] + (random.nextDouble() - 0.5) * espalhamento,
+            coordenadas[1][vertice] + (random.nextDouble() - 0.5) * espalhamento
+        };
+    }
+}
@@ -0,0 +1,54 @@
+package com.app.telemetria.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.app.telemetria.entity.GeometriaRota;
+
+/**
+ * rota_geojson: ida e volta da GeometriaRota e conteúdo antigo/inválido
+ * lido como ausente
+ */
+class GeometriaRotaConverterTest {
+
+    private final GeometriaRotaConverter converter = new GeometriaRotaConverter();
+
+    @Test
+    void idaEVolta() {
+        double[] lat = { -23.55052, -23.55101, -22.90685 };
+        double[] lon = { -46.63331, -46.63402, -43.17290 };
+        GeometriaRota original = GeometriaRota.de(lat, lon, 5);
+
+        String coluna = converter.convertToDatabaseColumn(original);
+        assertTrue(coluna.contains("\"polyline\""));
+        assertTrue(!coluna.contains("latitudes"), coluna);
+
+        GeometriaRota lida = converter.convertToEntityAttribute(coluna);
+        assertEquals(original.getPolyline(), lida.getPolyline());
+        assertEquals(3, lida.getTotalPontos());
+        assertEquals(5, lida.getToleranciaMetros(), 0);
+        assertArrayEquals(lat, lida.getLatitudes(), 1e-9);
+        assertArrayEquals(lon, lida.getLongitudes(), 1e-9);
+    }
+
+    @Test
+    void nuloEVazioViramNulo() {
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+        assertNull(converter.convertToEntityAttribute(""));
+        assertNull(converter.convertToEntityAttribute("  "));
+    }
+
+    @Test
+    void conteudoAntigoOuInvalidoViraNulo() {
+        // GeoJSON gravado antes da encoded polyline
+        assertNull(converter.convertToEntityAttribute(
+            "{\"type\":\"LineString\",\"coordinates\":[[-46.63,-23.55],[-43.17,-22.90]]}"));
+        assertNull(converter.convertToEntityAttribute("{\"polyline\":"));
+        assertNull(converter.convertToEntityAttribute("nao é json"));
+    }
+}
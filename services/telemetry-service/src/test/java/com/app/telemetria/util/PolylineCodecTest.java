@@ -0,0 +1,77 @@
+package com.app.telemetria.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Encoded polyline: ida e volta dentro de 1e-5 grau e compatibilidade com o
+ * exemplo da documentação do Google
+ */
+class PolylineCodecTest {
+
+    @Test
+    void exemploDoGoogle() {
+        double[] lat = { 38.5, 40.7, 43.252 };
+        double[] lon = { -120.2, -120.95, -126.453 };
+
+        assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", PolylineCodec.codificar(lat, lon));
+
+        double[][] decodificado = PolylineCodec.decodificar("_p~iF~ps|U_ulLnnqC_mqNvxq`@");
+        assertArrayEquals(lat, decodificado[0], 1e-9);
+        assertArrayEquals(lon, decodificado[1], 1e-9);
+    }
+
+    @Test
+    void idaEVoltaDentroDe1e5() {
+        Random random = new Random(42);
+        for (int rodada = 0; rodada < 200; rodada++) {
+            int n = 1 + random.nextInt(500);
+            double[] lat = new double[n];
+            double[] lon = new double[n];
+            // Caminhada com saltos grandes e pequenos, em qualquer quadrante
+            lat[0] = -89 + random.nextDouble() * 178;
+            lon[0] = -179 + random.nextDouble() * 358;
+            for (int i = 1; i < n; i++) {
+                double passo = random.nextInt(10) == 0 ? 5 : 0.001;
+                lat[i] = Math.max(-90, Math.min(90, lat[i - 1] + (random.nextDouble() - 0.5) * passo));
+                lon[i] = Math.max(-180, Math.min(180, lon[i - 1] + (random.nextDouble() - 0.5) * passo));
+            }
+
+            String polyline = PolylineCodec.codificar(lat, lon);
+            assertEquals(n, PolylineCodec.contarPontos(polyline));
+            double[][] decodificado = PolylineCodec.decodificar(polyline);
+            assertArrayEquals(lat, decodificado[0], 0.5e-5 + 1e-12);
+            assertArrayEquals(lon, decodificado[1], 0.5e-5 + 1e-12);
+        }
+    }
+
+    @Test
+    void coordenadasNegativas() {
+        // Sudeste do Brasil: latitude e longitude negativas, deltas de sinais trocados
+        double[] lat = { -23.55052, -23.55101, -23.54987, -22.90685, -0.00001, 0 };
+        double[] lon = { -46.63331, -46.63402, -46.63290, -43.17290, -0.00001, 0 };
+
+        double[][] decodificado = PolylineCodec.decodificar(PolylineCodec.codificar(lat, lon));
+
+        assertArrayEquals(lat, decodificado[0], 1e-9);
+        assertArrayEquals(lon, decodificado[1], 1e-9);
+    }
+
+    @Test
+    void vazia() {
+        assertEquals("", PolylineCodec.codificar(new double[0], new double[0]));
+        assertEquals(0, PolylineCodec.contarPontos(""));
+        assertEquals(0, PolylineCodec.decodificar("")[0].length);
+    }
+
+    @Test
+    void tamanhosDiferentesRejeitados() {
+        assertThrows(IllegalArgumentException.class,
+            () -> PolylineCodec.codificar(new double[2], new double[3]));
+    }
+}
@@ -0,0 +1,138 @@
+package com.app.telemetria.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Douglas-Peucker: extremos mantidos, índices crescentes e nenhum ponto
+ * descartado a mais da tolerância do traçado simplificado
+ */
+class SimplificadorGeometriaTest {
+
+    private static final double RAIO_TERRA = 6371000;
+
+    @Test
+    void extremosSempreMantidos() {
+        Random random = new Random(42);
+        for (int rodada = 0; rodada < 100; rodada++) {
+            int n = 2 + random.nextInt(300);
+            double[][] tracado = caminhada(random, n);
+
+            int[] mantidos = SimplificadorGeometria.simplificar(tracado[0], tracado[1], 5);
+
+            assertEquals(0, mantidos[0]);
+            assertEquals(n - 1, mantidos[mantidos.length - 1]);
+            for (int i = 1; i < mantidos.length; i++) {
+                assertTrue(mantidos[i] > mantidos[i - 1]);
+            }
+        }
+    }
+
+    @Test
+    void descartadosDentroDaTolerancia() {
+        Random random = new Random(7);
+        for (double tolerancia : new double[] { 1, 5, 50, 500 }) {
+            for (int rodada = 0; rodada < 50; rodada++) {
+                double[][] tracado = caminhada(random, 500);
+                double[] lat = tracado[0];
+                double[] lon = tracado[1];
+
+                int[] mantidos = SimplificadorGeometria.simplificar(lat, lon, tolerancia);
+
+                double escalaX = RAIO_TERRA * Math.cos(Math.toRadians(media(lat)));
+                for (int k = 1; k < mantidos.length; k++) {
+                    int a = mantidos[k - 1];
+                    int b = mantidos[k];
+                    for (int i = a + 1; i < b; i++) {
+                        double d = distanciaAoSegmento(lat, lon, escalaX, i, a, b);
+                        assertTrue(d <= tolerancia + 1e-6,
+                            "ponto " + i + " a " + d + " m do trecho " + a + "-" + b + " (tolerância " + tolerancia + ")");
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void toleranciaMaiorMantemMenosPontos() {
+        double[][] tracado = caminhada(new Random(3), 2000);
+        int anterior = Integer.MAX_VALUE;
+        for (double tolerancia : new double[] { 0, 1, 10, 100, 1000 }) {
+            int mantidos = SimplificadorGeometria.simplificar(tracado[0], tracado[1], tolerancia).length;
+            assertTrue(mantidos <= anterior);
+            anterior = mantidos;
+        }
+        assertTrue(anterior < 2000);
+    }
+
+    @Test
+    void colinearesReduzemADoisPontos() {
+        int n = 1000;
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            lat[i] = -23.55 + i * 1e-4;
+            lon[i] = -46.63 + i * 2e-4;
+        }
+
+        assertArrayEquals(new int[] { 0, n - 1 }, SimplificadorGeometria.simplificar(lat, lon, 1));
+    }
+
+    @Test
+    void pontosRepetidosReduzemADoisPontos() {
+        double[] lat = { -23.55, -23.55, -23.55, -23.55 };
+        double[] lon = { -46.63, -46.63, -46.63, -46.63 };
+
+        assertArrayEquals(new int[] { 0, 3 }, SimplificadorGeometria.simplificar(lat, lon, 1));
+    }
+
+    @Test
+    void ateDoisPontosMantidosComoEstao() {
+        assertArrayEquals(new int[0], SimplificadorGeometria.simplificar(new double[0], new double[0], 5));
+        assertArrayEquals(new int[] { 0 }, SimplificadorGeometria.simplificar(new double[] { 1 }, new double[] { 2 }, 5));
+        assertArrayEquals(new int[] { 0, 1 },
+            SimplificadorGeometria.simplificar(new double[] { 1, 1 }, new double[] { 2, 2 }, 5));
+    }
+
+    /**
+     * Traçado tipo estrada: direção que muda aos poucos, passos de 5 a 50 m
+     */
+    private static double[][] caminhada(Random random, int n) {
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        lat[0] = -23.55;
+        lon[0] = -46.63;
+        double direcao = random.nextDouble() * 2 * Math.PI;
+        for (int i = 1; i < n; i++) {
+            direcao += (random.nextDouble() - 0.5) * 0.6;
+            double passo = (5 + random.nextDouble() * 45) / 111320;
+            lat[i] = lat[i - 1] + passo * Math.sin(direcao);
+            lon[i] = lon[i - 1] + passo * Math.cos(direcao) / Math.cos(Math.toRadians(lat[i - 1]));
+        }
+        return new double[][] { lat, lon };
+    }
+
+    private static double media(double[] valores) {
+        double soma = 0;
+        for (double v : valores) soma += v;
+        return soma / valores.length;
+    }
+
+    /**
+     * Distância em metros do ponto i ao segmento a-b (projeção equiretangular)
+     */
+    private static double distanciaAoSegmento(double[] lat, double[] lon, double escalaX, int i, int a, int b) {
+        double px = Math.toRadians(lon[i]) * escalaX, py = Math.toRadians(lat[i]) * RAIO_TERRA;
+        double ax = Math.toRadians(lon[a]) * escalaX, ay = Math.toRadians(lat[a]) * RAIO_TERRA;
+        double bx = Math.toRadians(lon[b]) * escalaX, by = Math.toRadians(lat[b]) * RAIO_TERRA;
+        double dx = bx - ax, dy = by - ay;
+        double comprimento2 = dx * dx + dy * dy;
+        double t = comprimento2 == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / comprimento2));
+        return Math.hypot(ax + t * dx - px, ay + t * dy - py);
+    }
+}